@@ -0,0 +1,77 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this module. The command line arguments are the
+ * ones of JMH (e.g. a regular expression selecting the benchmarks, or
+ * <code>-p size=10000</code> to override a parameter). In contrast to the
+ * JMH defaults, the results are written as JSON to the file
+ * {@link #DEFAULT_RESULT_FILE} unless <code>-rf</code> or <code>-rff</code>
+ * are given, so the results of different versions can be compared by
+ * tools.
+ * <p>
+ * Usage example:
+ * <pre>
+ *   mvn package
+ *   java -jar benchmarks/core_benchmarks/target/benchmarks.jar BPlusTree -rff before.json
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * The file the results are written to by default.
+	 */
+	public static final String DEFAULT_RESULT_FILE = "xxl-benchmarks.json";
+
+	/**
+	 * The class only provides a main method.
+	 */
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * Runs the benchmarks selected by the given JMH command line arguments.
+	 * 
+	 * @param args the JMH command line arguments.
+	 * @throws Exception if the arguments are invalid or a benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+		if (!options.getResultFormat().hasValue())
+			builder.resultFormat(ResultFormatType.JSON);
+		if (!options.getResult().hasValue())
+			builder.result(DEFAULT_RESULT_FILE);
+		new Runner(builder.build()).run();
+	}
+}
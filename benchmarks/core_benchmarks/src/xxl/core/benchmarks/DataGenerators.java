@@ -0,0 +1,205 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import xxl.core.spatial.points.DoublePoint;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * This class provides static methods generating the input data of the
+ * benchmarks. All generators are deterministic for a given seed, so every
+ * run of a benchmark works on exactly the same data.
+ */
+public class DataGenerators {
+
+	/**
+	 * The seed used by the benchmarks if no other seed is given.
+	 */
+	public static final long DEFAULT_SEED = 42;
+
+	/**
+	 * The characters random strings are made of.
+	 */
+	protected static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+	/**
+	 * The class only provides static methods.
+	 */
+	private DataGenerators() {
+	}
+
+	/**
+	 * Returns <code>n</code> integers uniformly distributed in
+	 * <code>[0, bound)</code>.
+	 * 
+	 * @param n the number of integers.
+	 * @param bound the upper bound (exclusive) of the integers.
+	 * @param seed the seed of the random number generator.
+	 * @return an array of random integers.
+	 */
+	public static int[] randomInts(int n, int bound, long seed) {
+		Random random = new Random(seed);
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++)
+			result[i] = random.nextInt(bound);
+		return result;
+	}
+
+	/**
+	 * Returns the integers <code>0, step, 2*step, ...</code> boxed into an
+	 * array of <code>n</code> <code>Integer</code> objects. Since the
+	 * integers are sorted they can be used for bulk loading.
+	 * 
+	 * @param n the number of integers.
+	 * @param step the distance of two consecutive integers.
+	 * @return an array of sorted integers.
+	 */
+	public static Integer[] sortedIntegers(int n, int step) {
+		Integer[] result = new Integer[n];
+		for (int i = 0; i < n; i++)
+			result[i] = i * step;
+		return result;
+	}
+
+	/**
+	 * Returns <code>n</code> random <code>Integer</code> objects.
+	 * 
+	 * @param n the number of integers.
+	 * @param seed the seed of the random number generator.
+	 * @return an array of random integers.
+	 */
+	public static Integer[] randomIntegers(int n, long seed) {
+		Random random = new Random(seed);
+		Integer[] result = new Integer[n];
+		for (int i = 0; i < n; i++)
+			result[i] = random.nextInt();
+		return result;
+	}
+
+	/**
+	 * Returns <code>n</code> random strings whose lengths are uniformly
+	 * distributed in <code>[minLength, maxLength]</code>.
+	 * 
+	 * @param n the number of strings.
+	 * @param minLength the minimal length of a string.
+	 * @param maxLength the maximal length of a string.
+	 * @param seed the seed of the random number generator.
+	 * @return an array of random strings.
+	 */
+	public static String[] randomStrings(int n, int minLength, int maxLength, long seed) {
+		Random random = new Random(seed);
+		String[] result = new String[n];
+		for (int i = 0; i < n; i++) {
+			char[] chars = new char[minLength + random.nextInt(maxLength - minLength + 1)];
+			for (int j = 0; j < chars.length; j++)
+				chars[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+			result[i] = new String(chars);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns <code>n</code> points uniformly distributed in the unit cube.
+	 * 
+	 * @param n the number of points.
+	 * @param dimension the dimension of the points.
+	 * @param seed the seed of the random number generator.
+	 * @return an array of random points.
+	 */
+	public static DoublePoint[] randomPoints(int n, int dimension, long seed) {
+		Random random = new Random(seed);
+		DoublePoint[] result = new DoublePoint[n];
+		for (int i = 0; i < n; i++) {
+			double[] point = new double[dimension];
+			for (int j = 0; j < dimension; j++)
+				point[j] = random.nextDouble();
+			result[i] = new DoublePoint(point);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns <code>n</code> query windows inside the unit cube. Each window
+	 * is a cube whose volume is <code>selectivity</code>, so a window
+	 * contains about <code>selectivity</code> percent of uniformly
+	 * distributed points.
+	 * 
+	 * @param n the number of windows.
+	 * @param dimension the dimension of the windows.
+	 * @param selectivity the volume of a window.
+	 * @param seed the seed of the random number generator.
+	 * @return an array of random windows.
+	 */
+	public static DoublePointRectangle[] randomWindows(int n, int dimension, double selectivity, long seed) {
+		Random random = new Random(seed);
+		double extent = Math.pow(selectivity, 1.0 / dimension);
+		DoublePointRectangle[] result = new DoublePointRectangle[n];
+		for (int i = 0; i < n; i++) {
+			double[] left = new double[dimension];
+			double[] right = new double[dimension];
+			for (int j = 0; j < dimension; j++) {
+				left[j] = random.nextDouble() * (1 - extent);
+				right[j] = left[j] + extent;
+			}
+			result[i] = new DoublePointRectangle(left, right);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns <code>n</code> random byte arrays of the given size.
+	 * 
+	 * @param n the number of arrays.
+	 * @param size the size of each array.
+	 * @param seed the seed of the random number generator.
+	 * @return an array of random byte arrays.
+	 */
+	public static byte[][] randomBytes(int n, int size, long seed) {
+		Random random = new Random(seed);
+		byte[][] result = new byte[n][size];
+		for (int i = 0; i < n; i++)
+			random.nextBytes(result[i]);
+		return result;
+	}
+
+	/**
+	 * Returns a prefix for the files of a temporary container. The prefix is
+	 * located in the default temporary-file directory.
+	 * 
+	 * @param name the name of the container.
+	 * @return a prefix for the files of a temporary container.
+	 * @throws IOException if the temporary file cannot be created.
+	 */
+	public static String temporaryPrefix(String name) throws IOException {
+		File file = File.createTempFile(name, "");
+		file.delete();
+		return file.getPath();
+	}
+}
@@ -0,0 +1,135 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.benchmarks.collections;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xxl.core.benchmarks.DataGenerators;
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.io.Block;
+import xxl.core.io.LRUBuffer;
+
+/**
+ * Measures random block reads and writes on a {@link BlockFileContainer},
+ * either directly or behind a write-back {@link BufferedContainer} with an
+ * LRU buffer. The accessed blocks are chosen uniformly at random, so the
+ * buffer hit ratio is about <code>bufferSize/size</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ContainerBenchmark {
+
+	/**
+	 * The number of accesses generated in advance.
+	 */
+	public static final int NUMBER_OF_ACCESSES = 1 << 16;
+
+	/**
+	 * Either <code>file</code> for a plain block file container or
+	 * <code>buffered</code> for a buffered one.
+	 */
+	@Param({"file", "buffered"})
+	public String container;
+
+	/**
+	 * The number of blocks stored in the container.
+	 */
+	@Param({"10000"})
+	public int size;
+
+	@Param({"4096"})
+	public int blockSize;
+
+	@Param({"1000"})
+	public int bufferSize;
+
+	@Param({"42"})
+	public long seed;
+
+	protected BlockFileContainer fileContainer;
+	protected Container decorated;
+	protected Object[] ids;
+	protected Block[] blocks;
+	protected int[] accesses;
+	protected int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		fileContainer = new BlockFileContainer(DataGenerators.temporaryPrefix("container"), blockSize);
+		if (container.equals("file"))
+			decorated = fileContainer;
+		else if (container.equals("buffered"))
+			decorated = new BufferedContainer(fileContainer, new LRUBuffer(bufferSize), true);
+		else
+			throw new IllegalArgumentException("unknown container: " + container);
+		byte[][] data = DataGenerators.randomBytes(256, blockSize, seed);
+		blocks = new Block[data.length];
+		for (int i = 0; i < data.length; i++)
+			blocks[i] = new Block(data[i]);
+		ids = new Object[size];
+		for (int i = 0; i < size; i++)
+			ids[i] = decorated.insert(blocks[i % blocks.length]);
+		decorated.flush();
+		accesses = DataGenerators.randomInts(NUMBER_OF_ACCESSES, size, seed);
+	}
+
+	@TearDown
+	public void tearDown() {
+		decorated.close();
+		fileContainer.delete();
+	}
+
+	@Benchmark
+	public Object get() {
+		return decorated.get(ids[accesses[next++ & (NUMBER_OF_ACCESSES - 1)]]);
+	}
+
+	@Benchmark
+	public void update() {
+		int index = next++ & (NUMBER_OF_ACCESSES - 1);
+		decorated.update(ids[accesses[index]], blocks[index % blocks.length]);
+	}
+}
@@ -0,0 +1,105 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.benchmarks.cursors;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import xxl.core.benchmarks.DataGenerators;
+import xxl.core.comparators.ComparableComparator;
+import xxl.core.cursors.sorters.MergeSorter;
+
+/**
+ * Measures the external sort of random integers by a {@link MergeSorter}.
+ * The runs are kept in main memory, so the benchmark covers run creation and
+ * merging but not disk I/O. A <code>parallelism</code> larger than one
+ * switches the sorter to its parallel mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MergeSorterBenchmark {
+
+	/**
+	 * The size of an integer in main memory as assumed by the sorter.
+	 */
+	public static final int OBJECT_SIZE = 16;
+
+	@Param({"1000000"})
+	public int size;
+
+	/**
+	 * The number of integers fitting into the memory of the sorter.
+	 */
+	@Param({"10000", "100000"})
+	public int memory;
+
+	@Param({"1", "4"})
+	public int parallelism;
+
+	@Param({"42"})
+	public long seed;
+
+	protected List<Integer> input;
+
+	@Setup
+	public void setUp() {
+		input = Arrays.asList(DataGenerators.randomIntegers(size, seed));
+	}
+
+	@Benchmark
+	public void sort(Blackhole blackhole) {
+		MergeSorter<Integer> sorter = new MergeSorter<Integer>(
+			input.iterator(),
+			ComparableComparator.INTEGER_COMPARATOR,
+			OBJECT_SIZE,
+			memory * OBJECT_SIZE,
+			memory * OBJECT_SIZE
+		);
+		if (parallelism > 1)
+			sorter.parallelize(parallelism);
+		while (sorter.hasNext())
+			blackhole.consume(sorter.next());
+		sorter.close();
+	}
+}
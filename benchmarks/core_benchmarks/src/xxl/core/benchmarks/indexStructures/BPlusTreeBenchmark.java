@@ -0,0 +1,150 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.benchmarks.indexStructures;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import xxl.core.benchmarks.DataGenerators;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.Identity;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.BPlusTreeBulkLoading;
+import xxl.core.indexStructures.keyRanges.IntegerKeyRange;
+import xxl.core.indexStructures.separators.IntegerSeparator;
+import xxl.core.io.LRUBuffer;
+import xxl.core.io.converters.Converters;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.io.converters.MeasuredConverter;
+
+/**
+ * Measures point and range queries on a {@link BPlusTree} with integer keys.
+ * The tree is bulk loaded with the keys <code>0, 2, 4, ...</code>, so about
+ * half of the point queries are unsuccessful. The nodes are stored in a
+ * {@link BlockFileContainer} behind an LRU-buffered container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BPlusTreeBenchmark {
+
+	/**
+	 * The number of query keys generated in advance.
+	 */
+	public static final int NUMBER_OF_QUERIES = 1 << 16;
+
+	@Param({"100000", "1000000"})
+	public int size;
+
+	@Param({"4096"})
+	public int blockSize;
+
+	@Param({"100"})
+	public int bufferSize;
+
+	/**
+	 * The number of data objects returned by a range query.
+	 */
+	@Param({"100"})
+	public int rangeSize;
+
+	@Param({"42"})
+	public long seed;
+
+	protected BlockFileContainer fileContainer;
+	protected BufferedContainer container;
+	protected BPlusTree tree;
+	protected int[] queries;
+	protected int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		tree = new BPlusTree(blockSize, 0.5, false);
+		fileContainer = new BlockFileContainer(DataGenerators.temporaryPrefix("bplustree"), blockSize);
+		container = new BufferedContainer(
+			new ConverterContainer(fileContainer, tree.nodeConverter()),
+			new LRUBuffer(bufferSize),
+			true
+		);
+		MeasuredConverter converter = Converters.createMeasuredConverter(IntegerConverter.DEFAULT_INSTANCE);
+		tree.initialize(
+			Identity.DEFAULT_INSTANCE,
+			container,
+			converter,
+			converter,
+			IntegerSeparator.FACTORY_FUNCTION,
+			IntegerKeyRange.FACTORY_FUNCTION
+		);
+		new BPlusTreeBulkLoading(tree, Arrays.asList(DataGenerators.sortedIntegers(size, 2)).iterator());
+		container.flush();
+		queries = DataGenerators.randomInts(NUMBER_OF_QUERIES, 2 * size, seed);
+	}
+
+	@TearDown
+	public void tearDown() {
+		container.close();
+		fileContainer.delete();
+	}
+
+	protected int nextQuery() {
+		return queries[next++ & (NUMBER_OF_QUERIES - 1)];
+	}
+
+	@Benchmark
+	public Object pointQuery() {
+		return tree.exactMatchQuery(nextQuery());
+	}
+
+	@Benchmark
+	public void rangeQuery(Blackhole blackhole) {
+		int min = nextQuery();
+		Cursor cursor = tree.rangeQuery(min, min + 2 * (rangeSize - 1));
+		while (cursor.hasNext())
+			blackhole.consume(cursor.next());
+		cursor.close();
+	}
+}
@@ -0,0 +1,197 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.benchmarks.indexStructures;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import xxl.core.benchmarks.DataGenerators;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.GreenesRTree;
+import xxl.core.indexStructures.LinearRTree;
+import xxl.core.indexStructures.QuadraticRTree;
+import xxl.core.indexStructures.RTree;
+import xxl.core.io.LRUBuffer;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.spatial.points.DoublePoint;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * Measures window and point queries on the members of the {@link RTree}
+ * family. The trees are built by inserting uniformly distributed points of
+ * the unit cube, the nodes are stored in a {@link BlockFileContainer} behind
+ * an LRU-buffered container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RTreeBenchmark {
+
+	/**
+	 * The number of query windows generated in advance.
+	 */
+	public static final int NUMBER_OF_QUERIES = 1 << 12;
+
+	/**
+	 * The R-tree variant, i.e., the simple name of a subclass of
+	 * {@link RTree} (<code>RTree</code> is the R*-tree).
+	 */
+	@Param({"RTree", "GreenesRTree", "QuadraticRTree", "LinearRTree"})
+	public String variant;
+
+	@Param({"100000"})
+	public int size;
+
+	@Param({"2"})
+	public int dimension;
+
+	@Param({"4096"})
+	public int blockSize;
+
+	@Param({"100"})
+	public int bufferSize;
+
+	/**
+	 * The volume of a query window, i.e., the expected fraction of the data
+	 * returned by a window query.
+	 */
+	@Param({"0.001"})
+	public double selectivity;
+
+	@Param({"42"})
+	public long seed;
+
+	protected BlockFileContainer fileContainer;
+	protected BufferedContainer container;
+	protected RTree tree;
+	protected DoublePointRectangle[] windows;
+	protected DoublePointRectangle[] points;
+	protected int next;
+
+	/**
+	 * Creates an empty tree of the given variant.
+	 * 
+	 * @param variant the simple class name of the variant.
+	 * @return an empty tree.
+	 */
+	protected static RTree createTree(String variant) {
+		if (variant.equals("RTree"))
+			return new RTree();
+		if (variant.equals("GreenesRTree"))
+			return new GreenesRTree();
+		if (variant.equals("QuadraticRTree"))
+			return new QuadraticRTree();
+		if (variant.equals("LinearRTree"))
+			return new LinearRTree();
+		throw new IllegalArgumentException("unknown R-tree variant: " + variant);
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		final int dimension = this.dimension;
+		tree = createTree(variant);
+		fileContainer = new BlockFileContainer(DataGenerators.temporaryPrefix("rtree"), blockSize);
+		container = new BufferedContainer(
+			new ConverterContainer(
+				fileContainer,
+				tree.nodeConverter(
+					new ConvertableConverter(
+						new AbstractFunction<Object, DoublePoint>() {
+							@Override
+							public DoublePoint invoke() {
+								return new DoublePoint(dimension);
+							}
+						}
+					),
+					dimension
+				)
+			),
+			new LRUBuffer(bufferSize),
+			true
+		);
+		Function<Object, Object> getDescriptor = new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object point) {
+				return new DoublePointRectangle((DoublePoint)point, (DoublePoint)point);
+			}
+		};
+		tree.initialize(getDescriptor, container, blockSize, dimension * 8, dimension * 2 * 8, 1.0 / 3.0);
+		DoublePoint[] data = DataGenerators.randomPoints(size, dimension, seed);
+		for (DoublePoint point : data)
+			tree.insert(point);
+		container.flush();
+		windows = DataGenerators.randomWindows(NUMBER_OF_QUERIES, dimension, selectivity, seed + 1);
+		points = new DoublePointRectangle[NUMBER_OF_QUERIES];
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			DoublePoint point = data[(int)(((long)i * size) / NUMBER_OF_QUERIES)];
+			points[i] = new DoublePointRectangle(point, point);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		container.close();
+		fileContainer.delete();
+	}
+
+	protected static void consume(Cursor cursor, Blackhole blackhole) {
+		while (cursor.hasNext())
+			blackhole.consume(cursor.next());
+		cursor.close();
+	}
+
+	@Benchmark
+	public void windowQuery(Blackhole blackhole) {
+		consume(tree.query(windows[next++ & (NUMBER_OF_QUERIES - 1)], 0), blackhole);
+	}
+
+	@Benchmark
+	public void pointQuery(Blackhole blackhole) {
+		consume(tree.query(points[next++ & (NUMBER_OF_QUERIES - 1)], 0), blackhole);
+	}
+}
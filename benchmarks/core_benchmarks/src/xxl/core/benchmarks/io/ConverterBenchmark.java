@@ -0,0 +1,161 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.benchmarks.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import xxl.core.benchmarks.DataGenerators;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.DoubleArrayConverter;
+import xxl.core.io.converters.DoubleConverter;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.StringConverter;
+import xxl.core.spatial.points.DoublePoint;
+
+/**
+ * Measures the serialization and deserialization of objects by the main
+ * {@link Converter converters}. Every invocation writes or reads
+ * {@link #BATCH_SIZE} objects from an in-memory stream, the reported time is
+ * the time per object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+	/**
+	 * The number of objects written or read by an invocation.
+	 */
+	public static final int BATCH_SIZE = 1024;
+
+	/**
+	 * The type of the converted objects.
+	 */
+	@Param({"integer", "long", "double", "string", "doubleArray", "doublePoint"})
+	public String type;
+
+	@Param({"42"})
+	public long seed;
+
+	protected Converter converter;
+	protected Object[] objects;
+	protected ByteArrayOutputStream output;
+	protected DataOutputStream dataOutput;
+	protected ByteArrayInputStream input;
+	protected DataInputStream dataInput;
+
+	@Setup
+	public void setUp() throws IOException {
+		int[] ints = DataGenerators.randomInts(BATCH_SIZE, Integer.MAX_VALUE, seed);
+		objects = new Object[BATCH_SIZE];
+		if (type.equals("integer")) {
+			converter = IntegerConverter.DEFAULT_INSTANCE;
+			for (int i = 0; i < BATCH_SIZE; i++)
+				objects[i] = ints[i];
+		}
+		else if (type.equals("long")) {
+			converter = LongConverter.DEFAULT_INSTANCE;
+			for (int i = 0; i < BATCH_SIZE; i++)
+				objects[i] = (long)ints[i] * ints[i];
+		}
+		else if (type.equals("double")) {
+			converter = DoubleConverter.DEFAULT_INSTANCE;
+			for (int i = 0; i < BATCH_SIZE; i++)
+				objects[i] = ints[i] / (double)Integer.MAX_VALUE;
+		}
+		else if (type.equals("string")) {
+			converter = StringConverter.DEFAULT_INSTANCE;
+			String[] strings = DataGenerators.randomStrings(BATCH_SIZE, 5, 50, seed);
+			System.arraycopy(strings, 0, objects, 0, BATCH_SIZE);
+		}
+		else if (type.equals("doubleArray")) {
+			converter = DoubleArrayConverter.DEFAULT_INSTANCE;
+			DoublePoint[] points = DataGenerators.randomPoints(BATCH_SIZE, 10, seed);
+			for (int i = 0; i < BATCH_SIZE; i++)
+				objects[i] = points[i].getPoint();
+		}
+		else if (type.equals("doublePoint")) {
+			converter = new ConvertableConverter(
+				new AbstractFunction<Object, DoublePoint>() {
+					@Override
+					public DoublePoint invoke() {
+						return new DoublePoint(2);
+					}
+				}
+			);
+			System.arraycopy(DataGenerators.randomPoints(BATCH_SIZE, 2, seed), 0, objects, 0, BATCH_SIZE);
+		}
+		else
+			throw new IllegalArgumentException("unknown type: " + type);
+		output = new ByteArrayOutputStream();
+		dataOutput = new DataOutputStream(output);
+		write();
+		input = new ByteArrayInputStream(output.toByteArray());
+		dataInput = new DataInputStream(input);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public int write() throws IOException {
+		output.reset();
+		for (Object object : objects)
+			converter.write(dataOutput, object);
+		return output.size();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void read(Blackhole blackhole) throws IOException {
+		input.reset();
+		for (int i = 0; i < BATCH_SIZE; i++)
+			blackhole.consume(converter.read(dataInput));
+	}
+}
@@ -31,7 +31,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import xxl.core.collections.containers.AbstractContainer;
@@ -162,7 +166,7 @@ import xxl.core.util.WrappingRuntimeException;
  * @see RandomAccessFile
  * @see WrappingRuntimeException
  */
-public class BlockFileContainer extends AbstractContainer {
+public class BlockFileContainer extends AbstractContainer implements SyncableContainer {
 
 	/**
 	 * The name for the files of this container. The file names of the
@@ -298,6 +302,13 @@ public class BlockFileContainer extends AbstractContainer {
 	 */
 	protected byte idType=4;
 
+	/**
+	 * The maximal number of bytes that are read or written by a single I/O
+	 * operation when blocks stored at adjacent offsets are coalesced by the
+	 * methods <tt>getAll</tt> and <tt>updateAll</tt>.
+	 */
+	public static final int MAX_COALESCED_BYTES = 1<<20;
+
 	/**
 	 * Constructs an empty BlockFileContainer that is able to store blocks
 	 * with a maximum size of <tt>blockSize</tt> bytes. The given
@@ -510,6 +521,50 @@ public class BlockFileContainer extends AbstractContainer {
 		reset();
 	}
 
+	/**
+	 * Writes the values of the fields <tt>blockSize</tt> and <tt>size</tt>
+	 * to the meta file.
+	 *
+	 * @throws IOException if the meta file cannot be written.
+	 */
+	protected void writeMetaData () throws IOException {
+		metaData.seek(0);
+		metaData.writeInt(blockSize);
+		metaData.writeInt(size);
+	}
+
+	/**
+	 * Writes the serialized state of this container to the meta file. The
+	 * blocks, the bit maps and the free list are written to their files by
+	 * every operation, so the files of an open container are consistent
+	 * after a call to this method.
+	 */
+	public void flush () {
+		if (this.container!=null)
+			try {
+				writeMetaData();
+			}
+			catch (IOException ie) {
+				throw new WrappingRuntimeException(ie);
+			}
+	}
+
+	/**
+	 * Flushes this container and forces the five container files to the
+	 * storage device.
+	 */
+	public void sync () {
+		open();
+		flush();
+		try {
+			for (RandomAccessFile file : new RandomAccessFile[] {container, metaData, reservedBitMap, updatedBitMap, freeList})
+				file.getChannel().force(true);
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
 	/**
 	 * Closes the Container and releases its associated files. But before
 	 * closing the meta file, the serialized state of this container must
@@ -523,9 +578,7 @@ public class BlockFileContainer extends AbstractContainer {
 			try {
 				container.close();
 				container = null;
-				metaData.seek(0);
-				metaData.writeInt(blockSize);
-				metaData.writeInt(size);
+				writeMetaData();
 				metaData.close();
 				reservedBitMap.close();
 				updatedBitMap.close();
@@ -784,9 +837,52 @@ public class BlockFileContainer extends AbstractContainer {
 	 */
 	public void update (Object id, Object object, boolean unfix) throws NoSuchElementException {
 		open();
+		Block block = prepareUpdate(id, (Block)object);
+
+		write(((Number)id).longValue(), block.array, block.offset, blockSize);
+		markUpdated(id);
+	}
+
+	/**
+	 * Prepares the update of the block with identifier <tt>id</tt>. This
+	 * method checks whether the block exists and fits into the container
+	 * and returns a block whose array contains at least <tt>blockSize</tt>
+	 * bytes starting at its offset. The container is not changed.
+	 *
+	 * @param id identifier of the block.
+	 * @param block the new block that should be associated to <tt>id</tt>.
+	 * @return a block containing the data of the given block that can be
+	 *         written to the container file.
+	 * @throws NoSuchElementException if a block with an identifier
+	 *         <tt>id</tt> does not exist in the container.
+	 * @throws IllegalArgumentException if the block is larger than the
+	 *         blocks of the container.
+	 */
+	protected Block prepareUpdate (Object id, Block block) throws NoSuchElementException {
+		if (!contains(id) && !isUsed(id))
+			throw new NoSuchElementException();
+		if (block.size>blockSize)
+			throw new IllegalArgumentException("Block too large: defined block size is " + blockSize + ", actual block size is "+block.size + ".");
+		if (blockSize>block.array.length-block.offset) {
+			byte [] array = new byte[blockSize];
+
+			System.arraycopy(block.array, block.offset, array, 0, block.size);
+			block = new Block(array);
+		}
+		return block;
+	}
+
+	/**
+	 * Sets the entry for the block with identifier <tt>id</tt> in the
+	 * updatedBitMap file after the block has been written.
+	 *
+	 * @param id identifier of the block.
+	 * @throws NoSuchElementException if a block with an identifier
+	 *         <tt>id</tt> does not exist in the container.
+	 */
+	protected void markUpdated (Object id) throws NoSuchElementException {
 		try {
 			long offset = ((Number)id).longValue();
-			Block block = (Block)object;
 			int b;
 
 			if (offset+blockSize>container.length())
@@ -799,22 +895,241 @@ public class BlockFileContainer extends AbstractContainer {
 				updatedBitMap.seek(updatedBitMap.getFilePointer()-1);
 				updatedBitMap.write(b|(1<<(offset/blockSize%8)));
 			}
-			if (block.size>blockSize)
-				throw new IllegalArgumentException("Block too large: defined block size is " + blockSize + ", actual block size is "+block.size + ".");
-			if (blockSize>block.array.length-block.offset) {
-				byte [] array = new byte[blockSize];
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
 
-				System.arraycopy(block.array, block.offset, array, 0, block.size);
-				block = new Block(array);
-			}
-			container.seek(offset);
-			container.write(block.array, block.offset, blockSize);
+	/**
+	 * Reads <tt>length</tt> bytes of the container file starting at the
+	 * given position into the specified array.
+	 *
+	 * @param position the position in the container file.
+	 * @param array the array receiving the bytes.
+	 * @param offset the offset in the array.
+	 * @param length the number of bytes to read.
+	 */
+	protected void read (long position, byte [] array, int offset, int length) {
+		try {
+			container.seek(position);
+			for (int read; length>0 && (read = container.read(array, offset, length))>=0; offset += read, length -= read);
 		}
 		catch (IOException ie) {
 			throw new WrappingRuntimeException(ie);
 		}
 	}
 
+	/**
+	 * Writes <tt>length</tt> bytes of the specified array to the container
+	 * file starting at the given position.
+	 *
+	 * @param position the position in the container file.
+	 * @param array the array containing the bytes.
+	 * @param offset the offset in the array.
+	 * @param length the number of bytes to write.
+	 */
+	protected void write (long position, byte [] array, int offset, int length) {
+		try {
+			container.seek(position);
+			container.write(array, offset, length);
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Returns the offsets of the given identifiers in the order of an
+	 * ascending offset. The returned array contains the indices of the
+	 * identifiers in the given list.
+	 *
+	 * @param ids a list of identifiers.
+	 * @return the indices of the identifiers sorted by their offsets.
+	 */
+	protected static Integer [] sortByOffset (final List ids) {
+		Integer [] order = new Integer[ids.size()];
+
+		for (int i = 0; i<order.length; i++)
+			order[i] = i;
+		Arrays.sort(order,
+			new Comparator<Integer> () {
+				public int compare (Integer i, Integer j) {
+					long offset1 = ((Number)ids.get(i)).longValue(), offset2 = ((Number)ids.get(j)).longValue();
+
+					return offset1<offset2 ? -1 : offset1==offset2 ? 0 : 1;
+				}
+			}
+		);
+		return order;
+	}
+
+	/**
+	 * Returns an iterator pointing to the blocks associated to the
+	 * identifiers of the given iterator. The blocks are delivered in the
+	 * order of the identifiers.<br>
+	 * This implementation collects the identifiers and sorts them by their
+	 * offsets in the container file. Blocks that are stored at adjacent
+	 * offsets are read by a single I/O operation of at most
+	 * <tt>MAX_COALESCED_BYTES</tt> bytes. In other words, the container
+	 * file is read sequentially. Every returned block owns its own array.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @param unfix signals whether the objects can be removed from the
+	 *        underlying buffer.
+	 * @return an iterator of blocks.
+	 * @throws NoSuchElementException if a block of the identifiers is not
+	 *         found.
+	 */
+	public Iterator getAll (Iterator ids, boolean unfix) throws NoSuchElementException {
+		open();
+		List idList = new ArrayList();
+		
+		while (ids.hasNext())
+			idList.add(ids.next());
+		
+		Integer [] order = sortByOffset(idList);
+		Object [] blocks = new Object[order.length];
+		byte [] run = null;
+
+		for (int i = 0, j; i<order.length; i = j) {
+			long start = ((Number)idList.get(order[i])).longValue(), end = start+blockSize, offset;
+
+			if (!contains(idList.get(order[i])))
+				throw new NoSuchElementException();
+			for (j = i+1; j<order.length && (offset = ((Number)idList.get(order[j])).longValue())<=end; j++)
+				if (offset==end) {
+					if (end+blockSize-start>Math.max(MAX_COALESCED_BYTES, blockSize))
+						break;
+					if (!contains(idList.get(order[j])))
+						throw new NoSuchElementException();
+					end += blockSize;
+				}
+			if (run==null || run.length<end-start)
+				run = new byte[(int)Math.min(Math.max(MAX_COALESCED_BYTES, blockSize), (long)(order.length-i)*blockSize)];
+			read(start, run, 0, (int)(end-start));
+			for (int k = i; k<j; k++) {
+				byte [] array = new byte[blockSize];
+
+				System.arraycopy(run, (int)(((Number)idList.get(order[k])).longValue()-start), array, 0, blockSize);
+				blocks[order[k]] = new Block(array, 0, blockSize);
+			}
+		}
+		return Arrays.asList(blocks).iterator();
+	}
+
+	/**
+	 * Overwrites the blocks of this container whose identifiers are given
+	 * by the iterator <tt>ids</tt> with the blocks of the iterator
+	 * <tt>objects</tt>.<br>
+	 * This implementation collects the identifiers and blocks and sorts them
+	 * by the offsets of the blocks in the container file. Blocks that are
+	 * stored at adjacent offsets are written by a single I/O operation of at
+	 * most <tt>MAX_COALESCED_BYTES</tt> bytes. All identifiers and blocks are
+	 * checked before the first block is written, and a block is marked as
+	 * updated only when it has been written.
+	 *
+	 * @param ids an iterator of identifiers
+	 * @param objects an iterator of blocks
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if a block with an identifier
+	 *         of <tt>ids</tt> does not exist in the container.
+	 * @throws IllegalArgumentException if a block is larger than the
+	 *         blocks of the container.
+	 */
+	public void updateAll (Iterator ids, Iterator objects, boolean unfix) throws NoSuchElementException {
+		open();
+		List idList = new ArrayList(), blockList = new ArrayList();
+
+		while (ids.hasNext() && objects.hasNext()) {
+			Object id = ids.next();
+
+			idList.add(id);
+			blockList.add(prepareUpdate(id, (Block)objects.next()));
+		}
+
+		Integer [] order = sortByOffset(idList);
+		byte [] run = null;
+
+		for (int i = 0, j; i<order.length; i = j) {
+			long start = ((Number)idList.get(order[i])).longValue(), end = start+blockSize, offset;
+
+			for (j = i+1; j<order.length && (offset = ((Number)idList.get(order[j])).longValue())<=end; j++)
+				if (offset==end) {
+					if (end+blockSize-start>Math.max(MAX_COALESCED_BYTES, blockSize))
+						break;
+					end += blockSize;
+				}
+			if (j==i+1) {
+				Block block = (Block)blockList.get(order[i]);
+
+				write(start, block.array, block.offset, blockSize);
+				markUpdated(idList.get(order[i]));
+				continue;
+			}
+			if (run==null || run.length<end-start)
+				run = new byte[(int)Math.min(Math.max(MAX_COALESCED_BYTES, blockSize), (long)(order.length-i)*blockSize)];
+			// the sort is stable, so a later update of the same block overwrites an earlier one
+			for (int k = i; k<j; k++) {
+				Block block = (Block)blockList.get(order[k]);
+
+				System.arraycopy(block.array, block.offset, run, (int)(((Number)idList.get(order[k])).longValue()-start), blockSize);
+			}
+			write(start, run, 0, (int)(end-start));
+			for (int k = i; k<j; k++)
+				markUpdated(idList.get(order[k]));
+		}
+	}
+
+	/**
+	 * Overwrites the blocks of this container whose identifiers are given
+	 * by iterator <tt>ids</tt> with the blocks computed by the given
+	 * function. This implementation computes the blocks and calls
+	 * <tt>updateAll(ids, objects, unfix)</tt>.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @param function a function that computes the block which should be
+	 *        associated to an identifier.
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if a block with an identifier
+	 *         of <tt>ids</tt> does not exist in the container.
+	 */
+	public void updateAll (Iterator ids, Function function, boolean unfix) throws NoSuchElementException {
+		List idList = new ArrayList(), blockList = new ArrayList();
+
+		while (ids.hasNext()) {
+			Object id = ids.next();
+
+			idList.add(id);
+			blockList.add(function.invoke(id));
+		}
+		updateAll(idList.iterator(), blockList.iterator(), unfix);
+	}
+
+	/**
+	 * Removes the blocks with the identifiers given by <tt>ids</tt>.
+	 * This implementation removes the blocks in the order of a descending
+	 * offset, so the container file shrinks whenever the blocks at its end
+	 * are removed instead of filling the freeList file.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @throws NoSuchElementException if a block with an identifier
+	 *         <tt>id</tt> is not in the container.
+	 */
+	public void removeAll (Iterator ids) throws NoSuchElementException {
+		List idList = new ArrayList();
+
+		while (ids.hasNext())
+			idList.add(ids.next());
+		
+		Integer [] order = sortByOffset(idList);
+
+		for (int i = order.length; --i>=0;)
+			remove(idList.get(order[i]));
+	}
+
 	/**
 	 * Deletes the container. If necessary, the container is closed before.
 	 */
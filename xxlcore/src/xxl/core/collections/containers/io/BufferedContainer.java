@@ -25,8 +25,15 @@ License along with this library;  If not, see <http://www.gnu.org/licenses/>.
 
 package xxl.core.collections.containers.io;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import xxl.core.collections.containers.ConstrainedDecoratorContainer;
 import xxl.core.collections.containers.Container;
@@ -308,6 +315,147 @@ public class BufferedContainer extends ConstrainedDecoratorContainer {
 			return object;
 	}
 
+	/**
+	 * Returns an iterator pointing to the objects associated to the
+	 * identifiers of the given iterator. The objects are delivered in the
+	 * order of the identifiers.<br>
+	 * This implementation determines the identifiers of the objects that
+	 * are not contained by the buffer and gets these objects by a single
+	 * call of the <tt>getAll</tt> method of the underlying container, so
+	 * the underlying container can read them in an order that is
+	 * favourable for it. Thereafter all objects are requested from the
+	 * buffer like in the <tt>get</tt> method.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @param unfix signals whether the objects can be removed from the
+	 *        underlying buffer.
+	 * @return an iterator of objects.
+	 * @throws NoSuchElementException if an object of the identifiers is
+	 *         not found.
+	 */
+	public Iterator getAll (Iterator ids, final boolean unfix) throws NoSuchElementException {
+		List idList = new ArrayList();
+		Set missing = new LinkedHashSet();
+
+		while (ids.hasNext()) {
+			Object id = ids.next();
+
+			idList.add(id);
+			if (!buffer.contains(this, id))
+				missing.add(id);
+		}
+
+		Map loaded = new HashMap();
+		Iterator objects = container.getAll(missing.iterator(), unfix);
+
+		for (Object id : missing)
+			loaded.put(id, objects.next());
+
+		Object [] result = new Object[idList.size()];
+
+		for (int i = 0; i<result.length; i++) {
+			Object id = idList.get(i);
+			final Object object = loaded.remove(id);
+
+			result[i] = object==null ?
+				get(id, unfix) :
+				buffer.get(this, id,
+					new AbstractFunction () {
+						public Object invoke (Object id) {
+							return object;
+						}
+					},
+					unfix
+				);
+			if (object!=null && cloneObjects)
+				result[i] = XXLSystem.cloneObject(result[i]);
+		}
+		return Arrays.asList(result).iterator();
+	}
+
+	/**
+	 * Overwrites the elements of this container whose identifiers are given
+	 * by iterator <tt>ids</tt> with the objects of the iterator
+	 * <tt>objects</tt>. The objects are updated in the buffer. When the
+	 * container does not use write-back, the objects are written to the
+	 * underlying container by a single call of its <tt>updateAll</tt>
+	 * method.
+	 *
+	 * @param ids an iterator of identifiers
+	 * @param objects an iterator of objects
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if an object with an identifier
+	 *         of <tt>ids</tt> does not exist in the container.
+	 */
+	public void updateAll (Iterator ids, Iterator objects, final boolean unfix) throws NoSuchElementException {
+		if (writeBack) {
+			super.updateAll(ids, objects, unfix);
+			return;
+		}
+		
+		List idList = new ArrayList(), objectList = new ArrayList();
+
+		while (ids.hasNext() && objects.hasNext()) {
+			Object id = ids.next(), object = objects.next();
+
+			if (cloneObjects)
+				object = XXLSystem.cloneObject(object);
+			idList.add(id);
+			objectList.add(object);
+			buffer.update(this, id, object, null, unfix);
+		}
+		container.updateAll(idList.iterator(), objectList.iterator(), unfix);
+	}
+
+	/**
+	 * Overwrites the elements of this container whose identifiers are given
+	 * by iterator <tt>ids</tt> with the objects computed by the given
+	 * function. This implementation computes the objects and calls
+	 * <tt>updateAll(ids, objects, unfix)</tt>.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @param function a function that computes the object which should be
+	 *        associated to an identifier.
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if an object with an identifier
+	 *         of <tt>ids</tt> does not exist in the container.
+	 */
+	public void updateAll (Iterator ids, Function function, boolean unfix) throws NoSuchElementException {
+		List idList = new ArrayList(), objectList = new ArrayList();
+
+		while (ids.hasNext()) {
+			Object id = ids.next();
+
+			idList.add(id);
+			objectList.add(function.invoke(id));
+		}
+		updateAll(idList.iterator(), objectList.iterator(), unfix);
+	}
+
+	/**
+	 * Removes the elements with the identifiers given by <tt>ids</tt>. The
+	 * elements are removed from the buffer and thereafter from the
+	 * underlying container by a single call of its <tt>removeAll</tt>
+	 * method.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @throws NoSuchElementException if an object with an identifier
+	 *         <tt>id</tt> is not in the container.
+	 */
+	public void removeAll (Iterator ids) throws NoSuchElementException {
+		List idList = new ArrayList();
+
+		while (ids.hasNext()) {
+			Object id = ids.next();
+
+			idList.add(id);
+			buffer.remove(this, id);
+		}
+		container.removeAll(idList.iterator());
+	}
+
 	/**
 	 * Returns an iterator that delivers the identifiers of all objects of
 	 * the container.
@@ -0,0 +1,80 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.containers.io;
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+import xxl.core.collections.containers.Container;
+
+/**
+ * A container of fixed-size blocks that can transfer its blocks directly
+ * from and to a caller's <tt>ByteBuffer</tt>. Reading a block into a
+ * reused (direct) buffer avoids the array a <tt>Block</tt> returned by
+ * <tt>get</tt> needs, so the block can be decoded in place, e.g., by a
+ * {@link ConverterContainer} that uses a
+ * {@link xxl.core.io.ByteBufferInput} on the buffer.
+ *
+ * @see ChannelBlockFileContainer
+ * @see ConverterContainer
+ */
+public interface ByteBufferContainer extends Container {
+
+	/**
+	 * Returns the size of the blocks of this container.
+	 *
+	 * @return the size of the blocks in bytes.
+	 */
+	public abstract int blockSize();
+
+	/**
+	 * Reads the block with the identifier <tt>id</tt> into the given buffer
+	 * starting at its position. The position of the buffer is advanced by
+	 * the size of the blocks.
+	 *
+	 * @param id identifier of the block.
+	 * @param buffer the buffer receiving the block.
+	 * @throws NoSuchElementException if the desired block is not found.
+	 * @throws IllegalArgumentException if the buffer has less remaining
+	 *         bytes than the size of the blocks.
+	 */
+	public abstract void readBlock(Object id, ByteBuffer buffer) throws NoSuchElementException, IllegalArgumentException;
+
+	/**
+	 * Overwrites the block with the identifier <tt>id</tt> by the remaining
+	 * bytes of the given buffer. The position of the buffer is advanced to
+	 * its limit. The bytes of the block behind the written bytes are
+	 * undefined.
+	 *
+	 * @param id identifier of the block.
+	 * @param buffer the buffer containing the new block.
+	 * @throws NoSuchElementException if a block with the identifier
+	 *         <tt>id</tt> does not exist in the container.
+	 * @throws IllegalArgumentException if the buffer has more remaining
+	 *         bytes than the size of the blocks.
+	 */
+	public abstract void writeBlock(Object id, ByteBuffer buffer) throws NoSuchElementException, IllegalArgumentException;
+}
@@ -0,0 +1,608 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.containers.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import xxl.core.functions.Function;
+import xxl.core.io.Block;
+import xxl.core.io.FilesystemOperations;
+import xxl.core.io.JavaFilesystemOperations;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * This class provides a block file container that accesses its container
+ * file by positional reads and writes on a {@link FileChannel} and keeps its
+ * administrative data in main memory. The files of the container have
+ * exactly the same format as the files of a {@link BlockFileContainer}, so
+ * both classes can be used for opening the same container.
+ * <p>
+ * A <tt>BlockFileContainer</tt> reads and writes the reservedBitMap file
+ * and the updatedBitMap file for every access to a block and has to
+ * <tt>seek</tt> in the container file before reading or writing a block.
+ * This container reads the reservedBitMap file, the updatedBitMap file and
+ * the freeList file once when it is opened and maintains them in main memory
+ * afterwards. The length of the container file is maintained in main memory,
+ * too. Getting a block therefore costs a single positional read on the
+ * channel of the container file. The administrative data is written back to
+ * its files whenever the container is flushed or closed. Note that the files
+ * of the container are only consistent after calling <tt>flush()</tt> or
+ * <tt>close()</tt>. <tt>sync()</tt> additionally forces the channel of the
+ * container file and the other files to the storage device.
+ * <p>
+ * The channel of the container file is obtained from the random access file
+ * returned by the given filesystem operations. Therefore the filesystem
+ * operations must provide random access files that are backed by the
+ * operating system's file (like the files returned by
+ * {@link JavaFilesystemOperations#DEFAULT_INSTANCE}) and must not buffer
+ * their data themselves.
+ * <p>
+ * Blocks can be read into and written from a caller's byte buffer
+ * directly (see {@link ByteBufferContainer}), so a block read into a reused
+ * direct buffer reaches the caller without an intermediate array.
+ * <p>
+ * Example usage (1).
+ * <pre>
+ *     // create a new block file container with a block size of 4096 bytes
+ *
+ *     Container container = new ChannelBlockFileContainer("ChannelBlockFileContainer", 4096);
+ *
+ *     // ... use the container like a BlockFileContainer ...
+ *
+ *     // write the administrative data back and close the container
+ *
+ *     container.close();
+ *
+ *     // the files can be opened by a BlockFileContainer, too
+ *
+ *     container = new BlockFileContainer("ChannelBlockFileContainer");
+ * </pre>
+ *
+ * @see BlockFileContainer
+ * @see FileChannel
+ */
+public class ChannelBlockFileContainer extends BlockFileContainer implements ByteBufferContainer {
+
+	/**
+	 * The channel of the container file.
+	 */
+	protected FileChannel channel;
+
+	/**
+	 * The content of the reservedBitMap file held in main memory. Only the
+	 * first <tt>bitMapLength</tt> bytes of the array are valid.
+	 */
+	protected byte[] reservedBits;
+
+	/**
+	 * The content of the updatedBitMap file held in main memory. Only the
+	 * first <tt>bitMapLength</tt> bytes of the array are valid.
+	 */
+	protected byte[] updatedBits;
+
+	/**
+	 * The number of valid bytes of the bit maps, i.e., the length of the
+	 * reservedBitMap file and the updatedBitMap file.
+	 */
+	protected int bitMapLength;
+
+	/**
+	 * The content of the freeList file held in main memory. Only the first
+	 * <tt>freeListSize</tt> offsets of the array are valid. The offset that
+	 * is reused next is stored at the highest valid index.
+	 */
+	protected long[] freeOffsets;
+
+	/**
+	 * The number of valid offsets in the free list.
+	 */
+	protected int freeListSize;
+
+	/**
+	 * The length of the container file.
+	 */
+	protected long length;
+
+	/**
+	 * A flag that determines whether the administrative data held in main
+	 * memory differs from the content of the files.
+	 */
+	protected boolean dirty;
+
+	/**
+	 * Constructs an empty ChannelBlockFileContainer that is able to store
+	 * blocks with a maximum size of <tt>blockSize</tt> bytes. When using
+	 * existing files to store the container their data will be overwritten.
+	 *
+	 * @param prefix specifies the names of the files the container
+	 *        consists of.
+	 * @param blockSize the size reserved for storing a block in the
+	 *        container file.
+	 * @param fso Provides an object which performs the operations on the filesystem.
+	 */
+	public ChannelBlockFileContainer (String prefix, int blockSize, FilesystemOperations fso) {
+		super(prefix, blockSize, fso);
+	}
+
+	/**
+	 * Constructs an empty ChannelBlockFileContainer that is able to store
+	 * blocks with a maximum size of <tt>blockSize</tt> bytes. When using
+	 * existing files to store the container their data will be overwritten.
+	 *
+	 * @param prefix specifies the names of the files the container
+	 *        consists of.
+	 * @param blockSize the size reserved for storing a block in the
+	 *        container file.
+	 */
+	public ChannelBlockFileContainer (String prefix, int blockSize) {
+		super(prefix, blockSize);
+	}
+
+	/**
+	 * Constructs a ChannelBlockFileContainer that consists of existing files
+	 * given by the specified file name. Every information the container
+	 * needs will be taken from the meta file.
+	 *
+	 * @param prefix specifies the names of the files the container
+	 *        consists of.
+	 * @param fso Provides an object which performs the operations on the filesystem.
+	 */
+	public ChannelBlockFileContainer (String prefix, FilesystemOperations fso) {
+		super(prefix, fso);
+	}
+
+	/**
+	 * Constructs a ChannelBlockFileContainer that consists of existing files
+	 * given by the specified file name. Every information the container
+	 * needs will be taken from the meta file.
+	 *
+	 * @param prefix specifies the names of the files the container
+	 *        consists of.
+	 */
+	public ChannelBlockFileContainer (String prefix) {
+		super(prefix);
+	}
+
+	/**
+	 * Opens the five container files and reads the bit maps and the free
+	 * list into main memory.
+	 */
+	protected void openFiles() {
+		super.openFiles();
+		try {
+			channel = container.getChannel();
+			length = container.length();
+			bitMapLength = (int)reservedBitMap.length();
+			reservedBits = readFully(reservedBitMap, bitMapLength);
+			updatedBits = readFully(updatedBitMap, bitMapLength);
+			freeListSize = (int)(freeList.length()/8);
+			freeOffsets = new long[Math.max(16, freeListSize)];
+			ByteBuffer offsets = ByteBuffer.wrap(readFully(freeList, freeListSize*8));
+			for (int i = 0; i < freeListSize; i++)
+				freeOffsets[i] = offsets.getLong();
+			dirty = false;
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Reads the first bytes of the given file into a new array. The array
+	 * has at least a length of 16 bytes.
+	 *
+	 * @param file the file to read.
+	 * @param length the number of bytes to read.
+	 * @return an array containing the first bytes of the file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected static byte[] readFully(RandomAccessFile file, int length) throws IOException {
+		byte[] array = new byte[Math.max(16, length)];
+		
+		file.seek(0);
+		file.readFully(array, 0, length);
+		return array;
+	}
+
+	/**
+	 * Writes the bit maps, the free list and the meta data held in main
+	 * memory back to their files and adjusts the length of the container
+	 * file.
+	 */
+	protected void writeBack() {
+		if (dirty)
+			try {
+				reservedBitMap.seek(0);
+				reservedBitMap.write(reservedBits, 0, bitMapLength);
+				reservedBitMap.setLength(bitMapLength);
+				updatedBitMap.seek(0);
+				updatedBitMap.write(updatedBits, 0, bitMapLength);
+				updatedBitMap.setLength(bitMapLength);
+				ByteBuffer offsets = ByteBuffer.allocate(freeListSize*8);
+				for (int i = 0; i < freeListSize; i++)
+					offsets.putLong(freeOffsets[i]);
+				freeList.seek(0);
+				freeList.write(offsets.array());
+				freeList.setLength(freeListSize*8);
+				if (container.length() != length)
+					container.setLength(length);
+				metaData.seek(0);
+				metaData.writeInt(blockSize);
+				metaData.writeInt(size);
+				dirty = false;
+			}
+			catch (IOException ie) {
+				throw new WrappingRuntimeException(ie);
+			}
+	}
+
+	/**
+	 * Resets this container and any files associated with it and clears the
+	 * administrative data held in main memory.
+	 */
+	public void reset () {
+		super.reset();
+		length = 0;
+		bitMapLength = 0;
+		freeListSize = 0;
+		dirty = false;
+	}
+
+	/**
+	 * Writes the administrative data held in main memory back to the files
+	 * of this container.
+	 */
+	public void flush () {
+		open();
+		writeBack();
+	}
+
+	/**
+	 * Writes the administrative data held in main memory back to the files
+	 * of this container and closes it thereafter.
+	 */
+	public void close () {
+		if (container!=null)
+			writeBack();
+		super.close();
+	}
+
+	/**
+	 * Returns whether the bit of the block at the specified offset is set in
+	 * the given bit map.
+	 *
+	 * @param bits the bit map.
+	 * @param offset the offset of the block.
+	 * @return <tt>true</tt> if the bit of the block is set.
+	 */
+	protected boolean isSet (byte[] bits, long offset) {
+		return offset+blockSize<=length && (bits[(int)(offset/blockSize/8)]&(1<<(offset/blockSize%8)))!=0;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the container contains a block for the
+	 * identifier <tt>id</tt>. This implementation checks the updatedBitMap
+	 * held in main memory.
+	 *
+	 * @param id identifier of the block.
+	 * @return true if the container has updated a block for the specified
+	 *         identifier.
+	 */
+	public boolean contains (Object id) {
+		open();
+		return isSet(updatedBits, ((Number)id).longValue());
+	}
+
+	/**
+	 * Checks whether the <tt>id</tt> has been returned previously by a
+	 * call to insert or reserve and hasn't been removed so far. This
+	 * implementation checks the reservedBitMap held in main memory.
+	 *
+	 * @param id the id to be checked.
+	 * @return <tt>true</tt> exactly if the <tt>id</tt> is still in use.
+	 */
+	public boolean isUsed (Object id) {
+		open();
+		return isSet(reservedBits, ((Number)id).longValue());
+	}
+
+	/**
+	 * Returns the block associated to the identifier <tt>id</tt>. This
+	 * implementation reads the block by a single positional read on the
+	 * channel of the container file.
+	 *
+	 * @param id identifier of the block.
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @return the block associated to the specified identifier.
+	 * @throws NoSuchElementException if the desired block is not found.
+	 */
+	public Object get (Object id, boolean unfix) throws NoSuchElementException {
+		if (!contains(id))
+			throw new NoSuchElementException();
+		byte [] array = new byte [blockSize];
+
+		read(((Number)id).longValue(), array, 0, blockSize);
+		return new Block(array, 0, blockSize);
+	}
+
+	/**
+	 * Returns an iterator that delivers all the identifiers of the
+	 * container that are in use.
+	 *
+	 * @return an iterator of all identifiers used by this container.
+	 */
+	public Iterator ids () {
+		open();
+		return new Iterator () {
+			long offset = -blockSize, nextOffset;
+			boolean found = false, removeable = false;
+
+			public boolean hasNext () {
+				if (!found)
+					for (nextOffset = offset+blockSize; nextOffset+blockSize<=length; nextOffset += blockSize)
+						if (isSet(reservedBits, nextOffset))
+							return found = true;
+				return found;
+			}
+
+			public Object next () throws NoSuchElementException {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				found = false;
+				removeable = true;
+				return new Long(offset = nextOffset);
+			}
+
+			public void remove () throws IllegalStateException {
+				if (!removeable)
+					throw new IllegalStateException();
+				ChannelBlockFileContainer.this.remove(new Long(offset));
+				removeable = false;
+			}
+		};
+	}
+
+	/**
+	 * Removes the block with identifier <tt>id</tt>. This implementation
+	 * clears the entry for the block in both bit maps and adds <tt>id</tt>
+	 * to the free list. When the last block of the container file is
+	 * removed, the container file and the bit maps are shrunk instead.
+	 *
+	 * @param id an identifier of a block.
+	 * @throws NoSuchElementException if a block with an identifier
+	 *         <tt>id</tt> is not in the container.
+	 */
+	public void remove (Object id) throws NoSuchElementException {
+		long offset = ((Number)id).longValue();
+
+		if (!isUsed(id))
+			throw new NoSuchElementException();
+		if (--size==0)
+			reset();
+		else {
+			int index = (int)(offset/blockSize/8);
+			int mask = ~(1<<(offset/blockSize%8));
+
+			reservedBits[index] &= mask;
+			updatedBits[index] &= mask;
+			if (offset+blockSize==length) {
+				while (!isSet(reservedBits, offset -= blockSize));
+				bitMapLength = (int)(offset/blockSize/8+1);
+				length = offset+blockSize;
+			}
+			else {
+				if (freeListSize==freeOffsets.length) {
+					long[] offsets = new long[2*freeOffsets.length];
+					System.arraycopy(freeOffsets, 0, offsets, 0, freeListSize);
+					freeOffsets = offsets;
+				}
+				freeOffsets[freeListSize++] = offset;
+			}
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Reserves an id for subsequent use. This implementation takes the offset
+	 * from the free list held in main memory or enlarges the container file
+	 * logically, and sets the appropriate bit in the reservedBitMap.
+	 *
+	 * @param getObject A parameterless function providing the object for
+	 * 			that an id should be reserved. Not used by this
+	 *			implementation.
+	 * @return the reserved id.
+	*/
+	public Object reserve (Function getObject) {
+		open();
+		long offset;
+
+		for (;;) {
+			if (freeListSize==0) {
+				offset = length;
+				length += blockSize;
+				break;
+			}
+			offset = freeOffsets[--freeListSize];
+			if (offset+blockSize<=length)
+				break;
+		}
+		int index = (int)(offset/blockSize/8);
+		
+		if (index==bitMapLength) {
+			if (bitMapLength==reservedBits.length) {
+				byte[] bits = new byte[2*reservedBits.length];
+				System.arraycopy(reservedBits, 0, bits, 0, bitMapLength);
+				reservedBits = bits;
+				bits = new byte[2*updatedBits.length];
+				System.arraycopy(updatedBits, 0, bits, 0, bitMapLength);
+				updatedBits = bits;
+			}
+			reservedBits[index] = 1;
+			updatedBits[index] = 0;
+			bitMapLength++;
+		}
+		else
+			reservedBits[index] |= 1<<(offset/blockSize%8);
+		size++;
+		dirty = true;
+		
+		switch (idType) {
+		case 1: return new Byte((byte) offset);
+		case 2: return new Short((short) offset);
+		case 3: return new Integer((int) offset);
+		default: return new Long(offset);
+		}
+	}
+
+	/**
+	 * Sets the entry for the block with identifier <tt>id</tt> in the
+	 * updatedBitMap held in main memory.
+	 *
+	 * @param id identifier of the block.
+	 * @throws NoSuchElementException if a block with an identifier
+	 *         <tt>id</tt> does not exist in the container.
+	 */
+	protected void markUpdated (Object id) throws NoSuchElementException {
+		long offset = ((Number)id).longValue();
+
+		if (offset+blockSize>length)
+			throw new NoSuchElementException();
+		if (!isSet(updatedBits, offset)) {
+			if (!isUsed(id))
+				throw new NoSuchElementException();
+			updatedBits[(int)(offset/blockSize/8)] |= 1<<(offset/blockSize%8);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Reads the block with the identifier <tt>id</tt> into the given buffer
+	 * by a single positional read on the channel of the container file.
+	 *
+	 * @param id identifier of the block.
+	 * @param buffer the buffer receiving the block.
+	 * @throws NoSuchElementException if the desired block is not found.
+	 * @throws IllegalArgumentException if the buffer has less remaining
+	 *         bytes than the size of the blocks.
+	 */
+	public void readBlock (Object id, ByteBuffer buffer) throws NoSuchElementException, IllegalArgumentException {
+		if (!contains(id))
+			throw new NoSuchElementException();
+		if (buffer.remaining()<blockSize)
+			throw new IllegalArgumentException("the buffer cannot hold a block of "+blockSize+" bytes");
+		int limit = buffer.limit();
+		long position = ((Number)id).longValue()-buffer.position();
+
+		buffer.limit(buffer.position()+blockSize);
+		try {
+			while (buffer.hasRemaining() && channel.read(buffer, position+buffer.position())>=0);
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+		finally {
+			buffer.limit(limit);
+		}
+	}
+
+	/**
+	 * Overwrites the block with the identifier <tt>id</tt> by the remaining
+	 * bytes of the given buffer using positional writes on the channel of
+	 * the container file.
+	 *
+	 * @param id identifier of the block.
+	 * @param buffer the buffer containing the new block.
+	 * @throws NoSuchElementException if a block with the identifier
+	 *         <tt>id</tt> does not exist in the container.
+	 * @throws IllegalArgumentException if the buffer has more remaining
+	 *         bytes than the size of the blocks.
+	 */
+	public void writeBlock (Object id, ByteBuffer buffer) throws NoSuchElementException, IllegalArgumentException {
+		open();
+		if (buffer.remaining()>blockSize)
+			throw new IllegalArgumentException("Block too large: defined block size is " + blockSize + ", actual block size is "+buffer.remaining() + ".");
+		markUpdated(id);
+		long position = ((Number)id).longValue()-buffer.position();
+
+		try {
+			while (buffer.hasRemaining())
+				channel.write(buffer, position+buffer.position());
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Reads <tt>length</tt> bytes of the container file starting at the
+	 * given position into the specified array. This implementation uses
+	 * positional reads on the channel of the container file. Bytes behind
+	 * the end of the file are left untouched.
+	 *
+	 * @param position the position in the container file.
+	 * @param array the array receiving the bytes.
+	 * @param offset the offset in the array.
+	 * @param length the number of bytes to read.
+	 */
+	protected void read (long position, byte [] array, int offset, int length) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(array, offset, length);
+
+			while (buffer.hasRemaining() && channel.read(buffer, position+buffer.position()-offset)>=0);
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Writes <tt>length</tt> bytes of the specified array to the container
+	 * file starting at the given position. This implementation uses
+	 * positional writes on the channel of the container file.
+	 *
+	 * @param position the position in the container file.
+	 * @param array the array containing the bytes.
+	 * @param offset the offset in the array.
+	 * @param length the number of bytes to write.
+	 */
+	protected void write (long position, byte [] array, int offset, int length) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(array, offset, length);
+
+			while (buffer.hasRemaining())
+				channel.write(buffer, position+buffer.position()-offset);
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+}
@@ -0,0 +1,324 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.containers.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import xxl.core.collections.containers.ConstrainedDecoratorContainer;
+import xxl.core.collections.containers.Container;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.io.Block;
+import xxl.core.io.Buffer;
+import xxl.core.io.codecs.Codec;
+import xxl.core.io.codecs.DeflateCodec;
+import xxl.core.io.codecs.LZCodec;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * This class provides a decorator for a container of blocks that
+ * compresses every block with a {@link Codec} before it is stored in the
+ * decorated container. Each stored page starts with a header holding the
+ * codec used for the page, the length of the uncompressed block and the
+ * length of the compressed data:
+ * <pre>
+ *     codec (1 byte): 0 for an uncompressed page, i for the i-th codec
+ *     length of the block (4 bytes)
+ *     length of the stored data (4 bytes)
+ *     stored data
+ * </pre>
+ * A block that does not get smaller by the compression is stored
+ * uncompressed. Because the codec is stored per page, the codec used for
+ * writing can be changed by <tt>setCodec</tt> at any time and pages
+ * written with any of the registered codecs can still be read.
+ * <p>
+ * The compressed pages have a variable size, so the decorated container
+ * should store blocks of arbitrary size without padding them to a fixed
+ * size, e.g., a {@link MultiBlockContainer} with a small block size or a
+ * <tt>RecordManager</tt> packing the pages into slotted pages. If a buffer
+ * is given, a {@link BufferedContainer} is placed between this container
+ * and the decorated container that keeps recently used pages in their
+ * compressed form. Together with a buffered container above this container
+ * that keeps the uncompressed pages, this results in a second, denser cache
+ * tier.
+ * <pre>
+ *     Container pages = new CompressedContainer(new MultiBlockContainer(prefix, 512), LZCodec.DEFAULT_INSTANCE, new LRUBuffer(4096));
+ *     Container container = new BufferedContainer(new ConverterContainer(pages, tree.nodeConverter()), new LRUBuffer(256));
+ * </pre>
+ *
+ * @see Codec
+ * @see MultiBlockContainer
+ */
+public class CompressedContainer extends ConstrainedDecoratorContainer {
+
+	/**
+	 * The codec number of an uncompressed page.
+	 */
+	public static final byte RAW = 0;
+
+	/**
+	 * The size of the header of a page.
+	 */
+	public static final int HEADER_SIZE = 9;
+
+	/**
+	 * The codecs that can be used for the pages. The i-th codec is stored as
+	 * number i+1 in the header of a page.
+	 */
+	protected Codec[] codecs;
+
+	/**
+	 * The index of the codec used for writing pages.
+	 */
+	protected int codec;
+
+	/**
+	 * The number of bytes of the blocks that have been written and the
+	 * number of bytes of the pages they have been stored in.
+	 */
+	protected long blockBytes, pageBytes;
+
+	/**
+	 * The number of pages that have been written uncompressed.
+	 */
+	protected long rawPages;
+
+	/**
+	 * Creates a new compressed container that decorates the given container
+	 * and writes its pages with the specified codec.
+	 *
+	 * @param container the decorated container storing the pages.
+	 * @param codecs the codecs that can be used for the pages.
+	 * @param codec the index of the codec used for writing pages.
+	 * @param buffer the buffer caching the compressed pages or
+	 *        <tt>null</tt> if no cache should be used.
+	 * @throws IllegalArgumentException if there are no or more than 255
+	 *         codecs or the index is invalid.
+	 */
+	public CompressedContainer (Container container, Codec[] codecs, int codec, Buffer buffer) throws IllegalArgumentException {
+		super(buffer==null ? container : new BufferedContainer(container, buffer));
+		if (codecs.length==0 || codecs.length>255)
+			throw new IllegalArgumentException("between 1 and 255 codecs are required");
+		this.codecs = codecs.clone();
+		setCodec(codec);
+	}
+
+	/**
+	 * Creates a new compressed container that decorates the given container
+	 * and writes its pages with the given codec. The pages are read with the
+	 * {@link LZCodec} (number 1), the {@link DeflateCodec} (number 2) or the
+	 * given codec (number 3), so a container of pages written with
+	 * a custom codec has to be reopened with the same custom codec.
+	 *
+	 * @param container the decorated container storing the pages.
+	 * @param codec the codec used for writing pages.
+	 * @param buffer the buffer caching the compressed pages or
+	 *        <tt>null</tt> if no cache should be used.
+	 */
+	public CompressedContainer (Container container, Codec codec, Buffer buffer) {
+		this(container, new Codec[] {LZCodec.DEFAULT_INSTANCE, DeflateCodec.DEFAULT_INSTANCE, codec}, codec==LZCodec.DEFAULT_INSTANCE ? 0 : codec==DeflateCodec.DEFAULT_INSTANCE ? 1 : 2, buffer);
+	}
+
+	/**
+	 * Creates a new compressed container without a cache for the compressed
+	 * pages that decorates the given container and writes its pages with the
+	 * given codec.
+	 *
+	 * @param container the decorated container storing the pages.
+	 * @param codec the codec used for writing pages.
+	 */
+	public CompressedContainer (Container container, Codec codec) {
+		this(container, codec, null);
+	}
+
+	/**
+	 * Sets the codec used for writing pages. Pages that have been written
+	 * with another codec are not changed.
+	 *
+	 * @param codec the index of the codec.
+	 * @throws IllegalArgumentException if the index is invalid.
+	 */
+	public void setCodec (int codec) throws IllegalArgumentException {
+		if (codec<0 || codec>=codecs.length)
+			throw new IllegalArgumentException("invalid codec index: "+codec);
+		this.codec = codec;
+	}
+
+	/**
+	 * Compresses a block into a page.
+	 *
+	 * @param object the block.
+	 * @param count whether the page is counted as written.
+	 * @return the page.
+	 */
+	protected Block compress (Object object, boolean count) {
+		Block block = (Block)object;
+		byte[] data = codecs[codec].compress(block.array, block.offset, block.size);
+		boolean raw = data.length>=block.size;
+		int length = raw ? block.size : data.length;
+		byte[] page = new byte[HEADER_SIZE+length];
+
+		ByteBuffer.wrap(page).put(raw ? RAW : (byte)(codec+1)).putInt(block.size).putInt(length);
+		if (raw)
+			System.arraycopy(block.array, block.offset, page, HEADER_SIZE, length);
+		else
+			System.arraycopy(data, 0, page, HEADER_SIZE, length);
+		if (count)
+			synchronized (this) {
+				blockBytes += block.size;
+				pageBytes += page.length;
+				if (raw)
+					rawPages++;
+			}
+		return new Block(page);
+	}
+
+	/**
+	 * Decompresses a page into a new block.
+	 *
+	 * @param object the page.
+	 * @return the block.
+	 * @throws WrappingRuntimeException if the page is corrupted.
+	 */
+	protected Block decompress (Object object) throws WrappingRuntimeException {
+		Block page = (Block)object;
+		ByteBuffer header = ByteBuffer.wrap(page.array, page.offset, page.size);
+		try {
+			if (page.size<HEADER_SIZE)
+				throw new IOException("the page is too short");
+			int number = header.get()&0xff, size = header.getInt(), length = header.getInt();
+			if (number>codecs.length || size<0 || length<0 || length>page.size-HEADER_SIZE)
+				throw new IOException("the page header is corrupted");
+			int offset = page.offset+HEADER_SIZE;
+			if (number==RAW) {
+				if (length!=size)
+					throw new IOException("the page header is corrupted");
+				return new Block(Arrays.copyOfRange(page.array, offset, offset+size));
+			}
+			byte[] block = new byte[size];
+			if (codecs[number-1].decompress(page.array, offset, length, block, 0, size)!=size)
+				throw new IOException("the page has been decompressed to a wrong size");
+			return new Block(block);
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Returns the ratio of the number of bytes of the written pages to the
+	 * number of bytes of the written blocks.
+	 *
+	 * @return the compression ratio or <tt>1</tt> if nothing has been
+	 *         written.
+	 */
+	public synchronized double ratio () {
+		return blockBytes==0 ? 1 : (double)pageBytes/blockBytes;
+	}
+
+	/**
+	 * Returns the number of pages that have been written uncompressed
+	 * because the compression did not reduce their size.
+	 *
+	 * @return the number of uncompressed pages.
+	 */
+	public synchronized long rawPages () {
+		return rawPages;
+	}
+
+	/**
+	 * Returns the block associated to the identifier <tt>id</tt>.
+	 *
+	 * @param id identifier of the block.
+	 * @param unfix signals whether the block can be removed from the
+	 *        underlying buffer.
+	 * @return the decompressed block.
+	 * @throws NoSuchElementException if the desired block is not found.
+	 */
+	public Object get (Object id, boolean unfix) throws NoSuchElementException {
+		return decompress(container.get(id, unfix));
+	}
+
+	/**
+	 * Compresses the given block and inserts it into the decorated
+	 * container.
+	 *
+	 * @param object the new block.
+	 * @param unfix signals whether the block can be removed from the
+	 *        underlying buffer.
+	 * @return the identifier of the block.
+	 */
+	public Object insert (Object object, boolean unfix) {
+		return container.insert(compress(object, true), unfix);
+	}
+
+	/**
+	 * Compresses the given blocks and inserts them into the decorated
+	 * container.
+	 *
+	 * @param blocks the new blocks.
+	 * @return the identifiers of the blocks.
+	 */
+	public Object[] batchInsert (Object[] blocks) {
+		Object[] pages = new Object[blocks.length];
+		for (int i = 0; i < blocks.length; i++)
+			pages[i] = compress(blocks[i], true);
+		return container.batchInsert(pages);
+	}
+
+	/**
+	 * Reserves an identifier in the decorated container. The function
+	 * providing the block is mapped to a function providing the compressed
+	 * page, so containers reserving space for the page get its actual size.
+	 *
+	 * @param getObject a parameterless function providing the block.
+	 * @return the reserved identifier.
+	 */
+	public Object reserve (final Function getObject) {
+		return container.reserve(new AbstractFunction() {
+			public Object invoke () {
+				return compress(getObject.invoke(), false);
+			}
+		});
+	}
+
+	/**
+	 * Compresses the given block and stores it in the decorated container.
+	 *
+	 * @param id identifier of the block.
+	 * @param object the new block.
+	 * @param unfix signals whether the block can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if a block with the identifier does not
+	 *         exist in the container.
+	 */
+	public void update (Object id, Object object, boolean unfix) throws NoSuchElementException {
+		container.update(id, compress(object, true), unfix);
+	}
+}
@@ -28,14 +28,19 @@ package xxl.core.collections.containers.io;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import xxl.core.collections.containers.ConstrainedDecoratorContainer;
 import xxl.core.collections.containers.Container;
+import xxl.core.cursors.mappers.Mapper;
 import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Function;
 import xxl.core.io.Block;
-import xxl.core.io.ByteBufferDataInput;
+import xxl.core.io.ByteBufferInput;
+import xxl.core.io.ByteBufferOutput;
 import xxl.core.io.UnsafeDataInput;
 import xxl.core.io.converters.Converter;
 import xxl.core.io.converters.Converters;
@@ -55,6 +60,15 @@ import xxl.core.util.WrappingRuntimeException;
  * that is based on extenal memory, because conversions between objects
  * and byte arrays will be internally done.<p>
  *
+ * When the decorated container is a {@link ByteBufferContainer} (like a
+ * {@link ChannelBlockFileContainer}), <tt>get</tt> and <tt>update</tt>
+ * transfer the blocks through a direct byte buffer that is reused by the
+ * calling thread. The converter reads and writes the buffer in place by
+ * means of a {@link ByteBufferInput} and a {@link ByteBufferOutput}, so
+ * neither a byte array nor a stream is created for a block. This does not
+ * apply to the serialization mode <tt>UNSAFE</tt>, which uses the native
+ * byte order.<p>
+ *
  * Example usage (1).
  * <pre>
  *     // create a new coverter container with ...
@@ -148,6 +162,50 @@ public class ConverterContainer extends ConstrainedDecoratorContainer {
      */
     protected int bufferSize;
 
+	/**
+	 * The buffers a thread uses for transferring blocks directly from and
+	 * to a {@link ByteBufferContainer}.
+	 */
+	protected static class Buffers {
+
+		/**
+		 * The direct buffer holding a block.
+		 */
+		protected ByteBuffer buffer;
+
+		/**
+		 * The data input reading the buffer.
+		 */
+		protected ByteBufferInput input;
+
+		/**
+		 * The data output writing the buffer.
+		 */
+		protected ByteBufferOutput output;
+
+		/**
+		 * Whether the buffers are in use, e.g., by a converter that accesses
+		 * this container recursively.
+		 */
+		protected boolean used;
+
+		/**
+		 * Creates the buffers for blocks of the given size.
+		 *
+		 * @param blockSize the size of the blocks.
+		 */
+		protected Buffers (int blockSize) {
+			buffer = ByteBuffer.allocateDirect(blockSize);
+			input = new ByteBufferInput(buffer);
+			output = new ByteBufferOutput(buffer);
+		}
+	}
+
+	/**
+	 * The buffers of the threads accessing this container.
+	 */
+	protected ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>();
+
     /**
      * Constructs a new ConverterContainer that decorates the specified
      * container and uses the specified converter for converting its
@@ -185,6 +243,9 @@ public class ConverterContainer extends ConstrainedDecoratorContainer {
 	 * This implementation gets the block associated to the <tt>id</tt>
 	 * from the underlying container and tries to convert the wrapped byte
 	 * array. The parameter <tt>unfix</tt> is passed to the underlying container.
+	 * If the underlying container is a {@link ByteBufferContainer}, the block
+	 * is read into the direct buffer of the calling thread and converted in
+	 * place.
 	 *
 	 * @param id identifier of the object.
 	 * @param unfix signals a buffered container whether the object can
@@ -193,21 +254,165 @@ public class ConverterContainer extends ConstrainedDecoratorContainer {
 	 * @throws NoSuchElementException if the desired object is not found.
 	 */
 	public Object get (Object id, boolean unfix) throws NoSuchElementException {
+		Buffers buffers = acquireBuffers();
+
+		if (buffers==null)
+			return read((Block)super.get(id, unfix));
+		try {
+			((ByteBufferContainer)container).readBlock(id, buffers.buffer);
+			buffers.buffer.flip();
+			return converter.read(buffers.input.wrap(buffers.buffer));
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+		finally {
+			buffers.used = false;
+		}
+	}
+
+	/**
+	 * Returns the cleared buffers of the calling thread if the blocks can be
+	 * transferred directly from and to the decorated container. The buffers
+	 * have to be released by resetting their <tt>used</tt> flag.
+	 *
+	 * @return the buffers of the calling thread or <tt>null</tt> if the
+	 *         decorated container is no {@link ByteBufferContainer}, the
+	 *         serialization mode is <tt>UNSAFE</tt> or the buffers are
+	 *         already in use.
+	 */
+	protected Buffers acquireBuffers () {
+		if (serializationMode==Converters.SerializationMode.UNSAFE || !(container instanceof ByteBufferContainer))
+			return null;
+		Buffers buffers = this.buffers.get();
+		if (buffers==null)
+			this.buffers.set(buffers = new Buffers(((ByteBufferContainer)container).blockSize()));
+		else if (buffers.used)
+			return null;
+		buffers.used = true;
+		buffers.buffer.clear();
+		return buffers;
+	}
+
+	/**
+	 * Converts the byte array wrapped by the given block into an object by
+	 * using the converter of this container.
+	 *
+	 * @param block the block wrapping the serialized object.
+	 * @return the deserialized object.
+	 */
+	protected Object read (Block block) {
 		try {
-			Block block = null;
-            block = (Block)super.get(id, unfix);
-            if (serializationMode == Converters.SerializationMode.BYTE_BUFFER)
-                return converter.read(new ByteBufferDataInput(new ByteArrayInputStream(block.array, block.offset, block.size)));
-            else if (serializationMode == Converters.SerializationMode.UNSAFE)
+            if (serializationMode == Converters.SerializationMode.UNSAFE)
                 return converter.read(new UnsafeDataInput(new ByteArrayInputStream(block.array, block.offset, block.size)));
             else
-                return converter.read(new DataInputStream(new ByteArrayInputStream(block.array, block.offset, block.size)));
+                return converter.read(new ByteBufferInput(block.asByteBuffer()));
 		}
 		catch (IOException ie) {
 			throw new WrappingRuntimeException(ie);
 		}
 	}
 
+	/**
+	 * Returns an iterator pointing to the objects associated to the
+	 * identifiers of the given iterator.<br>
+	 * This implementation gets all the blocks by a single call of the
+	 * <tt>getAll</tt> method of the underlying container, so it can read
+	 * them in an order that is favourable for it (e.g., sorted by their
+	 * offsets in a file). The blocks are converted when the returned
+	 * iterator delivers them.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @param unfix signals whether the objects can be removed from the
+	 *        underlying buffer.
+	 * @return an iterator of objects.
+	 * @throws NoSuchElementException if an object of the identifiers is
+	 *         not found.
+	 */
+	public Iterator getAll (Iterator ids, boolean unfix) throws NoSuchElementException {
+		return new Mapper(
+			new AbstractFunction () {
+				public Object invoke (Object block) {
+					return read((Block)block);
+				}
+			},
+			container.getAll(ids, unfix)
+		);
+	}
+
+	/**
+	 * Overwrites the elements of this container whose identifiers are given
+	 * by iterator <tt>ids</tt> with the objects of the iterator
+	 * <tt>objects</tt>.<br>
+	 * This implementation converts the objects into blocks and updates them
+	 * by a single call of the <tt>updateAll</tt> method of the underlying
+	 * container.
+	 *
+	 * @param ids an iterator of identifiers
+	 * @param objects an iterator of objects
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if an object with an identifier
+	 *         of <tt>ids</tt> does not exist in the container.
+	 */
+	public void updateAll (Iterator ids, Iterator objects, boolean unfix) throws NoSuchElementException {
+		container.updateAll(ids,
+			new Mapper(
+				new AbstractFunction () {
+					public Object invoke (Object object) {
+						byte [] array = Converters.toByteArray(converter, object, serializationMode, bufferSize);
+
+						return new Block(array, 0, array.length);
+					}
+				},
+				objects
+			),
+			unfix
+		);
+	}
+
+	/**
+	 * Overwrites the elements of this container whose identifiers are given
+	 * by iterator <tt>ids</tt> with the objects computed by the given
+	 * function.<br>
+	 * This implementation converts the objects into blocks and updates them
+	 * by a single call of the <tt>updateAll</tt> method of the underlying
+	 * container.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @param function a function that computes the object which should be
+	 *        associated to an identifier.
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if an object with an identifier
+	 *         of <tt>ids</tt> does not exist in the container.
+	 */
+	public void updateAll (Iterator ids, final Function function, boolean unfix) throws NoSuchElementException {
+		container.updateAll(ids,
+			new AbstractFunction () {
+				public Object invoke (Object id) {
+					byte [] array = Converters.toByteArray(converter, function.invoke(id), serializationMode, bufferSize);
+
+					return new Block(array, 0, array.length);
+				}
+			},
+			unfix
+		);
+	}
+
+	/**
+	 * Removes the elements with the identifiers given by <tt>ids</tt> by a
+	 * single call of the <tt>removeAll</tt> method of the underlying
+	 * container.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @throws NoSuchElementException if an object with an identifier
+	 *         <tt>id</tt> is not in the container.
+	 */
+	public void removeAll (Iterator ids) throws NoSuchElementException {
+		container.removeAll(ids);
+	}
+
 	/**
 	 * Inserts a new object into the container and returns the unique
 	 * identifier that the container has been associated to the object.
@@ -282,7 +487,9 @@ public class ConverterContainer extends ConstrainedDecoratorContainer {
 	 * This implementation tries to convert the object and updates the
 	 * existing element of the underlying container by a block wrapping
 	 * the resulting byte array. The parameter <tt>unfix</tt> is passed to the
-	 * decorated container.
+	 * decorated container. If the underlying container is a
+	 * {@link ByteBufferContainer}, the object is converted into the direct
+	 * buffer of the calling thread that is written to the container.
 	 *
 	 * @param id identifier of the element.
 	 * @param object the new object that should be associated to
@@ -293,6 +500,24 @@ public class ConverterContainer extends ConstrainedDecoratorContainer {
 	 *         <tt>id</tt> does not exist in the container.
 	 */
 	public void update (Object id, Object object, boolean unfix) throws NoSuchElementException {
+		Buffers buffers = acquireBuffers();
+
+		if (buffers!=null)
+			try {
+				converter.write(buffers.output.wrap(buffers.buffer), object);
+				buffers.buffer.flip();
+				((ByteBufferContainer)container).writeBlock(id, buffers.buffer);
+				return;
+			}
+			catch (BufferOverflowException boe) {
+				// the object does not fit into a block, the block based update reports it
+			}
+			catch (IOException ie) {
+				throw new WrappingRuntimeException(ie);
+			}
+			finally {
+				buffers.used = false;
+			}
 		byte [] array = Converters.toByteArray(converter, object, serializationMode, bufferSize);
 
 		super.update(id, new Block(array, 0, array.length), unfix);
@@ -0,0 +1,870 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.containers.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import xxl.core.collections.containers.ConstrainedDecoratorContainer;
+import xxl.core.collections.containers.Container;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.functions.Constant;
+import xxl.core.functions.Function;
+import xxl.core.io.Block;
+import xxl.core.io.converters.FixedSizeConverter;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * This class provides a decorator for a container of blocks that protects
+ * the decorated container by a write-ahead log. Every update and every
+ * removal performed on this container is appended to a log file as an
+ * after-image and kept in main memory, the decorated container is left
+ * untouched. A call to <tt>commit</tt> makes all changes performed so far
+ * durable by appending a commit record to the log and forcing the log to
+ * the disk. A call to <tt>checkpoint</tt> writes the committed after-images
+ * to the decorated container in the order of their identifiers, forces
+ * the decorated container to the disk and truncates the log afterwards.
+ * <p>
+ * When a logging container is created for a log file that has not been
+ * truncated by a checkpoint (e.g., because the application crashed), the
+ * after-images of all committed changes are redone on the decorated
+ * container. Changes that were not committed and a torn tail of the log are
+ * discarded. Therefore the decorated container always reflects the state
+ * of the last commit after the logging container has been opened. Every
+ * commit can store a small array of bytes (e.g., the root entry of an
+ * index) that is returned by <tt>metadata()</tt> after reopening the
+ * container.
+ * <p>
+ * Concurrent calls to <tt>commit</tt> are grouped: while one thread forces
+ * the log, the commit records of the other threads are appended to the log
+ * and forced together by the next thread, so many commits share a single
+ * <tt>force</tt> of the log file. Records are collected in a buffer in main
+ * memory and written to the log file in larger chunks.
+ * <p>
+ * An index stored in a block file container behind a write-back
+ * {@link BufferedContainer} should be set up as follows. Flushing the
+ * buffered container only moves the dirty pages into the log, so a
+ * consistent state of the index can be committed without writing the
+ * pages to their positions in the container file. The random writes are
+ * performed by the checkpoints, which are triggered automatically when
+ * the log exceeds a given size.
+ * <pre>
+ *     LoggingContainer log = new LoggingContainer(new BlockFileContainer(prefix, 4096), prefix+".log");
+ *     Container container = new BufferedContainer(new ConverterContainer(log, tree.nodeConverter()), buffer);
+ *
+ *     // ... initialize the tree with the root entry stored in log.metadata() ...
+ *     // ... modify the tree ...
+ *
+ *     container.flush();
+ *     log.commit(serializedRootEntry);
+ * </pre>
+ * <p>
+ * Identifiers are reserved directly in the decorated container, so the
+ * decorated container must keep its reservations when the application
+ * crashes. If new identifiers have been reserved since the last commit, a
+ * commit forces the decorated container to the disk before the commit
+ * record is written. Identifiers that have been reserved but not committed
+ * before a crash may stay reserved in the decorated container without
+ * holding a block. A checkpoint forces the after-images written to the
+ * decorated container to the disk before the log is truncated. Decorated
+ * containers are forced by {@link SyncableContainer#sync()} (e.g., a
+ * {@link BlockFileContainer} or a {@link ChannelBlockFileContainer});
+ * other containers are only flushed and have to write their data through
+ * to the disk on their own.
+ *
+ * @see BlockFileContainer
+ * @see BufferedContainer
+ */
+public class LoggingContainer extends ConstrainedDecoratorContainer {
+
+	/**
+	 * The type of a log record storing the after-image of a block.
+	 */
+	public static final byte UPDATE = 0;
+
+	/**
+	 * The type of a log record storing the removal of a block.
+	 */
+	public static final byte REMOVE = 1;
+
+	/**
+	 * The type of a log record committing all preceding records.
+	 */
+	public static final byte COMMIT = 2;
+
+	/**
+	 * The number of buffered bytes that causes the log buffer to be written
+	 * to the log file.
+	 */
+	public static final int LOG_BUFFER_SIZE = 1<<16;
+
+	/**
+	 * The size of the log file in bytes that triggers a checkpoint after a
+	 * commit if no other threshold is given. The committed after-images are
+	 * kept in main memory until the next checkpoint, so the threshold also
+	 * bounds their memory usage.
+	 */
+	public static final long DEFAULT_CHECKPOINT_THRESHOLD = 16L<<20;
+
+	/**
+	 * The marker of a removed block in the maps of after-images.
+	 */
+	protected static final Object REMOVED = new Object();
+
+	/**
+	 * The random access file of the log.
+	 */
+	protected RandomAccessFile logFile;
+
+	/**
+	 * The channel of the log file.
+	 */
+	protected FileChannel log;
+
+	/**
+	 * The records that have not been written to the log file so far.
+	 */
+	protected ByteArrayOutputStream logBuffer = new ByteArrayOutputStream();
+
+	/**
+	 * The number of bytes written to the log file.
+	 */
+	protected long logLength;
+
+	/**
+	 * The size of the log file that triggers a checkpoint after a commit or
+	 * <tt>0</tt> if checkpoints are only performed explicitly.
+	 *
+	 * @see #DEFAULT_CHECKPOINT_THRESHOLD
+	 */
+	protected long checkpointThreshold;
+
+	/**
+	 * The after-images of the changes that have not been committed so far
+	 * mapped by their identifiers. A removed block is mapped to
+	 * {@link #REMOVED}.
+	 */
+	protected Map<Object, Object> uncommitted = new HashMap<Object, Object>();
+
+	/**
+	 * The after-images of the committed changes that have not been written
+	 * to the decorated container so far. The map is emptied by
+	 * {@link #checkpoint()}.
+	 */
+	protected Map<Object, Object> committed = new HashMap<Object, Object>();
+
+	/**
+	 * The number of blocks that have been removed from this container but
+	 * not from the decorated container.
+	 */
+	protected int removed;
+
+	/**
+	 * Whether identifiers have been reserved in the decorated container
+	 * since it has been forced to the disk the last time.
+	 */
+	protected boolean reserved;
+
+	/**
+	 * The metadata stored by the last commit.
+	 */
+	protected byte[] metadata = new byte[0];
+
+	/**
+	 * The number of the last commit.
+	 */
+	protected long epoch;
+
+	/**
+	 * The number of the last commit that has been written to the log file.
+	 */
+	protected volatile long writtenEpoch;
+
+	/**
+	 * The number of the last commit that has been forced to the disk.
+	 */
+	protected long forcedEpoch;
+
+	/**
+	 * Whether a thread is currently forcing the log file.
+	 */
+	protected boolean forcing;
+
+	/**
+	 * The monitor guarding {@link #forcedEpoch} and {@link #forcing}.
+	 */
+	protected final Object forceLock = new Object();
+
+	/**
+	 * The number of commits, forces of the log file and checkpoints.
+	 */
+	protected long commits, forces, checkpoints;
+
+	/**
+	 * Creates a new logging container that decorates the given container of
+	 * blocks and logs its changes to the specified file. The committed
+	 * changes found in an existing log file are redone on the decorated
+	 * container.
+	 *
+	 * @param container the decorated container.
+	 * @param logFileName the name of the log file.
+	 * @param checkpointThreshold the size of the log file in bytes that
+	 *        triggers a checkpoint after a commit or <tt>0</tt> if checkpoints
+	 *        should only be performed explicitly. In the latter case the
+	 *        caller has to call {@link #checkpoint()} regularly, because the
+	 *        committed after-images are kept in main memory until then.
+	 * @throws IllegalArgumentException if the threshold is negative.
+	 */
+	public LoggingContainer (Container container, String logFileName, long checkpointThreshold) {
+		super(container);
+		if (checkpointThreshold<0)
+			throw new IllegalArgumentException("the checkpoint threshold must not be negative");
+		this.checkpointThreshold = checkpointThreshold;
+		try {
+			logFile = new RandomAccessFile(logFileName, "rw");
+			log = logFile.getChannel();
+			recover();
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Creates a new logging container that decorates the given container of
+	 * blocks and logs its changes to the specified file. A checkpoint is
+	 * performed after a commit when the log exceeds
+	 * {@link #DEFAULT_CHECKPOINT_THRESHOLD} bytes.
+	 *
+	 * @param container the decorated container.
+	 * @param logFileName the name of the log file.
+	 */
+	public LoggingContainer (Container container, String logFileName) {
+		this(container, logFileName, DEFAULT_CHECKPOINT_THRESHOLD);
+	}
+
+	/**
+	 * Reads the log file, redoes the committed changes on the decorated
+	 * container and truncates the log.
+	 *
+	 * @throws IOException if the log file cannot be read.
+	 */
+	protected void recover () throws IOException {
+		FixedSizeConverter idConverter = container.objectIdConverter();
+		CRC32 crc = new CRC32();
+		long length = log.size();
+		long position = 0;
+		Map<Object, Object> batch = new HashMap<Object, Object>();
+		boolean recovered = false;
+
+		log.position(0);
+		DataInputStream input = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Channels.newInputStream(log)), crc));
+		try {
+			while (position<length) {
+				crc.reset();
+				int type = input.readByte();
+				Object id = null;
+				long commitEpoch = 0;
+				byte[] bytes = null;
+				int recordLength = 1;
+
+				if (type==UPDATE || type==REMOVE) {
+					id = idConverter.read(input);
+					recordLength += idConverter.getSerializedSize();
+				}
+				else if (type==COMMIT) {
+					commitEpoch = input.readLong();
+					recordLength += 8;
+				}
+				else
+					break;
+				if (type!=REMOVE) {
+					int size = input.readInt();
+					if (size<0 || position+recordLength+8+size>length)
+						break;
+					input.readFully(bytes = new byte[size]);
+					recordLength += 4+size;
+				}
+				int checksum = (int)crc.getValue();
+				if (input.readInt()!=checksum)
+					break;
+				position += recordLength+4;
+
+				if (type==COMMIT) {
+					if (recovered && commitEpoch<=epoch)
+						break;
+					committed.putAll(batch);
+					batch.clear();
+					metadata = bytes;
+					epoch = commitEpoch;
+					recovered = true;
+				}
+				else
+					batch.put(id, type==UPDATE ? bytes : REMOVED);
+			}
+		}
+		catch (EOFException ee) {
+			// a torn record at the end of the log
+		}
+		writtenEpoch = forcedEpoch = epoch;
+		for (Object image : committed.values())
+			if (image==REMOVED)
+				removed++;
+		checkpoint();
+	}
+
+	/**
+	 * Appends a record to the log buffer and writes the buffer to the log
+	 * file if it is full.
+	 *
+	 * @param type the type of the record.
+	 * @param id the identifier of an updated or removed block.
+	 * @param commitEpoch the number of a commit.
+	 * @param bytes the after-image of an updated block or the metadata of a
+	 *        commit.
+	 * @throws IOException if the record cannot be written.
+	 */
+	protected void append (byte type, Object id, long commitEpoch, byte[] bytes) throws IOException {
+		ByteArrayOutputStream record = new ByteArrayOutputStream(bytes==null ? 16 : bytes.length+24);
+		DataOutputStream output = new DataOutputStream(record);
+		output.writeByte(type);
+		if (type==COMMIT)
+			output.writeLong(commitEpoch);
+		else
+			container.objectIdConverter().write(output, id);
+		if (type!=REMOVE) {
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record.toByteArray());
+		output.writeInt((int)crc.getValue());
+		record.writeTo(logBuffer);
+		if (logBuffer.size()>=LOG_BUFFER_SIZE)
+			writeLog();
+	}
+
+	/**
+	 * Appends the record of a change that has not been committed to the log
+	 * buffer.
+	 *
+	 * @param id the identifier of the block.
+	 * @param image the after-image of the block or {@link #REMOVED}.
+	 */
+	protected void append (Object id, Object image) {
+		try {
+			if (image==REMOVED)
+				append(REMOVE, id, 0, null);
+			else
+				append(UPDATE, id, 0, (byte[])image);
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Writes the log buffer to the end of the log file.
+	 *
+	 * @throws IOException if the log file cannot be written.
+	 */
+	protected void writeLog () throws IOException {
+		if (logBuffer.size()==0)
+			return;
+		ByteBuffer buffer = ByteBuffer.wrap(logBuffer.toByteArray());
+		while (buffer.hasRemaining())
+			logLength += log.write(buffer, logLength);
+		logBuffer.reset();
+	}
+
+	/**
+	 * Returns the after-image of the block with the given identifier that
+	 * has not been written to the decorated container so far.
+	 *
+	 * @param id the identifier of the block.
+	 * @return the after-image, {@link #REMOVED} or <tt>null</tt> if the
+	 *         block has not been changed since the last checkpoint.
+	 */
+	protected Object image (Object id) {
+		Object image = uncommitted.get(id);
+		return image!=null ? image : committed.get(id);
+	}
+
+	/**
+	 * Commits all changes performed on this container so far and stores the
+	 * given metadata together with the commit. When this method returns, the
+	 * changes and the metadata have been forced to the log file. Concurrent
+	 * commits are forced together.
+	 *
+	 * @param metadata the metadata to be stored with the commit.
+	 */
+	public void commit (byte[] metadata) {
+		long target;
+		synchronized (this) {
+			try {
+				if (reserved) {
+					sync();
+					reserved = false;
+				}
+				committed.putAll(uncommitted);
+				uncommitted.clear();
+				this.metadata = metadata.clone();
+				append(COMMIT, null, target = ++epoch, metadata);
+				writeLog();
+				writtenEpoch = target;
+				commits++;
+			}
+			catch (IOException ie) {
+				throw new WrappingRuntimeException(ie);
+			}
+		}
+		force(target);
+		if (checkpointThreshold>0)
+			synchronized (this) {
+				if (logLength>=checkpointThreshold)
+					checkpoint();
+			}
+	}
+
+	/**
+	 * Commits all changes performed on this container so far and keeps the
+	 * metadata of the last commit.
+	 */
+	public void commit () {
+		commit(metadata());
+	}
+
+	/**
+	 * Waits until the commit with the given number has been forced to the
+	 * disk. If no other thread is forcing the log file, the calling thread
+	 * forces all commits that have been written so far.
+	 *
+	 * @param target the number of the commit.
+	 */
+	protected void force (long target) {
+		long written;
+		synchronized (forceLock) {
+			while (forcing && forcedEpoch<target)
+				try {
+					forceLock.wait();
+				}
+				catch (InterruptedException ie) {
+					throw new WrappingRuntimeException(ie);
+				}
+			if (forcedEpoch>=target)
+				return;
+			forcing = true;
+			written = writtenEpoch;
+		}
+		boolean forced = false;
+		try {
+			log.force(false);
+			forced = true;
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+		finally {
+			synchronized (forceLock) {
+				if (forced) {
+					forcedEpoch = Math.max(forcedEpoch, written);
+					forces++;
+				}
+				forcing = false;
+				forceLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Forces the decorated container to the disk. A
+	 * {@link SyncableContainer} is synced, any other container is flushed.
+	 */
+	protected void sync () {
+		if (container instanceof SyncableContainer)
+			((SyncableContainer)container).sync();
+		else
+			container.flush();
+	}
+
+	/**
+	 * Writes the after-images of the committed changes to the decorated
+	 * container in the order of their identifiers, forces the decorated
+	 * container to the disk and truncates the log. The log is restarted with a commit
+	 * record holding the metadata of the last commit followed by the records
+	 * of the changes that have not been committed so far.
+	 */
+	public synchronized void checkpoint () {
+		try {
+			writeLog();
+			force(epoch);
+
+			List<Object> ids = new ArrayList<Object>(committed.keySet());
+			try {
+				Collections.sort((List)ids);
+			}
+			catch (ClassCastException cce) {
+				// identifiers without a natural order are written unsorted
+			}
+			List<Object> updated = new ArrayList<Object>(ids.size());
+			List<Block> blocks = new ArrayList<Block>(ids.size());
+			for (Object id : ids) {
+				Object image = committed.get(id);
+				if (image==REMOVED) {
+					if (container.isUsed(id))
+						container.remove(id);
+					removed--;
+				}
+				else {
+					updated.add(id);
+					blocks.add(new Block((byte[])image));
+				}
+			}
+			if (!updated.isEmpty())
+				container.updateAll(updated.iterator(), blocks.iterator(), true);
+			committed.clear();
+			sync();
+			reserved = false;
+
+			logLength = 0;
+			append(COMMIT, null, epoch, metadata);
+			writeLog();
+			log.force(false);
+			log.truncate(logLength);
+			log.force(true);
+			checkpoints++;
+			for (Map.Entry<Object, Object> entry : uncommitted.entrySet())
+				append(entry.getKey(), entry.getValue());
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Returns the metadata stored by the last commit. After reopening the
+	 * container, this is the metadata of the last commit that has been
+	 * forced to the log.
+	 *
+	 * @return the metadata of the last commit.
+	 */
+	public synchronized byte[] metadata () {
+		return metadata.clone();
+	}
+
+	/**
+	 * Returns the number of the last commit.
+	 *
+	 * @return the number of the last commit.
+	 */
+	public synchronized long epoch () {
+		return epoch;
+	}
+
+	/**
+	 * Returns the number of commits performed by this container.
+	 *
+	 * @return the number of commits.
+	 */
+	public synchronized long commits () {
+		return commits;
+	}
+
+	/**
+	 * Returns the number of times the log file has been forced by commits.
+	 * Due to group commit, this number can be smaller than the number of
+	 * commits.
+	 *
+	 * @return the number of forces of the log file.
+	 */
+	public long forces () {
+		synchronized (forceLock) {
+			return forces;
+		}
+	}
+
+	/**
+	 * Returns the number of checkpoints performed by this container.
+	 *
+	 * @return the number of checkpoints.
+	 */
+	public synchronized long checkpoints () {
+		return checkpoints;
+	}
+
+	/**
+	 * Returns the size of the log in bytes including the records that have
+	 * not been written to the log file so far.
+	 *
+	 * @return the size of the log.
+	 */
+	public synchronized long logSize () {
+		return logLength+logBuffer.size();
+	}
+
+	/**
+	 * Removes all elements from this container and from the decorated
+	 * container. The log is truncated, the metadata of the last commit is
+	 * kept.
+	 */
+	public synchronized void clear () {
+		uncommitted.clear();
+		committed.clear();
+		removed = 0;
+		container.clear();
+		checkpoint();
+	}
+
+	/**
+	 * Commits the outstanding changes, performs a checkpoint and closes
+	 * the log file and the decorated container.
+	 */
+	public synchronized void close () {
+		if (log==null)
+			return;
+		if (!uncommitted.isEmpty())
+			commit();
+		checkpoint();
+		try {
+			logFile.close();
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+		log = null;
+		container.close();
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the container contains a block for the
+	 * identifier <tt>id</tt>.
+	 *
+	 * @param id identifier of the block.
+	 * @return <tt>true</tt> if the container contains a block for the
+	 *         identifier.
+	 */
+	public synchronized boolean contains (Object id) {
+		Object image = image(id);
+		return image==null ? container.contains(id) : image!=REMOVED;
+	}
+
+	/**
+	 * Writes the buffered records to the log file. The records are not
+	 * committed and not forced to the disk.
+	 */
+	public synchronized void flush () {
+		try {
+			writeLog();
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/**
+	 * Writes the buffered records to the log file. The records are not
+	 * committed and not forced to the disk.
+	 *
+	 * @param id identifier of the block.
+	 */
+	public void flush (Object id) {
+		flush();
+	}
+
+	/**
+	 * Returns the block associated to the identifier <tt>id</tt>. Blocks
+	 * that have been changed since the last checkpoint are returned from
+	 * main memory.
+	 *
+	 * @param id identifier of the block.
+	 * @param unfix signals whether the block can be removed from the
+	 *        underlying buffer.
+	 * @return the block associated to the specified identifier.
+	 * @throws NoSuchElementException if the desired block is not found.
+	 */
+	public synchronized Object get (Object id, boolean unfix) throws NoSuchElementException {
+		Object image = image(id);
+		if (image==REMOVED)
+			throw new NoSuchElementException();
+		return image==null ? container.get(id, unfix) : new Block(((byte[])image).clone());
+	}
+
+	/**
+	 * Returns an iterator that delivers the identifiers of all blocks of
+	 * this container. Removing an identifier removes the block from this
+	 * container.
+	 *
+	 * @return an iterator of identifiers.
+	 */
+	public synchronized Iterator ids () {
+		final Iterator ids = container.ids();
+		return new AbstractCursor() {
+			Object candidate;
+
+			protected boolean hasNextObject () {
+				synchronized (LoggingContainer.this) {
+					while (ids.hasNext()) {
+						candidate = ids.next();
+						if (image(candidate)!=REMOVED)
+							return true;
+					}
+					return false;
+				}
+			}
+
+			protected Object nextObject () {
+				return candidate;
+			}
+
+			public void remove () throws IllegalStateException {
+				super.remove();
+				LoggingContainer.this.remove(next);
+			}
+
+			public boolean supportsRemove () {
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Inserts a new block into the container. The identifier is reserved in
+	 * the decorated container, the block itself is logged.
+	 *
+	 * @param object the new block.
+	 * @param unfix signals whether the block can be removed from the
+	 *        underlying buffer.
+	 * @return the identifier of the block.
+	 */
+	public synchronized Object insert (Object object, boolean unfix) {
+		Object id = reserve(new Constant(object));
+		update(id, object, unfix);
+		return id;
+	}
+
+	/**
+	 * Inserts the given blocks into the container.
+	 *
+	 * @param blocks the new blocks.
+	 * @return the identifiers of the blocks.
+	 */
+	public synchronized Object[] batchInsert (Object[] blocks) {
+		Object[] ids = new Object[blocks.length];
+		for (int i = 0; i < blocks.length; i++)
+			ids[i] = insert(blocks[i], true);
+		return ids;
+	}
+
+	/**
+	 * Checks whether the <tt>id</tt> has been returned previously by a call
+	 * to insert or reserve and hasn't been removed so far.
+	 *
+	 * @param id the identifier to be checked.
+	 * @return <tt>true</tt> exactly if the <tt>id</tt> is still in use.
+	 */
+	public synchronized boolean isUsed (Object id) {
+		Object image = image(id);
+		return image==null ? container.isUsed(id) : image!=REMOVED;
+	}
+
+	/**
+	 * Removes the block with the identifier <tt>id</tt>. The removal is
+	 * logged and performed on the decorated container by the next
+	 * checkpoint after it has been committed.
+	 *
+	 * @param id identifier of the block.
+	 * @throws NoSuchElementException if a block with the identifier does not
+	 *         exist in the container.
+	 */
+	public synchronized void remove (Object id) throws NoSuchElementException {
+		if (!isUsed(id))
+			throw new NoSuchElementException();
+		uncommitted.put(id, REMOVED);
+		removed++;
+		append(id, REMOVED);
+	}
+
+	/**
+	 * Reserves an identifier in the decorated container.
+	 *
+	 * @param getObject a parameterless function providing the block for that
+	 *        an identifier should be reserved.
+	 * @return the reserved identifier.
+	 */
+	public synchronized Object reserve (Function getObject) {
+		Object id = container.reserve(getObject);
+		reserved = true;
+		return id;
+	}
+
+	/**
+	 * Returns the number of blocks of this container.
+	 *
+	 * @return the number of blocks.
+	 */
+	public synchronized int size () {
+		return container.size()-removed;
+	}
+
+	/**
+	 * Overwrites the block with identifier <tt>id</tt>. The after-image of
+	 * the block is logged and kept in main memory until it is written to the
+	 * decorated container by a checkpoint.
+	 *
+	 * @param id identifier of the block.
+	 * @param object the new block.
+	 * @param unfix signals whether the block can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if a block with the identifier does not
+	 *         exist in the container.
+	 */
+	public synchronized void update (Object id, Object object, boolean unfix) throws NoSuchElementException {
+		if (!isUsed(id))
+			throw new NoSuchElementException();
+		Block block = (Block)object;
+		byte[] image = Arrays.copyOfRange(block.array, block.offset, block.offset+block.size);
+		uncommitted.put(id, image);
+		append(id, image);
+	}
+}
@@ -31,6 +31,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -152,7 +153,7 @@ import xxl.core.io.converters.LongConverter;
  * @see List
  * @see NoSuchElementException
  */
-public class MultiBlockContainer extends AbstractContainer {
+public class MultiBlockContainer extends AbstractContainer implements SyncableContainer {
 
 	/** 
 	 * The primary container always stores the first part of a block.
@@ -399,6 +400,23 @@ public class MultiBlockContainer extends AbstractContainer {
 		secondaryContainer.clear();
 	}
 
+	/**
+	 * Flushes the primary and the secondary container.
+	 */
+	public void flush () {
+		primaryContainer.flush();
+		secondaryContainer.flush();
+	}
+
+	/**
+	 * Forces the files of the primary and the secondary container to the
+	 * storage device.
+	 */
+	public void sync () {
+		primaryContainer.sync();
+		secondaryContainer.sync();
+	}
+
 	/**
 	 * Closes the Container and releases its associated files. <br>
 	 * This implementation calls the close methods of the primary and the
@@ -448,6 +466,64 @@ public class MultiBlockContainer extends AbstractContainer {
 		}
 	}
 
+	/**
+	 * Returns an iterator that delivers the logical blocks associated to
+	 * the identifiers of the given iterator.<br>
+	 * This implementation reads the physical blocks level by level: first
+	 * the first physical blocks of all logical blocks are read by a single
+	 * call of the <tt>getAll</tt> method of the primary container, then
+	 * the second physical blocks of all logical blocks are read by a
+	 * single call of the <tt>getAll</tt> method of the secondary container
+	 * and so on. So the underlying block file containers are able to sort
+	 * and coalesce the accesses of every level.
+	 *
+	 * @param ids an iterator of identifiers.
+	 * @param unfix signals whether the objects can be removed from the
+	 *        underlying buffer.
+	 * @return an iterator of logical blocks.
+	 * @throws NoSuchElementException if a desired block is not found.
+	 */
+	public Iterator getAll (Iterator ids, boolean unfix) throws NoSuchElementException {
+		List idList = new ArrayList();
+
+		while (ids.hasNext())
+			idList.add(ids.next());
+
+		List [] blockLists = new List[idList.size()];
+		Block [] result = new Block[idList.size()];
+		List pending = new ArrayList(), nextIds = new ArrayList();
+		Iterator blocks = primaryContainer.getAll(idList.iterator(), unfix);
+
+		for (int i = 0; i<blockLists.length; i++) {
+			blockLists[i] = new ArrayList();
+			pending.add(new Integer(i));
+		}
+		while (!pending.isEmpty()) {
+			List stillPending = new ArrayList();
+
+			nextIds.clear();
+			for (int j = 0; j<pending.size(); j++) {
+				int i = ((Integer)pending.get(j)).intValue();
+				Block physicalBlock = (Block)blocks.next();
+				Long id = getId(physicalBlock);
+
+				blockLists[i].add(physicalBlock);
+				if (id.longValue()<0) {
+					result[i] = getLogicalBlock(blockLists[i], (int)(-id.longValue()-1));
+					blockLists[i] = null;
+				}
+				else {
+					stillPending.add(new Integer(i));
+					nextIds.add(id);
+				}
+			}
+			pending = stillPending;
+			if (!pending.isEmpty())
+				blocks = secondaryContainer.getAll(nextIds.iterator(), unfix);
+		}
+		return Arrays.asList(result).iterator();
+	}
+
 	/**
 	 * Returns an iterator that delivers all the identifiers of
 	 * the container that are in use.
@@ -0,0 +1,536 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.containers.io;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import xxl.core.collections.containers.ConstrainedDecoratorContainer;
+import xxl.core.collections.containers.Container;
+import xxl.core.functions.Function;
+
+/**
+ * This class provides a decorator for a container that reads objects ahead
+ * of their use on a pool of background threads. Objects are prefetched for
+ * two kinds of access patterns:
+ * <ul>
+ * <li>Sequential streams of identifiers are detected automatically. When
+ * <tt>get</tt> has been called for numeric identifiers with a constant
+ * distance (e.g., the offsets of consecutive blocks of a
+ * {@link BlockFileContainer} visited by a leaf chain scan of a bulk loaded
+ * <tt>BPlusTree</tt> or by a <tt>BlockBasedQueue</tt>) for a number of
+ * times, the following identifiers of the stream are prefetched.</li>
+ * <li>Explicit hints are given by calling <tt>prefetch</tt>, e.g., with
+ * the identifiers of the child nodes of an inner node that a query is going
+ * to visit.</li>
+ * </ul>
+ * A call to <tt>get</tt> for a prefetched identifier returns the object
+ * read by the background thread and waits for the read if it has not been
+ * completed so far. All other calls are delegated to the decorated
+ * container. Accesses to the decorated container are synchronized on the
+ * decorated container, so containers that are not thread-safe (like a
+ * {@link BlockFileContainer}) can be decorated. Updating or removing an
+ * object discards a prefetched copy.
+ * <p>
+ * The number of prefetched objects that have not been requested so far is
+ * bounded by a window. When the window is full, the oldest prefetched
+ * object is discarded if its read has been completed, otherwise the hint is
+ * dropped. The container counts the prefetches that have been issued,
+ * the prefetched objects that have been requested (hits), the hits that had
+ * to wait for their read, the prefetched objects that have been discarded
+ * or could not be read (waste) and the synchronous reads (misses).
+ * <p>
+ * A prefetching container should be placed below a {@link BufferedContainer}
+ * so that the prefetched objects enter the buffer when they are requested.
+ * <pre>
+ *     PrefetchingContainer prefetcher = new PrefetchingContainer(new BlockFileContainer(prefix), 4, 16);
+ *     Container container = new BufferedContainer(new ConverterContainer(prefetcher, converter), buffer);
+ *
+ *     // ... scan the container ...
+ *
+ *     System.out.println(prefetcher.hits()+" hits, "+prefetcher.wasted()+" wasted prefetches");
+ *     container.close();
+ * </pre>
+ *
+ * @see BufferedContainer
+ * @see ExecutorService
+ */
+public class PrefetchingContainer extends ConstrainedDecoratorContainer {
+
+	/**
+	 * The number of requests with a constant distance between their
+	 * identifiers that starts the sequential prefetching.
+	 */
+	public static final int SEQUENTIAL_THRESHOLD = 3;
+
+	/**
+	 * The executor performing the background reads.
+	 */
+	protected ExecutorService executor;
+
+	/**
+	 * A boolean flag to signal whether the executor has been created by this
+	 * container and has to be shut down when the container is closed.
+	 */
+	protected boolean shutdownExecutor;
+
+	/**
+	 * The maximum number of prefetched objects that have not been requested
+	 * so far.
+	 */
+	protected int window;
+
+	/**
+	 * The reads of the prefetched objects in the order they have been
+	 * issued mapped by the identifiers of the objects.
+	 */
+	protected LinkedHashMap<Object, Future<Object>> prefetched = new LinkedHashMap<Object, Future<Object>>();
+
+	/**
+	 * The numeric identifier of the last request or <tt>null</tt>.
+	 */
+	protected Number lastId;
+
+	/**
+	 * The distance between the identifiers of the last two requests.
+	 */
+	protected long stride;
+
+	/**
+	 * The number of consecutive requests with a distance of
+	 * <tt>stride</tt>.
+	 */
+	protected int run;
+
+	/**
+	 * The counters of issued prefetches, hits, hits that had to wait, wasted
+	 * prefetches and synchronous reads.
+	 */
+	protected long issued, hits, lateHits, wasted, misses;
+
+	/**
+	 * Creates a new prefetching container that decorates the given container
+	 * and performs its reads on the given executor. The executor is not shut
+	 * down by this container.
+	 *
+	 * @param container the decorated container.
+	 * @param executor the executor performing the background reads.
+	 * @param window the maximum number of prefetched objects that have not
+	 *        been requested so far.
+	 * @throws IllegalArgumentException if <tt>window</tt> is less than 1.
+	 */
+	public PrefetchingContainer (Container container, ExecutorService executor, int window) throws IllegalArgumentException {
+		super(container);
+		if (window<1)
+			throw new IllegalArgumentException("the prefetch window must be positive");
+		this.executor = executor;
+		this.window = window;
+	}
+
+	/**
+	 * Creates a new prefetching container that decorates the given container
+	 * and performs its reads on a fixed thread pool. The thread pool is shut
+	 * down when the container is closed.
+	 *
+	 * @param container the decorated container.
+	 * @param threads the number of threads performing the background reads.
+	 * @param window the maximum number of prefetched objects that have not
+	 *        been requested so far.
+	 * @throws IllegalArgumentException if <tt>threads</tt> or <tt>window</tt>
+	 *         is less than 1.
+	 */
+	public PrefetchingContainer (Container container, int threads, int window) throws IllegalArgumentException {
+		this(container, Executors.newFixedThreadPool(checkThreads(threads)), window);
+		shutdownExecutor = true;
+	}
+
+	/**
+	 * Checks the number of threads of the thread pool.
+	 *
+	 * @param threads the number of threads.
+	 * @return the number of threads.
+	 * @throws IllegalArgumentException if <tt>threads</tt> is less than 1.
+	 */
+	private static int checkThreads (int threads) throws IllegalArgumentException {
+		if (threads<1)
+			throw new IllegalArgumentException("the number of threads must be positive");
+		return threads;
+	}
+
+	/**
+	 * Prefetches the object with the given identifier unless it has already
+	 * been prefetched or the window is full.
+	 *
+	 * @param id the identifier of the object.
+	 */
+	public synchronized void prefetch (final Object id) {
+		if (prefetched.containsKey(id))
+			return;
+		if (prefetched.size()>=window) {
+			Iterator<Future<Object>> eldest = prefetched.values().iterator();
+			if (!eldest.next().isDone())
+				return;
+			eldest.remove();
+			wasted++;
+		}
+		prefetched.put(id, executor.submit(new Callable<Object>() {
+			public Object call () {
+				synchronized (container) {
+					if (!container.isUsed(id))
+						throw new NoSuchElementException();
+					return container.get(id, true);
+				}
+			}
+		}));
+		issued++;
+	}
+
+	/**
+	 * Prefetches the objects with the given identifiers as long as the
+	 * window is not full.
+	 *
+	 * @param ids the identifiers of the objects.
+	 */
+	public synchronized void prefetch (Iterator ids) {
+		while (ids.hasNext())
+			prefetch(ids.next());
+	}
+
+	/**
+	 * Returns the numeric identifier that has the given distance to an
+	 * identifier of the same type.
+	 *
+	 * @param id the identifier.
+	 * @param distance the distance.
+	 * @return the identifier <tt>id+distance</tt> or <tt>null</tt> if the
+	 *         type of the identifier is not supported.
+	 */
+	protected static Object shift (Number id, long distance) {
+		if (id instanceof Long)
+			return id.longValue()+distance;
+		if (id instanceof Integer)
+			return (int)(id.longValue()+distance);
+		if (id instanceof Short)
+			return (short)(id.longValue()+distance);
+		if (id instanceof Byte)
+			return (byte)(id.longValue()+distance);
+		return null;
+	}
+
+	/**
+	 * Records a request for the given identifier and prefetches the next
+	 * identifiers when the requests form a sequential stream.
+	 *
+	 * @param id the requested identifier.
+	 */
+	protected synchronized void detect (Object id) {
+		if (!(id instanceof Number)) {
+			lastId = null;
+			return;
+		}
+		Number number = (Number)id;
+		long distance = lastId==null || lastId.getClass()!=id.getClass() ? 0 : number.longValue()-lastId.longValue();
+		lastId = number;
+		if (distance==0 || distance!=stride) {
+			stride = distance;
+			run = distance==0 ? 0 : 1;
+			return;
+		}
+		if (++run>=SEQUENTIAL_THRESHOLD)
+			for (int i = 1; i<=window; i++) {
+				Object next = shift(number, i*stride);
+				if (next==null || prefetched.size()>=window && !prefetched.containsKey(next))
+					break;
+				prefetch(next);
+			}
+	}
+
+	/**
+	 * Discards the prefetched copy of the object with the given identifier.
+	 *
+	 * @param id the identifier of the object.
+	 */
+	protected synchronized void discard (Object id) {
+		Future<Object> future = prefetched.remove(id);
+		if (future!=null) {
+			future.cancel(false);
+			wasted++;
+		}
+	}
+
+	/**
+	 * Discards all prefetched objects.
+	 */
+	protected synchronized void discardAll () {
+		for (Future<Object> future : prefetched.values())
+			future.cancel(false);
+		wasted += prefetched.size();
+		prefetched.clear();
+	}
+
+	/**
+	 * Returns the object associated to the identifier <tt>id</tt>. A
+	 * prefetched object is returned as soon as its read has been completed,
+	 * otherwise the object is read from the decorated container. Sequential
+	 * streams of requests trigger the prefetching of the following
+	 * identifiers.
+	 *
+	 * @param id identifier of the object.
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @return the object associated to the specified identifier.
+	 * @throws NoSuchElementException if the desired object is not found.
+	 */
+	public Object get (Object id, boolean unfix) throws NoSuchElementException {
+		Future<Object> future;
+		synchronized (this) {
+			future = prefetched.remove(id);
+			detect(id);
+		}
+		if (future!=null) {
+			boolean done = future.isDone();
+			try {
+				Object object = future.get();
+				synchronized (this) {
+					hits++;
+					if (!done)
+						lateHits++;
+				}
+				return object;
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException ee) {
+				// the object is read synchronously
+			}
+			catch (CancellationException ce) {
+				// the object is read synchronously
+			}
+			synchronized (this) {
+				wasted++;
+			}
+		}
+		synchronized (this) {
+			misses++;
+		}
+		synchronized (container) {
+			return container.get(id, unfix);
+		}
+	}
+
+	/**
+	 * Returns the number of prefetches that have been issued.
+	 *
+	 * @return the number of issued prefetches.
+	 */
+	public synchronized long issued () {
+		return issued;
+	}
+
+	/**
+	 * Returns the number of requests that have been answered by a
+	 * prefetched object.
+	 *
+	 * @return the number of hits.
+	 */
+	public synchronized long hits () {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of hits that had to wait for the read of the
+	 * prefetched object.
+	 *
+	 * @return the number of hits that had to wait.
+	 */
+	public synchronized long lateHits () {
+		return lateHits;
+	}
+
+	/**
+	 * Returns the number of prefetched objects that have been discarded
+	 * without being requested or could not be read.
+	 *
+	 * @return the number of wasted prefetches.
+	 */
+	public synchronized long wasted () {
+		return wasted;
+	}
+
+	/**
+	 * Returns the number of requests that have been answered by a
+	 * synchronous read of the decorated container.
+	 *
+	 * @return the number of misses.
+	 */
+	public synchronized long misses () {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of prefetched objects that have not been requested
+	 * so far.
+	 *
+	 * @return the number of pending prefetches.
+	 */
+	public synchronized int pending () {
+		return prefetched.size();
+	}
+
+	/**
+	 * Discards all prefetched objects and removes all elements from the
+	 * decorated container.
+	 */
+	public void clear () {
+		discardAll();
+		synchronized (container) {
+			container.clear();
+		}
+	}
+
+	/**
+	 * Discards all prefetched objects, shuts down the executor if it has
+	 * been created by this container and closes the decorated container.
+	 */
+	public void close () {
+		discardAll();
+		if (shutdownExecutor)
+			executor.shutdown();
+		synchronized (container) {
+			container.close();
+		}
+	}
+
+	public boolean contains (Object id) {
+		synchronized (container) {
+			return container.contains(id);
+		}
+	}
+
+	public void flush () {
+		synchronized (container) {
+			container.flush();
+		}
+	}
+
+	public void flush (Object id) {
+		synchronized (container) {
+			container.flush(id);
+		}
+	}
+
+	public Iterator ids () {
+		synchronized (container) {
+			return container.ids();
+		}
+	}
+
+	public Object insert (Object object, boolean unfix) {
+		synchronized (container) {
+			return container.insert(object, unfix);
+		}
+	}
+
+	public boolean isUsed (Object id) {
+		synchronized (container) {
+			return container.isUsed(id);
+		}
+	}
+
+	/**
+	 * Removes the object with the identifier <tt>id</tt> and discards its
+	 * prefetched copy. The copy is discarded before the object is removed
+	 * and no other prefetch can be issued until the decorated container has
+	 * been updated.
+	 *
+	 * @param id identifier of the object.
+	 * @throws NoSuchElementException if an object with the identifier does
+	 *         not exist in the container.
+	 */
+	public void remove (Object id) throws NoSuchElementException {
+		synchronized (this) {
+			discard(id);
+			synchronized (container) {
+				container.remove(id);
+			}
+		}
+	}
+
+	public Object reserve (Function getObject) {
+		synchronized (container) {
+			return container.reserve(getObject);
+		}
+	}
+
+	public int size () {
+		synchronized (container) {
+			return container.size();
+		}
+	}
+
+	public void unfix (Object id) throws NoSuchElementException {
+		synchronized (container) {
+			container.unfix(id);
+		}
+	}
+
+	/**
+	 * Overwrites the object with the identifier <tt>id</tt> and discards its
+	 * prefetched copy. Like in <tt>remove</tt>, the copy is discarded before
+	 * the object is written, so a concurrent <tt>get</tt> never returns the
+	 * old object after the update.
+	 *
+	 * @param id identifier of the object.
+	 * @param object the new object.
+	 * @param unfix signals whether the object can be removed from the
+	 *        underlying buffer.
+	 * @throws NoSuchElementException if an object with the identifier does
+	 *         not exist in the container.
+	 */
+	public void update (Object id, Object object, boolean unfix) throws NoSuchElementException {
+		synchronized (this) {
+			discard(id);
+			synchronized (container) {
+				container.update(id, object, unfix);
+			}
+		}
+	}
+
+	public Object[] batchInsert (Object[] objects) {
+		synchronized (container) {
+			return container.batchInsert(objects);
+		}
+	}
+}
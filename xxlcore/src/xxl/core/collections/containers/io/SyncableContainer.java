@@ -0,0 +1,51 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.containers.io;
+
+import xxl.core.collections.containers.Container;
+
+/**
+ * A container whose state can be forced to the storage device. After
+ * <tt>sync</tt> has returned, the blocks and the administrative data of the
+ * container (e.g., the reserved identifiers and the number of blocks) survive
+ * a crash of the application or of the operating system, so the files can
+ * be opened again even if the container has not been closed.
+ * <p>
+ * <tt>flush</tt> only hands the data over to the operating system, which
+ * is sufficient for reopening the files after the application has
+ * crashed, but not after a crash of the system.
+ *
+ * @see BlockFileContainer
+ * @see LoggingContainer
+ */
+public interface SyncableContainer extends Container {
+
+	/**
+	 * Writes the blocks and the administrative data of this container to its
+	 * files and forces the files to the storage device.
+	 */
+	public abstract void sync();
+}
@@ -0,0 +1,189 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.collections.queues;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap whose priorities are primitive <tt>double</tt> keys.
+ * In contrast to {@link DynamicHeap} no comparator is called and no key
+ * object is created for an element: the keys are held in a
+ * <tt>double</tt> array parallel to the array of elements, both of which
+ * grow on demand. This makes the heap a cheap priority queue for
+ * best-first traversals that order a large number of candidates by a
+ * distance.<p>
+ *
+ * Elements with equal keys are returned in an arbitrary order.
+ *
+ * @param <E> the type of the elements stored in this heap.
+ * @see DynamicHeap
+ */
+public class DoubleKeyHeap<E> {
+
+	/**
+	 * The keys of the elements; <tt>keys[i]</tt> is the key of
+	 * <tt>elements[i]</tt>.
+	 */
+	protected double[] keys;
+
+	/**
+	 * The elements of this heap organized as an implicit binary tree.
+	 */
+	protected Object[] elements;
+
+	/**
+	 * The number of elements currently stored in this heap.
+	 */
+	protected int size = 0;
+
+	/**
+	 * Creates an empty heap with the given initial capacity.
+	 *
+	 * @param initialCapacity the initial capacity of the heap.
+	 * @throws IllegalArgumentException if <tt>initialCapacity</tt> is not
+	 *         positive.
+	 */
+	public DoubleKeyHeap(int initialCapacity) {
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("initial capacity must be positive");
+		keys = new double[initialCapacity];
+		elements = new Object[initialCapacity];
+	}
+
+	/**
+	 * Creates an empty heap with an initial capacity of 64 elements.
+	 */
+	public DoubleKeyHeap() {
+		this(64);
+	}
+
+	/**
+	 * Inserts the given element with the given key into this heap.
+	 *
+	 * @param key the key of the element.
+	 * @param element the element to insert.
+	 */
+	public void enqueue(double key, E element) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size << 1);
+			elements = Arrays.copyOf(elements, size << 1);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key)
+				break;
+			keys[i] = keys[parent];
+			elements[i] = elements[parent];
+			i = parent;
+		}
+		keys[i] = key;
+		elements[i] = element;
+	}
+
+	/**
+	 * Returns the smallest key stored in this heap.
+	 *
+	 * @return the smallest key of this heap.
+	 * @throws NoSuchElementException if this heap is empty.
+	 */
+	public double peekKey() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return keys[0];
+	}
+
+	/**
+	 * Returns the element with the smallest key without removing it.
+	 *
+	 * @return the element with the smallest key.
+	 * @throws NoSuchElementException if this heap is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E peek() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return (E)elements[0];
+	}
+
+	/**
+	 * Removes and returns the element with the smallest key.
+	 *
+	 * @return the element with the smallest key.
+	 * @throws NoSuchElementException if this heap is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E dequeue() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		E result = (E)elements[0];
+		double key = keys[--size];
+		Object element = elements[size];
+		elements[size] = null;
+		int i = 0;
+		for (int child; (child = (i << 1) + 1) < size; i = child) {
+			if (child + 1 < size && keys[child + 1] < keys[child])
+				child++;
+			if (key <= keys[child])
+				break;
+			keys[i] = keys[child];
+			elements[i] = elements[child];
+		}
+		if (size > 0) {
+			keys[i] = key;
+			elements[i] = element;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of elements stored in this heap.
+	 *
+	 * @return the number of elements stored in this heap.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if this heap contains no elements.
+	 *
+	 * @return <tt>true</tt> if this heap contains no elements.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all elements from this heap.
+	 */
+	public void clear() {
+		Arrays.fill(elements, 0, size, null);
+		size = 0;
+	}
+}
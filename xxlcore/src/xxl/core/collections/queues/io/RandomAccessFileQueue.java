@@ -146,6 +146,44 @@ public class RandomAccessFileQueue<E> extends StreamQueue<E> implements FIFOQueu
 		}
 	};
 
+	/**
+	 * Returns a factory method creating new random access file queues that
+	 * store their elements in new temporary files of the given directory.
+	 * The queues are suitable for spilling intermediate results of operators
+	 * like the {@link xxl.core.cursors.groupers.HashGrouper hash grouper}
+	 * that expect a parameterless function returning new empty queues. The
+	 * file of a queue is deleted when the queue is cleared or closed while
+	 * it is empty.
+	 *
+	 * @param <E> the type of the elements of the queues.
+	 * @param directory the directory the temporary files are created in or
+	 *        <code>null</code> if the default temporary-file directory should
+	 *        be used.
+	 * @param converter a converter that is used for serializing and
+	 *        de-serializing the elements of the queues.
+	 * @param bufferSize the size of the input and output buffer of a queue.
+	 * @return a parameterless function returning new random access file
+	 *         queues.
+	 */
+	public static <E> Function<Object, RandomAccessFileQueue<E>> temporaryFileQueueFactory(final File directory, final Converter<E> converter, final int bufferSize) {
+		return new AbstractFunction<Object, RandomAccessFileQueue<E>>() {
+			@Override
+			public RandomAccessFileQueue<E> invoke() {
+				try {
+					return new RandomAccessFileQueue<E>(
+						File.createTempFile("queue", ".tmp", directory).getPath(),
+						converter,
+						new Constant<Integer>(bufferSize),
+						new Constant<Integer>(bufferSize)
+					);
+				}
+				catch (IOException ioe) {
+					throw new WrappingRuntimeException(ioe);
+				}
+			}
+		};
+	}
+
 	/**
 	 * A function that opens an input stream for reading the serialized
 	 * elements of the queue and returns it. <br>
@@ -0,0 +1,150 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors;
+
+import java.util.List;
+
+import xxl.core.util.memory.MemoryManageable;
+
+/**
+ * This class contains the partitioning shared by the memory-bounded hash
+ * operators, i.e., {@link xxl.core.cursors.joins.HashJoin},
+ * {@link xxl.core.cursors.groupers.HashGrouper} and
+ * {@link xxl.core.cursors.groupers.HashAggregateGrouper}. The operators
+ * distribute their elements to a number of partitions by a hash function
+ * that depends on the recursion level, spill partitions to queues when
+ * their memory is exhausted and process the spilled partitions recursively
+ * by a new operator on the next level.
+ */
+public class HashPartitions {
+
+	/**
+	 * The default number of partitions the elements are distributed to.
+	 */
+	public static final int DEFAULT_NUMBER_OF_PARTITIONS = 16;
+
+	/**
+	 * The maximum recursion depth of the operators. Partitions on this level
+	 * are processed in main memory regardless of the assigned memory, i.e.,
+	 * partitions containing lots of elements with the same key are not
+	 * partitioned over and over again.
+	 */
+	public static final int MAXIMUM_RECURSION_DEPTH = 8;
+
+	/**
+	 * A partition of a hash operator. A partition is either resident, i.e.,
+	 * its elements are held in main memory, or it is spilled, i.e., its
+	 * elements are stored in queues.
+	 */
+	public abstract static class Partition {
+
+		/**
+		 * Returns the number of elements held in main memory by the
+		 * partition.
+		 *
+		 * @return the number of resident elements of the partition.
+		 */
+		protected abstract int size();
+
+		/**
+		 * Returns <code>true</code> if the partition has been spilled.
+		 *
+		 * @return <code>true</code> if the partition has been spilled,
+		 *         otherwise <code>false</code>.
+		 */
+		protected abstract boolean isSpilled();
+
+		/**
+		 * Spills the partition, i.e., moves its resident elements to a queue
+		 * and releases the memory they occupied.
+		 */
+		protected abstract void spill();
+	}
+
+	/**
+	 * Returns the index of the partition the given key belongs to. The hash
+	 * code of the key is scrambled depending on the recursion level, so the
+	 * elements of a spilled partition are distributed to different
+	 * partitions when it is processed recursively.
+	 *
+	 * @param key the key of an element.
+	 * @param level the recursion level of the operator.
+	 * @param numberOfPartitions the number of partitions.
+	 * @return the index of the partition the key belongs to.
+	 */
+	public static int partition(Object key, int level, int numberOfPartitions) {
+		int h = (key == null ? 0 : key.hashCode()) + level * 0x9e3779b9;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return (h & Integer.MAX_VALUE) % numberOfPartitions;
+	}
+
+	/**
+	 * Spills the largest resident partitions until the memory usage of the
+	 * given operator does not exceed its assigned memory. On the maximum
+	 * recursion level no partition is spilled.
+	 *
+	 * @param partitions the partitions of the operator.
+	 * @param level the recursion level of the operator.
+	 * @param operator the operator whose memory usage is checked.
+	 */
+	public static void handleOverflow(List<? extends Partition> partitions, int level, MemoryManageable operator) {
+		while (level < MAXIMUM_RECURSION_DEPTH && operator.getCurrentMemUsage() > operator.getAssignedMemSize()) {
+			Partition victim = null;
+			for (Partition partition : partitions)
+				if (!partition.isSpilled() && partition.size() > 0 && (victim == null || partition.size() > victim.size()))
+					victim = partition;
+			if (victim == null)
+				return;
+			victim.spill();
+		}
+	}
+
+	/**
+	 * Returns the index of the next spilled partition starting at the given
+	 * index, or the number of partitions if there is no such partition.
+	 *
+	 * @param partitions the partitions of the operator.
+	 * @param index the index the search starts at.
+	 * @return the index of the next spilled partition.
+	 */
+	public static int nextSpilled(List<? extends Partition> partitions, int index) {
+		while (index < partitions.size() && !partitions.get(index).isSpilled())
+			index++;
+		return index;
+	}
+
+	/**
+	 * The default constructor has private access in order to ensure
+	 * non-instantiability.
+	 */
+	private HashPartitions() {
+		// private access in order to ensure non-instantiability
+	}
+}
@@ -0,0 +1,521 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.groupers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.HashPartitions;
+import xxl.core.cursors.wrappers.QueueCursor;
+import xxl.core.functions.Function;
+import xxl.core.math.functions.AggregationFunction;
+import xxl.core.util.memory.MemoryManageable;
+
+/**
+ * A hash aggregate grouper provides a grouping and an aggregation in only one
+ * step like the {@link AggregateGrouper aggregate grouper}, but it locates the
+ * group of an element by hashing its representative and bounds the number of
+ * groups held in main memory. Every element of the input iteration is
+ * aggregated into the aggregate of its group immediately, so only one
+ * aggregate per group is kept in main memory instead of the elements of the
+ * group.
+ * 
+ * <p>As long as <code>objectSize</code> times the number of groups in the
+ * hash-map does not exceed <code>memSize</code>, a new group is inserted into
+ * the hash-map when an element with a new representative arrives. When the
+ * hash-map is full, the groups in it are frozen: the elements of these groups
+ * are still aggregated in main memory, but an element starting a new group is
+ * appended to one of <code>numberOfPartitions</code> queues concerning the
+ * hash value of its representative. The queues are created by the function
+ * <code>newQueue</code>, e.g., queues of the package
+ * {@link xxl.core.collections.queues.io} can be used to spill the elements to
+ * external memory. Because an element is only spilled when its group is not
+ * contained in the hash-map, the aggregates of the groups in main memory are
+ * complete when the input has been consumed and no aggregates have to be
+ * merged. Thereafter the spilled partitions are aggregated recursively by new
+ * hash aggregate groupers using a different hash function. Every recursive
+ * call finishes at least one group, so the recursion terminates. The memory
+ * of the hash aggregate grouper can be managed by a memory manager using the
+ * {@link MemoryManageable} interface.</p>
+ * 
+ * <p>A call to the <code>next</code> method returns an array of length two
+ * holding the representative of a group and its aggregate, i.e., the elements
+ * of this cursor are compatible to the ones of the
+ * {@link AggregateGrouper aggregate grouper}. The order of the groups is
+ * arbitrary.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   HashAggregateGrouper&lt;Integer, Long&gt; grouper = new HashAggregateGrouper&lt;Integer, Long&gt;(
+ *       new xxl.core.cursors.sources.DiscreteRandomNumber(new JavaDiscreteRandomWrapper(1000000), 10000000),
+ *       new AbstractFunction&lt;Integer, Integer&gt;() {
+ *           public Integer invoke(Integer next) {
+ *               return next / 10;
+ *           }
+ *       },
+ *       new AbstractFunction&lt;Object, AggregationFunction&lt;Integer, Long&gt;&gt;() {
+ *           public AggregationFunction&lt;Integer, Long&gt; invoke() {
+ *               return new Count();
+ *           }
+ *       },
+ *       RandomAccessFileQueue.temporaryFileQueueFactory(new File("."), IntegerConverter.DEFAULT_INSTANCE, 4096),
+ *       64,
+ *       1 &lt;&lt; 20
+ *   );
+ * </pre></code>
+ * This example counts the elements of 100000 buckets whereas only 16384
+ * groups fit into the main memory of the grouper, so the remaining elements
+ * are spilled to temporary files.</p>
+ *
+ * @param <E> the type of the elements returned by the input iteration.
+ * @param <A> the type of the aggregates.
+ * @see xxl.core.cursors.groupers.AggregateGrouper
+ * @see xxl.core.cursors.groupers.HashGrouper
+ * @see xxl.core.math.functions.AggregationFunction
+ */
+public class HashAggregateGrouper<E, A> extends AbstractCursor<Object[]> implements MemoryManageable {
+
+	/**
+	 * A group kept in the hash-map of the grouper.
+	 */
+	protected class Group {
+		
+		/**
+		 * The aggregation function of the group.
+		 */
+		protected AggregationFunction<? super E, A> function;
+		
+		/**
+		 * The current aggregate of the group.
+		 */
+		protected A aggregate;
+
+		/**
+		 * Creates a new group and aggregates its first element.
+		 *
+		 * @param first the first element of the group.
+		 */
+		protected Group(E first) {
+			function = aggregationFunctionFactory.invoke();
+			aggregate = function.invoke(null, first);
+		}
+	}
+
+	/**
+	 * The input iteration delivering the data to aggregate.
+	 */
+	protected Cursor<? extends E> input;
+	
+	/**
+	 * The function providing the representative of the group of an element.
+	 */
+	protected Function<? super E, ?> representatives;
+	
+	/**
+	 * A factory method providing new aggregation functions.
+	 */
+	protected Function<?, ? extends AggregationFunction<? super E, A>> aggregationFunctionFactory;
+	
+	/**
+	 * A parameterless function returning a new empty queue that is used for
+	 * storing the elements of a spilled partition.
+	 */
+	protected Function<?, ? extends Queue<E>> newQueue;
+	
+	/**
+	 * The size of a group in main memory (in bytes).
+	 */
+	protected int objectSize;
+	
+	/**
+	 * The amount of main memory assigned to the grouper (in bytes).
+	 */
+	protected int memSize;
+	
+	/**
+	 * The number of partitions the spilled elements are distributed to.
+	 */
+	protected int numberOfPartitions;
+	
+	/**
+	 * The recursion depth of the grouper. It is used for choosing an
+	 * independent hash function for every level of recursion.
+	 */
+	protected int level;
+	
+	/**
+	 * The hash-map storing the groups held in main memory.
+	 */
+	protected HashMap<Object, Group> groups = null;
+	
+	/**
+	 * An iterator over the groups of the hash-map that have not been returned
+	 * so far.
+	 */
+	protected Iterator<Map.Entry<Object, Group>> results = null;
+	
+	/**
+	 * The queues of the spilled partitions. A queue is <code>null</code> as
+	 * long as no element has been spilled to the partition.
+	 */
+	protected List<Queue<E>> queues = null;
+	
+	/**
+	 * The index of the spilled partition that is aggregated next.
+	 */
+	protected int partitionIndex = 0;
+	
+	/**
+	 * The grouper recursively aggregating the current spilled partition.
+	 */
+	protected HashAggregateGrouper<E, A> partitionGrouper = null;
+
+	/**
+	 * Creates a new hash aggregate grouper on the given recursion level.
+	 *
+	 * @param iterator the input iteration delivering the data to aggregate.
+	 * @param representatives the function providing the representative of
+	 *        the group of an element. Two elements belong to the same group
+	 *        when their representatives are equal concerning the
+	 *        <code>equals</code> method.
+	 * @param aggregationFunctionFactory a factory method providing new
+	 *        aggregation functions.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of a group in main memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the grouper (in
+	 *        bytes).
+	 * @param numberOfPartitions the number of partitions the spilled elements
+	 *        are distributed to.
+	 * @param level the recursion depth of the grouper.
+	 * @throws IllegalArgumentException if the object size or the number of
+	 *         partitions are not positive.
+	 */
+	protected HashAggregateGrouper(Iterator<? extends E> iterator, Function<? super E, ?> representatives, Function<?, ? extends AggregationFunction<? super E, A>> aggregationFunctionFactory, Function<?, ? extends Queue<E>> newQueue, int objectSize, int memSize, int numberOfPartitions, int level) throws IllegalArgumentException {
+		if (objectSize <= 0 || numberOfPartitions <= 0)
+			throw new IllegalArgumentException("the object size and the number of partitions must be positive");
+		this.input = Cursors.wrap(iterator);
+		this.representatives = representatives;
+		this.aggregationFunctionFactory = aggregationFunctionFactory;
+		this.newQueue = newQueue;
+		this.objectSize = objectSize;
+		this.memSize = memSize;
+		this.numberOfPartitions = numberOfPartitions;
+		this.level = level;
+	}
+
+	/**
+	 * Creates a new hash aggregate grouper. The groups are kept in main
+	 * memory as long as <code>objectSize</code> times the number of groups
+	 * does not exceed <code>memSize</code>.
+	 *
+	 * @param iterator the input iteration delivering the data to aggregate.
+	 * @param representatives the function providing the representative of
+	 *        the group of an element. Two elements belong to the same group
+	 *        when their representatives are equal concerning the
+	 *        <code>equals</code> method.
+	 * @param aggregationFunctionFactory a factory method providing new
+	 *        aggregation functions.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of a group in main memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the grouper (in
+	 *        bytes).
+	 * @param numberOfPartitions the number of partitions the spilled elements
+	 *        are distributed to.
+	 * @throws IllegalArgumentException if the object size or the number of
+	 *         partitions are not positive.
+	 */
+	public HashAggregateGrouper(Iterator<? extends E> iterator, Function<? super E, ?> representatives, Function<?, ? extends AggregationFunction<? super E, A>> aggregationFunctionFactory, Function<?, ? extends Queue<E>> newQueue, int objectSize, int memSize, int numberOfPartitions) throws IllegalArgumentException {
+		this(iterator, representatives, aggregationFunctionFactory, newQueue, objectSize, memSize, numberOfPartitions, 0);
+	}
+
+	/**
+	 * Creates a new hash aggregate grouper distributing the spilled elements
+	 * to {@link HashPartitions#DEFAULT_NUMBER_OF_PARTITIONS} partitions.
+	 *
+	 * @param iterator the input iteration delivering the data to aggregate.
+	 * @param representatives the function providing the representative of
+	 *        the group of an element. Two elements belong to the same group
+	 *        when their representatives are equal concerning the
+	 *        <code>equals</code> method.
+	 * @param aggregationFunctionFactory a factory method providing new
+	 *        aggregation functions.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of a group in main memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the grouper (in
+	 *        bytes).
+	 * @throws IllegalArgumentException if the object size is not positive.
+	 */
+	public HashAggregateGrouper(Iterator<? extends E> iterator, Function<? super E, ?> representatives, Function<?, ? extends AggregationFunction<? super E, A>> aggregationFunctionFactory, Function<?, ? extends Queue<E>> newQueue, int objectSize, int memSize) throws IllegalArgumentException {
+		this(iterator, representatives, aggregationFunctionFactory, newQueue, objectSize, memSize, HashPartitions.DEFAULT_NUMBER_OF_PARTITIONS);
+	}
+
+	/**
+	 * Returns the index of the partition the given representative belongs
+	 * to. The hash code of the representative is scrambled depending on the
+	 * recursion level, so the elements of a spilled partition are
+	 * distributed to different partitions when it is aggregated recursively.
+	 *
+	 * @param representative the representative of a group.
+	 * @return the index of the partition the representative belongs to.
+	 */
+	protected int partition(Object representative) {
+		return HashPartitions.partition(representative, level, numberOfPartitions);
+	}
+
+	/**
+	 * Consumes the input iteration. The elements of groups contained in the
+	 * hash-map are aggregated, a new group is inserted into the hash-map as
+	 * long as the memory suffices and otherwise the element is spilled. At
+	 * least one group is always kept in main memory.
+	 */
+	protected void init() {
+		groups = new HashMap<Object, Group>();
+		queues = new ArrayList<Queue<E>>(numberOfPartitions);
+		for (int i = 0; i < numberOfPartitions; i++)
+			queues.add(null);
+		input.open();
+		while (input.hasNext()) {
+			E next = input.next();
+			Object representative = representatives.invoke(next);
+			Group group = groups.get(representative);
+			if (group != null)
+				group.aggregate = group.function.invoke(group.aggregate, next);
+			else if (groups.isEmpty() || groups.size() < memSize / objectSize)
+				groups.put(representative, new Group(next));
+			else {
+				int index = partition(representative);
+				Queue<E> queue = queues.get(index);
+				if (queue == null) {
+					queues.set(index, queue = newQueue.invoke());
+					queue.open();
+				}
+				queue.enqueue(next);
+			}
+		}
+		results = groups.entrySet().iterator();
+		partitionIndex = 0;
+	}
+
+	/**
+	 * Releases the groups and the queues of the spilled partitions that have
+	 * not been aggregated so far.
+	 */
+	protected void release() {
+		if (partitionGrouper != null) {
+			partitionGrouper.close();
+			partitionGrouper = null;
+		}
+		if (queues != null)
+			for (Queue<E> queue : queues.subList(partitionIndex, queues.size()))
+				if (queue != null) {
+					queue.clear();
+					queue.close();
+				}
+		queues = null;
+		groups = null;
+		results = null;
+	}
+
+	/**
+	 * Opens the grouper, i.e., signals the cursor to reserve resources and
+	 * consume the input iteration to compute the aggregates of the groups
+	 * held in main memory. Before a cursor has been opened calls to methods
+	 * like <code>next</code> or <code>peek</code> are not guaranteed to yield
+	 * proper results. Therefore <code>open</code> must be called before a
+	 * cursor's data can be processed. Multiple calls to <code>open</code> do
+	 * not have any effect, i.e., if <code>open</code> was called the cursor
+	 * remains in the state <i>opened</i> until its <code>close</code> method
+	 * is called.
+	 * 
+	 * <p>Note, that a call to the <code>open</code> method of a closed cursor
+	 * usually does not open it again because of the fact that its state
+	 * generally cannot be restored when resources are released respectively
+	 * files are closed.</p>
+	 */
+	public void open() {
+		if (!isOpened)
+			init();
+		super.open();
+	}
+
+	/**
+	 * Closes the grouper, i.e., signals the cursor to clean up resources,
+	 * close the input iteration and the queues of the spilled partitions,
+	 * etc. When a cursor has been closed calls to methods like
+	 * <code>next</code> or <code>peek</code> are not guaranteed to yield
+	 * proper results. Multiple calls to <code>close</code> do not have any
+	 * effect, i.e., if <code>close</code> was called the cursor remains in
+	 * the state <i>closed</i>.
+	 * 
+	 * <p>Note, that a closed cursor usually cannot be opened again because of
+	 * the fact that its state generally cannot be restored when resources are
+	 * released respectively files are closed.</p>
+	 */
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		input.close();
+		release();
+	}
+
+	/**
+	 * Returns <code>true</code> if the iteration has more elements. (In other
+	 * words, returns <code>true</code> if <code>next</code> or
+	 * <code>peek</code> would return an element rather than throwing an
+	 * exception.) At first the groups held in main memory are returned,
+	 * thereafter the spilled partitions are aggregated recursively.
+	 *
+	 * @return <code>true</code> if the grouper has more elements, otherwise
+	 *         <code>false</code>.
+	 */
+	protected boolean hasNextObject() {
+		if (results.hasNext())
+			return true;
+		if (!groups.isEmpty())
+			// the groups held in main memory have been returned
+			groups.clear();
+		while (true) {
+			if (partitionGrouper != null) {
+				if (partitionGrouper.hasNext())
+					return true;
+				partitionGrouper.close();
+				partitionGrouper = null;
+			}
+			while (partitionIndex < queues.size() && queues.get(partitionIndex) == null)
+				partitionIndex++;
+			if (partitionIndex == queues.size())
+				return false;
+			partitionGrouper = new HashAggregateGrouper<E, A>(new QueueCursor<E>(queues.get(partitionIndex++)), representatives, aggregationFunctionFactory, newQueue, objectSize, memSize, numberOfPartitions, level+1);
+			partitionGrouper.open();
+		}
+	}
+
+	/**
+	 * Returns the next element in the iteration, i.e., an array of length two
+	 * holding the representative of a group and its aggregate.
+	 *
+	 * @return the next element in the iteration.
+	 */
+	protected Object[] nextObject() {
+		if (partitionGrouper != null)
+			return partitionGrouper.next();
+		Map.Entry<Object, Group> entry = results.next();
+		return new Object[] {entry.getKey(), entry.getValue().aggregate};
+	}
+
+	/**
+	 * Resets the grouper to its initial state (optional operation). That
+	 * means the <code>reset</code> method of the input iteration is called
+	 * and the input is aggregated again.
+	 *
+	 * @throws UnsupportedOperationException if the <code>reset</code> method
+	 *         is not supported by the input iteration.
+	 */
+	public void reset() throws UnsupportedOperationException {
+		super.reset();
+		input.reset();
+		release();
+		init();
+	}
+
+	/**
+	 * Returns <code>true</code> if the <code>reset</code> operation is
+	 * supported by the grouper. This depends on the input iteration.
+	 *
+	 * @return <code>true</code> if the <code>reset</code> operation is
+	 *         supported, otherwise <code>false</code>.
+	 */
+	public boolean supportsReset() {
+		return input.supportsReset();
+	}
+
+	/**
+	 * Returns the amount of memory which is needed by this grouper for an
+	 * acceptable performance. Because the number of groups is unknown, the
+	 * maximum is returned.
+	 *
+	 * @return {@link MemoryManageable#MAXIMUM}.
+	 */
+	public int getPreferredMemSize() {
+		return MAXIMUM;
+	}
+
+	/**
+	 * Returns the amount of memory, which is actually assigned to this
+	 * grouper.
+	 *
+	 * @return the assigned amount of memory (in bytes).
+	 */
+	public int getAssignedMemSize() {
+		return memSize;
+	}
+
+	/**
+	 * Assigns a new amount of memory to this grouper. The new memory size is
+	 * used when the input is consumed and by the groupers aggregating the
+	 * spilled partitions recursively. Groups that are already held in main
+	 * memory are not spilled.
+	 *
+	 * @param newMemSize the amount of memory to be assigned to this grouper
+	 *        (in bytes).
+	 */
+	public void assignMemSize(int newMemSize) {
+		memSize = newMemSize;
+		if (partitionGrouper != null)
+			partitionGrouper.assignMemSize(newMemSize);
+	}
+
+	/**
+	 * Returns the size of a group in main memory.
+	 *
+	 * @return the size of a single group (in bytes).
+	 */
+	public int getObjectSize() {
+		return objectSize;
+	}
+
+	/**
+	 * Returns the amount of memory, which is currently used by the groups
+	 * held in main memory.
+	 *
+	 * @return the amount of memory currently used by this grouper (in
+	 *         bytes).
+	 */
+	public int getCurrentMemUsage() {
+		return groups == null ? 0 : objectSize * groups.size();
+	}
+}
@@ -25,17 +25,22 @@ License along with this library;  If not, see <http://www.gnu.org/licenses/>.
 
 package xxl.core.cursors.groupers;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import xxl.core.collections.queues.Queue;
 import xxl.core.cursors.AbstractCursor;
 import xxl.core.cursors.Cursor;
 import xxl.core.cursors.Cursors;
+import xxl.core.cursors.HashPartitions;
 import xxl.core.cursors.wrappers.IteratorCursor;
+import xxl.core.cursors.wrappers.QueueCursor;
 import xxl.core.functions.Function;
 import xxl.core.functions.Identity;
+import xxl.core.util.memory.MemoryManageable;
 
 /**
  * A hash grouper partitions input data into groups (strict evaluation). When
@@ -116,7 +121,23 @@ import xxl.core.functions.Identity;
  *     0; 5; 10; 15; 20;
  * </pre>
  * The partitions concerning the function (object modulo 5) are represented
- * correctly.
+ * correctly.</p>
+ * 
+ * <p>When a function <code>newQueue</code> creating queues is specified, the
+ * memory usage of the hash grouper is bounded. The elements are distributed
+ * to <code>numberOfPartitions</code> partitions (hash-maps) concerning the
+ * hash value of their group. As long as <code>objectSize</code> times the
+ * number of resident elements does not exceed <code>memSize</code> all
+ * partitions are kept in main memory. Otherwise the largest resident
+ * partition is spilled to a queue created by <code>newQueue</code>, e.g., a
+ * queue of the package {@link xxl.core.collections.queues.io}, and all
+ * further elements belonging to this partition are appended to the queue.
+ * After the groups of the resident partitions have been returned, the
+ * spilled partitions are grouped recursively by new hash groupers using a
+ * different hash function. When the maximum recursion depth is reached, a
+ * partition is grouped in main memory regardless of the memory assigned to
+ * the hash grouper. The memory of a bounded hash grouper can be managed by a
+ * memory manager using the {@link MemoryManageable} interface.
  *
  * @param <E> the type of the elements returned by the input iteration.
  * @see java.util.Iterator
@@ -126,7 +147,63 @@ import xxl.core.functions.Identity;
  * @see xxl.core.cursors.groupers.NestedLoopsGrouper
  * @see xxl.core.cursors.groupers.SortBasedGrouper
  */
-public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
+public class HashGrouper<E> extends AbstractCursor<Cursor<E>> implements MemoryManageable {
+
+	/**
+	 * A partition of a bounded hash grouper. A partition is either resident,
+	 * i.e., its elements are stored in a hash-map, or it is spilled, i.e.,
+	 * its elements are stored in a queue.
+	 */
+	protected class Partition extends HashPartitions.Partition {
+
+		/**
+		 * The hash-map storing the groups of a resident partition or
+		 * <code>null</code> if the partition is spilled.
+		 */
+		protected HashMap<Object, List<E>> hashMap = new HashMap<Object, List<E>>();
+		
+		/**
+		 * The number of elements stored in the hash-map.
+		 */
+		protected int size = 0;
+		
+		/**
+		 * The queue storing the elements of a spilled partition.
+		 */
+		protected Queue<E> queue = null;
+		
+		/**
+		 * Returns <code>true</code> if the partition has been spilled.
+		 *
+		 * @return <code>true</code> if the partition has been spilled,
+		 *         otherwise <code>false</code>.
+		 */
+		@Override
+		protected int size() {
+			return size;
+		}
+		
+		@Override
+		protected boolean isSpilled() {
+			return hashMap == null;
+		}
+		
+		/**
+		 * Spills the partition, i.e., moves the elements of the hash-map to a
+		 * new queue.
+		 */
+		@Override
+		protected void spill() {
+			queue = newQueue.invoke();
+			queue.open();
+			for (List<E> list : hashMap.values())
+				for (E object : list)
+					queue.enqueue(object);
+			residentElements -= size;
+			hashMap = null;
+			size = 0;
+		}
+	}
 
 	/**
 	 * The given input cursor providing the data to be partitioned.
@@ -142,6 +219,54 @@ public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
 	 * An iterator pointing to the resulting groups.
 	 */
 	protected Iterator<List<E>> groups;
+	
+	/**
+	 * A parameterless function returning a new empty queue that is used for
+	 * storing the elements of a spilled partition or <code>null</code> if the
+	 * memory usage of the hash grouper is not bounded.
+	 */
+	protected Function<?, ? extends Queue<E>> newQueue = null;
+	
+	/**
+	 * The size of an element in main memory (in bytes).
+	 */
+	protected int objectSize = SIZE_UNKNOWN;
+	
+	/**
+	 * The amount of main memory assigned to the hash grouper (in bytes).
+	 */
+	protected int memSize = MAXIMUM;
+	
+	/**
+	 * The number of partitions used by a bounded hash grouper.
+	 */
+	protected int numberOfPartitions = 1;
+	
+	/**
+	 * The recursion depth of a bounded hash grouper. It is used for choosing
+	 * an independent hash function for every level of recursion.
+	 */
+	protected int level = 0;
+	
+	/**
+	 * The partitions of a bounded hash grouper.
+	 */
+	protected List<Partition> partitions = null;
+	
+	/**
+	 * The number of elements stored in the resident partitions.
+	 */
+	protected int residentElements = 0;
+	
+	/**
+	 * The index of the spilled partition that is grouped next.
+	 */
+	protected int partitionIndex = 0;
+	
+	/**
+	 * The hash grouper recursively grouping the current spilled partition.
+	 */
+	protected HashGrouper<E> partitionGrouper = null;
 
 	/**
 	 * Creates a new hash grouper backed on an iteration. If an iterator is
@@ -170,6 +295,121 @@ public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
 		this(iterator, new Identity<E>());
 	}
 
+	/**
+	 * Creates a new bounded hash grouper on the given recursion level.
+	 *
+	 * @param iterator the input iteration delivering the elements to be
+	 *        partitioned.
+	 * @param function the unary function returning a (hash-)value for each
+	 *        element.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of an element in main memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the hash grouper
+	 *        (in bytes).
+	 * @param numberOfPartitions the number of partitions the elements are
+	 *        distributed to.
+	 * @param level the recursion depth of the hash grouper.
+	 * @throws IllegalArgumentException if the object size or the number of
+	 *         partitions are not positive.
+	 */
+	protected HashGrouper(Iterator<? extends E> iterator, Function<? super E, ? extends Object> function, Function<?, ? extends Queue<E>> newQueue, int objectSize, int memSize, int numberOfPartitions, int level) throws IllegalArgumentException {
+		this(iterator, function);
+		if (objectSize <= 0 || numberOfPartitions <= 0)
+			throw new IllegalArgumentException("the object size and the number of partitions must be positive");
+		this.newQueue = newQueue;
+		this.objectSize = objectSize;
+		this.memSize = memSize;
+		this.numberOfPartitions = numberOfPartitions;
+		this.level = level;
+	}
+
+	/**
+	 * Creates a new bounded hash grouper backed on an iteration. The elements
+	 * are kept in main memory as long as <code>objectSize</code> times the
+	 * number of resident elements does not exceed <code>memSize</code>.
+	 * Otherwise partitions are spilled to queues created by the function
+	 * <code>newQueue</code>.
+	 *
+	 * @param iterator the input iteration delivering the elements to be
+	 *        partitioned.
+	 * @param function the unary function returning a (hash-)value for each
+	 *        element.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of an element in main memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the hash grouper
+	 *        (in bytes).
+	 * @param numberOfPartitions the number of partitions the elements are
+	 *        distributed to.
+	 * @throws IllegalArgumentException if the object size or the number of
+	 *         partitions are not positive.
+	 */
+	public HashGrouper(Iterator<? extends E> iterator, Function<? super E, ? extends Object> function, Function<?, ? extends Queue<E>> newQueue, int objectSize, int memSize, int numberOfPartitions) throws IllegalArgumentException {
+		this(iterator, function, newQueue, objectSize, memSize, numberOfPartitions, 0);
+	}
+
+	/**
+	 * Creates a new bounded hash grouper backed on an iteration using
+	 * {@link HashPartitions#DEFAULT_NUMBER_OF_PARTITIONS} partitions.
+	 *
+	 * @param iterator the input iteration delivering the elements to be
+	 *        partitioned.
+	 * @param function the unary function returning a (hash-)value for each
+	 *        element.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of an element in main memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the hash grouper
+	 *        (in bytes).
+	 * @throws IllegalArgumentException if the object size is not positive.
+	 */
+	public HashGrouper(Iterator<? extends E> iterator, Function<? super E, ? extends Object> function, Function<?, ? extends Queue<E>> newQueue, int objectSize, int memSize) throws IllegalArgumentException {
+		this(iterator, function, newQueue, objectSize, memSize, HashPartitions.DEFAULT_NUMBER_OF_PARTITIONS);
+	}
+
+	/**
+	 * Returns the partition the given value belongs to. The hash code of the
+	 * value is scrambled depending on the recursion level, so the elements of
+	 * a spilled partition are distributed to different partitions when it is
+	 * grouped recursively.
+	 *
+	 * @param value the value returned by the function for an element.
+	 * @return the partition the value belongs to.
+	 */
+	protected Partition partition(Object value) {
+		return partitions.get(HashPartitions.partition(value, level, numberOfPartitions));
+	}
+
+	/**
+	 * Spills the largest resident partitions until the memory usage of the
+	 * hash grouper does not exceed the assigned memory. On the maximum
+	 * recursion level no partition is spilled.
+	 */
+	protected void handleOverflow() {
+		HashPartitions.handleOverflow(partitions, level, this);
+	}
+
+	/**
+	 * Releases the queues of the spilled partitions that have not been
+	 * grouped so far.
+	 */
+	protected void releasePartitions() {
+		if (partitionGrouper != null) {
+			partitionGrouper.close();
+			partitionGrouper = null;
+		}
+		if (partitions != null)
+			for (Partition partition : partitions.subList(partitionIndex, partitions.size()))
+				if (partition.isSpilled()) {
+					partition.queue.clear();
+					partition.queue.close();
+				}
+		partitions = null;
+		residentElements = 0;
+		partitionIndex = 0;
+	}
+
 	/**
 	 * Initializes the hash grouper by creating a new
 	 * {@link java.util.HashMap hash-map}. Therefore this method partitions the
@@ -197,8 +437,44 @@ public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
 	 * (buckets) used in the hash-map. The method <tt>iterator</tt> invoked on
 	 * this collection returns the elements as an iterator, namely the
 	 * result-iteration <tt>groups</tt>.
+	 * 
+	 * <p>A bounded hash grouper distributes the elements to its partitions
+	 * and spills partitions when its memory is exhausted. The result-iteration
+	 * <tt>groups</tt> only contains the groups of the resident partitions.</p>
 	 */
 	protected void init() {
+		if (newQueue != null) {
+			partitions = new ArrayList<Partition>(numberOfPartitions);
+			for (int i = 0; i < numberOfPartitions; i++)
+				partitions.add(new Partition());
+			input.open();
+			while (input.hasNext()) {
+				E object = input.next();
+				Object value = function.invoke(object);
+				Partition partition = partition(value);
+				if (partition.isSpilled())
+					partition.queue.enqueue(object);
+				else {
+					List<E> list = partition.hashMap.get(value);
+					if (list == null)
+						partition.hashMap.put(value, list = new LinkedList<E>());
+					list.add(object);
+					partition.size++;
+					if (++residentElements > memSize / objectSize)
+						handleOverflow();
+				}
+			}
+			List<List<E>> lists = new ArrayList<List<E>>();
+			for (Partition partition : partitions)
+				if (!partition.isSpilled()) {
+					lists.addAll(partition.hashMap.values());
+					partition.hashMap.clear();
+					partition.size = 0;
+				}
+			residentElements = 0;
+			groups = lists.iterator();
+			return;
+		}
 		HashMap<Object, List<E>> hashMap = new HashMap<Object, List<E>>();
 		input.open();
 		while (input.hasNext()) {
@@ -249,6 +525,7 @@ public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
 		if (isClosed) return;
 		super.close();
 		input.close();
+		releasePartitions();
 	}
 
 	/**
@@ -256,13 +533,29 @@ public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
 	 * words, returns <code>true</code> if <code>next</code> or
 	 * <code>peek</code> would return an element rather than throwing an
 	 * exception.) This happens when the result-iteration <code>groups</code>
-	 * has more elements.
+	 * has more elements or, in case of a bounded hash grouper, a spilled
+	 * partition that has not been grouped so far exists.
 	 *
 	 * @return <code>true</code> if the hash grouper has more elements,
 	 *         otherwise <code>false</code>.
 	 */
 	protected boolean hasNextObject() {
-		return groups.hasNext();
+		if (groups.hasNext())
+			return true;
+		while (partitions != null) {
+			if (partitionGrouper != null) {
+				if (partitionGrouper.hasNext())
+					return true;
+				partitionGrouper.close();
+				partitionGrouper = null;
+			}
+			partitionIndex = HashPartitions.nextSpilled(partitions, partitionIndex);
+			if (partitionIndex == partitions.size())
+				return false;
+			partitionGrouper = new HashGrouper<E>(new QueueCursor<E>(partitions.get(partitionIndex++).queue), function, newQueue, objectSize, memSize, numberOfPartitions, level+1);
+			partitionGrouper.open();
+		}
+		return false;
 	}
 
 	/**
@@ -280,7 +573,9 @@ public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
 	 * @return the next element in the iteration.
 	 */
 	protected Cursor<E> nextObject() {
-		return new IteratorCursor<E>(groups.next().iterator());
+		return partitionGrouper != null ?
+			partitionGrouper.next() :
+			new IteratorCursor<E>(groups.next().iterator());
 	}
 
 	/**
@@ -295,6 +590,7 @@ public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
 	public void reset() throws UnsupportedOperationException {
 		super.reset();
 		input.reset();
+		releasePartitions();
 		init();
 	}
 	
@@ -308,4 +604,64 @@ public class HashGrouper<E> extends AbstractCursor<Cursor<E>> {
 	public boolean supportsReset() {
 		return input.supportsReset();
 	}
+
+	/**
+	 * Returns the amount of memory which is needed by this hash grouper for
+	 * an acceptable performance. Because the size of the input is unknown,
+	 * the maximum is returned.
+	 *
+	 * @return {@link MemoryManageable#MAXIMUM}.
+	 */
+	public int getPreferredMemSize() {
+		return MAXIMUM;
+	}
+
+	/**
+	 * Returns the amount of memory, which is actually assigned to this hash
+	 * grouper.
+	 *
+	 * @return the assigned amount of memory (in bytes).
+	 */
+	public int getAssignedMemSize() {
+		return memSize;
+	}
+
+	/**
+	 * Assigns a new amount of memory to this hash grouper. The new memory
+	 * size is used when the input is partitioned and by the hash groupers
+	 * grouping the spilled partitions recursively. Note, that an unbounded
+	 * hash grouper ignores its memory size.
+	 *
+	 * @param newMemSize the amount of memory to be assigned to this hash
+	 *        grouper (in bytes).
+	 */
+	public void assignMemSize(int newMemSize) {
+		memSize = newMemSize;
+		if (partitionGrouper != null)
+			partitionGrouper.assignMemSize(newMemSize);
+	}
+
+	/**
+	 * Returns the size of an element in main memory.
+	 *
+	 * @return the size of a single object (in bytes) or
+	 *         {@link xxl.core.util.memory.MemoryMonitorable#SIZE_UNKNOWN} if
+	 *         the hash grouper is not bounded.
+	 */
+	public int getObjectSize() {
+		return objectSize;
+	}
+
+	/**
+	 * Returns the amount of memory, which is currently used by the resident
+	 * partitions of a bounded hash grouper.
+	 *
+	 * @return the amount of memory currently used by this hash grouper (in
+	 *         bytes) or
+	 *         {@link xxl.core.util.memory.MemoryMonitorable#SIZE_UNKNOWN} if
+	 *         the hash grouper is not bounded.
+	 */
+	public int getCurrentMemUsage() {
+		return newQueue == null ? SIZE_UNKNOWN : objectSize * residentElements;
+	}
 }
@@ -0,0 +1,819 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.joins;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.HashPartitions;
+import xxl.core.cursors.wrappers.QueueCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.predicates.Predicate;
+import xxl.core.predicates.Predicates;
+import xxl.core.util.memory.MemoryManageable;
+
+/**
+ * A hybrid hash implementation of the equi-join operator. In contrast to the
+ * {@link SortMergeJoin sort-merge join} the input iterations need not to be
+ * sorted and in contrast to the {@link NestedLoopsJoin nested-loops join} the
+ * inputs are traversed only once as long as the first input fits into the
+ * main memory assigned to the operator.
+ * 
+ * <p><i>The algorithm works as follows:</i> The elements of the first input
+ * iteration <code>input0</code> (the build input) are distributed to
+ * <code>numberOfPartitions</code> partitions by hashing their join keys. All
+ * partitions are kept in main memory as hash tables as long as the memory
+ * usage of the operator does not exceed the memory assigned to it, i.e.,
+ * <code>objectSize</code> times the number of resident elements is less than
+ * or equal to <code>memSize</code>. Otherwise the largest resident partition
+ * is spilled to a queue created by the function <code>newQueue</code> and all
+ * further build elements belonging to this partition are appended to that
+ * queue. Thereafter, the elements of the second input iteration
+ * <code>input1</code> (the probe input) are hashed in the same way. A probe
+ * element belonging to a resident partition is immediately joined with the
+ * build elements of the hash table having an equal join key, whereas a probe
+ * element belonging to a spilled partition is appended to a second queue of
+ * the partition. At last, the pairs of queues of the spilled partitions are
+ * joined recursively by a new hash join operator using a different hash
+ * function. When the maximum recursion depth is reached, a partition is
+ * processed in main memory regardless of the memory assigned to the
+ * operator.</p>
+ * 
+ * <p>Two elements qualify for the result of the join when their join keys
+ * computed by the functions <code>key0</code> and <code>key1</code> are equal
+ * with respect to their <code>equals</code> method and the (optional) binary
+ * predicate evaluated for the build element and the probe element returns
+ * <code>true</code>. The function <code>newResult</code> is always invoked
+ * with the element of <code>input0</code> as first argument and the element
+ * of <code>input1</code> as second argument. Left, right and full outer joins
+ * are supported. Note, that the order of the result is arbitrary.</p>
+ * 
+ * <p>The memory of the operator can be managed by a memory manager using the
+ * {@link MemoryManageable} interface. A new memory size is used when the
+ * build input is consumed and when the spilled partitions are joined. After
+ * the build phase a reduction of the assigned memory has no effect on the
+ * resident partitions.</p>
+ * 
+ * <p><b>Note:</b> When the given input iteration only implements the interface
+ * {@link Iterator} it is wrapped to a cursor by a call to the static method
+ * {@link Cursors#wrap(Iterator) wrap}.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   HashJoin&lt;Integer, Integer[]&gt; join = new HashJoin&lt;Integer, Integer[]&gt;(
+ *       Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10).iterator(),
+ *       Arrays.asList(2, 4, 6, 8, 10).iterator(),
+ *       Identity.DEFAULT_INSTANCE,
+ *       new Tuplify(),
+ *       16,
+ *       4*16
+ *   );
+ *   
+ *   join.open();
+ *   
+ *   while (join.hasNext())
+ *       System.out.println(Arrays.toString(join.next()));
+ *   
+ *   join.close();
+ * </pre></code>
+ * Only four elements of the first input fit into the main memory of the join
+ * operator, so the build input is partitioned and the spilled partitions are
+ * stored in {@link ListQueue list-queues} until they are joined.</p>
+ *
+ * @param <I> the type of the elements consumed by this iteration.
+ * @param <E> the type of the elements returned by this join operation.
+ * @see java.util.Iterator
+ * @see xxl.core.cursors.Cursor
+ * @see xxl.core.cursors.AbstractCursor
+ * @see xxl.core.cursors.joins.NestedLoopsJoin
+ * @see xxl.core.cursors.joins.SortMergeJoin
+ * @see xxl.core.relational.cursors.HashJoin
+ */
+public class HashJoin<I, E> extends AbstractCursor<E> implements MemoryManageable {
+
+	/**
+	 * An enumeration of constants specifying the join types supported by this
+	 * class.
+	 */
+	public static enum Type {
+		
+		/**
+		 * A constant specifying an equi-join. Only the tuples with equal join
+		 * keys for which the specified predicate is <code>true</code> will be
+		 * returned.
+		 */
+		THETA_JOIN,
+		
+		/**
+		 * A constant specifying a left outer-join. The qualifying tuples as
+		 * well as all elements of <code>input0</code> not qualifying will be
+		 * returned. The function <code>newResult</code> is called with an
+		 * element of <code>input0</code> and the <code>null</code> value.
+		 */
+		LEFT_OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a right outer-join. The qualifying tuples as
+		 * well as all elements of <code>input1</code> not qualifying will be
+		 * returned. The function <code>newResult</code> is called with the
+		 * <code>null</code> value and an element of <code>input1</code>.
+		 */
+		RIGHT_OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a full outer-join. The qualifying tuples as
+		 * well as all tuples additionally returned by the left and right
+		 * outer-join will be returned.
+		 */
+		OUTER_JOIN
+	};
+
+	/**
+	 * A build element stored in the hash table of a resident partition
+	 * together with a flag signaling whether it has found a join partner. The
+	 * flag is needed for providing (left) outer joins.
+	 */
+	protected class Entry {
+		
+		/**
+		 * The element of the build input.
+		 */
+		protected I element;
+		
+		/**
+		 * A flag signaling whether the element has found a join partner.
+		 */
+		protected boolean matched = false;
+
+		/**
+		 * Creates a new entry for the given build element.
+		 *
+		 * @param element the element of the build input.
+		 */
+		protected Entry(I element) {
+			this.element = element;
+		}
+	}
+
+	/**
+	 * A partition of the inputs. A partition is either resident, i.e., its
+	 * build elements are stored in a hash table, or it is spilled, i.e., its
+	 * build and probe elements are stored in two queues.
+	 */
+	protected class Partition extends HashPartitions.Partition {
+
+		/**
+		 * The hash table storing the build elements of a resident partition
+		 * grouped by their join keys or <code>null</code> if the partition is
+		 * spilled.
+		 */
+		protected HashMap<Object, List<Entry>> table = new HashMap<Object, List<Entry>>();
+		
+		/**
+		 * The number of build elements stored in the hash table.
+		 */
+		protected int size = 0;
+		
+		/**
+		 * The queue storing the build elements of a spilled partition.
+		 */
+		protected Queue<I> buildQueue = null;
+		
+		/**
+		 * The queue storing the probe elements of a spilled partition.
+		 */
+		protected Queue<I> probeQueue = null;
+
+		/**
+		 * Returns <code>true</code> if the partition has been spilled.
+		 *
+		 * @return <code>true</code> if the partition has been spilled,
+		 *         otherwise <code>false</code>.
+		 */
+		@Override
+		protected int size() {
+			return size;
+		}
+
+		@Override
+		protected boolean isSpilled() {
+			return table == null;
+		}
+
+		/**
+		 * Inserts the given build element into the hash table of the
+		 * partition.
+		 *
+		 * @param key the join key of the element.
+		 * @param element the element of the build input.
+		 */
+		protected void insert(Object key, I element) {
+			List<Entry> entries = table.get(key);
+			if (entries == null)
+				table.put(key, entries = new ArrayList<Entry>(2));
+			entries.add(new Entry(element));
+			size++;
+		}
+
+		/**
+		 * Spills the partition, i.e., moves the elements of the hash table to
+		 * a new build queue and creates the probe queue of the partition.
+		 */
+		@Override
+		protected void spill() {
+			buildQueue = newQueue.invoke();
+			buildQueue.open();
+			for (List<Entry> entries : table.values())
+				for (Entry entry : entries)
+					buildQueue.enqueue(entry.element);
+			probeQueue = newQueue.invoke();
+			probeQueue.open();
+			residentElements -= size;
+			table = null;
+			size = 0;
+		}
+	}
+
+	/**
+	 * The first input iteration (build input) of the join operator.
+	 */
+	protected Cursor<? extends I> input0;
+	
+	/**
+	 * The second input iteration (probe input) of the join operator.
+	 */
+	protected Cursor<? extends I> input1;
+	
+	/**
+	 * The function computing the join key of an element of
+	 * <code>input0</code>.
+	 */
+	protected Function<? super I, ?> key0;
+	
+	/**
+	 * The function computing the join key of an element of
+	 * <code>input1</code>.
+	 */
+	protected Function<? super I, ?> key1;
+	
+	/**
+	 * A binary predicate that is additionally evaluated for every pair of
+	 * elements with equal join keys. Only the tuples, where the predicate's
+	 * evaluation result is <code>true</code>, have been qualified to be a
+	 * result of the join operation.
+	 */
+	protected Predicate<? super I> predicate;
+	
+	/**
+	 * A function that is invoked on each qualifying tuple before it is
+	 * returned to the caller concerning a call to the <code>next</code>
+	 * method. This binary function works like a kind of factory method
+	 * modeling the resulting object (tuple). Be aware that this function
+	 * possibly has to handle <code>null</code> values in cases of outer joins.
+	 */
+	protected Function<? super I, ? extends E> newResult;
+	
+	/**
+	 * The type of this hash join operator. Determines whether it calculates
+	 * an equi- or an outer-join.
+	 */
+	protected Type type;
+	
+	/**
+	 * A parameterless function returning a new empty queue that is used for
+	 * storing the elements of a spilled partition.
+	 */
+	protected Function<?, ? extends Queue<I>> newQueue;
+	
+	/**
+	 * The size of an element of the build input in main memory (in bytes).
+	 */
+	protected int objectSize;
+	
+	/**
+	 * The amount of main memory assigned to the operator (in bytes).
+	 */
+	protected int memSize;
+	
+	/**
+	 * The number of partitions the inputs are divided into.
+	 */
+	protected int numberOfPartitions;
+	
+	/**
+	 * The recursion depth of this operator. It is used for choosing an
+	 * independent hash function for every level of recursion.
+	 */
+	protected int level;
+	
+	/**
+	 * The partitions of the inputs or <code>null</code> if the build input
+	 * has not been consumed so far.
+	 */
+	protected List<Partition> partitions = null;
+	
+	/**
+	 * The number of build elements stored in the hash tables of the resident
+	 * partitions.
+	 */
+	protected int residentElements = 0;
+	
+	/**
+	 * The current element of the probe input or <code>null</code> if the
+	 * next element has to be taken from <code>input1</code>.
+	 */
+	protected I probe = null;
+	
+	/**
+	 * A flag signaling whether the current probe element has found a join
+	 * partner. This information is necessary for providing (right) outer
+	 * joins.
+	 */
+	protected boolean probeMatched = false;
+	
+	/**
+	 * The build elements having the same join key as the current probe
+	 * element, that have not been tested so far.
+	 */
+	protected Iterator<Entry> matches = null;
+	
+	/**
+	 * A flag signaling whether the probe input has been consumed and the
+	 * resident partitions have been released.
+	 */
+	protected boolean probed = false;
+	
+	/**
+	 * The index of the partition that is processed next after the probe
+	 * input has been consumed.
+	 */
+	protected int partitionIndex = 0;
+	
+	/**
+	 * The lists of build elements of the resident partition that is searched
+	 * for build elements without join partners.
+	 */
+	protected Iterator<List<Entry>> buckets = null;
+	
+	/**
+	 * The build elements of the current bucket that are searched for build
+	 * elements without join partners.
+	 */
+	protected Iterator<Entry> bucket = null;
+	
+	/**
+	 * The hash join operator recursively joining the current spilled
+	 * partition.
+	 */
+	protected HashJoin<I, E> partitionJoin = null;
+
+	/**
+	 * Creates a new hash join operator on the given recursion level.
+	 *
+	 * @param input0 the build input of the join operator.
+	 * @param input1 the probe input of the join operator.
+	 * @param key0 the function computing the join key of an element of
+	 *        <code>input0</code>.
+	 * @param key1 the function computing the join key of an element of
+	 *        <code>input1</code>.
+	 * @param predicate the binary predicate additionally evaluated for every
+	 *        pair of elements with equal join keys.
+	 * @param newResult a factory method (function) that takes two parameters
+	 *        as argument and is invoked on each qualifying tuple before it is
+	 *        returned to the caller concerning a call to the
+	 *        <code>next</code> method.
+	 * @param type the type of this join; use one of the public constants
+	 *        defined in this class.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of an element of the build input in main
+	 *        memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 * @param numberOfPartitions the number of partitions the inputs are
+	 *        divided into.
+	 * @param level the recursion depth of the operator.
+	 * @throws IllegalArgumentException if the object size or the number of
+	 *         partitions are not positive.
+	 */
+	protected HashJoin(Iterator<? extends I> input0, Iterator<? extends I> input1, Function<? super I, ?> key0, Function<? super I, ?> key1, Predicate<? super I> predicate, Function<? super I, ? extends E> newResult, Type type, Function<?, ? extends Queue<I>> newQueue, int objectSize, int memSize, int numberOfPartitions, int level) throws IllegalArgumentException {
+		if (objectSize <= 0 || numberOfPartitions <= 0)
+			throw new IllegalArgumentException("the object size and the number of partitions must be positive");
+		this.input0 = Cursors.wrap(input0);
+		this.input1 = Cursors.wrap(input1);
+		this.key0 = key0;
+		this.key1 = key1;
+		this.predicate = predicate;
+		this.newResult = newResult;
+		this.type = type;
+		this.newQueue = newQueue;
+		this.objectSize = objectSize;
+		this.memSize = memSize;
+		this.numberOfPartitions = numberOfPartitions;
+		this.level = level;
+	}
+
+	/**
+	 * Creates a new hash join operator. The elements of <code>input0</code>
+	 * are kept in main memory as long as <code>objectSize</code> times the
+	 * number of resident elements does not exceed <code>memSize</code>.
+	 *
+	 * @param input0 the build input of the join operator.
+	 * @param input1 the probe input of the join operator.
+	 * @param key0 the function computing the join key of an element of
+	 *        <code>input0</code>.
+	 * @param key1 the function computing the join key of an element of
+	 *        <code>input1</code>.
+	 * @param predicate the binary predicate additionally evaluated for every
+	 *        pair of elements with equal join keys. Only these tuples where
+	 *        the predicate's evaluation result is <code>true</code> have been
+	 *        qualified to be a result of the join operation.
+	 * @param newResult a factory method (function) that takes two parameters
+	 *        as argument and is invoked on each qualifying tuple before it is
+	 *        returned to the caller concerning a call to the
+	 *        <code>next</code> method.
+	 * @param type the type of this join; use one of the public constants
+	 *        defined in this class.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of an element of the build input in main
+	 *        memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 * @param numberOfPartitions the number of partitions the inputs are
+	 *        divided into.
+	 * @throws IllegalArgumentException if the object size or the number of
+	 *         partitions are not positive.
+	 */
+	public HashJoin(Iterator<? extends I> input0, Iterator<? extends I> input1, Function<? super I, ?> key0, Function<? super I, ?> key1, Predicate<? super I> predicate, Function<? super I, ? extends E> newResult, Type type, Function<?, ? extends Queue<I>> newQueue, int objectSize, int memSize, int numberOfPartitions) throws IllegalArgumentException {
+		this(input0, input1, key0, key1, predicate, newResult, type, newQueue, objectSize, memSize, numberOfPartitions, 0);
+	}
+
+	/**
+	 * Creates a new hash join operator dividing the inputs into
+	 * {@link HashPartitions#DEFAULT_NUMBER_OF_PARTITIONS} partitions. Every
+	 * pair of elements with equal join keys qualifies for the result of the
+	 * join.
+	 *
+	 * @param input0 the build input of the join operator.
+	 * @param input1 the probe input of the join operator.
+	 * @param key0 the function computing the join key of an element of
+	 *        <code>input0</code>.
+	 * @param key1 the function computing the join key of an element of
+	 *        <code>input1</code>.
+	 * @param newResult a factory method (function) that takes two parameters
+	 *        as argument and is invoked on each qualifying tuple before it is
+	 *        returned to the caller concerning a call to the
+	 *        <code>next</code> method.
+	 * @param type the type of this join; use one of the public constants
+	 *        defined in this class.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the elements of a spilled partition.
+	 * @param objectSize the size of an element of the build input in main
+	 *        memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 * @throws IllegalArgumentException if the object size is not positive.
+	 */
+	public HashJoin(Iterator<? extends I> input0, Iterator<? extends I> input1, Function<? super I, ?> key0, Function<? super I, ?> key1, Function<? super I, ? extends E> newResult, Type type, Function<?, ? extends Queue<I>> newQueue, int objectSize, int memSize) throws IllegalArgumentException {
+		this(input0, input1, key0, key1, Predicates.TRUE, newResult, type, newQueue, objectSize, memSize, HashPartitions.DEFAULT_NUMBER_OF_PARTITIONS);
+	}
+
+	/**
+	 * Creates a new hash join operator realizing an equi-join of two inputs
+	 * whose join keys are computed by the same function. The spilled
+	 * partitions are stored in {@link ListQueue list-queues}.
+	 *
+	 * @param input0 the build input of the join operator.
+	 * @param input1 the probe input of the join operator.
+	 * @param key the function computing the join key of an element of
+	 *        <code>input0</code> or <code>input1</code>.
+	 * @param newResult a factory method (function) that takes two parameters
+	 *        as argument and is invoked on each qualifying tuple before it is
+	 *        returned to the caller concerning a call to the
+	 *        <code>next</code> method.
+	 * @param objectSize the size of an element of the build input in main
+	 *        memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 * @throws IllegalArgumentException if the object size is not positive.
+	 */
+	public HashJoin(Iterator<? extends I> input0, Iterator<? extends I> input1, Function<? super I, ?> key, Function<? super I, ? extends E> newResult, int objectSize, int memSize) throws IllegalArgumentException {
+		this(
+			input0,
+			input1,
+			key,
+			key,
+			newResult,
+			Type.THETA_JOIN,
+			new AbstractFunction<Object, Queue<I>>() {
+				@Override
+				public Queue<I> invoke() {
+					return new ListQueue<I>();
+				}
+			},
+			objectSize,
+			memSize
+		);
+	}
+
+	/**
+	 * Returns the partition the given join key belongs to. The hash code of
+	 * the key is scrambled depending on the recursion level, so the elements
+	 * of a spilled partition are distributed to different partitions when it
+	 * is joined recursively.
+	 *
+	 * @param key the join key.
+	 * @return the partition the join key belongs to.
+	 */
+	protected Partition partition(Object key) {
+		return partitions.get(HashPartitions.partition(key, level, numberOfPartitions));
+	}
+
+	/**
+	 * Spills the largest resident partitions until the memory usage of the
+	 * operator does not exceed the assigned memory. On the maximum recursion
+	 * level no partition is spilled.
+	 */
+	protected void handleOverflow() {
+		HashPartitions.handleOverflow(partitions, level, this);
+	}
+
+	/**
+	 * Consumes the build input and distributes its elements to the
+	 * partitions.
+	 */
+	protected void build() {
+		partitions = new ArrayList<Partition>(numberOfPartitions);
+		for (int i = 0; i < numberOfPartitions; i++)
+			partitions.add(new Partition());
+		while (input0.hasNext()) {
+			I element = input0.next();
+			Object key = key0.invoke(element);
+			Partition partition = partition(key);
+			if (partition.isSpilled())
+				partition.buildQueue.enqueue(element);
+			else {
+				partition.insert(key, element);
+				residentElements++;
+				if (getCurrentMemUsage() > memSize)
+					handleOverflow();
+			}
+		}
+	}
+
+	/**
+	 * Opens the join operator, i.e., signals the cursor to reserve resources,
+	 * open the input iteration, etc. Before a cursor has been opened calls to
+	 * methods like <code>next</code> or <code>peek</code> are not guaranteed
+	 * to yield proper results. Therefore <code>open</code> must be called
+	 * before a cursor's data can be processed. Multiple calls to
+	 * <code>open</code> do not have any effect, i.e., if <code>open</code> was
+	 * called the cursor remains in the state <i>opened</i> until its
+	 * <code>close</code> method is called.
+	 * 
+	 * <p>Note, that a call to the <code>open</code> method of a closed cursor
+	 * usually does not open it again because of the fact that its state
+	 * generally cannot be restored when resources are released respectively
+	 * files are closed.</p>
+	 */
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		input0.open();
+		input1.open();
+	}
+	
+	/**
+	 * Closes the join operator, i.e., signals the cursor to clean up
+	 * resources, close the input iterations and the queues of the spilled
+	 * partitions, etc. When a cursor has been closed calls to methods like
+	 * <code>next</code> or <code>peek</code> are not guaranteed to yield
+	 * proper results. Multiple calls to <code>close</code> do not have any
+	 * effect, i.e., if <code>close</code> was called the cursor remains in the
+	 * state <i>closed</i>.
+	 * 
+	 * <p>Note, that a closed cursor usually cannot be opened again because of
+	 * the fact that its state generally cannot be restored when resources are
+	 * released respectively files are closed.</p>
+	 */
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		input0.close();
+		input1.close();
+		if (partitionJoin != null)
+			partitionJoin.close();
+		if (partitions != null)
+			for (Partition partition : partitions.subList(probed ? partitionIndex : 0, partitions.size()))
+				if (partition.isSpilled()) {
+					partition.buildQueue.close();
+					partition.probeQueue.close();
+				}
+		partitions = null;
+		residentElements = 0;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the iteration has more elements. (In other
+	 * words, returns <code>true</code> if <code>next</code> or
+	 * <code>peek</code> would return an element rather than throwing an
+	 * exception.)
+	 * 
+	 * <p>The first call consumes the build input. Thereafter the probe input
+	 * is joined with the resident partitions, the build elements without join
+	 * partners are returned in case of a left or full outer-join and at last
+	 * the spilled partitions are joined recursively.</p>
+	 * 
+	 * @return <code>true</code> if the join operator has more elements.
+	 */
+	protected boolean hasNextObject() {
+		if (partitions == null)
+			build();
+		if (!probed) {
+			while (true) {
+				if (probe != null) {
+					while (matches.hasNext()) {
+						Entry entry = matches.next();
+						if (predicate.invoke(entry.element, probe)) {
+							entry.matched = probeMatched = true;
+							next = newResult.invoke(entry.element, probe);
+							return true;
+						}
+					}
+					I element = probe;
+					probe = null;
+					if (!probeMatched && (type == Type.RIGHT_OUTER_JOIN || type == Type.OUTER_JOIN)) {
+						next = newResult.invoke(null, element);
+						return true;
+					}
+				}
+				if (!input1.hasNext())
+					break;
+				I element = input1.next();
+				Object key = key1.invoke(element);
+				Partition partition = partition(key);
+				if (partition.isSpilled())
+					partition.probeQueue.enqueue(element);
+				else {
+					List<Entry> entries = partition.table.get(key);
+					if (entries != null || type == Type.RIGHT_OUTER_JOIN || type == Type.OUTER_JOIN) {
+						probe = element;
+						probeMatched = false;
+						matches = entries == null ? new ArrayList<Entry>(0).iterator() : entries.iterator();
+					}
+				}
+			}
+			if (type == Type.LEFT_OUTER_JOIN || type == Type.OUTER_JOIN)
+				while (true) {
+					if (bucket != null)
+						while (bucket.hasNext()) {
+							Entry entry = bucket.next();
+							if (!entry.matched) {
+								next = newResult.invoke(entry.element, null);
+								return true;
+							}
+						}
+					if (buckets != null && buckets.hasNext())
+						bucket = buckets.next().iterator();
+					else {
+						while (partitionIndex < partitions.size() && partitions.get(partitionIndex).isSpilled())
+							partitionIndex++;
+						if (partitionIndex == partitions.size())
+							break;
+						buckets = partitions.get(partitionIndex++).table.values().iterator();
+						bucket = null;
+					}
+				}
+			// release the resident partitions
+			for (Partition partition : partitions)
+				if (!partition.isSpilled()) {
+					partition.table.clear();
+					partition.size = 0;
+				}
+			residentElements = 0;
+			buckets = null;
+			bucket = null;
+			partitionIndex = 0;
+			probed = true;
+		}
+		while (true) {
+			if (partitionJoin != null) {
+				if (partitionJoin.hasNext()) {
+					next = partitionJoin.next();
+					return true;
+				}
+				partitionJoin.close();
+				partitionJoin = null;
+			}
+			partitionIndex = HashPartitions.nextSpilled(partitions, partitionIndex);
+			if (partitionIndex == partitions.size())
+				return false;
+			Partition partition = partitions.get(partitionIndex++);
+			partitionJoin = new HashJoin<I, E>(new QueueCursor<I>(partition.buildQueue), new QueueCursor<I>(partition.probeQueue), key0, key1, predicate, newResult, type, newQueue, objectSize, memSize, numberOfPartitions, level+1);
+			partitionJoin.open();
+		}
+	}
+
+	/**
+	 * Returns the next element in the iteration. This element will be
+	 * accessible by some of the join operator's methods, e.g.,
+	 * <code>update</code> or <code>remove</code>, until a call to
+	 * <code>next</code> or <code>peek</code> occurs. This is calling
+	 * <code>next</code> or <code>peek</code> proceeds the iteration and
+	 * therefore its previous element will not be accessible any more.
+	 *
+	 * @return the next element in the iteration.
+	 */
+	protected E nextObject() {
+		return next;
+	}
+
+	/**
+	 * Returns the amount of memory which is needed by this operator for an
+	 * acceptable performance. Because the size of the build input is unknown,
+	 * the maximum is returned.
+	 *
+	 * @return {@link MemoryManageable#MAXIMUM}.
+	 */
+	public int getPreferredMemSize() {
+		return MAXIMUM;
+	}
+
+	/**
+	 * Returns the amount of memory, which is actually assigned to this
+	 * operator.
+	 *
+	 * @return the assigned amount of memory (in bytes).
+	 */
+	public int getAssignedMemSize() {
+		return memSize;
+	}
+
+	/**
+	 * Assigns a new amount of memory to this operator. The new memory size
+	 * is used when the build input is consumed and by the operators joining
+	 * the spilled partitions recursively.
+	 *
+	 * @param newMemSize the amount of memory to be assigned to this operator
+	 *        (in bytes).
+	 */
+	public void assignMemSize(int newMemSize) {
+		memSize = newMemSize;
+		if (partitionJoin != null)
+			partitionJoin.assignMemSize(newMemSize);
+	}
+
+	/**
+	 * Returns the size of an element of the build input in main memory.
+	 *
+	 * @return the size of a single object (in bytes).
+	 */
+	public int getObjectSize() {
+		return objectSize;
+	}
+
+	/**
+	 * Returns the amount of memory, which is currently used by the resident
+	 * partitions of this operator.
+	 *
+	 * @return the amount of memory currently used by this operator (in
+	 *         bytes).
+	 */
+	public int getCurrentMemUsage() {
+		return objectSize * residentElements;
+	}
+}
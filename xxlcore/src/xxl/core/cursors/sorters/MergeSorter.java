@@ -25,8 +25,17 @@ License along with this library;  If not, see <http://www.gnu.org/licenses/>.
 
 package xxl.core.cursors.sorters;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import xxl.core.collections.queues.DynamicHeap;
 import xxl.core.collections.queues.ListQueue;
@@ -45,6 +54,7 @@ import xxl.core.cursors.wrappers.QueueCursor;
 import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Function;
 import xxl.core.predicates.AbstractPredicate;
+import xxl.core.util.WrappingRuntimeException;
 
 /**
  * An external merge-sort algorithm based on the
@@ -307,6 +317,19 @@ import xxl.core.predicates.AbstractPredicate;
  *   }
  * </pre></code></p>
  *
+ * <p>The open-phase can be performed in parallel by calling one of the
+ * <code>parallelize</code> methods before the merge-sorter is opened. In the
+ * parallel mode, the calling thread reads the input into chunks of
+ * <code>heapSize/(parallelism+1)</code> elements. Every chunk is sorted and
+ * written to a new run (queue) by a worker of the given executor while the
+ * calling thread fills the next chunk. Thereafter, the intermediate merges
+ * of disjoint sets of runs are performed concurrently by the workers. The
+ * memory of the open-phase is divided among the workers, i.e., the fan-in of
+ * an intermediate merge is <code>max(2, fanIn/parallelism)</code>. The final
+ * merge is not affected by the parallel mode. Note, that the functions
+ * <code>newQueue</code> and the comparator are called concurrently by the
+ * workers in the parallel mode.</p>
+ *
  * @param <E> the type of the elements returned by this iteration.
  * @see java.util.Iterator
  * @see xxl.core.cursors.Cursor
@@ -507,6 +530,34 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 	 */
 	protected boolean openPhaseFinished = false;
 	
+	/**
+	 * The executor used for the run creation and the intermediate merges in
+	 * the parallel mode or <code>null</code> if the open-phase is performed
+	 * by the calling thread.
+	 */
+	protected ExecutorService executor = null;
+
+	/**
+	 * The number of runs that are created or merged concurrently in the
+	 * parallel mode.
+	 */
+	protected int parallelism = 1;
+
+	/**
+	 * A boolean flag to signal whether the executor has been created by the
+	 * merge-sorter and has to be shut down after the open-phase.
+	 */
+	protected boolean shutdownExecutor = false;
+
+	/**
+	 * The fan-in of the intermediate merges in the parallel mode. It is
+	 * computed as follows:
+	 * <code><pre>
+	 *     parallelFanIn = max(2, fanIn/parallelism);
+	 * </pre></code>
+	 */
+	protected int parallelFanIn;
+	
 	/**
 	 * Creates a new merge-sorter.
 	 *
@@ -943,6 +994,216 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 		);
 	}
 	
+	/**
+	 * Switches the merge-sorter to the parallel mode. The run creation and
+	 * the intermediate merges of the open-phase are performed by the given
+	 * executor, where at most <code>parallelism</code> runs are created or
+	 * merged at the same time. The executor is not shut down by the
+	 * merge-sorter. This method has to be called before the merge-sorter is
+	 * opened.
+	 *
+	 * @param executor the executor performing the run creation and the
+	 *        intermediate merges.
+	 * @param parallelism the number of runs that are created or merged
+	 *        concurrently.
+	 * @return this merge-sorter.
+	 * @throws IllegalStateException if the merge-sorter is already opened.
+	 * @throws IllegalArgumentException if <code>parallelism</code> is less
+	 *         than 1.
+	 */
+	public MergeSorter<E> parallelize(ExecutorService executor, int parallelism) throws IllegalStateException, IllegalArgumentException {
+		if (isOpened)
+			throw new IllegalStateException("the merge-sorter is already opened");
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive");
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.shutdownExecutor = false;
+		this.parallelFanIn = Math.max(2, fanIn / parallelism);
+		return this;
+	}
+
+	/**
+	 * Switches the merge-sorter to the parallel mode using a fixed thread
+	 * pool of <code>parallelism</code> threads. The thread pool is created
+	 * when the merge-sorter is opened and shut down at the end of the
+	 * open-phase. This method has to be called before the merge-sorter is
+	 * opened.
+	 *
+	 * @param parallelism the number of threads creating and merging runs.
+	 * @return this merge-sorter.
+	 * @throws IllegalStateException if the merge-sorter is already opened.
+	 * @throws IllegalArgumentException if <code>parallelism</code> is less
+	 *         than 1.
+	 */
+	public MergeSorter<E> parallelize(int parallelism) throws IllegalStateException, IllegalArgumentException {
+		parallelize(null, parallelism);
+		this.shutdownExecutor = true;
+		return this;
+	}
+
+	/**
+	 * Returns the input-buffer size of the queues in the parallel mode. In
+	 * the open-phase, the memory available to the input-buffers is divided
+	 * among <code>parallelism</code> concurrent merges with a fan-in of
+	 * <code>parallelFanIn</code>. After the open-phase the final input-buffer
+	 * size is returned.
+	 *
+	 * @return a parameterless function delivering the current input-buffer
+	 *         size in the parallel mode.
+	 */
+	protected Function<Object, Integer> getParallelInputBufferSize() {
+		return new AbstractFunction<Object, Integer>() {
+			public Integer invoke() {
+				return openPhaseFinished ?
+					finalInputBufferSize :
+					Math.max(blockSize, ((memSize - outputBufferSize) / (parallelism * parallelFanIn) - objectSize) / blockSize * blockSize);
+			}
+		};
+	}
+
+	/**
+	 * Returns the output-buffer size of the queues in the parallel mode. The
+	 * output-buffer of the run creation respectively the intermediate merges
+	 * is divided among <code>parallelism</code> concurrently written queues.
+	 *
+	 * @return a parameterless function delivering the current output-buffer
+	 *         size in the parallel mode.
+	 */
+	protected Function<Object, Integer> getParallelOutputBufferSize() {
+		return new AbstractFunction<Object, Integer>() {
+			public Integer invoke() {
+				return Math.max(blockSize, (runsCreated ? outputBufferSize : firstOutputBufferSize) / parallelism / blockSize * blockSize);
+			}
+		};
+	}
+
+	/**
+	 * Waits for the given future and returns its result. An exception thrown
+	 * by the task is rethrown, checked exceptions are wrapped by a
+	 * {@link WrappingRuntimeException}.
+	 *
+	 * @param <T> the type of the result.
+	 * @param future the future to wait for.
+	 * @return the result of the future.
+	 */
+	protected static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new WrappingRuntimeException(ie);
+		}
+		catch (ExecutionException ee) {
+			if (ee.getCause() instanceof RuntimeException)
+				throw (RuntimeException)ee.getCause();
+			if (ee.getCause() instanceof Error)
+				throw (Error)ee.getCause();
+			throw new WrappingRuntimeException(ee.getCause());
+		}
+	}
+
+	/**
+	 * Waits for all given futures and returns their results. If a task fails,
+	 * the remaining tasks are cancelled and the exception is rethrown.
+	 *
+	 * @param <T> the type of the results.
+	 * @param futures the futures to wait for.
+	 * @param results the list the results are added to.
+	 */
+	protected static <T> void awaitAll(List<Future<T>> futures, List<? super T> results) {
+		try {
+			while (!futures.isEmpty()) {
+				results.add(await(futures.get(0)));
+				futures.remove(0);
+			}
+		}
+		finally {
+			for (Future<T> future : futures)
+				future.cancel(true);
+		}
+	}
+
+	/**
+	 * Performs the open-phase in the parallel mode, i.e., creates the sorted
+	 * runs and merges them concurrently until <code>finalFanIn</code> runs
+	 * are left.
+	 *
+	 * @return the queue containing the runs of the final merge.
+	 */
+	@SuppressWarnings("unchecked") // the chunks only contain elements of the input
+	protected Queue<Cursor<E>> openParallel() {
+		final Function<Object, Integer> inputBufferSize = getParallelInputBufferSize();
+		final Function<Object, Integer> outputBufferSize = getParallelOutputBufferSize();
+		List<Cursor<E>> runs = new ArrayList<Cursor<E>>();
+		LinkedList<Future<Cursor<E>>> pending = new LinkedList<Future<Cursor<E>>>();
+		int chunkSize = Math.max(1, heapSize / (parallelism + 1));
+
+		// run creation: the calling thread fills the next chunk while the
+		// workers sort and write the previous ones
+		while (input.hasNext()) {
+			final Object[] chunk = new Object[chunkSize];
+			int n = 0;
+			while (n < chunkSize && input.hasNext())
+				chunk[n++] = input.next();
+			final int length = n;
+			if (pending.size() == parallelism)
+				runs.add(await(pending.removeFirst()));
+			pending.add(executor.submit(new Callable<Cursor<E>>() {
+				public Cursor<E> call() {
+					Arrays.sort((E[])chunk, 0, length, comparator);
+					Queue<E> queue = newQueue.invoke(inputBufferSize, outputBufferSize);
+					queue.open();
+					for (int i = 0; i < length; i++)
+						queue.enqueue((E)chunk[i]);
+					return new QueueCursor<E>(queue);
+				}
+			}));
+		}
+		awaitAll(pending, runs);
+		runsCreated = true;
+
+		Queue<Cursor<E>> queues = newQueuesQueue.invoke(runs.iterator(), queuesQueueComparator);
+
+		// intermediate merges: disjoint sets of runs are merged concurrently,
+		// the number of merged runs is chosen in a way that exactly
+		// finalFanIn runs are left
+		while (queues.size() > finalFanIn) {
+			int reduction = queues.size() - finalFanIn;
+			List<Future<Cursor<E>>> merges = new ArrayList<Future<Cursor<E>>>();
+			StringBuffer fanIns = verbose ? new StringBuffer() : null;
+			int before = queues.size();
+
+			while (reduction > 0 && merges.size() < parallelism && queues.size() >= 2) {
+				int currentFanIn = Math.min(Math.min(parallelFanIn, reduction + 1), queues.size());
+				final Iterator<E>[] inputs = Queues.toArray(queues, (Iterator<E>[])new Iterator[currentFanIn]);
+				reduction -= currentFanIn - 1;
+				if (verbose)
+					fanIns.append(fanIns.length() == 0 ? "" : ",").append(currentFanIn);
+				merges.add(executor.submit(new Callable<Cursor<E>>() {
+					public Cursor<E> call() {
+						Cursor<E> merger = new Merger<E>(comparator, inputs);
+						Queue<E> queue = newQueue.invoke(inputBufferSize, outputBufferSize);
+						queue.open();
+						Queues.enqueueAll(queue, merger);
+						// the generated queue should not be closed
+						// otherwise all inserted elements can be lost
+						merger.close();
+						return new QueueCursor<E>(queue);
+					}
+				}));
+			}
+			List<Cursor<E>> merged = new ArrayList<Cursor<E>>();
+			awaitAll(merges, merged);
+			for (Cursor<E> run : merged)
+				queues.enqueue(run);
+			if (verbose)
+				System.out.println("parallel merge: fanIns: "+fanIns+"  queues.size(): "+before+" --> "+queues.size());
+		}
+		return queues;
+	}
+
 	/**
 	 * Opens the merge-sorter, i.e., signals the merge-sorter to reserve
 	 * resources, computing and merging the intermediate runs, etc. Before a
@@ -965,6 +1226,33 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 		
 		super.open();
 		
+		if (executor != null || shutdownExecutor) {
+			if (shutdownExecutor)
+				executor = Executors.newFixedThreadPool(parallelism);
+			Queue<Cursor<E>> queues;
+			try {
+				queues = openParallel();
+			}
+			finally {
+				if (shutdownExecutor) {
+					executor.shutdownNow();
+					executor = null;
+				}
+			}
+			if (verbose)
+				System.out.println("final merge: fanIn: "+queues.size());
+			this.cursor = new Merger<E>(
+				comparator,
+				Queues.toArray(
+					queues,
+					(Iterator<E>[])new Iterator[currentFanIn = queues.size()]
+				)
+			);
+			queues.close();
+			openPhaseFinished = true;
+			return;
+		}
+		
 		// queue containing the queues to be merged
 		Queue<Cursor<E>> queues = newQueuesQueue.invoke(
 			new Mapper<Iterator<E>, Cursor<E>>(
@@ -234,6 +234,33 @@ public class BPlusIndexedSet<E> extends IndexedSet<BPlusTree, E> {
     return setChanged;
   }
 
+  /**
+   * Removes and adds the given items through a buffered update of the underlying tree (see
+   * {@link BPlusTree#bufferedUpdate(int)}). The operations are collected in buffers and applied to
+   * the leaves in key order, which is much faster than calling {@link #remove(Object)} and
+   * {@link #add(Object)} for large batches. The removals are issued before the additions. Items
+   * already contained in the set are not added again. Unlike {@link #add(Object)}, the items are
+   * not checked against the table schema.
+   * 
+   * @param removals The items to remove
+   * @param additions The items to add
+   * @param bufferSize The number of operations a buffer holds before it is emptied
+   * @return <code>true</code> if the set changed
+   */
+  public boolean bufferedUpdate(Collection<?> removals, Collection<? extends E> additions,
+      int bufferSize) {
+    BPlusTree.BufferedUpdate update = mTree.bufferedUpdate(bufferSize);
+    for (Object o : removals)
+      update.remove((o instanceof Entry) ? ((Entry) o).asTuple() : o);
+    for (E e : additions)
+      update.insert((e instanceof Entry) ? ((Entry) e).asTuple() : e);
+    update.close();
+    mSize =
+        mSize.add(BigInteger.valueOf(update.inserted())).subtract(
+            BigInteger.valueOf(update.removed()));
+    return update.inserted() + update.removed() > 0;
+  }
+
   @Override
   public boolean retainAll(Collection<?> c) {
     boolean setChanged = false;
@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -39,14 +40,18 @@ import java.util.Stack;
 import xxl.core.collections.MapEntry;
 import xxl.core.collections.MappedList;
 import xxl.core.collections.containers.Container;
+import xxl.core.collections.queues.ArrayQueue;
+import xxl.core.collections.queues.Queue;
 import xxl.core.cursors.Cursor;
 import xxl.core.cursors.mappers.Mapper;
 import xxl.core.cursors.sources.EmptyCursor;
 import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Constant;
 import xxl.core.functions.Function;
+import xxl.core.functions.Functional.NullaryFunction;
 import xxl.core.io.converters.BooleanConverter;
 import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.DeltaConverter;
 import xxl.core.io.converters.IntegerConverter;
 import xxl.core.io.converters.MeasuredConverter;
 import xxl.core.predicates.AbstractPredicate;
@@ -58,6 +63,10 @@ import xxl.core.predicates.Predicate;
  * Comput. Surv. 11(2), 121-137, 1979.
  */
 public class BPlusTree extends Tree {
+    /**
+     * The default maximum number of buffers of a {@link BufferedUpdate}.
+     */
+    public static final int DEFAULT_MAX_BUFFER_NODES = 1024;
     /**
      * This declares the block size of the underlying external storage. This
      * field is initialized finally in the constructor by the value given from
@@ -121,6 +130,28 @@ public class BPlusTree extends Tree {
      * from or into the external storage.
      */
     protected NodeConverter nodeConverter;
+    /**
+     * The format of compressed leaves or <tt>null</tt> if the leaves are
+     * written with the {@link #dataConverter}.
+     * 
+     * @see #compressLeaves(DeltaConverter)
+     */
+    protected CompressedLeafFormat leafFormat = null;
+    /**
+     * The maximal size (in bytes) of the page of a compressed leaf. It leaves
+     * room for one entry of maximal size, because the page of a leaf grows
+     * when its first entry is removed.
+     * 
+     * @see CompressedLeafFormat#size(List)
+     */
+    protected int maxLeafSize;
+    /**
+     * The minimal size (in bytes) of the page of a compressed leaf. Both
+     * halves of a split page are larger.
+     * 
+     * @see CompressedLeafFormat#size(List)
+     */
+    protected int minLeafSize;
     /**
      * This <tt>Function</tt> is used to get the key of a data object.
      * Example: <code><pre>
@@ -239,7 +270,12 @@ public class BPlusTree extends Tree {
         this.createKeyRange = createKeyRange;
         int space = this.BLOCK_SIZE - nodeConverter.headerSize();
         this.B_IndexNode = space / nodeConverter.indexEntrySize();
-        this.B_LeafNode = space / nodeConverter.leafEntrySize();
+        if (leafFormat != null) {
+            this.maxLeafSize = space - leafFormat.maxEntrySize();
+            this.minLeafSize = Math.max(0, (int) (minCapacityRatio * maxLeafSize) - 2 * leafFormat.maxEntrySize());
+            space = maxLeafSize;
+        }
+        this.B_LeafNode = (space - nodeConverter.leafOverhead()) / nodeConverter.leafEntrySize();
         this.D_IndexNode = (int) (minCapacityRatio * this.B_IndexNode);
         this.D_LeafNode = (int) (minCapacityRatio * this.B_LeafNode);
         Function getDescriptor = new AbstractFunction() {
@@ -252,12 +288,14 @@ public class BPlusTree extends Tree {
         Predicate overflows = new AbstractPredicate() {
             public boolean invoke(Object o) {
                 Node node = (Node) o;
-                return node.number() > (node.level() == 0 ? B_LeafNode : B_IndexNode);
+                return !fits(node.entries, node.level());
             }
         };
         Predicate underflows = new AbstractPredicate() {
             public boolean invoke(Object o) {
                 Node node = (Node) o;
+                if (node.level() == 0 && leafFormat != null)
+                    return leafFormat.size(node.entries) < minLeafSize;
                 return node.number() < (node.level() == 0 ? D_LeafNode : D_IndexNode);
             }
         };
@@ -750,6 +788,106 @@ public class BPlusTree extends Tree {
     protected NodeConverter createNodeConverter() {
         return new NodeConverter();
     }
+    /**
+     * Enables the compressed leaf format. The data objects of a leaf are
+     * written with the given <tt>DeltaConverter</tt>, each relative to its
+     * predecessor, and protected by a checksum (see
+     * {@link CompressedLeafFormat}). A leaf overflows when its encoded page
+     * does not fit into a block any more, so it holds as many entries as
+     * their differences allow. For example a
+     * {@link xxl.core.io.converters.LongDeltaConverter} stores sorted
+     * <tt>long</tt> keys with small gaps in one to three bytes, so a leaf
+     * holds several times more entries and the tree gets shallower. The
+     * {@link #B_LeafNode capacity} of the leaves is only estimated from
+     * {@link DeltaConverter#getMaxDeltaSize()}.
+     * Read leaves are decoded on the first access to their entries.
+     * <p>
+     * The method has to be called before the tree is initialized, and a tree
+     * has to be reopened with the same setting.
+     * 
+     * @param dataDeltaConverter
+     *            the converter writing the data objects of a leaf
+     * @return the <tt>BPlusTree</tt> itself
+     * @throws IllegalStateException
+     *             if the tree has already been initialized
+     */
+    public BPlusTree compressLeaves(DeltaConverter dataDeltaConverter) {
+        if (dataConverter != null)
+            throw new IllegalStateException("leaf compression has to be enabled before the tree is initialized");
+        leafFormat = createLeafFormat(dataDeltaConverter);
+        return this;
+    }
+    /**
+     * Returns whether the given entries fit into one node of the given level.
+     * The entries of a compressed leaf fit if their page is not larger than
+     * {@link #maxLeafSize}.
+     * 
+     * @param entries
+     *            the entries of a node
+     * @param level
+     *            the level of the node
+     * @return <tt>true</tt> if the node does not overflow
+     */
+    protected boolean fits(List entries, int level) {
+        if (level > 0)
+            return entries.size() <= B_IndexNode;
+        if (leafFormat == null)
+            return entries.size() <= B_LeafNode;
+        return CompressedLeafFormat.OVERHEAD + entries.size() * leafFormat.maxEntrySize() <= maxLeafSize
+                || leafFormat.size(entries) <= maxLeafSize;
+    }
+    /**
+     * Returns the position that splits the given entries of a node of the
+     * given level into two halves. The entries of a compressed leaf are split
+     * into two pages of about the same size.
+     * 
+     * @param entries
+     *            the entries of a node
+     * @param level
+     *            the level of the node
+     * @return the first position of the second half
+     */
+    protected int middle(List entries, int level) {
+        return level == 0 && leafFormat != null ? leafFormat.middle(entries) : (entries.size() + 1) / 2;
+    }
+    /**
+     * Returns whether the insertion of one entry into the given leaf may
+     * cause an overflow.
+     * 
+     * @param leaf
+     *            a leaf of the tree
+     * @return <tt>true</tt> if the leaf may overflow
+     */
+    protected boolean isFull(Node leaf) {
+        if (leafFormat == null)
+            return leaf.number() >= B_LeafNode;
+        // an entry changes the size of its successor
+        return leafFormat.size(leaf.entries) + 2 * leafFormat.maxEntrySize() > maxLeafSize;
+    }
+    /**
+     * Returns whether the removal of one entry from the given leaf may cause
+     * an underflow.
+     * 
+     * @param leaf
+     *            a leaf of the tree
+     * @return <tt>true</tt> if the leaf may underflow
+     */
+    protected boolean isSparse(Node leaf) {
+        if (leafFormat == null)
+            return leaf.number() <= D_LeafNode;
+        return leafFormat.size(leaf.entries) - 2 * leafFormat.maxEntrySize() < minLeafSize;
+    }
+    /**
+     * Creates the format of compressed leaves for the given converter of data
+     * objects.
+     * 
+     * @param dataDeltaConverter
+     *            the converter writing the data objects of a leaf
+     * @return a new <tt>CompressedLeafFormat</tt>
+     */
+    protected CompressedLeafFormat createLeafFormat(DeltaConverter dataDeltaConverter) {
+        return new CompressedLeafFormat(dataDeltaConverter);
+    }
     /**
      * Gives the <tt>NodeConverter</tt> used by the <tt>BPlusTree</tt>.
      * 
@@ -1133,6 +1271,739 @@ public class BPlusTree extends Tree {
         reorg = false;
         return ret;
     }
+    /**
+     * Starts a buffered update of this tree that follows the buffer technique
+     * of Arge (see {@link xxl.core.indexStructures.rtrees.BufferedRtree}).
+     * Insertions and removals are collected in buffers and pushed down level
+     * by level when a buffer fills. At the lowest buffer level they are sorted
+     * by key and merged into the leaves: every leaf that receives operations
+     * is reached by one descent, its entries and the operations on its key
+     * range are merged in one pass, and an overflow or underflow of the leaf
+     * is treated once afterwards, e.g., an overflowing leaf is split into as
+     * many leaves as needed.
+     * <p>
+     * The buffers are attached to the nodes of the upper levels of the tree as
+     * they are when the update starts. Each node of the levels down to the
+     * lowest buffer level gets a buffer, as long as there are at most
+     * <tt>maxBufferNodes</tt> of these nodes. Nodes split or merged while the
+     * buffered operations are applied keep their old buffers, which only
+     * partition the key space, so the structure of the tree may change freely.
+     * Operations on the same key are applied in the order they were issued.
+     * In duplicate mode the operations of a buffer are applied one by one in
+     * key order.
+     * <p>
+     * Queries see the buffered operations only after they have been applied,
+     * e.g. by {@link BufferedUpdate#flush()}.
+     * 
+     * @param newBuffer
+     *            creates the queues used as buffers. The queues have to be FIFO
+     *            queues. Queues stored in containers need a converter for the
+     *            operations, see {@link Update#converter(Converter)}
+     * @param bufferSize
+     *            the number of operations a buffer holds before it is emptied
+     * @param maxBufferNodes
+     *            the maximum number of buffers
+     * @return a new buffered update of this tree
+     * @throws IllegalArgumentException
+     *             if <tt>bufferSize</tt> or <tt>maxBufferNodes</tt> is less
+     *             than 1
+     */
+    public BufferedUpdate bufferedUpdate(NullaryFunction<Queue<Update>> newBuffer, int bufferSize, int maxBufferNodes) {
+        return new BufferedUpdate(newBuffer, bufferSize, maxBufferNodes);
+    }
+    /**
+     * Starts a buffered update of this tree with at most
+     * {@link #DEFAULT_MAX_BUFFER_NODES} buffers.
+     * 
+     * @param newBuffer
+     *            creates the queues used as buffers
+     * @param bufferSize
+     *            the number of operations a buffer holds before it is emptied
+     * @return a new buffered update of this tree
+     * @see #bufferedUpdate(NullaryFunction, int, int)
+     */
+    public BufferedUpdate bufferedUpdate(NullaryFunction<Queue<Update>> newBuffer, int bufferSize) {
+        return bufferedUpdate(newBuffer, bufferSize, DEFAULT_MAX_BUFFER_NODES);
+    }
+    /**
+     * Starts a buffered update of this tree whose buffers are kept in main
+     * memory.
+     * 
+     * @param bufferSize
+     *            the number of operations a buffer holds before it is emptied
+     * @param maxBufferNodes
+     *            the maximum number of buffers
+     * @return a new buffered update of this tree
+     * @see #bufferedUpdate(NullaryFunction, int, int)
+     */
+    public BufferedUpdate bufferedUpdate(int bufferSize, int maxBufferNodes) {
+        return bufferedUpdate(new NullaryFunction<Queue<Update>>() {
+            public Queue<Update> invoke() {
+                return new ArrayQueue<Update>();
+            }
+        }, bufferSize, maxBufferNodes);
+    }
+    /**
+     * Starts a buffered update of this tree whose at most
+     * {@link #DEFAULT_MAX_BUFFER_NODES} buffers are kept in main memory.
+     * 
+     * @param bufferSize
+     *            the number of operations a buffer holds before it is emptied
+     * @return a new buffered update of this tree
+     * @see #bufferedUpdate(NullaryFunction, int, int)
+     */
+    public BufferedUpdate bufferedUpdate(int bufferSize) {
+        return bufferedUpdate(bufferSize, DEFAULT_MAX_BUFFER_NODES);
+    }
+    /**
+     * An insertion or removal collected by a {@link BufferedUpdate}.
+     */
+    public static class Update {
+        /**
+         * <tt>true</tt> for an insertion, <tt>false</tt> for a removal.
+         */
+        protected boolean insert;
+        /**
+         * The object to insert or remove.
+         */
+        protected Object data;
+        /**
+         * Creates a new operation.
+         * 
+         * @param insert
+         *            <tt>true</tt> for an insertion, <tt>false</tt> for a
+         *            removal
+         * @param data
+         *            the object to insert or remove
+         */
+        public Update(boolean insert, Object data) {
+            this.insert = insert;
+            this.data = data;
+        }
+        /**
+         * Returns whether the operation is an insertion.
+         * 
+         * @return <tt>true</tt> for an insertion, <tt>false</tt> for a
+         *         removal
+         */
+        public boolean isInsert() {
+            return insert;
+        }
+        /**
+         * Returns the object to insert or remove.
+         * 
+         * @return the object of the operation
+         */
+        public Object data() {
+            return data;
+        }
+        /**
+         * Returns a converter for operations whose objects are serialized by
+         * the given converter.
+         * 
+         * @param dataConverter
+         *            the converter of the objects
+         * @return a converter for operations
+         */
+        public static Converter<Update> converter(final Converter dataConverter) {
+            return new Converter<Update>() {
+                public Update read(DataInput dataInput, Update object) throws IOException {
+                    boolean insert = dataInput.readBoolean();
+                    return new Update(insert, dataConverter.read(dataInput));
+                }
+                public void write(DataOutput dataOutput, Update object) throws IOException {
+                    dataOutput.writeBoolean(object.insert);
+                    dataConverter.write(dataOutput, object.data);
+                }
+            };
+        }
+    }
+    /**
+     * A node of the buffer hierarchy of a {@link BufferedUpdate}. It holds the
+     * buffer of a node of the tree and the maximum keys of the subtrees of its
+     * children.
+     */
+    protected class BufferNode {
+        /**
+         * The buffered operations.
+         */
+        protected Queue<Update> buffer;
+        /**
+         * The maximum keys of the children's subtrees, or <tt>null</tt> if
+         * this node is on the lowest buffer level.
+         */
+        protected Comparable[] separators;
+        /**
+         * The buffer nodes of the children.
+         */
+        protected BufferNode[] children;
+        /**
+         * Creates a new buffer node with an empty buffer.
+         * 
+         * @param buffer
+         *            the buffer of the node
+         */
+        protected BufferNode(Queue<Update> buffer) {
+            this.buffer = buffer;
+        }
+        /**
+         * Returns the child whose subtree contains the given key.
+         * 
+         * @param key
+         *            the key
+         * @return the child buffer node
+         */
+        protected BufferNode child(Comparable key) {
+            int low = 0, high = separators.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (separators[middle].compareTo(key) < 0)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return children[low];
+        }
+    }
+    /**
+     * A buffered update of a <tt>BPlusTree</tt> created by
+     * {@link BPlusTree#bufferedUpdate(NullaryFunction, int)}. Operations are
+     * added by {@link #insert(Object)} and {@link #remove(Object)} and are
+     * pushed into the tree when buffers fill. {@link #flush()} applies all
+     * buffered operations. An update is not thread-safe.
+     */
+    public class BufferedUpdate {
+        /**
+         * Creates the buffers.
+         */
+        protected NullaryFunction<Queue<Update>> newBuffer;
+        /**
+         * The number of operations a buffer holds before it is emptied.
+         */
+        protected int bufferSize;
+        /**
+         * The maximum number of buffer nodes.
+         */
+        protected int maxBufferNodes;
+        /**
+         * The buffer node of the root.
+         */
+        protected BufferNode root;
+        /**
+         * The number of buffer nodes.
+         */
+        protected int bufferNodes = 0;
+        /**
+         * The number of buffered operations.
+         */
+        protected long pending = 0;
+        /**
+         * The number of applied insertions.
+         */
+        protected long inserted = 0;
+        /**
+         * The number of successful removals.
+         */
+        protected long removed = 0;
+        /**
+         * The number of insertions that were rejected, because the tree does
+         * not allow duplicates and the key was already present, and of
+         * removals that found no object.
+         */
+        protected long rejected = 0;
+        /**
+         * The number of buffers that have been emptied.
+         */
+        protected long bufferEmptyings = 0;
+        /**
+         * Creates the buffer hierarchy for the current upper levels of the
+         * tree.
+         * 
+         * @param newBuffer
+         *            creates the buffers
+         * @param bufferSize
+         *            the number of operations a buffer holds before it is
+         *            emptied
+         * @param maxBufferNodes
+         *            the maximum number of buffer nodes
+         * @throws IllegalArgumentException
+         *             if <tt>bufferSize</tt> or <tt>maxBufferNodes</tt> is
+         *             less than 1
+         */
+        protected BufferedUpdate(NullaryFunction<Queue<Update>> newBuffer, int bufferSize, int maxBufferNodes) {
+            if (bufferSize < 1)
+                throw new IllegalArgumentException("the buffer size has to be positive");
+            if (maxBufferNodes < 1)
+                throw new IllegalArgumentException("the number of buffer nodes has to be positive");
+            this.newBuffer = newBuffer;
+            this.bufferSize = bufferSize;
+            this.maxBufferNodes = maxBufferNodes;
+            this.root = newBufferNode();
+            if (rootEntry() == null || height() < 2)
+                return;
+            List<BufferNode> level = new ArrayList<BufferNode>();
+            List<IndexEntry> entries = new ArrayList<IndexEntry>();
+            level.add(root);
+            entries.add((IndexEntry) rootEntry());
+            // descend while the next level of index nodes gets buffers
+            while (entries.get(0).level() > 1) {
+                List<Node> nodes = new ArrayList<Node>(entries.size());
+                int children = 0;
+                for (IndexEntry entry : entries) {
+                    Node node = (Node) entry.get(true);
+                    nodes.add(node);
+                    children += node.number();
+                }
+                if (bufferNodes + children > maxBufferNodes)
+                    break;
+                List<BufferNode> nextLevel = new ArrayList<BufferNode>(children);
+                List<IndexEntry> nextEntries = new ArrayList<IndexEntry>(children);
+                for (int i = 0; i < nodes.size(); i++) {
+                    Node node = nodes.get(i);
+                    BufferNode bufferNode = level.get(i);
+                    bufferNode.separators = new Comparable[node.number()];
+                    bufferNode.children = new BufferNode[node.number()];
+                    for (int j = 0; j < node.number(); j++) {
+                        IndexEntry child = (IndexEntry) node.getEntry(j);
+                        bufferNode.separators[j] = child.separator().sepValue();
+                        bufferNode.children[j] = newBufferNode();
+                        nextLevel.add(bufferNode.children[j]);
+                        nextEntries.add(child);
+                    }
+                }
+                level = nextLevel;
+                entries = nextEntries;
+            }
+        }
+        /**
+         * Creates a new buffer node.
+         * 
+         * @return the new buffer node
+         */
+        protected BufferNode newBufferNode() {
+            bufferNodes++;
+            return new BufferNode(newBuffer.invoke());
+        }
+        /**
+         * Adds an insertion of the given object.
+         * 
+         * @param data
+         *            the object to insert
+         */
+        public void insert(Object data) {
+            add(new Update(true, data));
+        }
+        /**
+         * Adds a removal of the given object. An object is removed as by
+         * {@link BPlusTree#remove(Object)}.
+         * 
+         * @param data
+         *            the object to remove
+         */
+        public void remove(Object data) {
+            add(new Update(false, data));
+        }
+        /**
+         * Adds an operation to the root buffer and empties the buffers that
+         * are full.
+         * 
+         * @param update
+         *            the operation
+         */
+        protected void add(Update update) {
+            root.buffer.enqueue(update);
+            pending++;
+            if (root.buffer.size() >= bufferSize)
+                empty(root, false);
+        }
+        /**
+         * Empties the buffer of the given node. On the lowest buffer level the
+         * operations are applied to the tree. Otherwise they are distributed to
+         * the buffers of the children, whose full buffers are emptied
+         * afterwards, or all buffers of the subtree, if <tt>all</tt> is set.
+         * 
+         * @param node
+         *            the buffer node
+         * @param all
+         *            signals whether all buffers of the subtree have to be
+         *            emptied
+         */
+        protected void empty(BufferNode node, boolean all) {
+            if (node.buffer.isEmpty() && !all)
+                return;
+            bufferEmptyings++;
+            if (node.children == null) {
+                apply(node.buffer);
+                return;
+            }
+            while (!node.buffer.isEmpty()) {
+                Update update = node.buffer.dequeue();
+                node.child(key(update.data)).buffer.enqueue(update);
+            }
+            for (BufferNode child : node.children)
+                if (all ? !child.buffer.isEmpty() || child.children != null : child.buffer.size() >= bufferSize)
+                    empty(child, all);
+        }
+        /**
+         * Applies the operations of a buffer on the lowest buffer level to
+         * the tree in ascending key order. The sort is stable, so operations
+         * on the same key keep their order. Each leaf receiving operations is
+         * processed by {@link #merge(List, int)}; in duplicate mode the
+         * operations are applied one by one.
+         * 
+         * @param buffer
+         *            the buffer
+         */
+        protected void apply(Queue<Update> buffer) {
+            List<Update> updates = new ArrayList<Update>(buffer.size());
+            while (!buffer.isEmpty())
+                updates.add(buffer.dequeue());
+            Collections.sort(updates, new Comparator<Update>() {
+                public int compare(Update u1, Update u2) {
+                    return key(u1.data).compareTo(key(u2.data));
+                }
+            });
+            int from = 0;
+            while (from < updates.size()) {
+                if (duplicate || rootEntry() == null) {
+                    // an empty tree gets its root leaf by a single insertion
+                    Update update = updates.get(from++);
+                    if (update.insert) {
+                        BPlusTree.this.insert(update.data);
+                        inserted++;
+                    }
+                    else if (rootEntry() != null && BPlusTree.this.remove(update.data) != null)
+                        removed++;
+                    else
+                        rejected++;
+                    pending--;
+                }
+                else
+                    from = merge(updates, from);
+            }
+        }
+        /**
+         * Merges the operations starting at position <tt>from</tt> into the
+         * leaf whose key range contains the key of the first of them. The
+         * leaf is reached by one descent and all operations on its key range
+         * are merged with its entries in one pass. Insertions of present keys
+         * and removals of absent keys are rejected during the merge.
+         * Afterwards the leaf is split into as many leaves as needed, or
+         * rebalanced with a sibling if it underflows.
+         * 
+         * @param updates
+         *            the operations sorted by key
+         * @param from
+         *            the position of the first operation to apply
+         * @return the position of the first operation belonging to another
+         *         leaf
+         */
+        protected int merge(List<Update> updates, int from) {
+            Comparable key = key(updates.get(from).data);
+            Stack path = new Stack();
+            IndexEntry indexEntry = (IndexEntry) rootEntry();
+            Node node = (Node) down(path, indexEntry);
+            while (node.level > 0) {
+                int index = node.search(key);
+                index = index >= 0 ? index : Math.min(-index - 1, node.number() - 1);
+                indexEntry = (IndexEntry) node.getEntry(index);
+                node = (Node) down(path, indexEntry);
+            }
+            // the rightmost leaf takes all larger keys
+            Comparable upper = node.nextNeighbor() == null ? null : indexEntry.separator().sepValue();
+            KeyRange bounds = (KeyRange) rootDescriptor;
+            boolean boundRemoved = false;
+            List entries = node.entries;
+            List merged = new ArrayList(entries.size());
+            int next = 0, to = from;
+            while (to < updates.size() && (upper == null || key(updates.get(to).data).compareTo(upper) <= 0)) {
+                key = key(updates.get(to).data);
+                while (next < entries.size() && key(entries.get(next)).compareTo(key) < 0)
+                    merged.add(entries.get(next++));
+                Object present = next < entries.size() && key(entries.get(next)).compareTo(key) == 0 ? entries.get(next++) : null;
+                for (; to < updates.size() && key(updates.get(to).data).compareTo(key) == 0; to++) {
+                    Update update = updates.get(to);
+                    if (update.insert == (present != null))
+                        rejected++;
+                    else if (update.insert) {
+                        present = update.data;
+                        bounds.union(key);
+                        inserted++;
+                    }
+                    else {
+                        present = null;
+                        boundRemoved |= key.compareTo(bounds.minBound()) == 0 || key.compareTo(bounds.maxBound()) == 0;
+                        removed++;
+                    }
+                    pending--;
+                }
+                if (present != null)
+                    merged.add(present);
+            }
+            while (next < entries.size())
+                merged.add(entries.get(next++));
+            entries.clear();
+            entries.addAll(merged);
+
+            if (upper == null && !merged.isEmpty())
+                raiseSeparators(path, key(node.getLast()));
+            if (node.overflows())
+                split(path);
+            else if (path.size() == 1 && merged.isEmpty()) {
+                up(path);
+                rootEntry.remove();
+                rootEntry = null;
+                rootDescriptor = null;
+            }
+            else if (path.size() > 1 && node.underflows())
+                rebalance(path);
+            else
+                BPlusTree.this.update(path);
+            while (!path.isEmpty())
+                up(path);
+            if (boundRemoved && rootEntry != null)
+                updateBounds();
+            return to;
+        }
+        /**
+         * Enlarges the separators of the index entries on the given path to
+         * the rightmost leaf, if they are smaller than the given key. Nodes
+         * whose entries are changed are written.
+         * 
+         * @param path
+         *            the path from the root to the rightmost leaf
+         * @param key
+         *            the largest key of the rightmost leaf
+         */
+        protected void raiseSeparators(Stack path, Comparable key) {
+            for (int i = 0; i < path.size(); i++) {
+                IndexEntry entry = (IndexEntry) ((MapEntry) path.get(i)).getKey();
+                if (entry.separator != null && entry.separator.sepValue().compareTo(key) < 0) {
+                    entry.separator.updateSepValue(key);
+                    if (i > 0) {
+                        MapEntry parent = (MapEntry) path.get(i - 1);
+                        ((Node) parent.getValue()).separatorsChanged();
+                        ((IndexEntry) parent.getKey()).update((Node) parent.getValue(), false);
+                    }
+                }
+            }
+        }
+        /**
+         * Splits the overflowing node on top of the given path into as few
+         * nodes as possible that are filled evenly. The index entries of the
+         * new nodes are posted to the parent node whose overflow is treated
+         * in the same way. The root is split by growing the tree. Every
+         * changed node is written and removed from the path.
+         * 
+         * @param path
+         *            the path from the root to the overflowing node
+         */
+        protected void split(Stack path) {
+            while (((Node) node(path)).overflows()) {
+                IndexEntry indexEntry = (IndexEntry) indexEntry(path);
+                Node node = (Node) node(path);
+                int number = node.number();
+                List<Integer> bounds = new ArrayList<Integer>();
+                bounds.add(0);
+                if (node.level == 0 && leafFormat != null)
+                    partition(node.entries, 0, number, bounds);
+                else {
+                    int capacity = node.level == 0 ? B_LeafNode : B_IndexNode;
+                    int parts = (number + capacity - 1) / capacity;
+                    for (int part = 1; part <= parts; part++)
+                        bounds.add(part * number / parts);
+                }
+                int parts = bounds.size() - 1;
+                Container container = node.new SplitInfo(path).determineContainer();
+                List<IndexEntry> newEntries = new ArrayList<IndexEntry>(parts - 1);
+                IndexEntry next = node.nextNeighbor;
+                // the nodes are created from right to left, so each one is
+                // written before a node referring to it
+                for (int part = parts - 1; part > 0; part--) {
+                    Node newNode = (Node) createNode(node.level);
+                    List moved = node.entries.subList(bounds.get(part), bounds.get(part + 1));
+                    newNode.entries.addAll(moved);
+                    moved.clear();
+                    newNode.nextNeighbor = next;
+                    next = ((IndexEntry) createIndexEntry(node.level + 1)).initialize(separator(newNode.getLast()));
+                    next.initialize(container, container.insert(newNode));
+                    newEntries.add(next);
+                }
+                node.nextNeighbor = next;
+                path.pop();
+                if (path.isEmpty()) {
+                    if (indexEntry.separator == null)
+                        indexEntry.separator = (Separator) newEntries.get(0).separator().clone();
+                    path.push(grow(indexEntry));
+                }
+                Node parent = (Node) node(path);
+                indexEntry.separator = (Separator) separator(node.getLast()).clone();
+                parent.separatorsChanged();
+                for (IndexEntry newEntry : newEntries)
+                    parent.grow(newEntry);
+                indexEntry.update(node, true);
+            }
+            BPlusTree.this.update(path);
+            up(path);
+        }
+        /**
+         * Divides the given range of the entries of a compressed leaf into
+         * pages of about the same size, halving the range until every part
+         * fits into a leaf. The end positions of the parts are appended to
+         * the given list.
+         * 
+         * @param entries
+         *            the entries of a compressed leaf
+         * @param from
+         *            the first position of the range
+         * @param to
+         *            the end position of the range
+         * @param bounds
+         *            the list the end positions of the parts are added to
+         */
+        protected void partition(List entries, int from, int to, List<Integer> bounds) {
+            List range = entries.subList(from, to);
+            if (fits(range, 0))
+                bounds.add(to);
+            else {
+                int middle = from + middle(range, 0);
+                partition(entries, from, middle, bounds);
+                partition(entries, middle, to, bounds);
+            }
+        }
+        /**
+         * Repairs the underflow of the leaf on top of the given path. The
+         * entries of the leaf and of a sibling are combined into one leaf, or
+         * divided evenly between both if they do not fit into one. The
+         * possible underflow of the parent node is treated by
+         * {@link BPlusTree#treatUnderflow(Stack)}.
+         * 
+         * @param path
+         *            the path from the root to the underflowing leaf
+         */
+        protected void rebalance(Stack path) {
+            MapEntry pathEntry = (MapEntry) path.pop();
+            Node parent = (Node) node(path);
+            int index = Math.max(0, parent.search((IndexEntry) pathEntry.getKey()));
+            if (index == 0)
+                index++;
+            IndexEntry leftEntry = (IndexEntry) parent.getEntry(index - 1);
+            IndexEntry rightEntry = (IndexEntry) parent.getEntry(index);
+            Node left = leftEntry == pathEntry.getKey() ? (Node) pathEntry.getValue() : (Node) leftEntry.get(false);
+            Node right = rightEntry == pathEntry.getKey() ? (Node) pathEntry.getValue() : (Node) rightEntry.get(false);
+            List entries = new ArrayList(left.entries);
+            entries.addAll(right.entries);
+            if (fits(entries, 0)) {
+                left.entries.addAll(right.entries);
+                left.nextNeighbor = right.nextNeighbor;
+                leftEntry.separator = rightEntry.separator;
+                parent.remove(index);
+                rightEntry.remove();
+            }
+            else {
+                int middle = middle(entries, 0);
+                left.entries.clear();
+                right.entries.clear();
+                left.entries.addAll(entries.subList(0, middle));
+                right.entries.addAll(entries.subList(middle, entries.size()));
+                leftEntry.separator = (Separator) separator(left.getLast()).clone();
+                rightEntry.update(right, true);
+            }
+            leftEntry.update(left, true);
+            parent.separatorsChanged();
+            treatUnderflow(path);
+        }
+        /**
+         * Recomputes the bounds of the root descriptor from the smallest and
+         * the largest key of the tree after one of them has been removed.
+         */
+        protected void updateBounds() {
+            Node node = (Node) rootEntry().get(true);
+            while (node.level > 0)
+                node = (Node) ((IndexEntry) node.getFirst()).get(true);
+            Comparable min = key(node.getFirst());
+            node = (Node) rootEntry().get(true);
+            while (node.level > 0)
+                node = (Node) ((IndexEntry) node.getLast()).get(true);
+            rootDescriptor = createKeyRange(min, key(node.getLast()));
+        }
+        /**
+         * Applies all buffered operations to the tree.
+         */
+        public void flush() {
+            empty(root, true);
+        }
+        /**
+         * Applies all buffered operations to the tree and closes the buffers.
+         */
+        public void close() {
+            flush();
+            close(root);
+        }
+        /**
+         * Closes the buffers of the given subtree of the buffer hierarchy.
+         * 
+         * @param node
+         *            the root of the subtree
+         */
+        protected void close(BufferNode node) {
+            node.buffer.close();
+            if (node.children != null)
+                for (BufferNode child : node.children)
+                    close(child);
+        }
+        /**
+         * Returns the number of buffered operations that have not been
+         * applied yet.
+         * 
+         * @return the number of pending operations
+         */
+        public long pending() {
+            return pending;
+        }
+        /**
+         * Returns the number of applied insertions.
+         * 
+         * @return the number of insertions
+         */
+        public long inserted() {
+            return inserted;
+        }
+        /**
+         * Returns the number of objects removed from the tree.
+         * 
+         * @return the number of removals
+         */
+        public long removed() {
+            return removed;
+        }
+        /**
+         * Returns the number of rejected operations, i.e. insertions of keys
+         * already present in a tree without duplicates and removals of
+         * objects that were not found.
+         * 
+         * @return the number of rejected operations
+         */
+        public long rejected() {
+            return rejected;
+        }
+        /**
+         * Returns the number of buffers of this update.
+         * 
+         * @return the number of buffer nodes
+         */
+        public int bufferNodes() {
+            return bufferNodes;
+        }
+        /**
+         * Returns the number of times a buffer has been emptied.
+         * 
+         * @return the number of buffer emptyings
+         */
+        public long bufferEmptyings() {
+            return bufferEmptyings;
+        }
+    }
     /**
      * This class describes the index entries of the <tt>BPlusTree</tt> (i.e.
      * the entries of the non-leaf nodes). Each <tt>IndexEntry</tt> refers to
@@ -1494,6 +2365,16 @@ public class BPlusTree extends Tree {
 			
 			return index;
         }
+        /**
+         * Signals that the separators of the <tt>IndexEntries</tt> stored in
+         * this <tt>Node</tt> have been modified in place, i.e., without
+         * replacing the entries of the <tt>Node</tt>. Nodes that keep
+         * additional information about the separation values of their
+         * entries (like the nodes of a {@link PrimitiveKeyBPlusTree}) have
+         * to refresh it. The default implementation does nothing.
+         */
+        protected void separatorsChanged() {
+        }
         /**
          * Searches the given key in this <tt>Node</tt>. The default
          * implementation simply calls the method
@@ -1566,6 +2447,7 @@ public class BPlusTree extends Tree {
             IndexEntry subTreeEntry = (IndexEntry) entries.get(minIndex);
             if ( minIndex  == this.number()-1  && subTreeEntry.separator().compareTo(descriptor) < 0){
             	subTreeEntry.separator.sepValue =  ((Separator)((descriptor).clone())).sepValue;
+            	separatorsChanged();
     			BPlusTree.this.update(path);
             }
             return  subTreeEntry;
@@ -1590,11 +2472,13 @@ public class BPlusTree extends Tree {
         	if(!duplicate){
         		Separator boundary = (Separator)separator(((Node)node(splitInfo.path)).getLast()).clone();
         		((IndexEntry)indexEntry(splitInfo.path)).separator.updateSepValue( boundary.sepValue);
+        		separatorsChanged();
         	}
             grow(newIndexEntry, splitInfo.path);
             if (duplicate){
             	Separator boundary = (Separator)separator(((Node)node(splitInfo.path)).getLast()).clone();
         		((IndexEntry)indexEntry(splitInfo.path)).separator.updateSepValue( boundary.sepValue);
+        		separatorsChanged();
             }    
         }
         /**
@@ -1729,7 +2613,7 @@ public class BPlusTree extends Tree {
     		Node node = (Node) node(path);
     		List newEntries = null;
             int number = node.number();
-            int index = (number+1) / 2;
+            int index = middle(node.entries, node.level);
             if (this.level() ==  0 && duplicate){
             	int dupIndex = node.number()-1;
             	Comparable pivotEntry = separator(node.entries.get(dupIndex)).sepValue(); 
@@ -1858,6 +2742,8 @@ public class BPlusTree extends Tree {
             		Comparable sepLastValue = ((Separator)separator(node.getLast()).clone()).sepValue();
             		if (sepLastValue.compareTo(indexEntry.separator().sepValue()) < 0){
             			indexEntry.separator.updateSepValue(sepLastValue); // update
+            			if (!path.isEmpty())
+            				((Node)node(path)).separatorsChanged();
             			return !path.isEmpty();
             		}
             		else return false;
@@ -1920,6 +2806,7 @@ public class BPlusTree extends Tree {
                             mergeInfo.siblingNode(), true);
                 }
             }
+            parentNode.separatorsChanged();
             return true;
         }
         /**
@@ -1956,6 +2843,27 @@ public class BPlusTree extends Tree {
             }
             
             MergeInfo mergeInfo = new MergeInfo(indexEntry, this, index, path);    
+            if (this.level == 0 && leafFormat != null) {
+                // compressed leaves are merged if their page fits, otherwise
+                // their entries are divided by size
+                Node left = leftNode != null ? leftNode : this;
+                Node right = leftNode != null ? this : rightNode;
+                List entries = new ArrayList(left.entries);
+                entries.addAll(right.entries);
+                boolean isMerge = fits(entries, 0);
+                int middle = isMerge ? entries.size() : middle(entries, 0);
+                left.entries.clear();
+                left.entries.addAll(entries.subList(0, middle));
+                right.entries.clear();
+                right.entries.addAll(entries.subList(middle, entries.size()));
+                if (isMerge)
+                    left.nextNeighbor = right.nextNeighbor;
+                if (leftNode != null)
+                    mergeInfo.initialize(leftSibling, leftNode, isMerge);
+                else
+                    mergeInfo.initialize(rightSibling, rightNode, isMerge);
+                return mergeInfo;
+            }
             // merge left
             if (leftNode != null) { 
                 int D = leftNode.level() == 0 ? D_LeafNode : D_IndexNode;
@@ -2872,6 +3780,10 @@ public class BPlusTree extends Tree {
          */
         protected void readEntries(DataInput input, Node node, int number)
                 throws IOException {
+            if (node.level == 0 && leafFormat != null) {
+                node.entries = leafFormat.read(input, number);
+                return;
+            }
             for (int i = 0; i < number; i++) {
                 Object entry;
                 if (node.level == 0)
@@ -2896,6 +3808,10 @@ public class BPlusTree extends Tree {
          */
         protected void writeEntries(DataOutput output, Node node)
                 throws IOException {
+            if (node.level == 0 && leafFormat != null) {
+                leafFormat.write(output, node.entries);
+                return;
+            }
             Iterator entries = node.entries();
             while (entries.hasNext()) {
                 Object entry = entries.next();
@@ -2918,7 +3834,17 @@ public class BPlusTree extends Tree {
         }
 
         protected int leafEntrySize() {
-            return dataConverter.getMaxObjectSize();
+            return leafFormat != null ? leafFormat.entrySize() : dataConverter.getMaxObjectSize();
+        }
+        /**
+         * Computes the size (in bytes) a leaf needs in addition to its header
+         * and entries. It is only positive for compressed leaves.
+         * 
+         * @return the additional size of a leaf
+         * @see CompressedLeafFormat#overhead()
+         */
+        protected int leafOverhead() {
+            return leafFormat != null ? leafFormat.overhead() : 0;
         }
         /**
          * Computes the size (in bytes) of the <tt>Node's</tt> header which
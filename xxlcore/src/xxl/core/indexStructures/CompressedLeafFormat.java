@@ -0,0 +1,337 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.zip.CRC32;
+
+import xxl.core.io.converters.DeltaConverter;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * The compressed format of leaf pages used by {@link BPlusTree},
+ * {@link MVBTree} and
+ * {@link xxl.core.indexStructures.vLengthBPlusTree.VariableLengthBPlusTree}.
+ * The entries of a leaf are written with a {@link DeltaConverter}, every
+ * entry relative to its predecessor, into a payload that is stored
+ * together with its length and a CRC-32 checksum:
+ * <pre>
+ *   int payloadLength | byte[payloadLength] payload | int crc32(payload)
+ * </pre>
+ * The checksum is verified when a page is read. The size of a page depends
+ * on the differences between its entries, so a tree decides overflows of
+ * compressed leaves with {@link #size(List)} and uses {@link #entrySize()}
+ * only to estimate their capacity. The entries themselves are
+ * decoded lazily: {@link #read(DataInput, int)} returns a list that knows its
+ * size and decodes the payload on the first access to an entry, so nodes
+ * that are read only to follow a link are never decoded.
+ */
+public class CompressedLeafFormat {
+
+	/**
+	 * The number of bytes of a page in addition to the payload.
+	 */
+	public static final int OVERHEAD = 2 * IntegerConverter.SIZE;
+
+	/**
+	 * The converter writing the entries relative to their predecessors.
+	 */
+	protected DeltaConverter converter;
+
+	/**
+	 * Creates a new compressed leaf format.
+	 *
+	 * @param converter the converter writing the entries relative to their
+	 *        predecessors.
+	 */
+	public CompressedLeafFormat(DeltaConverter converter) {
+		this.converter = converter;
+	}
+
+	/**
+	 * Returns the converter writing the entries.
+	 *
+	 * @return the delta converter of this format.
+	 */
+	public DeltaConverter converter() {
+		return converter;
+	}
+
+	/**
+	 * Returns the number of bytes a page needs in addition to
+	 * {@link #entrySize()} per entry: the length, the checksum and the
+	 * extra bytes of the first entry, which is written without predecessor.
+	 *
+	 * @return the size of the fixed part of a page.
+	 */
+	public int overhead() {
+		return OVERHEAD + Math.max(0, converter.getMaxObjectSize() - converter.getMaxDeltaSize());
+	}
+
+	/**
+	 * Returns the number of bytes of an entry whose difference to its
+	 * predecessor is within the bound of the converter.
+	 *
+	 * @return the usual maximal size of an entry.
+	 */
+	public int entrySize() {
+		return converter.getMaxDeltaSize();
+	}
+
+	/**
+	 * Returns the maximal number of bytes of any entry in a page, which is
+	 * needed by an entry that differs too much from its predecessor.
+	 *
+	 * @return the maximal size of an entry.
+	 */
+	public int maxEntrySize() {
+		return converter.getMaxObjectSize();
+	}
+
+	/**
+	 * Returns the number of bytes the given entries occupy in a page.
+	 *
+	 * @param entries the entries of a leaf.
+	 * @return the size of the page including {@link #OVERHEAD}.
+	 */
+	@SuppressWarnings("unchecked")
+	public int size(List entries) {
+		int size = OVERHEAD;
+		Object previous = null;
+		for (Object entry : entries) {
+			size += converter.getDeltaSize(previous, entry);
+			previous = entry;
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the position that splits the given entries into two pages of
+	 * about the same size. The entries in front of the position occupy at
+	 * least half of the payload.
+	 *
+	 * @param entries the entries of a leaf, at least two.
+	 * @return a position between <tt>1</tt> and <tt>entries.size()-1</tt>.
+	 */
+	@SuppressWarnings("unchecked")
+	public int middle(List entries) {
+		int half = (size(entries) - OVERHEAD + 1) / 2;
+		int size = 0, index = 0;
+		Object previous = null;
+		for (Object entry : entries) {
+			if (size >= half)
+				break;
+			size += converter.getDeltaSize(previous, entry);
+			previous = entry;
+			index++;
+		}
+		return Math.max(1, Math.min(index, entries.size() - 1));
+	}
+
+	/**
+	 * Writes the given entries as a compressed page.
+	 *
+	 * @param dataOutput the stream to write the page to.
+	 * @param entries the entries of a leaf.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@SuppressWarnings("unchecked")
+	public void write(DataOutput dataOutput, List entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(bytes);
+		Object previous = null;
+		for (Object entry : entries) {
+			converter.writeDelta(payload, previous, entry);
+			previous = entry;
+		}
+		payload.flush();
+		byte[] buffer = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(buffer, 0, buffer.length);
+		dataOutput.writeInt(buffer.length);
+		dataOutput.write(buffer);
+		dataOutput.writeInt((int)crc.getValue());
+	}
+
+	/**
+	 * Reads a compressed page and verifies its checksum. The entries are
+	 * decoded on the first access to the returned list.
+	 *
+	 * @param dataInput the stream to read the page from.
+	 * @param number the number of entries of the page.
+	 * @return a list of the entries of the page.
+	 * @throws IOException if an I/O error occurs or the checksum does not match.
+	 */
+	public List read(DataInput dataInput, int number) throws IOException {
+		int length = dataInput.readInt();
+		if (length < 0)
+			throw new IOException("illegal payload length "+length);
+		byte[] buffer = new byte[length];
+		dataInput.readFully(buffer);
+		int checksum = dataInput.readInt();
+		CRC32 crc = new CRC32();
+		crc.update(buffer, 0, length);
+		if ((int)crc.getValue() != checksum)
+			throw new IOException("checksum mismatch in compressed leaf page");
+		return new DecodingList(buffer, number);
+	}
+
+	/**
+	 * A list of the entries of a compressed page that decodes the payload on
+	 * the first access. Afterwards all operations are delegated to an
+	 * <tt>ArrayList</tt> holding the decoded entries.
+	 */
+	protected class DecodingList extends AbstractList<Object> {
+
+		/**
+		 * The payload, <tt>null</tt> after decoding.
+		 */
+		protected byte[] payload;
+
+		/**
+		 * The number of entries encoded in the payload.
+		 */
+		protected int number;
+
+		/**
+		 * The decoded entries, <tt>null</tt> before decoding.
+		 */
+		protected ArrayList<Object> entries;
+
+		/**
+		 * Creates a new list of the entries encoded in the given payload.
+		 *
+		 * @param payload the payload of a page.
+		 * @param number the number of entries in the payload.
+		 */
+		protected DecodingList(byte[] payload, int number) {
+			this.payload = payload;
+			this.number = number;
+		}
+
+		/**
+		 * Returns the decoded entries and decodes them if necessary.
+		 *
+		 * @return the decoded entries.
+		 */
+		@SuppressWarnings("unchecked")
+		protected ArrayList<Object> entries() {
+			if (entries == null) {
+				ArrayList<Object> decoded = new ArrayList<Object>(number+1);
+				DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+				try {
+					Object previous = null;
+					for (int i = 0; i < number; i++)
+						decoded.add(previous = converter.readDelta(input, previous));
+				}
+				catch (IOException e) {
+					throw new WrappingRuntimeException(e);
+				}
+				entries = decoded;
+				payload = null;
+			}
+			return entries;
+		}
+
+		/**
+		 * Returns <tt>true</tt> if the payload has been decoded.
+		 *
+		 * @return <tt>true</tt> if the entries have been decoded.
+		 */
+		public boolean isDecoded() {
+			return entries != null;
+		}
+
+		@Override
+		public int size() {
+			return entries == null ? number : entries.size();
+		}
+
+		@Override
+		public Object get(int index) {
+			return entries().get(index);
+		}
+
+		@Override
+		public Object set(int index, Object element) {
+			return entries().set(index, element);
+		}
+
+		@Override
+		public void add(int index, Object element) {
+			entries().add(index, element);
+		}
+
+		@Override
+		public Object remove(int index) {
+			return entries().remove(index);
+		}
+
+		@Override
+		public boolean addAll(int index, Collection<? extends Object> collection) {
+			return entries().addAll(index, collection);
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends Object> collection) {
+			return entries().addAll(collection);
+		}
+
+		@Override
+		public void clear() {
+			entries().clear();
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return entries().iterator();
+		}
+
+		@Override
+		public ListIterator<Object> listIterator(int index) {
+			return entries().listIterator(index);
+		}
+
+		@Override
+		public List<Object> subList(int fromIndex, int toIndex) {
+			return entries().subList(fromIndex, toIndex);
+		}
+	}
+}
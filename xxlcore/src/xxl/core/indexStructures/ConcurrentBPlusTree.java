@@ -0,0 +1,745 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.sources.EmptyCursor;
+import xxl.core.functions.Function;
+import xxl.core.functions.Functional.NullaryFunction;
+import xxl.core.io.converters.MeasuredConverter;
+import xxl.core.predicates.Predicate;
+
+/**
+ * A {@link BPlusTree} that can be queried and modified by several threads at
+ * the same time. The implementation follows the B-link tree of Lehman and
+ * Yao ("Efficient Locking for Concurrent Operations on B-Trees", ACM TODS
+ * 6(4), 650-670, 1981): the {@link BPlusTree.Node#nextNeighbor()} reference
+ * that every node of a <tt>BPlusTree</tt> already holds is used as the
+ * right link of the B-link tree.
+ * <p>
+ * Queries do not acquire any latches. They descend from the root reading
+ * one node at a time and move right along the <tt>nextNeighbor</tt> chain
+ * whenever the searched key is larger than the largest key of the reached
+ * node. As a split of the <tt>BPlusTree</tt> writes the new right node
+ * before the split node and the split node before its parent, a reader that
+ * reaches a node through an outdated parent always finds the moved entries
+ * to the right. Merges and redistributions cannot be detected this way.
+ * They are made visible by a structure version that is odd while such an
+ * operation is in progress; point queries are repeated and range queries
+ * reposition themselves behind the last returned key when the version has
+ * changed.
+ * <p>
+ * Insertions and removals that only touch a single leaf are performed
+ * optimistically: the writer holds the shared side of a structure lock and
+ * a latch on the leaf only. Operations that split, merge or redistribute
+ * nodes, that have to enlarge a separator or that change the root are
+ * repeated while holding the exclusive side of the structure lock and are
+ * then performed by the sequential algorithms of the <tt>BPlusTree</tt>.
+ * <p>
+ * The tree requires a container that is safe for concurrent use and returns
+ * a private copy of a node on every <tt>get</tt>, e.g., a
+ * {@link xxl.core.collections.containers.SynchronizedContainer} decorating a
+ * {@link xxl.core.collections.containers.io.ConverterContainer}. Duplicate
+ * keys are not supported.
+ * 
+ * @see BPlusTree
+ */
+public class ConcurrentBPlusTree extends BPlusTree {
+    /**
+     * The default number of latches used to protect the leaves of the tree.
+     */
+    public static final int DEFAULT_LATCHES = 64;
+    /**
+     * Serializes the structure modifications. Optimistic writers hold the
+     * read lock, writers changing the structure of the tree hold the write
+     * lock.
+     */
+    protected final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    /**
+     * The latches of the leaves. A leaf is protected by the latch determined
+     * by the hash code of its id.
+     */
+    protected final ReentrantLock[] latches;
+    /**
+     * The structure version. It is odd while entries are moved between
+     * existing nodes (i.e., while a merge or redistribution may take place).
+     */
+    protected final AtomicLong structureVersion = new AtomicLong();
+    /**
+     * The root entry as it is seen by concurrent readers.
+     */
+    protected volatile IndexEntry root;
+    /**
+     * Counts the optimistic modifications of the tree.
+     */
+    protected final AtomicLong optimisticModifications = new AtomicLong();
+    /**
+     * Counts the modifications of the tree which required the structure lock.
+     */
+    protected final AtomicLong exclusiveModifications = new AtomicLong();
+    /**
+     * Counts the restarts of queries caused by concurrent merges or
+     * redistributions.
+     */
+    protected final AtomicLong restarts = new AtomicLong();
+
+    /**
+     * Creates a new <tt>ConcurrentBPlusTree</tt> with a minimal capacity
+     * ratio of 0.5 and {@link #DEFAULT_LATCHES} leaf latches.
+     * 
+     * @param blockSize
+     *            the block size of the underlying storage
+     */
+    public ConcurrentBPlusTree(int blockSize) {
+        this(blockSize, 0.5);
+    }
+    /**
+     * Creates a new <tt>ConcurrentBPlusTree</tt> with
+     * {@link #DEFAULT_LATCHES} leaf latches.
+     * 
+     * @param blockSize
+     *            the block size of the underlying storage
+     * @param minCapacityRatio
+     *            the minimal capacity ratio of the tree's nodes
+     */
+    public ConcurrentBPlusTree(int blockSize, double minCapacityRatio) {
+        this(blockSize, minCapacityRatio, DEFAULT_LATCHES);
+    }
+    /**
+     * Creates a new <tt>ConcurrentBPlusTree</tt>.
+     * 
+     * @param blockSize
+     *            the block size of the underlying storage
+     * @param minCapacityRatio
+     *            the minimal capacity ratio of the tree's nodes
+     * @param latches
+     *            the number of latches used to protect the leaves
+     */
+    public ConcurrentBPlusTree(int blockSize, double minCapacityRatio, int latches) {
+        super(blockSize, minCapacityRatio, false);
+        if (latches < 1)
+            throw new IllegalArgumentException("Illegal number of latches: " + latches);
+        this.latches = new ReentrantLock[latches];
+        for (int i = 0; i < latches; i++)
+            this.latches[i] = new ReentrantLock();
+    }
+    /**
+     * Initializes the tree and publishes the given root entry to the
+     * readers.
+     * 
+     * @see BPlusTree#initialize(BPlusTree.IndexEntry, Descriptor, Function,
+     *      Function, Function, MeasuredConverter, MeasuredConverter,
+     *      Function, Function, Function, Function)
+     */
+    public BPlusTree initialize(IndexEntry rootEntry,
+            Descriptor rootDescriptor, Function getKey, Function getContainer,
+            Function determineContainer, MeasuredConverter keyConverter,
+            MeasuredConverter dataConverter, Function createSeparator,
+            Function createKeyRange, Function getSplitMinRatio,
+            Function getSplitMaxRatio) {
+        super.initialize(rootEntry, rootDescriptor, getKey, getContainer,
+                determineContainer, keyConverter, dataConverter,
+                createSeparator, createKeyRange, getSplitMinRatio,
+                getSplitMaxRatio);
+        root = rootEntry;
+        return this;
+    }
+    /**
+     * Creates a new root and publishes it to the readers. The new root is
+     * written to the container before it is published, hence a reader
+     * always finds a valid root node.
+     * 
+     * @param entry
+     *            the entry which is inserted into the new root
+     * @return a <tt>MapEntry</tt> containing the new root entry and node
+     */
+    protected Entry grow(Object entry) {
+        Entry result = super.grow(entry);
+        root = (IndexEntry) rootEntry;
+        return result;
+    }
+    /**
+     * Inserts an object into the tree. If the object belongs to a leaf that
+     * neither overflows nor requires a larger separator the leaf is modified
+     * while holding its latch only. Otherwise the insertion is performed
+     * under the exclusive structure lock.
+     * 
+     * @param data
+     *            the data to insert
+     * @param descriptor
+     *            the separator of the data
+     * @param targetLevel
+     *            the tree-level into which <tt>data</tt> has to be inserted
+     */
+    protected void insert(Object data, Descriptor descriptor, int targetLevel) {
+        if (targetLevel == 0 && insertOptimistic(data, ((Separator) descriptor).sepValue()))
+            return;
+        structureLock.writeLock().lock();
+        try {
+            super.insert(data, descriptor, targetLevel);
+            exclusiveModifications.incrementAndGet();
+        }
+        finally {
+            root = (IndexEntry) rootEntry;
+            structureLock.writeLock().unlock();
+        }
+    }
+    /**
+     * Tries to insert the given object into its leaf while holding the
+     * shared structure lock and the latch of the leaf.
+     * 
+     * @param data
+     *            the data to insert
+     * @param key
+     *            the key of the data
+     * @return <tt>true</tt> if the data was inserted, <tt>false</tt> if the
+     *         insertion has to be repeated under the exclusive structure lock
+     * @throws IllegalArgumentException
+     *             if an entry with the same key is already stored in the tree
+     */
+    protected boolean insertOptimistic(Object data, Comparable key) {
+        structureLock.readLock().lock();
+        try {
+            if (rootEntry == null || ((KeyRange) rootDescriptor).minBound().compareTo(key) > 0)
+                return false;
+            IndexEntry leafEntry = writeTarget(key);
+            if (leafEntry == null)
+                return false;
+            ReentrantLock latch = latch(leafEntry);
+            latch.lock();
+            try {
+                Node leaf = (Node) leafEntry.get(true);
+                // the leaf must not be changed if the insertion is repeated,
+                // because a buffered container may return the same node
+                if (isFull(leaf))
+                    return false;
+                leaf.grow(data);
+                leafEntry.update(leaf, true);
+                optimisticModifications.incrementAndGet();
+                return true;
+            }
+            finally {
+                latch.unlock();
+            }
+        }
+        finally {
+            structureLock.readLock().unlock();
+        }
+    }
+    /**
+     * Removes the first object which has the key described by
+     * <tt>descriptor</tt> and fulfills <tt>test</tt>. If the object is not
+     * the last entry of its leaf and the leaf does not underflow afterwards
+     * it is removed while holding the latch of the leaf only. Otherwise the
+     * removal is performed under the exclusive structure lock.
+     * 
+     * @param descriptor
+     *            specifies the query
+     * @param targetLevel
+     *            the level on which the query has to stop
+     * @param test
+     *            a predicate the object to remove has to fulfill
+     * @return the removed object or <tt>null</tt> if there was no such
+     *         object
+     */
+    public Object remove(Descriptor descriptor, int targetLevel, Predicate test) {
+        if (targetLevel == 0 && descriptor instanceof Separator) {
+            Object[] result = removeOptimistic(((Separator) descriptor).sepValue(), test);
+            if (result != null)
+                return result[0];
+        }
+        structureLock.writeLock().lock();
+        structureVersion.incrementAndGet();
+        try {
+            Object removed = super.remove(descriptor, targetLevel, test);
+            exclusiveModifications.incrementAndGet();
+            return removed;
+        }
+        finally {
+            root = (IndexEntry) rootEntry;
+            structureVersion.incrementAndGet();
+            structureLock.writeLock().unlock();
+        }
+    }
+    /**
+     * Tries to remove an object with the given key from its leaf while
+     * holding the shared structure lock and the latch of the leaf.
+     * 
+     * @param key
+     *            the key of the object to remove
+     * @param test
+     *            a predicate the object to remove has to fulfill
+     * @return an array holding the removed object (or <tt>null</tt> if no
+     *         such object exists), or <tt>null</tt> if the removal has to be
+     *         repeated under the exclusive structure lock
+     */
+    protected Object[] removeOptimistic(Comparable key, Predicate test) {
+        structureLock.readLock().lock();
+        try {
+            if (rootEntry == null)
+                return new Object[1];
+            IndexEntry leafEntry = writeTarget(key);
+            if (leafEntry == null)
+                return null;
+            ReentrantLock latch = latch(leafEntry);
+            latch.lock();
+            try {
+                Node leaf = (Node) leafEntry.get(true);
+                int index = leaf.search(key);
+                if (index < 0 || !test.invoke(leaf.getEntry(index)))
+                    return new Object[1];
+                if (index == leaf.number() - 1 || isSparse(leaf))
+                    return null;
+                Object removed = leaf.remove(index);
+                leafEntry.update(leaf, true);
+                optimisticModifications.incrementAndGet();
+                return new Object[] {removed};
+            }
+            finally {
+                latch.unlock();
+            }
+        }
+        finally {
+            structureLock.readLock().unlock();
+        }
+    }
+    /**
+     * Replaces <tt>oldData</tt> by <tt>newData</tt> under the exclusive
+     * structure lock.
+     * 
+     * @param oldData
+     *            the object which has to be replaced
+     * @param newData
+     *            the object which should replace <tt>oldData</tt>
+     */
+    public void update(Object oldData, Object newData) {
+        structureLock.writeLock().lock();
+        structureVersion.incrementAndGet();
+        try {
+            super.update(oldData, newData);
+        }
+        finally {
+            structureVersion.incrementAndGet();
+            structureLock.writeLock().unlock();
+        }
+    }
+    /**
+     * Replaces the object described by <tt>descriptor</tt> by
+     * <tt>newData</tt> under the exclusive structure lock.
+     * 
+     * @param descriptor
+     *            the descriptor of the object which has to be updated
+     * @param newData
+     *            the object which should replace the old object
+     */
+    public void update(Descriptor descriptor, Object newData) {
+        structureLock.writeLock().lock();
+        structureVersion.incrementAndGet();
+        try {
+            super.update(descriptor, newData);
+        }
+        finally {
+            structureVersion.incrementAndGet();
+            structureLock.writeLock().unlock();
+        }
+    }
+    /**
+     * Removes all entries of the tree under the exclusive structure lock.
+     */
+    public void clear() {
+        structureLock.writeLock().lock();
+        structureVersion.incrementAndGet();
+        try {
+            super.clear();
+        }
+        finally {
+            root = null;
+            structureVersion.incrementAndGet();
+            structureLock.writeLock().unlock();
+        }
+    }
+    /**
+     * Starts a buffered update of this tree. The buffered operations are
+     * merged into each leaf under the exclusive structure lock.
+     * 
+     * @param newBuffer
+     *            creates the queues used as buffers
+     * @param bufferSize
+     *            the number of operations a buffer holds before it is emptied
+     * @param maxBufferNodes
+     *            the maximum number of buffers
+     * @return a new buffered update of this tree
+     */
+    public BufferedUpdate bufferedUpdate(NullaryFunction<Queue<Update>> newBuffer, int bufferSize, int maxBufferNodes) {
+        return new BufferedUpdate(newBuffer, bufferSize, maxBufferNodes) {
+            protected int merge(List<Update> updates, int from) {
+                structureLock.writeLock().lock();
+                structureVersion.incrementAndGet();
+                try {
+                    int to = super.merge(updates, from);
+                    exclusiveModifications.incrementAndGet();
+                    return to;
+                }
+                finally {
+                    ConcurrentBPlusTree.this.root = (IndexEntry) rootEntry;
+                    structureVersion.incrementAndGet();
+                    structureLock.writeLock().unlock();
+                }
+            }
+        };
+    }
+    /**
+     * Searches the object with the given key without acquiring any latches.
+     * The search is repeated if a merge or redistribution took place in the
+     * meantime.
+     * 
+     * @param key
+     *            the key of the searched object
+     * @return the object with the given key or <tt>null</tt> if there is no
+     *         such object
+     */
+    public Object exactMatchQuery(Comparable key) {
+        while (true) {
+            long version = stableVersion();
+            try {
+                Node leaf = leaf(key);
+                Object result = null;
+                if (leaf != null) {
+                    int index = leaf.search(key);
+                    if (index >= 0)
+                        result = leaf.getEntry(index);
+                }
+                if (structureVersion.get() == version)
+                    return result;
+            }
+            catch (NoSuchElementException e) {
+                // the node has been removed by a merge
+            }
+            restarts.incrementAndGet();
+        }
+    }
+    /**
+     * Returns a lazy cursor pointing to all entries whose keys are contained
+     * in <tt>queryDescriptor</tt>. Queries on the leaf level are answered by
+     * a {@link ConcurrentQueryCursor} that may run in parallel with
+     * modifications of the tree. Queries on upper levels and queries of a
+     * thread holding the exclusive structure lock are answered by the
+     * sequential algorithm of the <tt>BPlusTree</tt>.
+     * 
+     * @param queryDescriptor
+     *            a <tt>Separator</tt> or <tt>KeyRange</tt> describing the
+     *            query
+     * @param targetLevel
+     *            the tree-level to provide the answer-objects
+     * @return a lazy <tt>Cursor</tt> pointing to all response objects
+     */
+    public Cursor query(Descriptor queryDescriptor, int targetLevel) {
+        if (targetLevel != 0 || structureLock.isWriteLockedByCurrentThread())
+            return super.query(queryDescriptor, targetLevel);
+        if (queryDescriptor == null)
+            return new EmptyCursor();
+        KeyRange range;
+        if (queryDescriptor instanceof KeyRange)
+            range = (KeyRange) queryDescriptor;
+        else {
+            Comparable key = ((Separator) queryDescriptor).sepValue();
+            range = createKeyRange(key, key);
+        }
+        return new ConcurrentQueryCursor(range.minBound(), range.maxBound());
+    }
+    /**
+     * Returns the number of insertions and removals that were performed by
+     * modifying a single leaf.
+     * 
+     * @return the number of optimistic modifications
+     */
+    public long optimisticModifications() {
+        return optimisticModifications.get();
+    }
+    /**
+     * Returns the number of insertions and removals that were performed
+     * under the exclusive structure lock.
+     * 
+     * @return the number of exclusive modifications
+     */
+    public long exclusiveModifications() {
+        return exclusiveModifications.get();
+    }
+    /**
+     * Returns the number of queries (or parts of range queries) that had to
+     * be repeated because of a concurrent merge or redistribution.
+     * 
+     * @return the number of restarts
+     */
+    public long restarts() {
+        return restarts.get();
+    }
+    /**
+     * Waits until no merge or redistribution is in progress and returns the
+     * current structure version.
+     * 
+     * @return an even structure version
+     */
+    protected long stableVersion() {
+        long version;
+        while (((version = structureVersion.get()) & 1) != 0)
+            Thread.yield();
+        return version;
+    }
+    /**
+     * Returns the latch protecting the node referred by the given entry.
+     * 
+     * @param indexEntry
+     *            the entry referring to a leaf
+     * @return the latch of the leaf
+     */
+    protected ReentrantLock latch(IndexEntry indexEntry) {
+        return latches[(indexEntry.id().hashCode() & 0x7fffffff) % latches.length];
+    }
+    /**
+     * Returns the largest key (or separator) stored in the given node.
+     * 
+     * @param node
+     *            a node of the tree
+     * @return the largest key of the node
+     */
+    protected Comparable maxKey(Node node) {
+        return separator(node.getLast()).sepValue();
+    }
+    /**
+     * Moves right along the <tt>nextNeighbor</tt> references until a node is
+     * reached whose largest key is not smaller than the given key.
+     * 
+     * @param node
+     *            the node to start from
+     * @param key
+     *            the searched key
+     * @return the node responsible for the key
+     */
+    protected Node moveRight(Node node, Comparable key) {
+        while (node.nextNeighbor != null
+                && (node.number() == 0 || maxKey(node).compareTo(key) < 0))
+            node = (Node) node.nextNeighbor.get(true);
+        return node;
+    }
+    /**
+     * Descends from the published root to the leaf responsible for the given
+     * key without acquiring any latches.
+     * 
+     * @param key
+     *            the searched key
+     * @return the leaf responsible for the key or <tt>null</tt> if the tree
+     *         is empty
+     * @throws NoSuchElementException
+     *             if a node on the path has been removed concurrently
+     */
+    protected Node leaf(Comparable key) {
+        IndexEntry indexEntry = root;
+        if (indexEntry == null)
+            return null;
+        Node node = moveRight((Node) indexEntry.get(true), key);
+        while (node.level != 0) {
+            int index = node.search(key);
+            if (index < 0)
+                index = Math.min(-index - 1, node.number() - 1);
+            node = moveRight((Node) ((IndexEntry) node.getEntry(index)).get(true), key);
+        }
+        return node;
+    }
+    /**
+     * Determines the leaf into which an entry with the given key can be
+     * inserted without changing any separator. Has to be called while
+     * holding the structure lock.
+     * 
+     * @param key
+     *            the key of the entry
+     * @return the entry referring to the leaf or <tt>null</tt> if the root is
+     *         a leaf or the key is larger than a separator on the path
+     */
+    protected IndexEntry writeTarget(Comparable key) {
+        IndexEntry indexEntry = (IndexEntry) rootEntry;
+        if (indexEntry.level() == 0)
+            return null;
+        while (indexEntry.level() > 0) {
+            Node node = (Node) indexEntry.get(true);
+            int index = node.search(key);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == node.number())
+                    return null;
+            }
+            indexEntry = (IndexEntry) node.getEntry(index);
+        }
+        return indexEntry;
+    }
+
+    /**
+     * A cursor returning the entries of a key range in ascending order while
+     * the tree is modified concurrently. The cursor reads one leaf at a time
+     * and follows the <tt>nextNeighbor</tt> references. If a merge or
+     * redistribution took place since the last leaf was read, the cursor
+     * descends again from the root behind the last returned key. Each leaf
+     * is read atomically, hence the cursor never returns an entry twice and
+     * returns every entry that was stored in the range during the whole
+     * iteration. The cursor does not support <tt>remove</tt> and
+     * <tt>update</tt>.
+     */
+    public class ConcurrentQueryCursor extends AbstractCursor {
+        /**
+         * The lower bound of the query range.
+         */
+        protected Comparable minKey;
+        /**
+         * The upper bound of the query range.
+         */
+        protected Comparable maxKey;
+        /**
+         * The key of the last returned entry.
+         */
+        protected Comparable lastKey;
+        /**
+         * The qualifying entries of the current leaf.
+         */
+        protected List buffer = new ArrayList();
+        /**
+         * The position of the next entry in {@link #buffer}.
+         */
+        protected int position;
+        /**
+         * The right neighbor of the current leaf.
+         */
+        protected IndexEntry next;
+        /**
+         * The structure version the current leaf was read with.
+         */
+        protected long version;
+        /**
+         * Signals whether a leaf has already been read.
+         */
+        protected boolean started;
+        /**
+         * Signals whether the last qualifying leaf has been read.
+         */
+        protected boolean done;
+
+        /**
+         * Creates a new cursor for the given key range.
+         * 
+         * @param minKey
+         *            the lower bound of the query range
+         * @param maxKey
+         *            the upper bound of the query range
+         */
+        public ConcurrentQueryCursor(Comparable minKey, Comparable maxKey) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+        }
+        /**
+         * Checks whether a next element exists. If the entries of the
+         * current leaf are consumed the next leaf is read.
+         * 
+         * @return <tt>true</tt> if there is a next element and <tt>false</tt>
+         *         otherwise
+         */
+        protected boolean hasNextObject() {
+            while (position == buffer.size()) {
+                if (done)
+                    return false;
+                long current = stableVersion();
+                try {
+                    Node leaf;
+                    if (!started || current != version) {
+                        if (started)
+                            restarts.incrementAndGet();
+                        leaf = leaf(lastKey == null ? minKey : lastKey);
+                    }
+                    else
+                        leaf = (Node) next.get(true);
+                    if (structureVersion.get() != current) {
+                        version = current - 1;
+                        continue;
+                    }
+                    started = true;
+                    version = current;
+                    read(leaf);
+                }
+                catch (NoSuchElementException e) {
+                    // the node has been removed by a merge
+                    version = current - 1;
+                }
+            }
+            return true;
+        }
+        /**
+         * Copies the qualifying entries of the given leaf into the buffer.
+         * 
+         * @param leaf
+         *            the leaf to read
+         */
+        protected void read(Node leaf) {
+            buffer.clear();
+            position = 0;
+            if (leaf == null) {
+                done = true;
+                return;
+            }
+            for (int i = 0; i < leaf.number(); i++) {
+                Object entry = leaf.getEntry(i);
+                Comparable key = key(entry);
+                if (lastKey == null ? key.compareTo(minKey) < 0 : key.compareTo(lastKey) <= 0)
+                    continue;
+                if (key.compareTo(maxKey) > 0) {
+                    done = true;
+                    return;
+                }
+                buffer.add(entry);
+            }
+            next = leaf.nextNeighbor;
+            done = next == null;
+        }
+        /**
+         * Returns the next element.
+         * 
+         * @return the next element
+         */
+        protected Object nextObject() {
+            Object entry = buffer.get(position++);
+            lastKey = key(entry);
+            return entry;
+        }
+    }
+}
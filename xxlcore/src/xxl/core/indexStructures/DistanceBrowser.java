@@ -0,0 +1,322 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures;
+
+import java.util.Arrays;
+
+import xxl.core.collections.queues.DoubleKeyHeap;
+import xxl.core.cursors.AbstractCursor;
+
+/**
+ * An incremental best-first distance browser over the entries of a
+ * {@link Tree}. The browser keeps the index entries and data objects found
+ * so far in a {@link DoubleKeyHeap} ordered by a lower bound of their
+ * distance to the query and always expands the closest candidate. A data
+ * object is returned as soon as it reaches the top of the queue, so the
+ * objects of the tree are delivered in ascending distance to the query and
+ * only the nodes intersecting the search sphere of the last result are
+ * read (see G.R. Hjaltason, H. Samet: Distance Browsing in Spatial
+ * Databases, TODS 24(2), 1999).<p>
+ *
+ * If the number <tt>k</tt> of demanded results is known in advance, the
+ * browser additionally maintains an upper bound of the distance of the
+ * <tt>k</tt>-th nearest neighbor. Whenever a node is expanded, subclasses
+ * report for every entry a distance within which at least one object of
+ * the entry's subtree is guaranteed to lie (the MINMAXDIST of a bounding
+ * rectangle, the distance to a data object, ...). As the entries of a node
+ * are disjoint from each other, from the objects already returned and from
+ * the rest of the queue, the <tt>(k-r)</tt>-th smallest of these distances
+ * is such an upper bound after <tt>r</tt> results have been returned.
+ * Candidates whose lower bound exceeds it are never enqueued.<p>
+ *
+ * Subclasses implement the metric specific part, that is, the bounds of the
+ * root and of the entries of an expanded node. The number of node accesses
+ * and of exact distance computations are counted to allow an evaluation of
+ * the pruning.
+ *
+ * @see RTree#nearestNeighbors(xxl.core.spatial.points.Point, xxl.core.spatial.LpMetric, int)
+ * @see MTree#nearestNeighbors(Object, xxl.core.util.Distance, int)
+ */
+public abstract class DistanceBrowser extends AbstractCursor {
+
+	/**
+	 * The tree browsed by this cursor.
+	 */
+	protected Tree tree;
+
+	/**
+	 * The maximum number of results to deliver.
+	 */
+	protected int k;
+
+	/**
+	 * The priority queue of candidates keyed by the lower bounds of their
+	 * distances. A candidate is either an element returned by
+	 * {@link #indexEntry(Object)} as an index entry or a data object.
+	 */
+	protected DoubleKeyHeap<Object> queue = new DoubleKeyHeap<Object>();
+
+	/**
+	 * An upper bound of the distance of the <tt>k</tt>-th result.
+	 */
+	protected double bound = Double.POSITIVE_INFINITY;
+
+	/**
+	 * The number of results delivered so far.
+	 */
+	protected int results = 0;
+
+	/**
+	 * The number of nodes read from the tree.
+	 */
+	protected long nodeAccesses = 0;
+
+	/**
+	 * The number of exact distance computations.
+	 */
+	protected long distanceComputations = 0;
+
+	/**
+	 * The number of candidates that were discarded without being enqueued.
+	 */
+	protected long prunedEntries = 0;
+
+	/**
+	 * The distance of the element returned by the last call to
+	 * <tt>next</tt>.
+	 */
+	protected double distance = Double.NaN;
+
+	/**
+	 * The distance of the element that will be returned next.
+	 */
+	protected double nextDistance;
+
+	/**
+	 * The upper bounds reported by {@link #enqueue(Object, double, double)}
+	 * during the current node expansion.
+	 */
+	private double[] guarantees = new double[16];
+
+	/**
+	 * The number of valid entries in {@link #guarantees}.
+	 */
+	private int guaranteeCount;
+
+	/**
+	 * Creates a new browser delivering at most <tt>k</tt> elements of the
+	 * given tree.
+	 *
+	 * @param tree the tree to browse.
+	 * @param k the maximum number of results.
+	 * @throws IllegalArgumentException if <tt>k</tt> is not positive.
+	 */
+	public DistanceBrowser(Tree tree, int k) {
+		if (k <= 0)
+			throw new IllegalArgumentException("k must be positive");
+		this.tree = tree;
+		this.k = k;
+	}
+
+	/**
+	 * Creates a new browser delivering all elements of the given tree in
+	 * ascending distance.
+	 *
+	 * @param tree the tree to browse.
+	 */
+	public DistanceBrowser(Tree tree) {
+		this(tree, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Enqueues the root of the tree (or any other start candidates) by
+	 * calling {@link #enqueue(Object, double, double)}. The method is called
+	 * when the cursor is opened.
+	 */
+	protected abstract void enqueueRoot();
+
+	/**
+	 * Returns the index entry a candidate taken from the queue stands for,
+	 * or <tt>null</tt> if the candidate is a data object.
+	 *
+	 * @param candidate a candidate taken from the queue.
+	 * @return the index entry of the candidate or <tt>null</tt>.
+	 */
+	protected abstract Tree.IndexEntry indexEntry(Object candidate);
+
+	/**
+	 * Enqueues the entries of a node that has been read for the given
+	 * candidate by calling {@link #enqueue(Object, double, double)} for each
+	 * of them.
+	 *
+	 * @param candidate the candidate the node belongs to.
+	 * @param node the node referenced by the candidate's index entry.
+	 */
+	protected abstract void expand(Object candidate, Tree.Node node);
+
+	/**
+	 * Offers a candidate to the queue. The candidate is dropped when its
+	 * lower bound exceeds the current bound of the <tt>k</tt>-th result.
+	 * All candidates offered during one expansion must belong to disjoint
+	 * subtrees (or be distinct data objects).
+	 *
+	 * @param candidate the candidate.
+	 * @param minDistance a lower bound of the distance of every object
+	 *        represented by the candidate; the exact distance for a data
+	 *        object.
+	 * @param maxDistance a distance within which at least one object
+	 *        represented by the candidate is guaranteed to lie, or
+	 *        {@link Double#POSITIVE_INFINITY} if no such bound is known.
+	 */
+	protected void enqueue(Object candidate, double minDistance, double maxDistance) {
+		if (minDistance > bound) {
+			prunedEntries++;
+			return;
+		}
+		queue.enqueue(minDistance, candidate);
+		if (maxDistance < bound) {
+			if (guaranteeCount == guarantees.length)
+				guarantees = Arrays.copyOf(guarantees, guaranteeCount << 1);
+			guarantees[guaranteeCount++] = maxDistance;
+		}
+	}
+
+	/**
+	 * Lowers the bound of the <tt>k</tt>-th result using the upper bounds
+	 * reported during the last expansion.
+	 */
+	private void tightenBound() {
+		int missing = k - results;
+		if (guaranteeCount >= missing) {
+			Arrays.sort(guarantees, 0, guaranteeCount);
+			bound = Math.min(bound, guarantees[missing - 1]);
+		}
+		guaranteeCount = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see xxl.core.cursors.AbstractCursor#open()
+	 */
+	@Override
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		enqueueRoot();
+		tightenBound();
+	}
+
+	/* (non-Javadoc)
+	 * @see xxl.core.cursors.AbstractCursor#hasNextObject()
+	 */
+	@Override
+	protected boolean hasNextObject() {
+		if (results >= k)
+			return false;
+		while (!queue.isEmpty()) {
+			double key = queue.peekKey();
+			if (key > bound) {
+				prunedEntries += queue.size();
+				queue.clear();
+				return false;
+			}
+			Tree.IndexEntry indexEntry = indexEntry(queue.peek());
+			if (indexEntry == null) {
+				nextDistance = key;
+				return true;
+			}
+			Object candidate = queue.dequeue();
+			Tree.Node node = indexEntry.get(true);
+			nodeAccesses++;
+			expand(candidate, node);
+			tightenBound();
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see xxl.core.cursors.AbstractCursor#nextObject()
+	 */
+	@Override
+	protected Object nextObject() {
+		results++;
+		distance = nextDistance;
+		return queue.dequeue();
+	}
+
+	/**
+	 * Returns the distance of the element returned by the last call to
+	 * <tt>next</tt>.
+	 *
+	 * @return the distance of the last result.
+	 * @throws IllegalStateException if no element has been returned yet.
+	 */
+	public double distance() {
+		if (results == 0)
+			throw new IllegalStateException("no element has been returned yet");
+		return distance;
+	}
+
+	/**
+	 * Returns the number of nodes read so far.
+	 *
+	 * @return the number of node accesses.
+	 */
+	public long nodeAccesses() {
+		return nodeAccesses;
+	}
+
+	/**
+	 * Returns the number of exact distance computations performed so far.
+	 *
+	 * @return the number of distance computations.
+	 */
+	public long distanceComputations() {
+		return distanceComputations;
+	}
+
+	/**
+	 * Returns the number of candidates discarded without being expanded or
+	 * returned.
+	 *
+	 * @return the number of pruned candidates.
+	 */
+	public long prunedEntries() {
+		return prunedEntries;
+	}
+
+	/* (non-Javadoc)
+	 * @see xxl.core.cursors.AbstractCursor#close()
+	 */
+	@Override
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		queue.clear();
+	}
+}
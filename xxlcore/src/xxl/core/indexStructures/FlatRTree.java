@@ -0,0 +1,770 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import xxl.core.collections.containers.AbstractContainer;
+import xxl.core.collections.containers.Container;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.functions.Function;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.FixedSizeConverter;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.spatial.points.Point;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+import xxl.core.spatial.rectangles.Rectangle;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * An {@link RTree} for main memory workloads whose nodes keep the minimal 
+ * bounding rectangles of their entries as contiguous <tt>double</tt> 
+ * coordinates instead of a collection of entry objects.
+ * <p>
+ * An entry of a two-dimensional <tt>RTree</tt> node consists of an index 
+ * entry or data object, a {@link DoublePointRectangle}, two points and two 
+ * arrays. A node of this tree stores the coordinates of all its entries in a 
+ * single buffer (lower corner followed by upper corner per entry), the ids of 
+ * its child nodes in a second one and, for leaf nodes, the data objects in an 
+ * array or serialized in a byte buffer. The {@link NodeContainer} keeps the 
+ * nodes in this representation either on the heap or in direct 
+ * {@link ByteBuffer}s outside of it, so the number of objects seen by the 
+ * garbage collector grows with the number of nodes and not with the number of 
+ * entries.
+ * <p>
+ * The entry objects of a node are created lazily. {@link Node#query(Descriptor)}
+ * tests the coordinates of the buffers for overlap and creates only the 
+ * entries that are reported. All other accesses to the entries of a node, 
+ * e.g. during insertions, splits and removals, turn the node into an ordinary 
+ * list of entries that is flattened again when the node is written to the 
+ * container. Therefore queries, insertions and removals of {@link Tree} work 
+ * unchanged.
+ * <p>
+ * Nodes of this tree have to be stored in a <tt>NodeContainer</tt> created by 
+ * {@link #heapContainer()} or {@link #directContainer(int, Converter, int)}. 
+ * Query descriptors other than {@link Rectangle}s are processed by the 
+ * default implementation.
+ * 
+ * <pre>
+ * FlatRTree tree = new FlatRTree(2);
+ * tree.initialize(getDescriptor, tree.heapContainer(), 10, 25);
+ * </pre>
+ * 
+ * @see RTree
+ */
+public class FlatRTree extends RTree {
+
+	/** The dimension of the rectangles stored in this tree. */
+	protected int dimension;
+
+	/** Creates a new tree for rectangles of the given dimension.
+	 * 
+	 * @param dimension the dimension of the rectangles
+	 * @throws IllegalArgumentException if <tt>dimension</tt> is less than 1
+	 */
+	public FlatRTree (int dimension) {
+		if (dimension < 1)
+			throw new IllegalArgumentException("the dimension has to be positive");
+		this.dimension = dimension;
+	}
+
+	/** Returns the dimension of the rectangles stored in this tree.
+	 * 
+	 * @return the dimension of the rectangles
+	 */
+	public int dimension () {
+		return dimension;
+	}
+
+	/* (non-Javadoc)
+	 * @see xxl.core.indexStructures.RTree#createNode(int)
+	 */
+	@Override
+	public Tree.Node createNode (int level) {
+		return new Node().initialize(level, new FlatEntries());
+	}
+
+	/** Creates a container keeping the nodes of this tree in primitive arrays on 
+	 *  the heap. The data objects of the leaves are kept as they are.
+	 * 
+	 * @return a new container for the nodes of this tree
+	 */
+	public NodeContainer heapContainer () {
+		return new NodeContainer();
+	}
+
+	/** Creates a container keeping the nodes of this tree in direct byte buffers
+	 *  outside of the heap. The data objects of the leaves are serialized using 
+	 *  the given converter into slots of <tt>dataSize</tt> bytes.
+	 * 
+	 * @param capacity the maximum number of entries of a node
+	 * @param dataConverter the converter serializing the data objects
+	 * @param dataSize the maximum number of bytes of a serialized data object
+	 * @return a new container for the nodes of this tree
+	 * @throws IllegalArgumentException if <tt>capacity</tt> or <tt>dataSize</tt> 
+	 *         is not positive
+	 */
+	public NodeContainer directContainer (int capacity, Converter dataConverter, int dataSize) {
+		return new NodeContainer(capacity, dataConverter, dataSize);
+	}
+
+	/** Returns the rectangle of an entry of the node on the given level.
+	 * 
+	 * @param entry the entry
+	 * @param level the level of the node containing the entry
+	 * @return the rectangle of the entry
+	 */
+	protected Rectangle rectangle (Object entry, int level) {
+		return (Rectangle)(level > 0 ? ((IndexEntry)entry).descriptor() : descriptor(entry));
+	}
+
+	/** The class used to represent leaf- and non-leaf nodes of <tt>FlatRTree</tt>.
+	 *  The entries of a node are always kept in a {@link FlatEntries} collection.
+	 */
+	public class Node extends RTree.Node {
+
+		/** Returns an iterator pointing to the entries whose rectangles overlap 
+		 *  <tt>queryDescriptor</tt>. As long as the entries of the node have not 
+		 *  been materialized, the overlap tests run on the coordinate buffer and
+		 *  only the reported entries are created.
+		 * 
+		 * @param queryDescriptor the descriptor describing the query
+		 * @return an iterator pointing to entries whose rectangles overlap with <tt>queryDescriptor</tt>
+		 */
+		@Override
+		public Iterator query (Descriptor queryDescriptor) {
+			FlatEntries flat = (FlatEntries)entries;
+			if (flat.isMaterialized() || !(queryDescriptor instanceof Rectangle))
+				return super.query(queryDescriptor);
+			return flat.query((Rectangle)queryDescriptor);
+		}
+	}
+
+	/** The entries of a node. Initially, the entries are represented by the 
+	 *  buffers of a page of the {@link NodeContainer}. Every access except for 
+	 *  {@link #size()} and {@link #query(Rectangle)} materializes the entries 
+	 *  into a list of entry objects that is used from then on.
+	 */
+	protected class FlatEntries extends AbstractCollection {
+
+		/** The level of the node on the page. */
+		protected int level;
+
+		/** The number of entries on the page. */
+		protected int size;
+
+		/** The coordinates of the entries: <tt>2*dimension</tt> values per entry, 
+		 *  the lower corner followed by the upper corner.
+		 */
+		protected DoubleBuffer coordinates;
+
+		/** The ids of the child nodes, if the node is an index node. */
+		protected LongBuffer ids;
+
+		/** The data objects of a leaf kept on the heap. */
+		protected Object[] data;
+
+		/** The serialized data objects of a leaf kept in a direct buffer. */
+		protected ByteBuffer serializedData;
+
+		/** The container the page belongs to. */
+		protected NodeContainer container;
+
+		/** The number of the page in the container. */
+		protected int page = -1;
+
+		/** The list of entry objects, or <tt>null</tt> if the entries have not 
+		 *  been materialized yet.
+		 */
+		protected List materialized;
+
+		/** Creates a new, empty collection of entries. */
+		protected FlatEntries () {
+			materialized = new ArrayList();
+		}
+
+		/** Creates a collection of entries backed by the same buffers as the given
+		 *  unmaterialized entries.
+		 * 
+		 * @param page the entries to share the buffers with
+		 */
+		protected FlatEntries (FlatEntries page) {
+			this.level = page.level;
+			this.size = page.size;
+			this.coordinates = page.coordinates;
+			this.ids = page.ids;
+			this.data = page.data;
+			this.serializedData = page.serializedData;
+			this.container = page.container;
+			this.page = page.page;
+		}
+
+		/** Returns whether the entries have been materialized.
+		 * 
+		 * @return <tt>true</tt> if the entries are kept as a list of objects
+		 */
+		public boolean isMaterialized () {
+			return materialized != null;
+		}
+
+		/** Returns the list of entry objects. If the entries have not been 
+		 *  materialized yet, the objects are created from the page.
+		 * 
+		 * @return the list of entry objects
+		 */
+		protected List materialize () {
+			if (materialized == null) {
+				List list = new ArrayList(Math.max(size, 1));
+				for (int i = 0; i < size; i++)
+					list.add(entry(i));
+				materialized = list;
+				coordinates = null;
+				ids = null;
+				data = null;
+				serializedData = null;
+			}
+			return materialized;
+		}
+
+		/** Creates the object of the entry at the given position of the page.
+		 * 
+		 * @param index the position of the entry
+		 * @return a new index entry or the data object
+		 */
+		protected Object entry (int index) {
+			if (level > 0)
+				return ((IndexEntry)createIndexEntry(level).initialize(Long.valueOf(ids.get(index)))).initialize(rectangle(index));
+			if (data != null)
+				return data[index];
+			return container.readData(serializedData, index);
+		}
+
+		/** Creates the rectangle of the entry at the given position of the page.
+		 * 
+		 * @param index the position of the entry
+		 * @return a new rectangle
+		 */
+		protected Rectangle rectangle (int index) {
+			double[] leftCorner = new double[dimension];
+			double[] rightCorner = new double[dimension];
+			int offset = 2*dimension*index;
+			for (int d = 0; d < dimension; d++) {
+				leftCorner[d] = coordinates.get(offset+d);
+				rightCorner[d] = coordinates.get(offset+dimension+d);
+			}
+			return new DoublePointRectangle(leftCorner, rightCorner);
+		}
+
+		/** Tests whether the rectangle of the entry at the given position 
+		 *  overlaps the query rectangle given by its corners.
+		 * 
+		 * @param index the position of the entry
+		 * @param leftCorner the lower corner of the query rectangle
+		 * @param rightCorner the upper corner of the query rectangle
+		 * @return <tt>true</tt> if the rectangles overlap
+		 */
+		protected boolean overlaps (int index, double[] leftCorner, double[] rightCorner) {
+			if (materialized != null) {
+				Rectangle rectangle = FlatRTree.this.rectangle(materialized.get(index), level);
+				for (int d = 0; d < dimension; d++)
+					if (rectangle.getCorner(false).getValue(d) > rightCorner[d] || leftCorner[d] > rectangle.getCorner(true).getValue(d))
+						return false;
+				return true;
+			}
+			int offset = 2*dimension*index;
+			for (int d = 0; d < dimension; d++)
+				if (coordinates.get(offset+d) > rightCorner[d] || leftCorner[d] > coordinates.get(offset+dimension+d))
+					return false;
+			return true;
+		}
+
+		/** Returns an iterator pointing to the entries whose rectangles overlap 
+		 *  the given rectangle. The iterator supports removal.
+		 * 
+		 * @param queryRectangle the query rectangle
+		 * @return an iterator pointing to the overlapping entries
+		 */
+		protected Iterator query (Rectangle queryRectangle) {
+			final double[] leftCorner = new double[dimension];
+			final double[] rightCorner = new double[dimension];
+			Point lower = queryRectangle.getCorner(false);
+			Point upper = queryRectangle.getCorner(true);
+			for (int d = 0; d < dimension; d++) {
+				leftCorner[d] = lower.getValue(d);
+				rightCorner[d] = upper.getValue(d);
+			}
+			return new AbstractCursor() {
+				int next = 0;
+				int last = -1;
+
+				@Override
+				protected boolean hasNextObject () {
+					for (; next < size(); next++)
+						if (overlaps(next, leftCorner, rightCorner))
+							return true;
+					return false;
+				}
+
+				@Override
+				protected Object nextObject () {
+					last = next;
+					return materialized != null ? materialized.get(next++) : entry(next++);
+				}
+
+				@Override
+				public void remove () throws IllegalStateException, UnsupportedOperationException {
+					super.remove();
+					materialize().remove(last);
+					next = last;
+				}
+
+				@Override
+				public boolean supportsRemove () {
+					return true;
+				}
+			};
+		}
+
+		@Override
+		public int size () {
+			return materialized != null ? materialized.size() : size;
+		}
+
+		@Override
+		public Iterator iterator () {
+			return materialize().iterator();
+		}
+
+		@Override
+		public boolean add (Object entry) {
+			return materialize().add(entry);
+		}
+
+		@Override
+		public void clear () {
+			materialized = null;
+			size = 0;
+			materialize();
+		}
+
+		@Override
+		public Object[] toArray () {
+			return materialize().toArray();
+		}
+	}
+
+	/** A container for the nodes of a {@link FlatRTree}. Every node occupies a 
+	 *  page that keeps the coordinates and ids of its entries in buffers. The 
+	 *  pages are either kept on the heap or in fixed size slots of large direct 
+	 *  byte buffers. The ids of the nodes are <tt>Long</tt> objects denoting 
+	 *  their page numbers; the pages of removed nodes are reused.
+	 *  <p>
+	 *  Nodes returned by {@link #get(Object, boolean)} are backed by the stored 
+	 *  pages until their entries are materialized, so no copy of the page is 
+	 *  made for a query.
+	 */
+	public class NodeContainer extends AbstractContainer {
+
+		/** The size of the direct byte buffers holding the pages. */
+		public static final int SLAB_SIZE = 1 << 20;
+
+		/** The pages kept on the heap, if the container is not direct. */
+		protected List<FlatEntries> pages;
+
+		/** The direct byte buffers holding the pages, if the container is direct. */
+		protected List<ByteBuffer> slabs;
+
+		/** The number of pages in a direct byte buffer. */
+		protected int pagesPerSlab;
+
+		/** The size of a page in bytes. */
+		protected int pageSize;
+
+		/** The maximum number of entries of a page. */
+		protected int capacity;
+
+		/** The converter serializing the data objects of the leaves. */
+		protected Converter dataConverter;
+
+		/** The number of bytes reserved for a serialized data object. */
+		protected int dataSize;
+
+		/** The offset of the ids and data objects within a page. */
+		protected int referenceOffset;
+
+		/** The pages that are in use. */
+		protected BitSet used = new BitSet();
+
+		/** The pages that contain a node; reserved pages don't. */
+		protected BitSet stored = new BitSet();
+
+		/** A lower bound for the first unused page. */
+		protected int firstFree = 0;
+
+		/** The number of pages in use. */
+		protected int size = 0;
+
+		/** Creates a container keeping the pages on the heap. */
+		protected NodeContainer () {
+			pages = new ArrayList<FlatEntries>();
+		}
+
+		/** Creates a container keeping the pages in direct byte buffers.
+		 * 
+		 * @param capacity the maximum number of entries of a node
+		 * @param dataConverter the converter serializing the data objects
+		 * @param dataSize the maximum number of bytes of a serialized data object
+		 * @throws IllegalArgumentException if <tt>capacity</tt> or <tt>dataSize</tt> 
+		 *         is not positive
+		 */
+		protected NodeContainer (int capacity, Converter dataConverter, int dataSize) {
+			if (capacity < 1 || dataSize < 1)
+				throw new IllegalArgumentException("capacity and data size have to be positive");
+			// a node may temporarily hold one entry more than its capacity
+			this.capacity = capacity+1;
+			this.dataConverter = dataConverter;
+			this.dataSize = dataSize;
+			this.referenceOffset = 8 + this.capacity*2*dimension*8;
+			this.pageSize = (referenceOffset + this.capacity*Math.max(8, dataSize) + 7) & ~7;
+			this.pagesPerSlab = Math.max(1, SLAB_SIZE/pageSize);
+			this.slabs = new ArrayList<ByteBuffer>();
+		}
+
+		/** Returns whether the pages are kept in direct byte buffers.
+		 * 
+		 * @return <tt>true</tt> if the pages are kept outside of the heap
+		 */
+		public boolean isDirect () {
+			return slabs != null;
+		}
+
+		/** Returns the page number of the given id.
+		 * 
+		 * @param id the id of a node
+		 * @return the page number
+		 * @throws NoSuchElementException if the id does not denote a page in use
+		 */
+		protected int page (Object id) throws NoSuchElementException {
+			if (!isUsed(id))
+				throw new NoSuchElementException();
+			return ((Long)id).intValue();
+		}
+
+		/** Returns a view of the direct page with the given number.
+		 * 
+		 * @param page the page number
+		 * @return a byte buffer of <tt>pageSize</tt> bytes
+		 */
+		protected ByteBuffer directPage (int page) {
+			ByteBuffer slab = slabs.get(page/pagesPerSlab).duplicate();
+			int offset = (page%pagesPerSlab)*pageSize;
+			slab.limit(offset+pageSize).position(offset);
+			return slab.slice();
+		}
+
+		/** Allocates a new page.
+		 * 
+		 * @return the id of the page
+		 */
+		protected Object allocate () {
+			int page = used.nextClearBit(firstFree);
+			firstFree = page+1;
+			used.set(page);
+			size++;
+			if (isDirect())
+				while (slabs.size()*pagesPerSlab <= page)
+					slabs.add(ByteBuffer.allocateDirect(pagesPerSlab*pageSize));
+			else
+				while (pages.size() <= page)
+					pages.add(null);
+			return Long.valueOf(page);
+		}
+
+		/** Writes the given node to the page with the given number.
+		 * 
+		 * @param page the page number
+		 * @param node the node
+		 */
+		protected void write (int page, Node node) {
+			FlatEntries entries = (FlatEntries)node.entries;
+			int number = entries.size();
+			if (isDirect()) {
+				ByteBuffer buffer = directPage(page);
+				// the node is still backed by this page
+				if (!entries.isMaterialized() && entries.container == this && entries.page == page)
+					return;
+				if (number > capacity)
+					throw new IllegalStateException("the node exceeds the capacity of a page");
+				List list = entries.materialize();
+				buffer.putInt(0, node.level).putInt(4, number);
+				DoubleBuffer coordinates = ((ByteBuffer)buffer.duplicate().position(8)).slice().asDoubleBuffer();
+				writeCoordinates(list, node.level, coordinates);
+				ByteBuffer references = ((ByteBuffer)buffer.duplicate().position(referenceOffset)).slice();
+				if (node.level > 0) {
+					LongBuffer ids = references.asLongBuffer();
+					for (int i = 0; i < number; i++)
+						ids.put(i, id(list.get(i)));
+				}
+				else
+					for (int i = 0; i < number; i++)
+						writeData(references, i, list.get(i));
+			}
+			else {
+				FlatEntries flat = new FlatEntries();
+				flat.materialized = null;
+				flat.level = node.level;
+				flat.size = number;
+				flat.container = this;
+				flat.page = page;
+				if (!entries.isMaterialized()) {
+					flat.coordinates = entries.coordinates;
+					flat.ids = entries.ids;
+					flat.data = entries.data;
+				}
+				else {
+					List list = entries.materialized;
+					flat.coordinates = DoubleBuffer.wrap(new double[2*dimension*number]);
+					writeCoordinates(list, node.level, flat.coordinates);
+					if (node.level > 0) {
+						flat.ids = LongBuffer.wrap(new long[number]);
+						for (int i = 0; i < number; i++)
+							flat.ids.put(i, id(list.get(i)));
+					}
+					else
+						flat.data = list.toArray();
+				}
+				pages.set(page, flat);
+			}
+			stored.set(page);
+		}
+
+		/** Writes the coordinates of the given entries to the buffer.
+		 * 
+		 * @param list the entries
+		 * @param level the level of the node
+		 * @param coordinates the buffer
+		 */
+		protected void writeCoordinates (List list, int level, DoubleBuffer coordinates) {
+			int offset = 0;
+			for (Object entry : list) {
+				Rectangle rectangle = rectangle(entry, level);
+				Point lower = rectangle.getCorner(false);
+				Point upper = rectangle.getCorner(true);
+				for (int d = 0; d < dimension; d++) {
+					coordinates.put(offset+d, lower.getValue(d));
+					coordinates.put(offset+dimension+d, upper.getValue(d));
+				}
+				offset += 2*dimension;
+			}
+		}
+
+		/** Returns the page number of the node referenced by the given index entry.
+		 * 
+		 * @param entry an index entry
+		 * @return the page number
+		 * @throws IllegalArgumentException if the id is not a page number of this container
+		 */
+		protected long id (Object entry) {
+			Object id = ((IndexEntry)entry).id();
+			if (!(id instanceof Long))
+				throw new IllegalArgumentException("the child nodes have to be stored in a node container");
+			return ((Long)id).longValue();
+		}
+
+		/** Serializes a data object into its slot.
+		 * 
+		 * @param references the buffer holding the slots
+		 * @param index the position of the data object
+		 * @param object the data object
+		 * @throws IllegalArgumentException if the serialized object exceeds the slot size
+		 */
+		protected void writeData (ByteBuffer references, int index, Object object) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream(dataSize);
+			try {
+				dataConverter.write(new DataOutputStream(output), object);
+			}
+			catch (IOException e) {
+				throw new WrappingRuntimeException(e);
+			}
+			if (output.size() > dataSize)
+				throw new IllegalArgumentException("the serialized data object exceeds "+dataSize+" bytes");
+			ByteBuffer slot = references.duplicate();
+			slot.position(index*dataSize);
+			slot.put(output.toByteArray());
+		}
+
+		/** Deserializes a data object from its slot.
+		 * 
+		 * @param references the buffer holding the slots
+		 * @param index the position of the data object
+		 * @return the data object
+		 */
+		protected Object readData (ByteBuffer references, int index) {
+			byte[] bytes = new byte[dataSize];
+			ByteBuffer slot = references.duplicate();
+			slot.position(index*dataSize);
+			slot.get(bytes);
+			try {
+				return dataConverter.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+			}
+			catch (IOException e) {
+				throw new WrappingRuntimeException(e);
+			}
+		}
+
+		@Override
+		public Object get (Object id, boolean unfix) throws NoSuchElementException {
+			int page = page(id);
+			if (!stored.get(page))
+				throw new NoSuchElementException();
+			FlatEntries entries;
+			if (isDirect()) {
+				ByteBuffer buffer = directPage(page);
+				entries = new FlatEntries();
+				entries.materialized = null;
+				entries.level = buffer.getInt(0);
+				entries.size = buffer.getInt(4);
+				entries.container = this;
+				entries.page = page;
+				entries.coordinates = ((ByteBuffer)buffer.duplicate().position(8)).slice().asDoubleBuffer();
+				ByteBuffer references = ((ByteBuffer)buffer.duplicate().position(referenceOffset)).slice();
+				if (entries.level > 0)
+					entries.ids = references.asLongBuffer();
+				else
+					entries.serializedData = references;
+			}
+			else
+				entries = new FlatEntries(pages.get(page));
+			return new Node().initialize(entries.level, entries);
+		}
+
+		@Override
+		public Object insert (Object object, boolean unfix) {
+			Object id = allocate();
+			write(((Long)id).intValue(), (Node)object);
+			return id;
+		}
+
+		@Override
+		public void update (Object id, Object object, boolean unfix) throws NoSuchElementException {
+			write(page(id), (Node)object);
+		}
+
+		@Override
+		public Object reserve (Function getObject) {
+			return allocate();
+		}
+
+		@Override
+		public void remove (Object id) throws NoSuchElementException {
+			int page = page(id);
+			used.clear(page);
+			stored.clear(page);
+			if (!isDirect())
+				pages.set(page, null);
+			firstFree = Math.min(firstFree, page);
+			size--;
+		}
+
+		@Override
+		public boolean isUsed (Object id) {
+			if (!(id instanceof Long))
+				return false;
+			long page = ((Long)id).longValue();
+			return page >= 0 && page < Integer.MAX_VALUE && used.get((int)page);
+		}
+
+		@Override
+		public boolean contains (Object id) {
+			return isUsed(id) && stored.get(((Long)id).intValue());
+		}
+
+		@Override
+		public Iterator ids () {
+			return new AbstractCursor() {
+				int next = used.nextSetBit(0);
+
+				@Override
+				protected boolean hasNextObject () {
+					return next >= 0;
+				}
+
+				@Override
+				protected Object nextObject () {
+					Object id = Long.valueOf(next);
+					next = used.nextSetBit(next+1);
+					return id;
+				}
+			};
+		}
+
+		@Override
+		public int size () {
+			return size;
+		}
+
+		@Override
+		public void clear () {
+			used.clear();
+			stored.clear();
+			firstFree = 0;
+			size = 0;
+			if (isDirect())
+				slabs.clear();
+			else
+				pages.clear();
+		}
+
+		@Override
+		public void close () {
+			clear();
+		}
+
+		@Override
+		public FixedSizeConverter objectIdConverter () {
+			return LongConverter.DEFAULT_INSTANCE;
+		}
+
+		@Override
+		public int getIdSize () {
+			return LongConverter.SIZE;
+		}
+	}
+}
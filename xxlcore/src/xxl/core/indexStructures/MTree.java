@@ -517,6 +517,31 @@ public class MTree extends ORTree {
 		return (Sphere)descriptor(entry);
 	}
 
+	/** Answers a batch of queries in a single traversal of the tree. The 
+	 * query spheres are copied, because {@link Node#query(Descriptor)} uses 
+	 * their {@link Sphere#distanceToParent} which must not be shared between
+	 * queries. Leaf entries are delivered as data objects like in 
+	 * {@link #query(Descriptor, int)}.
+	 * 
+	 * @see xxl.core.indexStructures.Tree#query(xxl.core.indexStructures.Descriptor[], int)
+	 */
+	public Cursor query (Descriptor [] queryDescriptors, int targetLevel) {
+		Descriptor [] querySpheres = new Descriptor[queryDescriptors.length];
+		for (int i = 0; i < querySpheres.length; i++) {
+			Sphere querySphere = (Sphere)((Sphere)queryDescriptors[i]).clone();
+			querySphere.setDistanceToParent(-1);
+			querySpheres[i] = querySphere;
+		}
+		return new BatchQuery(querySpheres, targetLevel) {
+			protected Object nextObject () {
+				MapEntry result = (MapEntry)super.nextObject();
+				if (result.getValue() instanceof LeafEntry)
+					result.setValue(((LeafEntry)result.getValue()).data);
+				return result;
+			}
+		};
+	}
+
 	/* (non-Javadoc)
 	 * @see xxl.core.indexStructures.Tree#query(xxl.core.indexStructures.Descriptor, int)
 	 */
@@ -798,6 +823,155 @@ public class MTree extends ORTree {
 		return new NodeConverter(leafEntryConverter, indexEntryConverter);
 	}
 
+	/*********************************************************************/
+	/*                         DISTANCE BROWSING                         */
+	/*********************************************************************/
+
+	/** Returns a cursor delivering the <tt>k</tt> objects of this tree that
+	 * are closest to <tt>queryPoint</tt> in ascending distance. The distance
+	 * of an object is the distance of the query point to the sphere stored
+	 * for it, i.e., the exact distance for point data. The cursor traverses
+	 * the tree best-first ordered by <tt>d(q,center)-radius</tt>. Before the
+	 * distance of an entry is computed, the triangle inequality is applied
+	 * to the stored {@link Sphere#getDistanceToParent() distance to the
+	 * parent}: <tt>|d(q,parent)-d(center,parent)|-radius</tt> is a lower
+	 * bound that allows to discard the entry without a distance computation
+	 * (see P. Ciaccia, M. Patella, P. Zezula: M-tree: An Efficient Access
+	 * Method for Similarity Search in Metric Spaces, VLDB 1997).
+	 *
+	 * @param queryPoint the query point
+	 * @param metric the metric, which has to be the {@link #pointDistance}
+	 *        of this tree, because the radii of the spheres depend on it
+	 * @param k the number of nearest neighbors to deliver
+	 * @return a distance browser delivering the <tt>k</tt> nearest neighbors
+	 * @throws IllegalArgumentException if <tt>metric</tt> differs from the
+	 *         metric of this tree or <tt>k</tt> is not positive
+	 */
+	public DistanceBrowser nearestNeighbors (Object queryPoint, Distance metric, int k) {
+		return new MTreeDistanceBrowser(queryPoint, metric, k);
+	}
+
+	/** Returns a cursor delivering all objects of this tree in ascending
+	 * distance to <tt>queryPoint</tt>. The result is computed incrementally,
+	 * so the cursor only reads the nodes necessary for the objects consumed.
+	 *
+	 * @param queryPoint the query point
+	 * @param metric the metric of this tree
+	 * @return a distance browser delivering all objects of this tree
+	 * @throws IllegalArgumentException if <tt>metric</tt> differs from the
+	 *         metric of this tree
+	 * @see #nearestNeighbors(Object, Distance, int)
+	 */
+	public DistanceBrowser distanceBrowser (Object queryPoint, Distance metric) {
+		return new MTreeDistanceBrowser(queryPoint, metric, Integer.MAX_VALUE);
+	}
+
+	/** The distance browser of an <tt>MTree</tt>. Candidates are either
+	 * {@link RoutingCandidate routing candidates} or data objects.
+	 */
+	protected class MTreeDistanceBrowser extends DistanceBrowser {
+
+		/** The query point.
+		 */
+		protected Object query;
+
+		/** The metric.
+		 */
+		protected Distance metric;
+
+		/** An index entry together with the distance of its center to the
+		 * query point.
+		 */
+		protected class RoutingCandidate {
+
+			/** The index entry.
+			 */
+			protected IndexEntry indexEntry;
+
+			/** The distance of the center of the index entry's sphere to the
+			 * query point.
+			 */
+			protected double centerDistance;
+
+			/** Creates a new routing candidate.
+			 *
+			 * @param indexEntry the index entry
+			 * @param centerDistance the distance of its center to the query point
+			 */
+			protected RoutingCandidate (IndexEntry indexEntry, double centerDistance) {
+				this.indexEntry = indexEntry;
+				this.centerDistance = centerDistance;
+			}
+		}
+
+		/** Creates a new distance browser.
+		 *
+		 * @param queryPoint the query point
+		 * @param metric the metric of this tree
+		 * @param k the maximum number of results
+		 */
+		public MTreeDistanceBrowser (Object queryPoint, Distance metric, int k) {
+			super(MTree.this, k);
+			if (!metric.equals(pointDistance))
+				throw new IllegalArgumentException("the metric has to be the point distance of the tree");
+			this.query = queryPoint;
+			this.metric = metric;
+		}
+
+		/** Returns the distance of the query point to <tt>center</tt>.
+		 *
+		 * @param center the center of a sphere
+		 * @return the distance of the query point to <tt>center</tt>
+		 */
+		protected double centerDistance (Object center) {
+			distanceComputations++;
+			return metric.distance(query, center);
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.indexStructures.DistanceBrowser#enqueueRoot()
+		 */
+		@Override
+		protected void enqueueRoot () {
+			if (rootEntry() != null) {
+				Sphere sphere = (Sphere)rootDescriptor();
+				double distance = centerDistance(sphere.center());
+				enqueue(new RoutingCandidate((IndexEntry)rootEntry(), distance), Math.max(0, distance-sphere.radius()), Double.POSITIVE_INFINITY);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.indexStructures.DistanceBrowser#indexEntry(java.lang.Object)
+		 */
+		@Override
+		protected Tree.IndexEntry indexEntry (Object candidate) {
+			return candidate instanceof RoutingCandidate ? ((RoutingCandidate)candidate).indexEntry : null;
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.indexStructures.DistanceBrowser#expand(java.lang.Object, xxl.core.indexStructures.Tree.Node)
+		 */
+		@Override
+		protected void expand (Object candidate, Tree.Node node) {
+			double parentDistance = ((RoutingCandidate)candidate).centerDistance;
+			for (Iterator entries = ((Node)node).entries(); entries.hasNext();) {
+				Object entry = entries.next();
+				Sphere sphere = sphere(entry);
+				double distanceToParent = sphere.getDistanceToParent();
+				if (distanceToParent != -1 && Math.abs(parentDistance-distanceToParent)-sphere.radius() > bound) {
+					prunedEntries++;
+					continue;
+				}
+				double distance = centerDistance(sphere.center());
+				double minDistance = Math.max(0, distance-sphere.radius());
+				if (node.level == 0)
+					enqueue(((LeafEntry)entry).getData(), minDistance, minDistance);
+				else
+					enqueue(new RoutingCandidate((IndexEntry)entry, distance), minDistance, distance+sphere.radius());
+			}
+		}
+	}
+
 	/*********************************************************************/
 	/*                       DEBUG FUNCTIONALITY                         */
 	/*********************************************************************/
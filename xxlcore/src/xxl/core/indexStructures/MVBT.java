@@ -882,7 +882,9 @@ public class MVBT extends MVBTree {
 			int number=dataInput.readInt();
 			Node node = (Node)createNode(level);
 			readPredecessors(dataInput, node);
-			for (int i=0; i<number; i++) {
+			if (node.level()==0 && leafFormat!=null)
+				node.entries = leafFormat.read(dataInput, number);
+			else for (int i=0; i<number; i++) {
 				Object entry;
 				if(node.level()==0) entry= readLeafEntry(dataInput);
 				else entry=readIndexEntry(dataInput,node.level);
@@ -901,7 +903,9 @@ public class MVBT extends MVBTree {
 			IntegerConverter.DEFAULT_INSTANCE.writeInt(dataOutput, node.level);
 			IntegerConverter.DEFAULT_INSTANCE.writeInt(dataOutput, node.entries.size());
 			writePredecessors(dataOutput, node);
-			for(int i=0; i<node.entries.size() ;i++) {
+			if (node.level==0 && leafFormat!=null)
+				leafFormat.write(dataOutput, node.entries);
+			else for(int i=0; i<node.entries.size() ;i++) {
 				Object entry=node.getEntry(i);
 				if(node.level==0) writeLeafEntry(dataOutput,(LeafEntry)entry);
 					else writeIndexEntry(dataOutput,(IndexEntry)entry);
@@ -1005,7 +1009,7 @@ public class MVBT extends MVBTree {
 		
 		@Override
 		protected int leafEntrySize() {
-			return dataConverter.getMaxObjectSize()+lifespanConverter.getMaxObjectSize();
+			return leafFormat!=null ? leafFormat.maxEntrySize() : dataConverter.getMaxObjectSize()+lifespanConverter.getMaxObjectSize();
 		}
 
 		/**
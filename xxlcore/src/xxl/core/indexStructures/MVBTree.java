@@ -32,11 +32,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Stack;
+import java.util.TreeMap;
 import java.util.Map.Entry;
 
 import xxl.core.collections.MapEntry;
@@ -46,6 +50,7 @@ import xxl.core.collections.queues.DynamicHeap;
 import xxl.core.collections.queues.ListQueue;
 import xxl.core.collections.queues.Queue;
 import xxl.core.collections.queues.Queues;
+import xxl.core.cursors.AbstractCursor;
 import xxl.core.cursors.Cursor;
 import xxl.core.cursors.Cursors;
 import xxl.core.cursors.filters.Filter;
@@ -55,6 +60,7 @@ import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Constant;
 import xxl.core.functions.Function;
 import xxl.core.io.converters.BooleanConverter;
+import xxl.core.io.converters.DeltaConverter;
 import xxl.core.io.converters.IntegerConverter;
 import xxl.core.io.converters.MeasuredConverter;
 import xxl.core.predicates.AbstractPredicate;
@@ -458,6 +464,52 @@ public class MVBTree extends BPlusTree {
 		return new NodeConverter();
 	}
 	
+	/** Decides overflows by the number of entries, because the version conditions
+	 * of the <tt>MVBTree</tt> count entries. The capacity of compressed leaves is
+	 * therefore computed from the {@link CompressedLeafFormat#maxEntrySize() maximal size}
+	 * of an entry.
+	 * @param entries the entries of a node.
+	 * @param level the level of the node.
+	 * @return <tt>true</tt> if the node does not overflow.
+	 */
+	protected boolean fits(List entries, int level) {
+		return entries.size() <= (level == 0 ? B_LeafNode : B_IndexNode);
+	}
+	
+	/** Creates the format of compressed leaves. The <tt>Lifespans</tt> of the 
+	 * <tt>LeafEntries</tt> are written with the <tt>lifespanConverter</tt>, 
+	 * their data objects with the given <tt>DeltaConverter</tt> relative to the 
+	 * data object of the preceding entry.
+	 * @param dataDeltaConverter the converter writing the data objects of a leaf.
+	 * @return the new created <tt>CompressedLeafFormat</tt>.
+	 * @see BPlusTree#compressLeaves(DeltaConverter)
+	 */
+	protected CompressedLeafFormat createLeafFormat(final DeltaConverter dataDeltaConverter) {
+		return new CompressedLeafFormat(new DeltaConverter<LeafEntry>() {
+			public void writeDelta(DataOutput dataOutput, LeafEntry previous, LeafEntry entry) throws IOException {
+				lifespanConverter.write(dataOutput, entry.lifespan);
+				dataDeltaConverter.writeDelta(dataOutput, previous==null ? null : previous.data, entry.data);
+			}
+			
+			public LeafEntry readDelta(DataInput dataInput, LeafEntry previous) throws IOException {
+				Lifespan life = (Lifespan)lifespanConverter.read(dataInput, null);
+				return new LeafEntry(life, dataDeltaConverter.readDelta(dataInput, previous==null ? null : previous.data));
+			}
+			
+			public int getDeltaSize(LeafEntry previous, LeafEntry entry) {
+				return lifespanConverter.getMaxObjectSize()+dataDeltaConverter.getDeltaSize(previous==null ? null : previous.data, entry.data);
+			}
+			
+			public int getMaxDeltaSize() {
+				return lifespanConverter.getMaxObjectSize()+dataDeltaConverter.getMaxDeltaSize();
+			}
+			
+			public int getMaxObjectSize() {
+				return lifespanConverter.getMaxObjectSize()+dataDeltaConverter.getMaxObjectSize();
+			}
+		});
+	}
+	
 	/** Creates a new <tt>MVSeparator</tt> with the given parameters.
 	 * @param insertVersion the insertion <tt>Version</tt> of the associated entry.
 	 * @param deleteVersion the deletion <tt>Version</tt> of the associated entry.
@@ -509,10 +561,13 @@ public class MVBTree extends BPlusTree {
 		IndexEntry indexEntry = null;
 		Root root = null;
 		Cursor rootsCursor = roots.rangeQuery(version, lastRootSplitVersion);
-		if(rootsCursor.hasNext()){
+		// the roots are indexed by their end versions, a root ending at the given version is skipped
+		while(rootsCursor.hasNext() && indexEntry == null){
 			 root = (Root) rootsCursor.next();
-			 indexEntry = root.toIndexEntry();
+			 if (root.lifespan().contains(version))
+				 indexEntry = root.toIndexEntry();
 		}
+		rootsCursor.close();
 		// old code 
 		//	((Root)roots.exactMatchQuery(version)).toIndexEntry();
 		return indexEntry;
@@ -988,6 +1043,69 @@ public class MVBTree extends BPlusTree {
 		MVRegion queryRegion= createMVRegion(beginVersion, endVersion, min, max);
 		return new PriorityQueryCursor(new DynamicHeap(keyComparator), 0, queryRegion);
 	}
+	
+	/** Searches all elements stored in the <tt>MVBTree</tt> whose keys lie in the key range <tt>[min, max]</tt> 
+	 * and which are alive at some <tt>Version</tt> of the closed version range <tt>[beginVersion, endVersion]</tt>. 
+	 * In contrast to {@link #rangePeriodQuery(Comparable, Comparable, Version, Version)} the roots of all 
+	 * <tt>Versions</tt> of the range are taken into account, every <tt>Node</tt> is read at most once and every 
+	 * <tt>LeafEntry</tt> is reported exactly once even if copies of it are stored in several <tt>Nodes</tt>. 
+	 * The copy which is reported is the last one inside the version range, hence the <tt>end version</tt> of 
+	 * its <tt>Lifespan</tt> is exact whenever it lies inside the version range. The responses are 
+	 * grouped by leaf and are not sorted.
+	 * @param min the minimal bound of the key range of the query.
+	 * @param max the maximal bound of the key range of the query.
+	 * @param beginVersion the first <tt>Version</tt> of the version range.
+	 * @param endVersion the last <tt>Version</tt> of the version range.
+	 * @return a lazy <tt>Cursor</tt> pointing to the <tt>LeafEntries</tt> of all query responses.
+	 * @see VersionRangeCursor
+	 */
+	public VersionRangeCursor versionRangeQuery(Comparable min, Comparable max, Version beginVersion, Version endVersion) {
+		if (beginVersion == null || endVersion == null || beginVersion.compareTo(endVersion) > 0)
+			throw new IllegalArgumentException("Invalid version range: ["+beginVersion+", "+endVersion+"]");
+		if (cutoffVersion != null && beginVersion.compareTo(cutoffVersion) < 0)
+			throw new IllegalArgumentException("Cannot query versions before cutoff version.");
+		return new VersionRangeCursor(min, max, beginVersion, endVersion);
+	}
+	
+	/** Pins the given <tt>Version</tt> of the <tt>MVBTree</tt>. The <tt>root</tt> of the <tt>Version</tt> is 
+	 * looked up once in the {@link #rootsTree() roots tree} and the entries of the index <tt>Nodes</tt> 
+	 * which are alive at the <tt>Version</tt> are cached by the returned <tt>Snapshot</tt>, so that repeated 
+	 * queries against the same <tt>Version</tt> only have to read leaves.
+	 * @param version the <tt>Version</tt> which is to pin.
+	 * @return a <tt>Snapshot</tt> of the given <tt>Version</tt>.
+	 * @see Snapshot
+	 */
+	public Snapshot snapshot(Version version) {
+		if (version == null)
+			throw new IllegalArgumentException("The version of a snapshot must not be null.");
+		if (cutoffVersion != null && version.compareTo(cutoffVersion) < 0)
+			throw new IllegalArgumentException("Cannot query versions before cutoff version.");
+		if (rootEntry == null)
+			throw new IllegalStateException("The tree is empty.");
+		return new Snapshot(version);
+	}
+	
+	/** Checks whether the half open life interval <tt>[begin, end)</tt> overlaps the closed version range 
+	 * <tt>[beginVersion, endVersion]</tt>. <tt>Null</tt> bounds of the life interval are unbounded.
+	 */
+	protected static boolean overlaps(Version begin, Version end, Version beginVersion, Version endVersion) {
+		return (begin == null || begin.compareTo(endVersion) <= 0) && (end == null || end.compareTo(beginVersion) > 0);
+	}
+	
+	/** Returns the smaller of two <tt>end versions</tt> where <tt>null</tt> stands for an alive interval.
+	 */
+	protected static Version minEnd(Version end1, Version end2) {
+		if (end1 == null) return end2;
+		if (end2 == null) return end1;
+		return end1.compareTo(end2) <= 0 ? end1 : end2;
+	}
+	
+	/** Returns the larger of two <tt>end versions</tt> where <tt>null</tt> stands for an alive interval.
+	 */
+	protected static Version maxEnd(Version end1, Version end2) {
+		if (end1 == null || end2 == null) return null;
+		return end1.compareTo(end2) >= 0 ? end1 : end2;
+	}
 	/** Searches all elements stored in the <tt>MVBTree</tt> that lie in the given <tt>MVRegion</tt>.
 	 * @param subRootEntry the root of subtree in which the query is to execute.
 	 * @param queryRegion the <tt>MVRegion</tt> which specifies the query.
@@ -2522,6 +2640,393 @@ public class MVBTree extends BPlusTree {
 		public int hashCode();
 	}
 	
+	/** A reference to a <tt>Node</tt> together with the life interval of the <tt>Node</tt> which is known 
+	 * from its parents. It is used by the {@link VersionRangeCursor}.
+	 */
+	protected static class NodeReference {
+		
+		/** The <tt>IndexEntry</tt> pointing to the <tt>Node</tt>. */
+		protected IndexEntry entry;
+		
+		/** The begin of the life interval. */
+		protected Version begin;
+		
+		/** The end of the life interval or <tt>null</tt> if the <tt>Node</tt> is alive. */
+		protected Version end;
+		
+		public NodeReference(IndexEntry entry, Version begin, Version end) {
+			this.entry = entry;
+			this.begin = begin;
+			this.end = end;
+		}
+	}
+	
+	/** A lazy <tt>Cursor</tt> reporting all <tt>LeafEntries</tt> whose keys lie in a key range and which are 
+	 * alive at some <tt>Version</tt> of a closed version range, see 
+	 * {@link MVBTree#versionRangeQuery(Comparable, Comparable, Version, Version)}.
+	 * <p>
+	 * The <tt>Nodes</tt> of a <tt>MVBTree</tt> form a directed acyclic graph, because a <tt>Node</tt> can be 
+	 * referenced by several historical parents. Therefore the references to the <tt>Nodes</tt> of a level are 
+	 * collected before the level is read, references to the same <tt>Node</tt> are merged, and every 
+	 * <tt>Node</tt> is read once, starting with the highest level. The entries of a <tt>Node</tt> are not 
+	 * updated any more after it has been version split, so the life interval of an entry is cut off at 
+	 * the end of the <tt>Node</tt> holding it.
+	 * <p>
+	 * A version split copies the alive entries into a new <tt>Node</tt>, hence a <tt>LeafEntry</tt> can be 
+	 * stored in a chain of <tt>Nodes</tt>. Only the last copy of the chain which is alive inside the version 
+	 * range is reported, i.e. the copy whose <tt>Node</tt> is still alive after the end of the range or 
+	 * which has been deleted in its <tt>Node</tt>.
+	 */
+	public class VersionRangeCursor extends AbstractCursor {
+		
+		/** The minimal bound of the key range. */
+		protected Comparable min;
+		
+		/** The maximal bound of the key range. */
+		protected Comparable max;
+		
+		/** The first <tt>Version</tt> of the version range. */
+		protected Version beginVersion;
+		
+		/** The last <tt>Version</tt> of the version range. */
+		protected Version endVersion;
+		
+		/** The references to the <tt>Nodes</tt> which have to be read, grouped by level. */
+		protected TreeMap<Integer, Map<Object, NodeReference>> pending = new TreeMap<Integer, Map<Object, NodeReference>>();
+		
+		/** The responses of the leaf which has been read last. */
+		protected Iterator<LeafEntry> responses = null;
+		
+		/** The number of <tt>Nodes</tt> read so far. */
+		protected int nodeAccesses = 0;
+		
+		/** Creates a new <tt>VersionRangeCursor</tt>.
+		 * @param min the minimal bound of the key range.
+		 * @param max the maximal bound of the key range.
+		 * @param beginVersion the first <tt>Version</tt> of the version range.
+		 * @param endVersion the last <tt>Version</tt> of the version range.
+		 */
+		public VersionRangeCursor(Comparable min, Comparable max, Version beginVersion, Version endVersion) {
+			this.min = min;
+			this.max = max;
+			this.beginVersion = beginVersion;
+			this.endVersion = endVersion;
+			addRoots();
+		}
+		
+		/** Adds the references to all <tt>roots</tt> which are alive inside the version range. The historical 
+		 * <tt>roots</tt> are indexed by their <tt>end versions</tt> in the {@link MVBTree#rootsTree() roots tree}.
+		 */
+		protected void addRoots() {
+			if (rootEntry == null)
+				return;
+			MVSeparator separator = (MVSeparator)((IndexEntry)rootEntry).separator();
+			add((IndexEntry)rootEntry, separator.insertVersion(), separator.deleteVersion());
+			Version lastRootSplitVersion = separator.insertVersion();
+			if (roots.rootEntry() == null || lastRootSplitVersion == null || beginVersion.compareTo(lastRootSplitVersion) >= 0)
+				return;
+			Cursor rootsCursor = roots.rangeQuery(beginVersion, lastRootSplitVersion);
+			while (rootsCursor.hasNext()) {
+				Root root = (Root)rootsCursor.next();
+				Lifespan lifespan = root.lifespan();
+				if (lifespan.beginVersion() != null && lifespan.beginVersion().compareTo(endVersion) > 0)
+					break;
+				add(root.toIndexEntry(), lifespan.beginVersion(), lifespan.endVersion());
+			}
+			rootsCursor.close();
+		}
+		
+		/** Adds a reference to the <tt>Node</tt> pointed by the given <tt>IndexEntry</tt> if the given life 
+		 * interval overlaps the version range. A reference to the same <tt>Node</tt> is extended.
+		 * @param entry the <tt>IndexEntry</tt> pointing to the <tt>Node</tt>.
+		 * @param begin the begin of the life interval.
+		 * @param end the end of the life interval or <tt>null</tt>.
+		 */
+		protected void add(IndexEntry entry, Version begin, Version end) {
+			if (!overlaps(begin, end, beginVersion, endVersion))
+				return;
+			Map<Object, NodeReference> level = pending.get(entry.level());
+			if (level == null)
+				pending.put(entry.level(), level = new LinkedHashMap<Object, NodeReference>());
+			NodeReference reference = level.get(entry.id());
+			if (reference == null)
+				level.put(entry.id(), new NodeReference(entry, begin, end));
+			else {
+				if (reference.begin != null && (begin == null || begin.compareTo(reference.begin) < 0))
+					reference.begin = begin;
+				reference.end = maxEnd(reference.end, end);
+			}
+		}
+		
+		/** Adds the references to all children of the given index <tt>Node</tt> which overlap the query. 
+		 * A child can be skipped if a sibling with a larger key which is not larger than <tt>min</tt> is alive 
+		 * during the whole part of the version range in which the child is alive.
+		 * @param node the index <tt>Node</tt>.
+		 * @param reference the reference to the index <tt>Node</tt>.
+		 */
+		protected void expand(Node node, NodeReference reference) {
+			List<IndexEntry> children = new ArrayList<IndexEntry>();
+			for (Iterator entries = node.iterator(); entries.hasNext();) {
+				IndexEntry child = (IndexEntry)entries.next();
+				MVSeparator separator = (MVSeparator)child.separator();
+				if (separator.sepValue().compareTo(max) <= 0 
+						&& overlaps(separator.insertVersion(), minEnd(separator.deleteVersion(), reference.end), beginVersion, endVersion))
+					children.add(child);
+			}
+			search:
+			for (IndexEntry child : children) {
+				MVSeparator separator = (MVSeparator)child.separator();
+				Version end = minEnd(separator.deleteVersion(), reference.end);
+				for (IndexEntry sibling : children) {
+					MVSeparator siblingSeparator = (MVSeparator)sibling.separator();
+					if (siblingSeparator.sepValue().compareTo(separator.sepValue()) > 0
+							&& siblingSeparator.sepValue().compareTo(min) <= 0
+							&& covers(siblingSeparator.insertVersion(), minEnd(siblingSeparator.deleteVersion(), reference.end), separator.insertVersion(), end))
+						continue search;
+				}
+				add(child, separator.insertVersion(), end);
+			}
+		}
+		
+		/** Checks whether the life interval <tt>[begin, end)</tt> contains the part of the version range in 
+		 * which the life interval <tt>[childBegin, childEnd)</tt> is alive.
+		 */
+		protected boolean covers(Version begin, Version end, Version childBegin, Version childEnd) {
+			Version first = childBegin == null || childBegin.compareTo(beginVersion) < 0 ? beginVersion : childBegin;
+			if (begin != null && begin.compareTo(first) > 0)
+				return false;
+			if (end == null)
+				return true;
+			if (childEnd != null && childEnd.compareTo(endVersion) <= 0)
+				return end.compareTo(childEnd) >= 0;
+			return end.compareTo(endVersion) > 0;
+		}
+		
+		/** Determines the responses of the given leaf.
+		 * @param node the leaf.
+		 * @param reference the reference to the leaf.
+		 * @return the <tt>LeafEntries</tt> of the leaf which have to be reported.
+		 */
+		protected List<LeafEntry> responses(Node node, NodeReference reference) {
+			List<LeafEntry> responses = new ArrayList<LeafEntry>();
+			boolean lastNode = reference.end == null || reference.end.compareTo(endVersion) > 0;
+			for (Iterator entries = node.iterator(); entries.hasNext();) {
+				LeafEntry entry = (LeafEntry)entries.next();
+				Comparable key = entry.getKey();
+				if (key.compareTo(min) < 0 || key.compareTo(max) > 0)
+					continue;
+				Lifespan lifespan = entry.getLifespan();
+				Version begin = lifespan.beginVersion();
+				if (reference.begin != null && (begin == null || begin.compareTo(reference.begin) < 0))
+					begin = reference.begin;
+				if (!overlaps(begin, minEnd(lifespan.endVersion(), reference.end), beginVersion, endVersion))
+					continue;
+				if (lastNode || lifespan.isDead() && lifespan.endVersion().compareTo(reference.end) <= 0)
+					responses.add(entry);
+			}
+			return responses;
+		}
+		
+		@Override
+		protected boolean hasNextObject() {
+			while (responses == null || !responses.hasNext()) {
+				if (pending.isEmpty())
+					return false;
+				Map.Entry<Integer, Map<Object, NodeReference>> level = pending.lastEntry();
+				Iterator<NodeReference> references = level.getValue().values().iterator();
+				NodeReference reference = references.next();
+				references.remove();
+				if (level.getValue().isEmpty())
+					pending.remove(level.getKey());
+				Node node = (Node)reference.entry.get(true);
+				nodeAccesses++;
+				if (node.level() == 0)
+					responses = responses(node, reference).iterator();
+				else
+					expand(node, reference);
+			}
+			return true;
+		}
+		
+		@Override
+		protected Object nextObject() {
+			return responses.next();
+		}
+		
+		/** Returns the number of <tt>Nodes</tt> which have been read so far.
+		 * @return the number of <tt>Nodes</tt> which have been read so far.
+		 */
+		public int nodeAccesses() {
+			return nodeAccesses;
+		}
+	}
+	
+	/** A pinned <tt>Version</tt> of the <tt>MVBTree</tt>, see {@link MVBTree#snapshot(Version)}. The 
+	 * <tt>root</tt> of the <tt>Version</tt> is determined once, and the entries of the index <tt>Nodes</tt> 
+	 * which are alive at the <tt>Version</tt> are cached sorted by key. At a single <tt>Version</tt> the alive 
+	 * entries of a <tt>Node</tt> partition its key range, hence the queries of a snapshot are answered like 
+	 * the queries of a simple B+ tree and only read leaves from the container once the upper levels are cached.
+	 * <p>
+	 * Later updates only add entries with larger <tt>Versions</tt> and end <tt>Lifespans</tt> at larger 
+	 * <tt>Versions</tt>, so a snapshot of a <tt>Version</tt> older than the {@link MVBTree#currentVersion() 
+	 * current version} stays valid. A snapshot of the current version is stale as soon as further updates 
+	 * are performed in this <tt>Version</tt>, and {@link MVBTree#setCutoffVersion(Version)} invalidates the 
+	 * snapshots of the purged <tt>Versions</tt>.
+	 */
+	public class Snapshot {
+		
+		/** The pinned <tt>Version</tt>. */
+		protected Version version;
+		
+		/** The <tt>root</tt> of the pinned <tt>Version</tt> or <tt>null</tt> if the tree was empty. */
+		protected IndexEntry root;
+		
+		/** The alive entries of the index <tt>Nodes</tt> read so far sorted by key, indexed by the ids of the <tt>Nodes</tt>. */
+		protected HashMap<Object, List> indexNodes = new HashMap<Object, List>();
+		
+		/** The number of <tt>Nodes</tt> read from the container. */
+		protected int nodeAccesses = 0;
+		
+		/** Orders entries according to their keys. */
+		protected Comparator keyComparator = new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return separator(o1).sepValue().compareTo(separator(o2).sepValue());
+			}
+		};
+		
+		/** Creates a new <tt>Snapshot</tt>.
+		 * @param version the <tt>Version</tt> which is to pin.
+		 */
+		public Snapshot(Version version) {
+			this.version = (Version)version.clone();
+			this.root = determineRootEntry(version);
+		}
+		
+		/** Gives the pinned <tt>Version</tt>.
+		 * @return the pinned <tt>Version</tt>.
+		 */
+		public Version version() {
+			return version;
+		}
+		
+		/** Gives the <tt>root</tt> of the pinned <tt>Version</tt>.
+		 * @return an <tt>IndexEntry</tt> pointing to the <tt>root</tt> of the pinned <tt>Version</tt>.
+		 */
+		public IndexEntry rootEntry() {
+			return root;
+		}
+		
+		/** Gives the number of cached index <tt>Nodes</tt>.
+		 * @return the number of cached index <tt>Nodes</tt>.
+		 */
+		public int cachedNodes() {
+			return indexNodes.size();
+		}
+		
+		/** Gives the number of <tt>Nodes</tt> read from the container by this <tt>Snapshot</tt>.
+		 * @return the number of <tt>Nodes</tt> read from the container.
+		 */
+		public int nodeAccesses() {
+			return nodeAccesses;
+		}
+		
+		/** Releases the cached index <tt>Nodes</tt>.
+		 */
+		public void release() {
+			indexNodes.clear();
+		}
+		
+		/** Gives the entries of the given <tt>Node</tt> which are alive at the pinned <tt>Version</tt> sorted by key. 
+		 * The entries of index <tt>Nodes</tt> are cached.
+		 * @param entry the <tt>IndexEntry</tt> pointing to the <tt>Node</tt>.
+		 * @return the alive entries of the <tt>Node</tt> sorted by key.
+		 */
+		protected List entries(IndexEntry entry) {
+			List entries = entry.level() > 0 ? indexNodes.get(entry.id()) : null;
+			if (entries == null) {
+				entries = new ArrayList();
+				Iterator alive = ((Node)entry.get(true)).query(version);
+				nodeAccesses++;
+				while (alive.hasNext())
+					entries.add(alive.next());
+				Collections.sort(entries, keyComparator);
+				if (entry.level() > 0)
+					indexNodes.put(entry.id(), entries);
+			}
+			return entries;
+		}
+		
+		/** Selects the entries of a <tt>Node</tt> which overlap the key range <tt>[min, max]</tt>.
+		 * @param entry the <tt>IndexEntry</tt> pointing to the <tt>Node</tt>.
+		 * @param min the minimal bound of the key range.
+		 * @param max the maximal bound of the key range.
+		 * @return the entries overlapping the key range in ascending order.
+		 */
+		protected List select(IndexEntry entry, Comparable min, Comparable max) {
+			List entries = entries(entry);
+			List selected = new ArrayList();
+			for (int i = 0; i < entries.size(); i++) {
+				Comparable key = separator(entries.get(i)).sepValue();
+				if (key.compareTo(max) > 0)
+					break;
+				if (entry.level() == 0 ? key.compareTo(min) >= 0 
+						: i+1 == entries.size() || separator(entries.get(i+1)).sepValue().compareTo(min) > 0)
+					selected.add(entries.get(i));
+			}
+			return selected;
+		}
+		
+		/** Searches the <tt>LeafEntry</tt> with the given key which is alive at the pinned <tt>Version</tt>.
+		 * @param key the key of the element which is to search.
+		 * @return the found <tt>LeafEntry</tt> if the search is successful and null otherwise.
+		 */
+		public LeafEntry exactMatchQuery(Comparable key) {
+			if (root == null)
+				return null;
+			List selected = select(root, key, key);
+			while (!selected.isEmpty() && selected.get(0) instanceof IndexEntry)
+				selected = select((IndexEntry)selected.get(0), key, key);
+			return selected.isEmpty() ? null : (LeafEntry)selected.get(0);
+		}
+		
+		/** Searches all <tt>LeafEntries</tt> alive at the pinned <tt>Version</tt> whose keys lie in the key 
+		 * range <tt>[min, max]</tt>.
+		 * @param min the minimal bound of the key range of the query.
+		 * @param max the maximal bound of the key range of the query.
+		 * @return a lazy <tt>Cursor</tt> pointing to all query responses in ascending key order.
+		 */
+		public Cursor rangeQuery(final Comparable min, final Comparable max) {
+			final Stack<Iterator> iterators = new Stack<Iterator>();
+			if (root != null)
+				iterators.push(select(root, min, max).iterator());
+			return new AbstractCursor() {
+				protected Object next;
+				
+				@Override
+				protected boolean hasNextObject() {
+					while (!iterators.isEmpty()) {
+						if (!iterators.peek().hasNext())
+							iterators.pop();
+						else {
+							Object entry = iterators.peek().next();
+							if (!(entry instanceof IndexEntry)) {
+								next = entry;
+								return true;
+							}
+							iterators.push(select((IndexEntry)entry, min, max).iterator());
+						}
+					}
+					return false;
+				}
+				
+				@Override
+				protected Object nextObject() {
+					return next;
+				}
+			};
+		}
+	}
+	
 	/**
 	 * 
 	 * 
@@ -2967,6 +3472,10 @@ firstFor:	for (int i = 0; i < candidates.size(); i++ ){
 			int number=dataInput.readInt();
 			Node node = (Node)createNode(level);
 			readPredecessors(dataInput, node);
+			if (node.level()==0 && leafFormat!=null) {
+				node.entries = leafFormat.read(dataInput, number);
+				return node;
+			}
 			for (int i=0; i<number; i++) {
 				Object entry;
 				if(node.level()==0) entry= readLeafEntry(dataInput);
@@ -2981,6 +3490,10 @@ firstFor:	for (int i = 0; i < candidates.size(); i++ ){
 			IntegerConverter.DEFAULT_INSTANCE.writeInt(dataOutput, node.level);
 			IntegerConverter.DEFAULT_INSTANCE.writeInt(dataOutput, node.number());
 			writePredecessors(dataOutput, node);
+			if (node.level==0 && leafFormat!=null) {
+				leafFormat.write(dataOutput, node.entries);
+				return;
+			}
 			for(int i=0; i<node.number();i++) {
 				Object entry=node.getEntry(i);
 				if(node.level==0) writeLeafEntry(dataOutput,(LeafEntry)entry);
@@ -3079,7 +3592,7 @@ firstFor:	for (int i = 0; i < candidates.size(); i++ ){
 		
 		@Override
 		protected int leafEntrySize() {
-			return dataConverter.getMaxObjectSize()+lifespanConverter.getMaxObjectSize();
+			return leafFormat!=null ? leafFormat.maxEntrySize() : dataConverter.getMaxObjectSize()+lifespanConverter.getMaxObjectSize();
 		}
 
 		/**
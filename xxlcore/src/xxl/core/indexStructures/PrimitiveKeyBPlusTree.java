@@ -0,0 +1,640 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import xxl.core.functions.AbstractFunction;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.DoubleConverter;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.io.converters.LongConverter;
+
+/**
+ * This class implements a B+Tree for numerical keys of the types
+ * <tt>int</tt>, <tt>long</tt> and <tt>double</tt>. It differs from a
+ * {@link BPlusTree} only in the representation of its nodes: every
+ * {@link PrimitiveKeyBPlusTree.Node} stores the separation values of its
+ * entries additionally in an array of type <tt>long</tt> (see
+ * {@link PrimitiveKeyBPlusTree.KeyList}). The searches inside a node
+ * (point lookups and the determination of the boundaries of range queries)
+ * are performed by a binary search on this array, so they neither allocate
+ * objects nor call the <tt>compareTo</tt> method of boxed keys.
+ * <p>
+ * The keys are mapped to <tt>long</tt> values in an order-preserving way:
+ * <tt>int</tt> and <tt>long</tt> keys are taken as they are and
+ * <tt>double</tt> keys are mapped to their IEEE 754 bit representation
+ * whose lower 63 bits are inverted for negative values. The ordering of the
+ * mapped values corresponds to the ordering defined by the
+ * <tt>compareTo</tt> methods of the classes <tt>Integer</tt>,
+ * <tt>Long</tt> and <tt>Double</tt>.
+ * <p>
+ * The nodes are converted by a {@link PrimitiveKeyBPlusTree.NodeConverter}
+ * that reads and writes the separation values of index nodes directly as
+ * primitive values. The resulting format is the same as the format of a
+ * <tt>BPlusTree</tt> using an <tt>IntegerConverter</tt>, a
+ * <tt>LongConverter</tt> or a <tt>DoubleConverter</tt> as key converter,
+ * so a tree stored by a <tt>BPlusTree</tt> can be opened by a
+ * <tt>PrimitiveKeyBPlusTree</tt> and vice versa.
+ * <p>
+ * The tree is initialized like a <tt>BPlusTree</tt>. The function
+ * <tt>getKey</tt> has to return <tt>Number</tt> objects of the specified
+ * key type and the separators created by <tt>createSeparator</tt> have to
+ * contain such objects.
+ *
+ * @see BPlusTree
+ */
+public class PrimitiveKeyBPlusTree extends BPlusTree {
+
+    /**
+     * The types of keys that are supported by a
+     * <tt>PrimitiveKeyBPlusTree</tt>.
+     */
+    public static enum KeyType {
+        /**
+         * Keys of the type <tt>int</tt> (<tt>Integer</tt> objects).
+         */
+        INT(IntegerConverter.SIZE),
+        /**
+         * Keys of the type <tt>long</tt> (<tt>Long</tt> objects).
+         */
+        LONG(LongConverter.SIZE),
+        /**
+         * Keys of the type <tt>double</tt> (<tt>Double</tt> objects).
+         */
+        DOUBLE(DoubleConverter.SIZE);
+
+        /**
+         * The number of bytes needed to store a key of this type.
+         */
+        public final int size;
+
+        /**
+         * Creates a new key type.
+         * 
+         * @param size the number of bytes needed to store a key
+         */
+        private KeyType(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Maps the given key to a <tt>long</tt> value. The mapping
+         * preserves the ordering of the keys.
+         * 
+         * @param key the key which is to map
+         * @return the <tt>long</tt> value representing the key
+         */
+        public long encode(Number key) {
+            if (this == DOUBLE) {
+                long bits = Double.doubleToLongBits(key.doubleValue());
+                return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            }
+            return key.longValue();
+        }
+
+        /**
+         * Maps the given <tt>long</tt> value back to the key it represents.
+         * 
+         * @param value a value returned by {@link #encode(Number)}
+         * @return the key represented by the value
+         */
+        public Number decode(long value) {
+            switch (this) {
+                case INT :
+                    return new Integer((int)value);
+                case LONG :
+                    return new Long(value);
+                default :
+                    return new Double(Double.longBitsToDouble(value ^ ((value >> 63) & Long.MAX_VALUE)));
+            }
+        }
+
+        /**
+         * Writes the key represented by the given <tt>long</tt> value to the
+         * given <tt>DataOutput</tt>.
+         * 
+         * @param output the <tt>DataOutput</tt>
+         * @param value a value returned by {@link #encode(Number)}
+         * @throws IOException if an I/O error occurs
+         */
+        public void write(DataOutput output, long value) throws IOException {
+            switch (this) {
+                case INT :
+                    output.writeInt((int)value);
+                    break;
+                case LONG :
+                    output.writeLong(value);
+                    break;
+                default :
+                    output.writeDouble(Double.longBitsToDouble(value ^ ((value >> 63) & Long.MAX_VALUE)));
+            }
+        }
+
+        /**
+         * Reads a key from the given <tt>DataInput</tt> and returns the
+         * <tt>long</tt> value representing it.
+         * 
+         * @param input the <tt>DataInput</tt>
+         * @return the <tt>long</tt> value representing the read key
+         * @throws IOException if an I/O error occurs
+         */
+        public long read(DataInput input) throws IOException {
+            switch (this) {
+                case INT :
+                    return input.readInt();
+                case LONG :
+                    return input.readLong();
+                default :
+                    long bits = Double.doubleToLongBits(input.readDouble());
+                    return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            }
+        }
+    }
+
+    /**
+     * The type of the keys managed by this tree.
+     */
+    protected final KeyType keyType;
+
+    /**
+     * Creates a new <tt>PrimitiveKeyBPlusTree</tt>.
+     * 
+     * @param keyType
+     *            the type of the keys managed by the tree
+     * @param blockSize
+     *            the block size of the underlying storage
+     * @param minCapacityRatio
+     *            the minimal capacity ratio of the tree's nodes
+     * @param allowDuplicate
+     *            signals whether the tree may contain duplicates
+     */
+    public PrimitiveKeyBPlusTree(KeyType keyType, int blockSize, double minCapacityRatio, boolean allowDuplicate) {
+        super(blockSize, minCapacityRatio, allowDuplicate);
+        this.keyType = keyType;
+    }
+    /**
+     * Creates a new <tt>PrimitiveKeyBPlusTree</tt> that does not contain
+     * duplicates.
+     * 
+     * @param keyType
+     *            the type of the keys managed by the tree
+     * @param blockSize
+     *            the block size of the underlying storage
+     * @param minCapacityRatio
+     *            the minimal capacity ratio of the tree's nodes
+     */
+    public PrimitiveKeyBPlusTree(KeyType keyType, int blockSize, double minCapacityRatio) {
+        this(keyType, blockSize, minCapacityRatio, false);
+    }
+    /**
+     * Creates a new <tt>PrimitiveKeyBPlusTree</tt> that does not contain
+     * duplicates. The minimal capacity ratio is set to the default value
+     * 0.5 (i.e. 50%).
+     * 
+     * @param keyType
+     *            the type of the keys managed by the tree
+     * @param blockSize
+     *            the block size of the underlying storage
+     */
+    public PrimitiveKeyBPlusTree(KeyType keyType, int blockSize) {
+        this(keyType, blockSize, 0.5);
+    }
+    /**
+     * Returns the type of the keys managed by this tree.
+     * 
+     * @return the type of the keys managed by this tree
+     */
+    public KeyType keyType() {
+        return keyType;
+    }
+    /**
+     * Creates a new node on a given level.
+     * 
+     * @param level the level of the new Node
+     * @see xxl.core.indexStructures.Tree#createNode(int)
+     */
+    public Tree.Node createNode(int level) {
+        return new Node(level);
+    }
+    /**
+     * Creates the <tt>NodeConverter</tt> of this tree.
+     * 
+     * @return a new {@link PrimitiveKeyBPlusTree.NodeConverter}
+     */
+    protected BPlusTree.NodeConverter createNodeConverter() {
+        return new NodeConverter();
+    }
+    /**
+     * Returns the <tt>long</tt> value representing the separation value of
+     * the given entry of a node.
+     * 
+     * @param entry a data object or an <tt>IndexEntry</tt>
+     * @return the <tt>long</tt> value representing the separation value
+     *         of the entry
+     * @throws NullPointerException if the entry is an <tt>IndexEntry</tt>
+     *         without separator
+     */
+    protected long keyOf(Object entry) {
+        return keyType.encode((Number)(entry instanceof IndexEntry ?
+            ((IndexEntry)entry).separator.sepValue() :
+            key(entry)
+        ));
+    }
+
+    /**
+     * A list of entries of a node that keeps the <tt>long</tt> values
+     * representing the separation values of the entries in an array. The
+     * array is maintained by all operations modifying the list. When the
+     * separators of the entries are modified in place the array has to be
+     * refreshed by calling {@link #invalidate()}.
+     */
+    protected class KeyList extends AbstractList implements RandomAccess {
+        /**
+         * The entries of the list.
+         */
+        protected Object [] entries;
+        /**
+         * The <tt>long</tt> values representing the separation values of
+         * the entries.
+         */
+        protected long [] keys;
+        /**
+         * The number of entries in the list.
+         */
+        protected int size = 0;
+        /**
+         * Signals whether the array <tt>keys</tt> has to be refreshed
+         * before it is used.
+         */
+        protected boolean invalid = false;
+
+        /**
+         * Creates an empty list with the given initial capacity.
+         * 
+         * @param capacity the initial capacity of the list
+         */
+        public KeyList(int capacity) {
+            entries = new Object[Math.max(capacity, 1)];
+            keys = new long[entries.length];
+        }
+        /**
+         * Ensures that the arrays of the list are able to store the given
+         * number of entries.
+         * 
+         * @param capacity the required capacity
+         */
+        protected void ensureCapacity(int capacity) {
+            if (capacity > entries.length) {
+                int newCapacity = Math.max(capacity, entries.length * 3 / 2 + 1);
+                Object [] newEntries = new Object[newCapacity];
+                long [] newKeys = new long[newCapacity];
+                System.arraycopy(entries, 0, newEntries, 0, size);
+                System.arraycopy(keys, 0, newKeys, 0, size);
+                entries = newEntries;
+                keys = newKeys;
+            }
+        }
+        /**
+         * Computes the key of the given entry. If the entry has no
+         * separation value yet, the list is invalidated.
+         * 
+         * @param entry the entry
+         * @return the key of the entry or 0 if it has no separation value
+         */
+        protected long computeKey(Object entry) {
+            if (entry instanceof IndexEntry && ((IndexEntry)entry).separator == null) {
+                invalid = true;
+                return 0;
+            }
+            return keyOf(entry);
+        }
+        /**
+         * Returns the array of keys after refreshing it if necessary. Only
+         * the first {@link #size()} keys of the array are valid.
+         * 
+         * @return the array of keys
+         */
+        public long [] keys() {
+            if (invalid) {
+                invalid = false;
+                for (int i = 0; i < size; i++)
+                    keys[i] = computeKey(entries[i]);
+            }
+            return keys;
+        }
+        /**
+         * Signals that the separation values of the entries have been
+         * changed in place.
+         */
+        public void invalidate() {
+            invalid = true;
+        }
+        /**
+         * Sets the key of the entry stored at the given position. This
+         * method is used by the <tt>NodeConverter</tt> which reads the
+         * keys of index entries separately.
+         * 
+         * @param index the position of the entry
+         * @param key the <tt>long</tt> value representing the separation
+         *        value of the entry
+         */
+        public void setKey(int index, long key) {
+            keys[index] = key;
+        }
+        /**
+         * Searches the given key using the binary search algorithm. The
+         * result corresponds to the result of
+         * {@link java.util.Collections#binarySearch(List, Object)}.
+         * 
+         * @param key the key which is to search
+         * @return the position of the key if it was found or
+         *         <tt>(-(insertion point) - 1)</tt> otherwise
+         */
+        public int binarySearch(long key) {
+            long [] keys = keys();
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key)
+                    low = mid + 1;
+                else if (keys[mid] > key)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -(low + 1);
+        }
+        public Object get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            return entries[index];
+        }
+        public int size() {
+            return size;
+        }
+        public Object set(int index, Object entry) {
+            Object old = get(index);
+            entries[index] = entry;
+            keys[index] = computeKey(entry);
+            return old;
+        }
+        public void add(int index, Object entry) {
+            if (index < 0 || index > size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            ensureCapacity(size + 1);
+            System.arraycopy(entries, index, entries, index + 1, size - index);
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            entries[index] = entry;
+            keys[index] = computeKey(entry);
+            size++;
+            modCount++;
+        }
+        public boolean addAll(int index, Collection collection) {
+            if (index < 0 || index > size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            Object [] added = collection.toArray();
+            ensureCapacity(size + added.length);
+            System.arraycopy(entries, index, entries, index + added.length, size - index);
+            System.arraycopy(keys, index, keys, index + added.length, size - index);
+            for (int i = 0; i < added.length; i++) {
+                entries[index + i] = added[i];
+                keys[index + i] = computeKey(added[i]);
+            }
+            size += added.length;
+            modCount++;
+            return added.length > 0;
+        }
+        public boolean addAll(Collection collection) {
+            return addAll(size, collection);
+        }
+        public Object remove(int index) {
+            Object old = get(index);
+            removeRange(index, index + 1);
+            return old;
+        }
+        protected void removeRange(int fromIndex, int toIndex) {
+            System.arraycopy(entries, toIndex, entries, fromIndex, size - toIndex);
+            System.arraycopy(keys, toIndex, keys, fromIndex, size - toIndex);
+            for (int i = size - (toIndex - fromIndex); i < size; i++)
+                entries[i] = null;
+            size -= toIndex - fromIndex;
+            modCount++;
+        }
+        public void clear() {
+            removeRange(0, size);
+        }
+    }
+
+    /**
+     * This class is used to represent leaf- and non-leaf nodes of a
+     * <tt>PrimitiveKeyBPlusTree</tt>. The entries of the node are stored
+     * in a {@link PrimitiveKeyBPlusTree.KeyList} and the searches inside
+     * the node are performed on the primitive keys of this list.
+     */
+    public class Node extends BPlusTree.Node {
+        /**
+         * Creates a new <tt>Node</tt> on a given level.
+         * 
+         * @param level
+         *            the level of the new <tt>Node</tt>
+         */
+        public Node(final int level) {
+            super(level, new AbstractFunction() {
+                public Object invoke() {
+                    return new KeyList(level == 0 ? (B_LeafNode + 1) : (B_IndexNode + 1));
+                }
+            });
+        }
+        /**
+         * Initializes the <tt>Node</tt> with the given level and entries.
+         * The entries are copied into a new
+         * {@link PrimitiveKeyBPlusTree.KeyList}.
+         * 
+         * @param level
+         *            the level of the <tt>Node</tt>
+         * @param entries
+         *            the entries of the <tt>Node</tt>
+         * @return the initialized <tt>Node</tt>
+         */
+        public BPlusTree.Node initialize(int level, List entries) {
+            super.initialize(level, entries);
+            keyList();
+            return this;
+        }
+        /**
+         * Returns the entries of this node as a
+         * {@link PrimitiveKeyBPlusTree.KeyList}. If the entries have been
+         * replaced by another kind of list, they are copied into a new
+         * <tt>KeyList</tt> first.
+         * 
+         * @return the entries of this node
+         */
+        protected KeyList keyList() {
+            if (!(entries instanceof KeyList)) {
+                KeyList keyList = new KeyList(level == 0 ? (B_LeafNode + 1) : (B_IndexNode + 1));
+                keyList.addAll(entries);
+                entries = keyList;
+            }
+            return (KeyList)entries;
+        }
+        /**
+         * Refreshes the keys of the entries because their separators have
+         * been modified in place.
+         */
+        protected void separatorsChanged() {
+            keyList().invalidate();
+        }
+        /**
+         * Searches the given key in this <tt>Node</tt> using the binary
+         * search algorithm on the primitive keys. Keys that are no
+         * <tt>Numbers</tt> are searched by the method of the super class.
+         * NOTE: if running in duplicate mode left most duplicate value will
+         * be returned
+         * 
+         * @param key
+         *            the key which is to search in this <tt>Node</tt>
+         * @return the position of the key if it was found or its insertion
+         *         position in the list otherwise
+         */
+        protected int binarySearch(Comparable key) {
+            if (entries.size() == 0) return -1;
+            if (!(key instanceof Number)) return super.binarySearch(key);
+            KeyList keyList = keyList();
+            long value = keyType.encode((Number)key);
+            int index = keyList.binarySearch(value);
+            if (duplicate && index >= 0) {
+                long [] keys = keyList.keys();
+                while (index > 0 && keys[index - 1] == value)
+                    index--;
+            }
+            return index;
+        }
+        /**
+         * Right most search of a duplicate value on the primitive keys.
+         * 
+         * @param key
+         *            the key which is to search in this <tt>Node</tt>
+         * @return the position of the right most duplicate value
+         */
+        protected int rightMostSearch(Comparable key) {
+            if (!(key instanceof Number)) return super.rightMostSearch(key);
+            KeyList keyList = keyList();
+            long value = keyType.encode((Number)key);
+            int index = keyList.binarySearch(value);
+            long [] keys = keyList.keys();
+            if (index < 0) {
+                index = (-index - 1 == number()) ? -index - 2 : -index - 1;
+                value = keys[index];
+            }
+            while (index != keyList.size() - 1 && keys[index + 1] == value)
+                index++;
+            return index;
+        }
+    }
+
+    /**
+     * A <tt>NodeConverter</tt> is used by the
+     * <tt>PrimitiveKeyBPlusTree</tt> to convert the <tt>Nodes</tt> for
+     * I/O-purposes. The separation values of index nodes are read and
+     * written as primitive values of the tree's key type and stored
+     * directly in the key array of the node.
+     */
+    public class NodeConverter extends BPlusTree.NodeConverter {
+        /**
+         * Reads a <tt>Node</tt> from the given <tt>DataInput</tt>.
+         * 
+         * @param dataInput
+         *            the <tt>DataInput</tt> from which the <tt>Node</tt>
+         *            has to be read
+         * @param object
+         *            is not used
+         * @return the read <tt>Node</tt>
+         * @throws IOException
+         */
+        public Object read(DataInput dataInput, Object object) throws IOException {
+            int level = dataInput.readInt();
+            Node node = (Node)createNode(level);
+            int number = dataInput.readInt();
+            if (dataInput.readBoolean()) {
+                node.nextNeighbor = (IndexEntry)createIndexEntry(level + 1);
+                node.nextNeighbor.initialize(container().objectIdConverter().read(dataInput, null));
+            }
+            else
+                node.nextNeighbor = null;
+            readEntries(dataInput, node, number);
+            if (level != 0) {
+                KeyList keyList = node.keyList();
+                for (int i = 0; i < number; i++) {
+                    long key = keyType.read(dataInput);
+                    ((IndexEntry)keyList.get(i)).initialize(createSeparator((Comparable)keyType.decode(key)));
+                    keyList.setKey(i, key);
+                }
+                keyList.invalid = false;
+            }
+            return node;
+        }
+        /**
+         * Writes a given <tt>Node</tt> into a given <tt>DataOutput</tt>.
+         * 
+         * @param dataOutput
+         *            the <tt>DataOutput</tt> which the <tt>Node</tt> has to
+         *            be written to
+         * @param object
+         *            the <tt>Node</tt> which has to be written
+         * @throws IOException
+         */
+        public void write(DataOutput dataOutput, Object object) throws IOException {
+            Node node = (Node)object;
+            dataOutput.writeInt(node.level);
+            dataOutput.writeInt(node.number());
+            dataOutput.writeBoolean(node.nextNeighbor != null);
+            if (node.nextNeighbor != null)
+                container().objectIdConverter().write(dataOutput, node.nextNeighbor.id());
+            writeEntries(dataOutput, node);
+            if (node.level != 0) {
+                KeyList keyList = node.keyList();
+                long [] keys = keyList.keys();
+                for (int i = 0; i < keyList.size(); i++)
+                    keyType.write(dataOutput, keys[i]);
+            }
+        }
+        /**
+         * Computes the maximal size (in bytes) of an <tt>IndexEntry</tt>.
+         * 
+         * @return the maximal size of an <tt>IndexEntry</tt>
+         */
+        protected int indexEntrySize() {
+            return container().getIdSize() + keyType.size;
+        }
+    }
+}
@@ -50,7 +50,9 @@ import xxl.core.io.converters.ConvertableConverter;
 import xxl.core.io.converters.Converter;
 import xxl.core.predicates.AbstractPredicate;
 import xxl.core.predicates.Predicate;
+import xxl.core.spatial.LpMetric;
 import xxl.core.spatial.points.DoublePoint;
+import xxl.core.spatial.points.Point;
 import xxl.core.spatial.rectangles.DoublePointRectangle;
 import xxl.core.spatial.rectangles.Rectangle;
 import xxl.core.spatial.rectangles.Rectangles;
@@ -572,6 +574,178 @@ public class RTree extends ORTree {
 
 	}
 		
+	/*********************************************************************/
+	/*                         DISTANCE BROWSING                         */
+	/*********************************************************************/
+
+	/** Returns a cursor delivering the <tt>k</tt> objects of this tree that
+	 * are closest to <tt>queryPoint</tt> in ascending distance. The distance
+	 * of an object is the distance of its bounding rectangle to the query
+	 * point under the given L_p metric, i.e., the exact distance for point
+	 * data. The cursor traverses the tree best-first ordered by MINDIST and
+	 * prunes candidates with the MINMAXDIST of the index entries (see
+	 * N. Roussopoulos, S. Kelley, F. Vincent: Nearest Neighbor Queries,
+	 * SIGMOD 1995). The bounding rectangles of the index entries have to be
+	 * minimal, as it is the case for the rectangles computed by
+	 * {@link ORTree#computeDescriptor(java.util.Collection)}.
+	 *
+	 * @param queryPoint the query point
+	 * @param metric the L_p metric
+	 * @param k the number of nearest neighbors to deliver
+	 * @return a distance browser delivering the <tt>k</tt> nearest neighbors
+	 * @throws IllegalArgumentException if <tt>k</tt> is not positive
+	 */
+	public DistanceBrowser nearestNeighbors (Point queryPoint, LpMetric metric, int k) {
+		return new RTreeDistanceBrowser(queryPoint, metric, k);
+	}
+
+	/** Returns a cursor delivering all objects of this tree in ascending
+	 * distance to <tt>queryPoint</tt>. The result is computed incrementally,
+	 * so the cursor only reads the nodes necessary for the objects consumed.
+	 *
+	 * @param queryPoint the query point
+	 * @param metric the L_p metric
+	 * @return a distance browser delivering all objects of this tree
+	 * @see #nearestNeighbors(Point, LpMetric, int)
+	 */
+	public DistanceBrowser distanceBrowser (Point queryPoint, LpMetric metric) {
+		return new RTreeDistanceBrowser(queryPoint, metric, Integer.MAX_VALUE);
+	}
+
+	/** The distance browser of an <tt>RTree</tt>. Candidates are either
+	 * index entries or data objects.
+	 */
+	protected class RTreeDistanceBrowser extends DistanceBrowser {
+
+		/** The coordinates of the query point.
+		 */
+		protected double[] query;
+
+		/** The exponent of the L_p metric or <tt>Integer.MAX_VALUE</tt> for
+		 * the maximum metric.
+		 */
+		protected int p;
+
+		/** Creates a new distance browser.
+		 *
+		 * @param queryPoint the query point
+		 * @param metric the L_p metric
+		 * @param k the maximum number of results
+		 */
+		public RTreeDistanceBrowser (Point queryPoint, LpMetric metric, int k) {
+			super(RTree.this, k);
+			this.p = metric.getP() <= 0 ? Integer.MAX_VALUE : metric.getP();
+			this.query = new double[queryPoint.dimensions()];
+			for (int i = 0; i < query.length; i++)
+				query[i] = queryPoint.getValue(i);
+		}
+
+		/** Returns the distance of the query point to the nearest point of
+		 * <tt>rectangle</tt>.
+		 *
+		 * @param rectangle a rectangle
+		 * @return the MINDIST of <tt>rectangle</tt>
+		 */
+		protected double minDistance (Rectangle rectangle) {
+			Point left = rectangle.getCorner(false), right = rectangle.getCorner(true);
+			double distance = 0;
+			for (int i = 0; i < query.length; i++) {
+				double d = Math.max(0, Math.max(left.getValue(i)-query[i], query[i]-right.getValue(i)));
+				distance = p == Integer.MAX_VALUE ? Math.max(distance, d) : distance+pow(d);
+			}
+			return p == Integer.MAX_VALUE ? distance : root(distance);
+		}
+
+		/** Returns the smallest distance within which the query point is
+		 * guaranteed to find an object of a minimal bounding
+		 * <tt>rectangle</tt>: every face of such a rectangle contains an
+		 * object, so the farthest point of the nearer face is an upper bound.
+		 *
+		 * @param rectangle a minimal bounding rectangle
+		 * @return the MINMAXDIST of <tt>rectangle</tt>
+		 */
+		protected double minMaxDistance (Rectangle rectangle) {
+			Point left = rectangle.getCorner(false), right = rectangle.getCorner(true);
+			int dimensions = query.length;
+			double[] near = new double[dimensions], far = new double[dimensions];
+			double farSum = 0;
+			for (int i = 0; i < dimensions; i++) {
+				double l = left.getValue(i), r = right.getValue(i);
+				boolean lower = query[i] <= (l+r)/2;
+				near[i] = Math.abs(query[i]-(lower ? l : r));
+				far[i] = Math.abs(query[i]-(lower ? r : l));
+				farSum = p == Integer.MAX_VALUE ? Math.max(farSum, far[i]) : farSum+pow(far[i]);
+			}
+			double minMax = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < dimensions; i++) {
+				double distance;
+				if (p == Integer.MAX_VALUE) {
+					distance = near[i];
+					for (int j = 0; j < dimensions; j++)
+						if (j != i)
+							distance = Math.max(distance, far[j]);
+				}
+				else
+					distance = farSum-pow(far[i])+pow(near[i]);
+				minMax = Math.min(minMax, distance);
+			}
+			return p == Integer.MAX_VALUE ? minMax : root(Math.max(0, minMax));
+		}
+
+		/** Returns <tt>d^p</tt>.
+		 *
+		 * @param d a non-negative value
+		 * @return <tt>d^p</tt>
+		 */
+		private double pow (double d) {
+			return p == 1 ? d : p == 2 ? d*d : Math.pow(d, p);
+		}
+
+		/** Returns <tt>d^(1/p)</tt>.
+		 *
+		 * @param d a non-negative value
+		 * @return <tt>d^(1/p)</tt>
+		 */
+		private double root (double d) {
+			return p == 1 ? d : p == 2 ? Math.sqrt(d) : Math.pow(d, 1.0/p);
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.indexStructures.DistanceBrowser#enqueueRoot()
+		 */
+		@Override
+		protected void enqueueRoot () {
+			if (rootEntry() != null)
+				enqueue(rootEntry(), minDistance((Rectangle)rootDescriptor()), Double.POSITIVE_INFINITY);
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.indexStructures.DistanceBrowser#indexEntry(java.lang.Object)
+		 */
+		@Override
+		protected Tree.IndexEntry indexEntry (Object candidate) {
+			return candidate instanceof IndexEntry ? (IndexEntry)candidate : null;
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.indexStructures.DistanceBrowser#expand(java.lang.Object, xxl.core.indexStructures.Tree.Node)
+		 */
+		@Override
+		protected void expand (Object candidate, Tree.Node node) {
+			for (Iterator entries = ((Node)node).entries(); entries.hasNext();) {
+				Object entry = entries.next();
+				Rectangle rectangle = rectangle(entry);
+				double minDistance = minDistance(rectangle);
+				if (node.level == 0) {
+					distanceComputations++;
+					enqueue(entry, minDistance, minDistance);
+				}
+				else
+					enqueue(entry, minDistance, k == Integer.MAX_VALUE ? Double.POSITIVE_INFINITY : minMaxDistance(rectangle));
+			}
+		}
+	}
+
 	/*********************************************************************/
 	/*                       DEBUG FUNCTIONALITY                         */
 	/*********************************************************************/
@@ -25,11 +25,14 @@ License along with this library;  If not, see <http://www.gnu.org/licenses/>.
 
 package xxl.core.indexStructures;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Stack;
 import java.util.Map.Entry;
@@ -1582,6 +1585,185 @@ public abstract class Tree {
 		return query(queryDescriptor, 0);
 	}
 
+	/** Answers a batch of queries in a single traversal of the tree. 
+	 * The tree is traversed depth-first and every index entry carries the 
+	 * indices of the queries whose descriptors overlap it, i.e., the queries 
+	 * returned the entry by {@link Node#query(Descriptor)}. A subtree is only 
+	 * entered if at least one query has been routed to it, so every node is read 
+	 * at most once per batch, no matter how many queries visit it. 
+	 * <p>
+	 * The result is a lazy cursor of {@link MapEntry map entries}. The key of an 
+	 * entry is the index of the query in <tt>queryDescriptors</tt>, the value 
+	 * is a response object of this query, i.e., an entry of the given level 
+	 * that would also be delivered by <tt>query(queryDescriptors[key], targetLevel)</tt>. 
+	 * The results of different queries are interleaved. 
+	 * 
+	 * @param queryDescriptors the descriptors of the queries
+	 * @param targetLevel the tree-level to provide the answer-objects
+	 * @return a lazy Cursor pointing to pairs of query indices and response objects
+	 * @see #query(Descriptor, int)
+	*/
+	public Cursor query (Descriptor [] queryDescriptors, int targetLevel) {
+		return new BatchQuery(queryDescriptors, targetLevel);
+	}
+
+	/** Answers a batch of queries on the leaf level in a single traversal 
+	 * of the tree. 
+	 * 
+	 * @param queryDescriptors the descriptors of the queries
+	 * @return a lazy Cursor pointing to pairs of query indices and data objects
+	 * @see #query(Descriptor[], int)
+	*/
+	public Cursor query (Descriptor [] queryDescriptors) {
+		return query(queryDescriptors, 0);
+	}
+
+	/** The cursor returned by {@link Tree#query(Descriptor[], int)}. 
+	 * The routes of the tree that still have to be visited are kept on a 
+	 * stack. A route consists of an entry, the level of the node containing it
+	 * and the indices of the queries it was routed to.
+	 */
+	public class BatchQuery extends AbstractCursor {
+
+		/** The descriptors of the queries.
+		 */
+		protected Descriptor [] queryDescriptors;
+
+		/** The level of the response objects.
+		 */
+		protected int targetLevel;
+
+		/** The entries still to visit.
+		 */
+		protected Stack<Object> entries = new Stack<Object>();
+
+		/** The levels of the nodes containing the entries in {@link #entries}.
+		 */
+		protected Stack<Integer> levels = new Stack<Integer>();
+
+		/** The indices of the queries routed to the entries in {@link #entries}.
+		 */
+		protected Stack<int[]> routes = new Stack<int[]>();
+
+		/** The response object delivered next.
+		 */
+		protected Object response;
+
+		/** The queries <tt>response</tt> has been routed to.
+		 */
+		protected int [] responseQueries;
+
+		/** The position of the next query index in <tt>responseQueries</tt>.
+		 */
+		protected int position;
+
+		/** The number of nodes read so far.
+		 */
+		protected int nodeAccesses = 0;
+
+		/** Creates a new batch query.
+		 * 
+		 * @param queryDescriptors the descriptors of the queries
+		 * @param targetLevel the tree-level to provide the answer-objects
+		 */
+		public BatchQuery (Descriptor [] queryDescriptors, int targetLevel) {
+			this.queryDescriptors = queryDescriptors;
+			this.targetLevel = targetLevel;
+			if (height()>0) {
+				int [] queries = new int[queryDescriptors.length];
+				int count = 0;
+				for (int i = 0; i < queryDescriptors.length; i++)
+					if (queryDescriptors[i].overlaps(rootDescriptor()))
+						queries[count++] = i;
+				if (count>0)
+					push(rootEntry(), height(), Arrays.copyOf(queries, count));
+			}
+		}
+
+		/** Pushes an entry and the queries routed to it on the stack.
+		 * 
+		 * @param entry the entry
+		 * @param level the level of the node containing <tt>entry</tt>
+		 * @param queries the indices of the queries routed to <tt>entry</tt>
+		 */
+		protected void push (Object entry, int level, int [] queries) {
+			entries.push(entry);
+			levels.push(level);
+			routes.push(queries);
+		}
+
+		/** Reads the node referenced by <tt>indexEntry</tt> and pushes its 
+		 * entries along with the queries routed to them.
+		 * 
+		 * @param indexEntry the index entry
+		 * @param queries the indices of the queries routed to <tt>indexEntry</tt>
+		 */
+		protected void expand (IndexEntry indexEntry, int [] queries) {
+			Node node = indexEntry.get(true);
+			nodeAccesses++;
+			List<Object> nodeEntries = new ArrayList<Object>();
+			List<int[]> nodeRoutes = new ArrayList<int[]>();
+			int [] counts = new int[0];
+			Map<Object,Integer> positions = new IdentityHashMap<Object,Integer>();
+			for (int query : queries)
+				for (Iterator it = node.query(queryDescriptors[query]); it.hasNext();) {
+					Object entry = it.next();
+					Integer position = positions.get(entry);
+					if (position == null) {
+						positions.put(entry, position = nodeEntries.size());
+						nodeEntries.add(entry);
+						nodeRoutes.add(new int[Math.min(4, queries.length)]);
+						if (counts.length == position)
+							counts = Arrays.copyOf(counts, Math.max(4, position*2));
+					}
+					int [] route = nodeRoutes.get(position);
+					if (counts[position] == route.length)
+						nodeRoutes.set(position, route = Arrays.copyOf(route, route.length*2));
+					route[counts[position]++] = query;
+				}
+			for (int i = nodeEntries.size(); --i >= 0;)
+				push(nodeEntries.get(i), node.level, Arrays.copyOf(nodeRoutes.get(i), counts[i]));
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.cursors.AbstractCursor#hasNextObject()
+		 */
+		@Override
+		protected boolean hasNextObject () {
+			while (responseQueries == null || position == responseQueries.length) {
+				if (entries.isEmpty())
+					return false;
+				Object entry = entries.pop();
+				int level = levels.pop();
+				int [] queries = routes.pop();
+				if (level == targetLevel) {
+					response = entry;
+					responseQueries = queries;
+					position = 0;
+				}
+				else if (((IndexEntry)entry).level()>=targetLevel)
+					expand((IndexEntry)entry, queries);
+			}
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.cursors.AbstractCursor#nextObject()
+		 */
+		@Override
+		protected Object nextObject () {
+			return new MapEntry<Integer,Object>(responseQueries[position++], response);
+		}
+
+		/** Returns the number of nodes read so far by this query.
+		 * 
+		 * @return the number of node accesses
+		 */
+		public int nodeAccesses () {
+			return nodeAccesses;
+		}
+	}
+
 	/** This method executes a query unsing the rootDescriptor on a given level. 
 	 * That means, that the respose consists of all entries of the given level.
 	 * @param level the target level of the query
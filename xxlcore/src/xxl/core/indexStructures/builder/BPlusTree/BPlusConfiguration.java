@@ -34,6 +34,7 @@ import xxl.core.collections.containers.io.BlockFileContainer;
 import xxl.core.collections.containers.io.BufferedContainer;
 import xxl.core.indexStructures.BPlusIndexedSet;
 import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.PrimitiveKeyBPlusTree;
 import xxl.core.indexStructures.builder.IndexBuilder;
 import xxl.core.indexStructures.builder.IndexConfiguration;
 import xxl.core.io.Buffer;
@@ -309,6 +310,41 @@ public abstract class BPlusConfiguration extends IndexConfiguration {
       return this;
     }
 
+    /**
+     * Enables or disables the primitive key layout of the tree's nodes. If it is enabled, a
+     * {@link PrimitiveKeyBPlusTree} is created which keeps the keys of its nodes in an array of
+     * primitive values and searches its nodes without boxing or comparing key objects. The on-disk
+     * format of the nodes is not affected. By default the layout is disabled. <br/>
+     * <br/>
+     * <b>Note:</b> The primitive key layout is only available for primitive types managing
+     * <code>int</code>, <code>long</code> or <code>double</code> values.
+     * 
+     * @param primitiveKeys <code>true</code> if the primitive key layout should be used
+     * 
+     * @return The current <code>BPlusTreeConfiguration</code> instance including the effect of this
+     *         method call. With this it is possible to set the configuration in one single line
+     *         like
+     * 
+     *         <code><pre>BPlusTreeConfiguration con = new BPlusTreeConfiguration(..).setA().setB()...</pre></code>
+     * 
+     *         instead of setting each property in a single call like <code><pre>
+     *  BPlusTreeConfiguration con = new BPlusTreeConfiguration(..);
+     *  con.setA();
+     *  con.setB();
+     *  ...
+     *  </pre></code>
+     * 
+     * @see PrimitiveKeyBPlusTree
+     */
+    public Creator setPrimitiveKeys(boolean primitiveKeys) {
+      if (primitiveKeys && toKeyType(mManagedType) == null)
+        throw new IllegalArgumentException(
+            "The primitive key layout is not available for content type \""
+                + mManagedType.getContentType() + "\"");
+      mPrimitiveKeys = primitiveKeys;
+      return this;
+    }
+
     /**
      * Sets the file container used to manage file output. By default a matching one is generated
      * automatically when calling {@link #storeAt(String)}.
@@ -399,6 +435,7 @@ public abstract class BPlusConfiguration extends IndexConfiguration {
               + mLocation;
       dump += "\n\tContent Type: " + mManagedType.getContentType();
       dump += "\n\tTable Name: " + mManagedType.getTableName();
+      dump += "\n\tPrimitive Keys: " + mPrimitiveKeys;
 
       if (mManagedType instanceof TupleType) {
         TupleType tt = (TupleType) mManagedType;
@@ -585,6 +622,11 @@ public abstract class BPlusConfiguration extends IndexConfiguration {
    */
   Container mFileContainer = null;
 
+  /*
+   * Indicates whether the nodes of the tree should keep their keys in an array of primitive values
+   */
+  protected boolean mPrimitiveKeys = false;
+
   /*
    * The data type descriptor which contains type specific functions (e.g. StringConverter for a
    * String type)
@@ -608,6 +650,49 @@ public abstract class BPlusConfiguration extends IndexConfiguration {
     return mManagedType.getDataConverter();
   }
 
+  /**
+   * Returns the type of the primitive keys if the primitive key layout is enabled for the tree's
+   * nodes and <code>null</code> otherwise.
+   * 
+   * <br/>
+   * <br/>
+   * <b>Note</b>: Because this only used by the BPlus tree builder the visibility of this method is
+   * restricted to package wide visibility.
+   * 
+   * @return the type of the primitive keys or <code>null</code>
+   * 
+   * @see PrimitiveKeyBPlusTree
+   */
+  PrimitiveKeyBPlusTree.KeyType getPrimitiveKeyType() {
+    return mPrimitiveKeys ? toKeyType(mManagedType) : null;
+  }
+
+  /**
+   * Returns <code>true</code> if the primitive key layout is enabled for the tree's nodes.
+   * 
+   * @return <code>true</code> if the primitive key layout is enabled
+   */
+  public boolean usesPrimitiveKeys() {
+    return mPrimitiveKeys;
+  }
+
+  /*
+   * Returns the primitive key type matching the given managed type or null if there is none
+   */
+  static PrimitiveKeyBPlusTree.KeyType toKeyType(ManagedType managedType) {
+    if (!(managedType instanceof PrimitiveType)) return null;
+    switch (managedType.getContentClassSubType()) {
+      case INT:
+        return PrimitiveKeyBPlusTree.KeyType.INT;
+      case LONG:
+        return PrimitiveKeyBPlusTree.KeyType.LONG;
+      case DOUBLE:
+        return PrimitiveKeyBPlusTree.KeyType.DOUBLE;
+      default:
+        return null;
+    }
+  }
+
   /**
    * Returns the file container if the BPlus tree is stored on a storage medium or throws an
    * <code>IllegalArgumentException</code> if the location is the main memory. <br/>
@@ -52,6 +52,7 @@ import xxl.core.indexStructures.BPlusIndexedSet;
 import xxl.core.indexStructures.BPlusTree;
 import xxl.core.indexStructures.BPlusTree.IndexEntry;
 import xxl.core.indexStructures.BPlusTree.KeyRange;
+import xxl.core.indexStructures.PrimitiveKeyBPlusTree;
 import xxl.core.indexStructures.Separator;
 import xxl.core.indexStructures.keyRanges.BooleanKeyRange;
 import xxl.core.indexStructures.keyRanges.ByteKeyRange;
@@ -173,6 +174,7 @@ public class BPlusTreeBuilder<E>
   public static final String PROPERTY_INDEX_TYPE = "Index Type";
   public static final String PROPERTY_INDEX_TYPE_BPLUS = "BPlusTree";
   public static final String PROPERTY_KEY_INDICES = "Key indices";
+  public static final String PROPERTY_PRIMITIVE_KEYS = "Primitive keys";
   private static final String PROPERTY_TABLE_COLUMN_AUTOINCREMENT =
       "Auto Increment";
   private static final String PROPERTY_TABLE_COLUMN_CASE_SENSITIVE =
@@ -273,6 +275,9 @@ public class BPlusTreeBuilder<E>
     Creator requirements =
         new Creator(new PrimitiveType(restoreType, tableName));
     requirements.setBlockSize(blockSize);
+    if (serializedInstance.containsProperty(PROPERTY_PRIMITIVE_KEYS))
+      requirements.setPrimitiveKeys(Boolean.valueOf(String
+          .valueOf(serializedInstance.getProperty(PROPERTY_PRIMITIVE_KEYS))));
 
     return (BPlusTreeBuilder) requirements.setReloadMode(storeTreeFilePath)
         .getBuilder();
@@ -504,7 +509,10 @@ public class BPlusTreeBuilder<E>
 
     BPlusConfiguration configuration = (BPlusConfiguration) mIndexConfiguration;
 
-    BPlusTree retval = new BPlusTree(configuration.getBlockSize());
+    PrimitiveKeyBPlusTree.KeyType keyType = configuration.getPrimitiveKeyType();
+    BPlusTree retval =
+        keyType == null ? new BPlusTree(configuration.getBlockSize())
+            : new PrimitiveKeyBPlusTree(keyType, configuration.getBlockSize());
 
     Container bufferedContainer = null;
     Container fileContainer = null;
@@ -839,6 +847,8 @@ public class BPlusTreeBuilder<E>
     treeInfo.add(new Property(PROPERTY_TABLE_NAME, config.getTableName()));
     treeInfo.add(new Property(PROPERTY_CONTENT_TYPE, config.getContentType()));
     treeInfo.add(new Property(PROPERTY_BLOCK_SIZE, config.getBlockSize()));
+    if (config.usesPrimitiveKeys())
+      treeInfo.add(new Property(PROPERTY_PRIMITIVE_KEYS, true));
 
     /*
      * Write additional meta data for columns etc. if the the BPlus tree stores tuples
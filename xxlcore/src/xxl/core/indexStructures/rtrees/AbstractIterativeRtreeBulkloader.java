@@ -34,6 +34,11 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import xxl.core.collections.MapEntry;
 import xxl.core.collections.containers.Container;
@@ -55,6 +60,7 @@ import xxl.core.io.converters.LongConverter;
 import xxl.core.spatial.rectangles.DoublePointRectangle;
 import xxl.core.spatial.rectangles.Rectangle;
 import xxl.core.spatial.rectangles.Rectangles;
+import xxl.core.util.WrappingRuntimeException;
 
 /**
  * This class provides basic functionality for level-by-level loading of R-trees. 
@@ -279,6 +285,30 @@ public abstract class AbstractIterativeRtreeBulkloader<T> implements IterativeBu
 	 * internal state 
 	 */
 	protected int level = 0;
+	/**
+	 * executor building independent partitions of a level in parallel; <code>null</code> in sequential mode
+	 */
+	protected ExecutorService executor = null;
+	/**
+	 * number of partitions that are built concurrently
+	 */
+	protected int parallelism = 1;
+	/**
+	 * signals whether the executor is created and shut down by the loader
+	 */
+	protected boolean shutdownExecutor = false;
+	/**
+	 * number of nodes a worker collects before they are written as one contiguous region into the tree container
+	 */
+	protected int regionSize = 64;
+	/**
+	 * synchronizes the workers writing into the tree container and into the auxiliary level storage
+	 */
+	protected final Object regionLock = new Object();
+	/**
+	 * is used to generate unique names for the temporal files of concurrent workers
+	 */
+	protected final AtomicInteger temporalFiles = new AtomicInteger();
 	/**
 	 * is used for initializing the auxiliary storage for level entries
 	 * 
@@ -516,22 +546,189 @@ public abstract class AbstractIterativeRtreeBulkloader<T> implements IterativeBu
 	 * @return
 	 */
 	public MapEntry<Long,DoublePointRectangle> writeNode(List<?> entries, int level, RTree rtree, Container treeContainer) {
+		DoublePointRectangle descriptor = computeDescriptor(entries, level);
+		final Node node = (Node) rtree.createNode(level);
+		Long nodeId = (Long) treeContainer.reserve(new Constant<Node>(node));
+		node.initialize(level, entries);
+		treeContainer.update(nodeId, node);// I/O 
+		return new MapEntry<Long, DoublePointRectangle>(nodeId, descriptor);
+	}
+	
+	/**
+	 * Computes the MBR of the given node entries.
+	 * 
+	 * @param entries
+	 * @param level
+	 * @return
+	 */
+	protected DoublePointRectangle computeDescriptor(List<?> entries, int level){
 		DoublePointRectangle descriptor = null;
 		for (Object o : entries ){
 			DoublePointRectangle rec = (level == 0) ? (DoublePointRectangle)(toRectangle.invoke((T)o)): (DoublePointRectangle)((IndexEntry)o).descriptor();
-			
 			if (descriptor == null)
 				descriptor = new DoublePointRectangle(rec);
 			else 
 				descriptor.union(rec);
 		}
-		final Node node = (Node) rtree.createNode(level);
-		Long nodeId = (Long) treeContainer.reserve(new Constant<Node>(node));
-		node.initialize(level, entries);
-		treeContainer.update(nodeId, node);// I/O 
-		return new MapEntry<Long, DoublePointRectangle>(nodeId, descriptor);
+		return descriptor;
+	}
+	/**
+	 * Switches the loader to the parallel mode. Independent partitions of a level (slabs of STR, subtrees of TGS) are 
+	 * built by the given executor. Every worker collects its nodes and writes them as contiguous regions of 
+	 * {@link #regionSize} nodes into the tree container. The levels are still processed one after another, 
+	 * i.e., the upper levels are stitched together from the index entries produced by all workers. 
+	 * The executor is not shut down by the loader. 
+	 * 
+	 * @param executor executor building the partitions
+	 * @param parallelism number of partitions that are built concurrently
+	 * @return this loader
+	 * @throws IllegalArgumentException if <code>parallelism</code> is less than 1
+	 */
+	public AbstractIterativeRtreeBulkloader<T> parallelize(ExecutorService executor, int parallelism){
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be positive");
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.shutdownExecutor = false;
+		return this;
+	}
+	/**
+	 * Switches the loader to the parallel mode using a {@link ForkJoinPool} with the given parallelism. 
+	 * The pool is created when the loading starts and shut down when it is finished.
+	 *  
+	 * @param parallelism number of worker threads
+	 * @return this loader
+	 * @throws IllegalArgumentException if <code>parallelism</code> is less than 1
+	 */
+	public AbstractIterativeRtreeBulkloader<T> parallelize(int parallelism){
+		parallelize(null, parallelism);
+		this.shutdownExecutor = true;
+		return this;
+	}
+	/**
+	 * Returns <code>true</code> if the loader runs in parallel mode.
+	 * 
+	 * @return <code>true</code> if the loader runs in parallel mode
+	 */
+	public boolean isParallel(){
+		return executor != null || shutdownExecutor;
+	}
+	/**
+	 * Creates the executor if it is owned by the loader. Is called before the loading starts.
+	 */
+	protected void openExecutor(){
+		if (shutdownExecutor && executor == null)
+			executor = new ForkJoinPool(parallelism);
+	}
+	/**
+	 * Shuts down the executor if it is owned by the loader. Is called after the loading is finished.
+	 */
+	protected void closeExecutor(){
+		if (shutdownExecutor && executor != null){
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+	/**
+	 * Waits for the result of a worker. 
+	 * 
+	 * @param future
+	 * @return result of the worker
+	 * @throws IOException if the worker failed with an I/O error
+	 */
+	protected static <V> V await(Future<V> future) throws IOException{
+		try {
+			return future.get();
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new WrappingRuntimeException(ie);
+		}
+		catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException)
+				throw (IOException)ee.getCause();
+			if (ee.getCause() instanceof RuntimeException)
+				throw (RuntimeException)ee.getCause();
+			if (ee.getCause() instanceof Error)
+				throw (Error)ee.getCause();
+			throw new WrappingRuntimeException(ee.getCause());
+		}
+	}
+	/**
+	 * Collects the nodes created by one worker. The nodes are written as a contiguous region into the tree container 
+	 * as soon as {@link AbstractIterativeRtreeBulkloader#regionSize} nodes are collected or {@link #flush()} is called. 
+	 * The index entries of the written nodes are stored in the auxiliary level storage.  
+	 */
+	protected class Region {
+		/**
+		 * output of the index entries; if <code>null</code> {@link AbstractIterativeRtreeBulkloader#storeTempIndexEntry(MapEntry)} is used  
+		 */
+		protected DataOutput out;
+		/**
+		 * collected nodes
+		 */
+		protected List<Node> nodes = new ArrayList<Node>();
+		/**
+		 * descriptors of the collected nodes
+		 */
+		protected List<DoublePointRectangle> descriptors = new ArrayList<DoublePointRectangle>();
+		/**
+		 * number of nodes created by this region 
+		 */
+		protected int written = 0;
+		/**
+		 * 
+		 * @param out output of the index entries; if <code>null</code> {@link AbstractIterativeRtreeBulkloader#storeTempIndexEntry(MapEntry)} is used
+		 */
+		public Region(DataOutput out){
+			this.out = out;
+		}
+		/**
+		 * Creates a node containing the given entries. 
+		 * 
+		 * @param entries
+		 * @param level
+		 * @throws IOException
+		 */
+		public void write(List<?> entries, int level) throws IOException{
+			Node node = (Node) rtree.createNode(level);
+			node.initialize(level, entries);
+			nodes.add(node);
+			descriptors.add(computeDescriptor(entries, level));
+			written++;
+			if (nodes.size() >= regionSize)
+				flush();
+		}
+		/**
+		 * Writes the collected nodes into the tree container.
+		 * 
+		 * @throws IOException
+		 */
+		public void flush() throws IOException{
+			synchronized (regionLock) {
+				for (int i = 0; i < nodes.size(); i++){
+					Node node = nodes.get(i);
+					Long nodeId = (Long) treeContainer.reserve(new Constant<Node>(node));
+					treeContainer.update(nodeId, node);
+					MapEntry<Long, DoublePointRectangle> entry = new MapEntry<Long, DoublePointRectangle>(nodeId, descriptors.get(i));
+					if (out == null)
+						storeTempIndexEntry(entry);
+					else
+						mapEntryConverter.write(out, entry);
+				}
+			}
+			nodes.clear();
+			descriptors.clear();
+		}
+		/**
+		 * Returns the number of nodes created by this region.
+		 * 
+		 * @return number of nodes created by this region
+		 */
+		public int written(){
+			return written;
+		}
 	}
-	
 	/**
 	 * 
 	 * @param iterator
@@ -34,9 +34,12 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import xxl.core.collections.MapEntry;
 import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.SynchronizedContainer;
 import xxl.core.collections.containers.io.BlockFileContainer;
 import xxl.core.collections.queues.Queue;
 import xxl.core.collections.queues.io.BlockBasedQueue;
@@ -158,6 +161,9 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 	 * @see xxl.core.indexStructures.rtrees.AbstractIterativeRtreeBulkloader#buildRTree(java.util.Iterator)
 	 */
 	public void buildRTree(Iterator rectangles) throws IOException{
+		openExecutor();
+		if (isParallel() && !(queueContainer instanceof SynchronizedContainer))
+			queueContainer = new SynchronizedContainer(queueContainer);
 		Iterator tempIterator = rectangles;
 		int level = 0;
 		int numberOfRecs = numberOfDataObjects;
@@ -173,6 +179,7 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 			}
 			file.deleteOnExit();
 		}
+		closeExecutor();
 		// create rtree
 		MapEntry<Long, DoublePointRectangle> entry = (MapEntry<Long, DoublePointRectangle>)(tempIterator.next());
 		DoublePointRectangle rootDescriptor = entry.getValue();
@@ -201,6 +208,20 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 	 * @throws IOException
 	 */
 	protected int writeSlab(Iterator data, int number, int level, int dim) throws IOException{
+		return writeSlab(data, number, level, dim, null);
+	}
+	
+	/**
+	 * 
+	 * @param data
+	 * @param number
+	 * @param level
+	 * @param dim
+	 * @param region collects the nodes of a worker; if <code>null</code> the nodes are written directly
+	 * @return
+	 * @throws IOException
+	 */
+	protected int writeSlab(Iterator data, int number, int level, int dim, Region region) throws IOException{
 		// write rectangles to 
 		Iterator sorter = sort(data, dim, level);
 		int written = 0;
@@ -221,9 +242,13 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 					entries.add(rec);
 				}
 			}
-			MapEntry<Long, DoublePointRectangle> entry = writeNode(entries, level, this.rtree, this.treeContainer);
+			if (region != null){
+				region.write(entries, level);
+			}else{
+				MapEntry<Long, DoublePointRectangle> entry = writeNode(entries, level, this.rtree, this.treeContainer);
+				storeTempIndexEntry(entry);
+			}
 			written++;
-			storeTempIndexEntry(entry);
 		}
 		return written;
 	}
@@ -238,14 +263,89 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 	 * @throws IOException
 	 */
 	public int sortSTRData(Iterator data, int number, int level, int dim, int depth) throws IOException{
-		if (depth <= 1){
+		if (executor != null && depth > 1){
+			return sortSTRDataParallel(data, number, level, dim, depth);
+		}
+		return sortSTRData(data, number, level, dim, depth, null);
+	}
+	
+	/**
+	 * Parallel version of {@link #sortSTRData(Iterator, int, int, int, int)}. The calling thread sorts the data according 
+	 * to the first dimension and cuts it into slabs. Every slab is tiled according to the remaining dimensions by a worker 
+	 * that writes its nodes into its own regions of the tree container. 
+	 * 
+	 * @param data
+	 * @param number
+	 * @param level
+	 * @param dim
+	 * @param depth
+	 * @return
+	 * @throws IOException
+	 */
+	protected int sortSTRDataParallel(Iterator data, int number, final int level, int dim, int depth) throws IOException{
+		int numberOfBlocks = number / ((level== 0) ? (B_Leaf) : B_Index); 
+		int splitsProDim = (int) Math.pow(numberOfBlocks, 1.0 / dimension);
+		if(numberOfBlocks <= 1){
 			return writeSlab(data, number, level, dim); 
 		}
+		Iterator sorter = sort(data, dim, level);
+		final int nextDepth = depth - 1;
+		final int nextDim = sortingFunction[dimension-nextDepth];
+		List<Future<Integer>> workers = new ArrayList<Future<Integer>>();
+		int written = 0;
+		int finished = 0;
+		for(int i = 0; i < splitsProDim+1; i++){
+			BlockBasedQueue queue = new BlockBasedQueue(queueContainer, 
+					blockSize, 
+					(level> 0)? mapEntryConverter: dataConverter, 
+					new Constant(0),
+					new Constant(0));
+			int j = 0;
+			for(j = 0 ; sorter.hasNext() && j < (number /splitsProDim); j++  ){
+				queue.enqueue(sorter.next());
+			}
+			if (j == 0)
+				break;
+			final Iterator slab = new QueueCursor(queue);
+			final int slabSize = j;
+			workers.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws IOException {
+					Region region = new Region(null);
+					int slabWritten = sortSTRData(slab, slabSize, level, nextDim, nextDepth, region);
+					region.flush();
+					return slabWritten;
+				}
+			}));
+			// bounds the number of slabs waiting in temporal queues
+			if (workers.size() - finished > 2 * parallelism)
+				written += await(workers.get(finished++));
+		}
+		while (finished < workers.size())
+			written += await(workers.get(finished++));
+		return written;
+	}
+	
+	/**
+	 * 
+	 * @param data
+	 * @param number
+	 * @param level
+	 * @param dim
+	 * @param depth
+	 * @param region collects the nodes of a worker; if <code>null</code> the nodes are written directly
+	 * @return
+	 * @throws IOException
+	 */
+	protected int sortSTRData(Iterator data, int number, int level, int dim, int depth, Region region) throws IOException{
+		if (depth <= 1){
+			return writeSlab(data, number, level, dim, region); 
+		}
 		// define number of splits prodim
 		int numberOfBlocks = number / ((level== 0) ? (B_Leaf) : B_Index); 
 		int splitsProDim = (int) Math.pow(numberOfBlocks, 1.0 / dimension);
 		if(numberOfBlocks <= 1){
-			return writeSlab(data, number, level, dim); 
+			return writeSlab(data, number, level, dim, region); 
 		}
 		//1. sort with comprator
 		Iterator sorter = sort(data, dim, level);
@@ -263,7 +363,7 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 				queue.enqueue(obj);
 			}
 			// recursive call 
-			written  += sortSTRData(new QueueCursor(queue), j, level, sortingFunction[dimension-depth], depth);
+			written  += sortSTRData(new QueueCursor(queue), j, level, sortingFunction[dimension-depth], depth, region);
 		}
 		return written;
 	}
@@ -303,7 +403,10 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 	protected Iterator sort(Iterator data, int dim, int level) throws IOException{
 		final Converter converter = (level > 0 ) ? mapEntryConverter: dataConverter;
 		int objectSize = (level > 0 ) ? dimension *  16 : dataSize; 
-		Container container = new BlockFileContainer(path  + "tmpsortqueue.tmp" + dim  + level, blockSize);
+		// concurrent workers need their own files and share the memory 
+		String suffix = isParallel() ? "_" + temporalFiles.getAndIncrement() : "";
+		int memory = isParallel() ? SORT_BUFFER_SIZE / (parallelism + 1) : SORT_BUFFER_SIZE;
+		Container container = new BlockFileContainer(path  + "tmpsortqueue.tmp" + dim  + level + suffix, blockSize);
 		final Container queueContainer = container;
 		final Function<Function<?, Integer>, Queue<?>> queueFunction =
 			new AbstractFunction<Function<?, Integer>, Queue<?>>() {
@@ -314,7 +417,7 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 		};
 		Comparator<?> comp = getDimensionComparator(dim, level);
 		return  new MergeSorter(data, 
-				comp, objectSize , SORT_BUFFER_SIZE,SORT_BUFFER_SIZE, queueFunction, false);
+				comp, objectSize , memory, memory, queueFunction, false);
 	}
 	/*
 	 * (non-Javadoc)
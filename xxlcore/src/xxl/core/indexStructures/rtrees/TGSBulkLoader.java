@@ -11,6 +11,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import xxl.core.collections.MapEntry;
 import xxl.core.collections.containers.Container;
@@ -215,6 +217,7 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 	 * @see xxl.core.indexStructures.rtrees.AbstractIterativeRtreeBulkloader#buildRTree(java.util.Iterator)
 	 */
 	public void buildRTree(Iterator<T> rectangles) throws IOException{
+		openExecutor();
 		Iterator tempIterator = rectangles;
 		int level = 0;
 		int numberOfRecs = numberOfDataObjects;
@@ -229,7 +232,7 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 			}
 			// main call 
 			maxRecordsProNode = (level > 0) ? B_Index : B_Leaf; 
-			int written = 	tileData(data, data.size(), level, out);
+			int written = isParallel() ? tileDataParallel(data, level, out) : tileData(data, data.size(), level, out);
 			//System.out.println("level " + level);
 			level++;
 			numberOfRecs = written; 
@@ -239,6 +242,7 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 			}
 			file.deleteOnExit();
 		}
+		closeExecutor();
 		// create rtree
 		MapEntry<Long, DoublePointRectangle> entry = (MapEntry<Long, DoublePointRectangle>)(tempIterator.next());
 		DoublePointRectangle rootDescriptor = entry.getValue();
@@ -315,6 +319,38 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 		return written;
 	}
 	
+	/**
+	 * Same as {@link #writeNode(Iterator, int, int, DataOutput)}, but the nodes are collected by the given region.   
+	 * 
+	 * @param data
+	 * @param number
+	 * @param level
+	 * @param region
+	 * @return
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	protected int writeNode(Iterator data, int number, int level, Region region) throws IOException{
+		int written = 0;
+		int nodeSize = (level > 0) ? B_Index: B_Leaf;
+		while(data.hasNext() ){
+			List entries = new ArrayList(nodeSize);
+			for (int i = 0; i <  nodeSize && data.hasNext(); i++ ){
+				if(level != 0 ){
+					MapEntry<Long, DoublePointRectangle> mapEntry = (MapEntry<Long, DoublePointRectangle>) data.next();
+					IndexEntry indexEntry = (IndexEntry) rtree.createIndexEntry(level);
+					((ORTree.IndexEntry)indexEntry.initialize(mapEntry.getKey())).initialize(mapEntry.getValue());
+					entries.add(indexEntry);
+				}else{
+					entries.add(data.next());
+				}
+			}
+			region.write(entries, level);
+			written++;
+		}
+		return written;
+	}
+	
 	/**
 	 * 
 	 * @param dataF
@@ -329,8 +365,89 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 		if (number <= maxRecordsProNode){ 
 			return  writeNode( dataF.iterator(), number, level,  out); 
 		}
+		List[] partitions = splitData(dataF, number, level);
+		return tileData( partitions[0], partitions[0].size(), level,  out ) 
+		+  tileData(partitions[1], partitions[1].size(), level, out);
+	}
+	
+	/**
+	 * Same as {@link #tileData(List, int, int, DataOutput)}, but the nodes are collected by the given region. 
+	 * 
+	 * @param dataF
+	 * @param number
+	 * @param level
+	 * @param region
+	 * @return
+	 * @throws IOException
+	 */
+	protected int tileData(List dataF, int number, int level, Region region) throws IOException{
+		if (number <= maxRecordsProNode){ 
+			return  writeNode( dataF.iterator(), number, level,  region); 
+		}
+		List[] partitions = splitData(dataF, number, level);
+		return tileData( partitions[0], partitions[0].size(), level,  region ) 
+		+  tileData(partitions[1], partitions[1].size(), level, region);
+	}
+	
+	/**
+	 * Parallel version of {@link #tileData(List, int, int, DataOutput)}. The calling thread splits the largest 
+	 * partitions until there are enough independent subtrees for the workers. Since each split only depends on its 
+	 * partition, the resulting tiling equals the sequential one. Every subtree is tiled by a worker that 
+	 * writes its nodes into its own regions of the tree container.
+	 * 
+	 * @param data
+	 * @param level
+	 * @param out
+	 * @return number of written nodes
+	 * @throws IOException
+	 */
+	protected int tileDataParallel(List data, final int level, final DataOutput out) throws IOException{
+		List<List> partitions = new ArrayList<List>();
+		partitions.add(data);
+		while(partitions.size() < 4 * parallelism){
+			int largest = -1;
+			for(int i = 0; i < partitions.size(); i++){
+				if (partitions.get(i).size() > maxRecordsProNode 
+						&& (largest < 0 || partitions.get(i).size() > partitions.get(largest).size()))
+					largest = i;
+			}
+			if (largest < 0)
+				break;
+			List partition = partitions.get(largest);
+			List[] split = splitData(partition, partition.size(), level);
+			partitions.set(largest, split[0]);
+			partitions.add(largest + 1, split[1]);
+		}
+		List<Future<Integer>> workers = new ArrayList<Future<Integer>>();
+		for(final List partition : partitions){
+			workers.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws IOException {
+					Region region = new Region(out);
+					int written = tileData(partition, partition.size(), level, region);
+					region.flush();
+					return written;
+				}
+			}));
+		}
+		int written = 0;
+		for(Future<Integer> worker : workers)
+			written += await(worker);
+		return written;
+	}
+	
+	/**
+	 * Computes the greedy split of TGS: the data is split in two parts such that the costs of their MBRs are minimal. 
+	 * 
+	 * @param dataF
+	 * @param number
+	 * @param level
+	 * @return the two parts
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	protected List[] splitData(List dataF, int number, int level) throws IOException{
 		List data = dataF;
-		int writtenNodes = 0;
 		// pre-process data 
 		// sort take only center for orderings 
 		double costs = Double.MAX_VALUE;
@@ -386,8 +503,7 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 		List right =  new ArrayList();
 		right.addAll(data.subList(argMin+1, data.size()));
 		data.clear();
-		return tileData( left, left.size(), level,  out ) 
-		+  tileData(right, right.size(), level, out);
+		return new List[]{left, right};
 	}
 	
 	/**
@@ -474,7 +590,10 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 		final Converter converter = (level > 0 ) ? mapEntryConverter: dataConverter;
 		String tmp = "tmp";
 		int objectSize = (level > 0 ) ? dimension *  16 : dimension * 16  + 8; 
-		Container container = new BlockFileContainer(path  + "tmpsortqueue.tmp", blockSize);
+		// concurrent workers need their own files and share the memory 
+		String suffix = isParallel() ? "_" + temporalFiles.getAndIncrement() : "";
+		int memory = isParallel() ? SORT_BUFFER_SIZE / (parallelism + 1) : SORT_BUFFER_SIZE;
+		Container container = new BlockFileContainer(path  + "tmpsortqueue.tmp" + suffix, blockSize);
 		final Container queueContainer = container;
 		final Function<Function<?, Integer>, Queue<?>> queueFunction =
 			new AbstractFunction<Function<?, Integer>, Queue<?>>() {
@@ -485,7 +604,7 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 		};
 		//5% buffer
 		return  new MergeSorter(data, 
-				comp, objectSize ,  SORT_BUFFER_SIZE, SORT_BUFFER_SIZE, queueFunction, false);
+				comp, objectSize ,  memory, memory, queueFunction, false);
 	}
 	
 	/*
@@ -119,6 +119,24 @@ public abstract class SplitStrategy<D,K> implements Splitter {
 	public int getSeparatorSize(Separator separator){
 		return this.getSeparatorSize.invoke(separator);
 	}
+	/**
+	 * Computes the separator of a leaf node during bulk loading. <tt>last</tt>
+	 * is the last object of the leaf and <tt>next</tt> the first object of
+	 * its right neighbor. The returned separator must not be smaller than the
+	 * key of <tt>last</tt> and must be smaller than the key of <tt>next</tt>.
+	 * The default implementation returns the separator of the key of
+	 * <tt>last</tt>.
+	 * 
+	 * @see VariableLengthBPlusTreeBulkLoading
+	 * @param last
+	 *            the last data object of the leaf
+	 * @param next
+	 *            the first data object of the following leaf
+	 * @return the separator of the leaf
+	 */
+	public Separator createLeafSeparator(D last, D next){
+		return createSeparator(getKey(last));
+	}
 	/**
 	 * 
 	 * @return
@@ -48,6 +48,7 @@ import xxl.core.functions.Constant;
 import xxl.core.functions.Function;
 import xxl.core.indexStructures.BPlusTree;
 import xxl.core.indexStructures.BPlusTree.KeyRange;
+import xxl.core.indexStructures.CompressedLeafFormat;
 import xxl.core.indexStructures.vLengthBPlusTree.splitStrategy.ShortestKeyStrategy;
 import xxl.core.indexStructures.vLengthBPlusTree.splitStrategy.SimplePrefixBPlusTreeSplit;
 import xxl.core.indexStructures.vLengthBPlusTree.underflowHandlers.StandardUnderflowHandler;
@@ -56,6 +57,7 @@ import xxl.core.indexStructures.Separator;
 import xxl.core.indexStructures.Tree;
 import xxl.core.io.converters.BooleanConverter;
 import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.DeltaConverter;
 import xxl.core.io.converters.IntegerConverter;
 import xxl.core.io.converters.MeasuredConverter;
 import xxl.core.predicates.AbstractPredicate;
@@ -156,6 +158,13 @@ public class VariableLengthBPlusTree extends Tree {
 	 * or into the external storage.
 	 */
 	protected NodeConverter nodeConverter;
+	/**
+	 * The format of compressed leaves or <tt>null</tt> if the leaves are
+	 * written with the {@link #dataConverter}.
+	 * 
+	 * @see #compressLeaves(DeltaConverter)
+	 */
+	protected CompressedLeafFormat leafFormat = null;
 	/**
 	 * This <tt>Function</tt> is used to get the key of a data object. Example:
 	 * <code><pre>
@@ -255,7 +264,8 @@ public class VariableLengthBPlusTree extends Tree {
 		this.containerIdSize = VariableLengthBPlusTree.this.container()
 				.getIdSize();
 		final int maxNodePayLoad = this.BLOCK_SIZE
-				- (2 * IntegerConverter.SIZE + BooleanConverter.SIZE + containerIdSize);
+				- (2 * IntegerConverter.SIZE + BooleanConverter.SIZE + containerIdSize)
+				- (leafFormat != null ? BooleanConverter.SIZE : 0);
 		// new code
 		this.averageLoad = (int) ((double) maxNodePayLoad * this.averageLoadRatio);
 		this.minAllowedLoad = (int) ((double) maxNodePayLoad * this.minAllowedLoadRatio);
@@ -274,6 +284,8 @@ public class VariableLengthBPlusTree extends Tree {
 			public boolean invoke(Object o) {
 				Node node = (Node) o;
 				int load = node.getCurrentLoad();
+				if (load > maxNodePayLoad && node.getLevel() == 0 && leafFormat != null)
+					return nodeConverter.compressedLeafSize(node) > maxNodePayLoad;
 				return load > maxNodePayLoad;
 			}
 		};
@@ -368,6 +380,21 @@ public class VariableLengthBPlusTree extends Tree {
 		return this;
 	}
 	
+	/**
+	 * Sets the root entry and the root descriptor of the tree. This method is
+	 * used by {@link VariableLengthBPlusTreeBulkLoading} after the tree has
+	 * been built bottom-up.
+	 * 
+	 * @param rootEntry
+	 *            the new root entry of the tree
+	 * @param rootDescriptor
+	 *            the new root descriptor of the tree
+	 */
+	protected void setRoot(IndexEntry rootEntry, Descriptor rootDescriptor) {
+		this.rootEntry = rootEntry;
+		this.rootDescriptor = rootDescriptor;
+	}
+
 	/**
 	 * Checks whether the duplicates mode is enabled
 	 * 
@@ -468,6 +495,37 @@ public class VariableLengthBPlusTree extends Tree {
 		return new NodeConverter();
 	}
 
+	/**
+	 * Enables the compressed leaf format. The data objects of a leaf are
+	 * written with the given <tt>DeltaConverter</tt>, each relative to its
+	 * predecessor, and protected by a checksum (see
+	 * {@link CompressedLeafFormat}). For example a
+	 * {@link xxl.core.io.converters.PrefixStringConverter} stores only the
+	 * suffix of a string key that differs from the preceding key.
+	 * <p>
+	 * The splits and merges of the tree are still computed from the sizes
+	 * given by {@link #getActualEntrySize}. A leaf whose uncompressed size
+	 * exceeds a block does not overflow as long as its compressed page fits,
+	 * so a leaf holds more entries. A leaf is written uncompressed if that
+	 * is not larger. Read leaves are decoded on the first access to their
+	 * entries.
+	 * <p>
+	 * The method has to be called before the tree is initialized, and a tree
+	 * has to be reopened with the same setting.
+	 * 
+	 * @param dataDeltaConverter
+	 *            the converter writing the data objects of a leaf
+	 * @return the tree itself
+	 * @throws IllegalStateException
+	 *             if the tree has already been initialized
+	 */
+	public VariableLengthBPlusTree compressLeaves(DeltaConverter dataDeltaConverter) {
+		if (dataConverter != null)
+			throw new IllegalStateException("leaf compression has to be enabled before the tree is initialized");
+		leafFormat = new CompressedLeafFormat(dataDeltaConverter);
+		return this;
+	}
+
 	/**
 	 * Gives the <tt>NodeConverter</tt> used by the <tt>BPlusTree</tt>.
 	 * 
@@ -2969,6 +3027,12 @@ public class VariableLengthBPlusTree extends Tree {
 				node.nextNeighbor.initialize(readID(dataInput));
 			} else
 				node.nextNeighbor = null;
+			if (node.getLevel() == 0 && leafFormat != null
+					&& dataInput.readBoolean()) {
+				node.byteLoad = dataInput.readInt();
+				node.entries = leafFormat.read(dataInput, number);
+				return node;
+			}
 			// new code compute actual load
 
 			for (int i = 0; i < number; i++) {
@@ -3034,6 +3098,15 @@ public class VariableLengthBPlusTree extends Tree {
 				idConverter.write(dataOutput, node.nextNeighbor.id());
 			}
 			// Entries
+			if (node.getLevel() == 0 && leafFormat != null) {
+				boolean compress = compressedLeafSize(node) < node.getCurrentLoad();
+				dataOutput.writeBoolean(compress);
+				if (compress) {
+					dataOutput.writeInt(node.getCurrentLoad());
+					leafFormat.write(dataOutput, node.entries);
+					return;
+				}
+			}
 			writeEntries(dataOutput, node);
 
 			// Separators
@@ -3047,6 +3120,18 @@ public class VariableLengthBPlusTree extends Tree {
 			}
 		}
 
+		/**
+		 * Computes the size (in bytes) of the compressed page of a leaf
+		 * including its uncompressed load, which is stored with the page.
+		 * 
+		 * @param node
+		 *            a leaf
+		 * @return the size of the compressed entries of the leaf
+		 */
+		protected int compressedLeafSize(Node node) {
+			return IntegerConverter.SIZE + leafFormat.size(node.entries);
+		}
+
 		/**
 		 * Read the entries of the given <tt>Node</tt> from the
 		 * <tt>DataInput</tt>. If the <tt>Node</tt> is a leaf the
@@ -0,0 +1,301 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.vLengthBPlusTree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.functions.Constant;
+import xxl.core.indexStructures.Separator;
+import xxl.core.indexStructures.vLengthBPlusTree.VariableLengthBPlusTree.IndexEntry;
+import xxl.core.indexStructures.vLengthBPlusTree.VariableLengthBPlusTree.Node;
+import xxl.core.io.converters.BooleanConverter;
+import xxl.core.io.converters.IntegerConverter;
+
+/**
+ * This class provides functionality to bulk-load a
+ * {@link VariableLengthBPlusTree} from a stream of data objects sorted in
+ * ascending order of their keys. The tree is created bottom-up: every level
+ * is filled from left to right until the byte load of its current node would
+ * exceed a given fraction (the fill factor) of the node capacity. The
+ * separators of the leaves are computed by the
+ * {@link SplitStrategy#createLeafSeparator(Object, Object)} method of the
+ * tree's split strategy, so a {@link splitStrategy.SimplePrefixBPlusTreeSplit}
+ * yields prefix-compressed separators in the index nodes.
+ * <p>
+ * Every node is written exactly once. The id of a node is reserved when the
+ * node is started and the node is written as soon as its right neighbor is
+ * complete, hence the nodes of each level are written in key order. The last
+ * two nodes of each level are kept in memory until the input is exhausted in
+ * order to redistribute their entries if the rightmost node underflows.
+ * <p>
+ * The tree has to be initialized and empty before it is bulk loaded. Usage
+ * example:
+ * 
+ * <pre>
+ * VariableLengthBPlusTree tree = new VariableLengthBPlusTree(4096, 0.33);
+ * tree.initialize(null, null, getKey, container, keyConverter, dataConverter,
+ * 		StringSeparator.FACTORY_FUNCTION, StringKeyRange.FACTORY_FUNCTION,
+ * 		getKeySize, getDataSize, new SimplePrefixBPlusTreeSplit(),
+ * 		new StandardUnderflowHandler());
+ * new VariableLengthBPlusTreeBulkLoading(tree, sortedData, 0.9);
+ * </pre>
+ * 
+ * @see xxl.core.indexStructures.BPlusTreeBulkLoading
+ */
+public class VariableLengthBPlusTreeBulkLoading {
+
+	/**
+	 * The default fill factor. Nodes are filled up to their capacity.
+	 */
+	public static final double DEFAULT_FILL_FACTOR = 1.0;
+
+	/**
+	 * The tree which is bulk loaded.
+	 */
+	protected VariableLengthBPlusTree tree;
+	/**
+	 * The container of the tree.
+	 */
+	protected Container container;
+	/**
+	 * The maximal number of bytes a node is filled with during bulk loading.
+	 */
+	protected int maxLoad;
+	/**
+	 * The maximal payload of a node in bytes.
+	 */
+	protected int maxNodePayLoad;
+	/**
+	 * The nodes under construction, one entry for each level of the tree.
+	 */
+	protected List<Level> levels;
+
+	/**
+	 * The nodes of a level which are not yet written to the container.
+	 */
+	protected class Level {
+		/**
+		 * The id of the node which is currently filled.
+		 */
+		protected Object id;
+		/**
+		 * The node which is currently filled.
+		 */
+		protected Node node;
+		/**
+		 * The id of the left neighbor of the current node.
+		 */
+		protected Object pendingId;
+		/**
+		 * The complete left neighbor of the current node or <tt>null</tt> if
+		 * the current node is the first node of the level.
+		 */
+		protected Node pending;
+
+		/**
+		 * Creates a new level and reserves an id for its first node.
+		 * 
+		 * @param level
+		 *            the level of the nodes
+		 */
+		protected Level(int level) {
+			this.node = (Node) tree.createNode(level);
+			this.id = container.reserve(new Constant(node));
+		}
+	}
+
+	/**
+	 * Bulk loads the given <tt>tree</tt> with the given <tt>objects</tt>
+	 * using the {@link #DEFAULT_FILL_FACTOR}.
+	 * 
+	 * @param tree
+	 *            an initialized and empty tree
+	 * @param objects
+	 *            the data objects sorted in ascending order of their keys
+	 */
+	public VariableLengthBPlusTreeBulkLoading(VariableLengthBPlusTree tree,
+			Iterator objects) {
+		this(tree, objects, DEFAULT_FILL_FACTOR);
+	}
+
+	/**
+	 * Bulk loads the given <tt>tree</tt> with the given <tt>objects</tt>.
+	 * 
+	 * @param tree
+	 *            an initialized and empty tree
+	 * @param objects
+	 *            the data objects sorted in ascending order of their keys
+	 * @param fillFactor
+	 *            the fraction of the node capacity (in bytes) each node is
+	 *            filled with, e.g. 0.9 leaves 10% of each node free for later
+	 *            insertions
+	 * @throws IllegalArgumentException
+	 *             if the fill factor is not in (0, 1] or the objects are not
+	 *             sorted
+	 * @throws IllegalStateException
+	 *             if the tree is not empty
+	 */
+	public VariableLengthBPlusTreeBulkLoading(VariableLengthBPlusTree tree,
+			Iterator objects, double fillFactor) {
+		if (fillFactor <= 0 || fillFactor > 1)
+			throw new IllegalArgumentException(
+					"The fill factor has to be in (0, 1].");
+		if (!tree.isEmpty())
+			throw new IllegalStateException("The tree has to be empty.");
+		this.tree = tree;
+		this.container = tree.container();
+		this.maxNodePayLoad = tree.BLOCK_SIZE
+				- (2 * IntegerConverter.SIZE + BooleanConverter.SIZE + tree.containerIdSize);
+		this.maxLoad = (int) (maxNodePayLoad * fillFactor);
+		this.levels = new ArrayList<Level>();
+		Object first = null, last = null;
+		while (objects.hasNext()) {
+			Object object = objects.next();
+			if (last == null)
+				first = object;
+			else {
+				int cmp = tree.key(last).compareTo(tree.key(object));
+				if (cmp > 0 || cmp == 0 && !tree.isDuplicatesEnabled())
+					throw new IllegalArgumentException(
+							"The data objects have to be sorted in ascending order of their keys.");
+			}
+			insertBulk(object, 0);
+			last = object;
+		}
+		if (first != null)
+			finish(first, last);
+	}
+
+	/**
+	 * Appends an entry to the current node of the given level. If the entry
+	 * does not fit into the node, a new node is started and the left neighbor
+	 * of the former node is written.
+	 * 
+	 * @param entry
+	 *            a data object or an index entry
+	 * @param level
+	 *            the level of the node
+	 */
+	protected void insertBulk(Object entry, int level) {
+		if (levels.size() <= level)
+			levels.add(new Level(level));
+		Level l = levels.get(level);
+		int size = l.node.getEntryByteSize(entry, level);
+		if (l.node.number() > 0 && l.node.getCurrentLoad() + size > maxLoad) {
+			Node newNode = (Node) tree.createNode(level);
+			Object newId = container.reserve(new Constant(newNode));
+			l.node.nextNeighbor = (IndexEntry) tree.createIndexEntry(level + 1);
+			l.node.nextNeighbor.initialize(newId);
+			if (l.pending != null)
+				saveBulk(l.pendingId, l.pending, l.node);
+			l.pendingId = l.id;
+			l.pending = l.node;
+			l.id = newId;
+			l.node = newNode;
+		}
+		l.node.entries.add(entry);
+		l.node.updateByteLoad(entry, true);
+	}
+
+	/**
+	 * Writes a node to the container and inserts its index entry into the
+	 * next level.
+	 * 
+	 * @param id
+	 *            the reserved id of the node
+	 * @param node
+	 *            the node
+	 * @param next
+	 *            the right neighbor of the node or <tt>null</tt> if it is the
+	 *            rightmost node of its level
+	 */
+	protected void saveBulk(Object id, Node node, Node next) {
+		container.update(id, node);
+		Separator separator = (node.getLevel() == 0 && next != null) ? tree.splitSt
+				.createLeafSeparator(node.getLast(), next.getFirst())
+				: (Separator) tree.separator(node.getLast()).clone();
+		IndexEntry indexEntry = (IndexEntry) tree.createIndexEntry(node
+				.getLevel() + 1);
+		indexEntry.initialize(id, separator);
+		insertBulk(indexEntry, node.getLevel() + 1);
+	}
+
+	/**
+	 * Writes the remaining nodes bottom-up and sets the root of the tree.
+	 * 
+	 * @param first
+	 *            the first data object
+	 * @param last
+	 *            the last data object
+	 */
+	protected void finish(Object first, Object last) {
+		for (int level = 0;; level++) {
+			Level l = levels.get(level);
+			if (l.pending == null) { // the only node of the top level
+				container.update(l.id, l.node);
+				IndexEntry rootEntry = (IndexEntry) tree
+						.createIndexEntry(level + 1);
+				rootEntry.initialize(l.id, (Separator) tree.separator(
+						l.node.getLast()).clone());
+				tree.setRoot(rootEntry, tree.createKeyRange(tree.key(first),
+						tree.key(last)));
+				return;
+			}
+			redistribute(l.pending, l.node);
+			saveBulk(l.pendingId, l.pending, l.node);
+			saveBulk(l.id, l.node, null);
+		}
+	}
+
+	/**
+	 * Moves entries from the end of <tt>left</tt> to the beginning of
+	 * <tt>right</tt> as long as <tt>right</tt> underflows and <tt>left</tt>
+	 * does not underflow afterwards.
+	 * 
+	 * @param left
+	 *            the left node
+	 * @param right
+	 *            the rightmost node of the level
+	 */
+	protected void redistribute(Node left, Node right) {
+		int level = right.getLevel();
+		while (right.getCurrentLoad() < tree.minAllowedLoad
+				&& left.number() > 1) {
+			Object entry = left.getLast();
+			int size = left.getEntryByteSize(entry, level);
+			if (left.getCurrentLoad() - size < tree.minAllowedLoad
+					|| right.getCurrentLoad() + size > maxNodePayLoad)
+				break;
+			left.entries.remove(left.number() - 1);
+			left.updateByteLoad(entry, false);
+			right.entries.add(0, entry);
+			right.updateByteLoad(entry, true);
+		}
+	}
+}
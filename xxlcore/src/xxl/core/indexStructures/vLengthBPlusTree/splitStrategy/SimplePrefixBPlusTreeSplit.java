@@ -106,6 +106,23 @@ public class SimplePrefixBPlusTreeSplit extends ShortestKeyStrategy<Object, Stri
 		return info;
 	}
 	
+	/**
+	 * Returns the shortest proper prefix of the key of <tt>next</tt> which is
+	 * not smaller than the key of <tt>last</tt>. If no such prefix exists the
+	 * key of <tt>last</tt> is used.
+	 */
+	@Override
+	public Separator createLeafSeparator(Object last, Object next) {
+		String lastKey = getKey(last);
+		String nextKey = getKey(next);
+		for (int i = 1; i < nextKey.length(); i++){
+			String prefix = nextKey.substring(0, i);
+			if (prefix.compareTo(lastKey) >= 0)
+				return createSeparator(prefix);
+		}
+		return createSeparator(lastKey);
+	}
+	
 	/**
 	 * Assumption key1 <= key 2
 	 * @param key1
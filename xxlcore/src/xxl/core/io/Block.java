@@ -31,6 +31,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -319,7 +320,7 @@ public class Block implements Cloneable, SizeAware {
 					throw new IllegalStateException("Block has already been released.");
 				if (position<0 || position+len > end)
 					throw new IndexOutOfBoundsException("Index accessed: "+(position+len));
-				System.arraycopy(b, off, array, position, len);
+				System.arraycopy(b, off, array, offset+position, len);
 				position += len;
 			}
 		};
@@ -432,7 +433,7 @@ public class Block implements Cloneable, SizeAware {
 					throw new IndexOutOfBoundsException();
 				if (position+len > size)
 					len = size-position;
-				System.arraycopy(array, position, b, off, len);
+				System.arraycopy(array, offset+position, b, off, len);
 				position += len;
 				return len;
 			}
@@ -517,6 +518,18 @@ public class Block implements Cloneable, SizeAware {
 		return new DataInputStream(inputStream());
 	}
 
+	/**
+	 * Returns a byte buffer that wraps the data of this block without
+	 * copying it. The position of the returned buffer is <tt>0</tt> and its
+	 * limit is <tt>size</tt>. Changes of the buffer are visible in this
+	 * block and vice versa.
+	 *
+	 * @return a byte buffer wrapping the data of this block.
+	 */
+	public ByteBuffer asByteBuffer () {
+		return ByteBuffer.wrap(array, offset, size).slice();
+	}
+
 	/**
 	 * Compresses (zips) the current Block and returns the compressed Block.
 	 *
@@ -342,6 +342,24 @@ public abstract class Buffer<O, I, E> {
 	 */
 	protected Map<O, Map<I, Slot>> owners = new HashMap<O, Map<I, Slot>>();
 
+	/**
+	 * The number of requests for a slot that could be answered by a slot
+	 * already contained in this buffer.
+	 */
+	protected long hits = 0;
+
+	/**
+	 * The number of requests for a slot that required a new object to be
+	 * inserted into this buffer.
+	 */
+	protected long misses = 0;
+
+	/**
+	 * The number of slots that have been displaced from this buffer in order
+	 * to make space for new objects.
+	 */
+	protected long evictions = 0;
+
 	/**
 	 * Constructs a new empty buffer with a number of slots specified by the
 	 * given capacity.
@@ -457,6 +475,7 @@ public abstract class Buffer<O, I, E> {
 			Slot vic = victim();
 			sizeBytes -= vic.sizeBytes;
 			vic.displace();
+			evictions++;
 			// checkBuffer();
 		}
 	}
@@ -483,11 +502,13 @@ public abstract class Buffer<O, I, E> {
 		if (slot == null) {
 			if (fixedSlots == slots.size())
 				throw new IllegalStateException("Buffer overflow. Too many slots fixed.");
+			misses++;
 			// Make space for one new object
 			if (size() == slots.size()) {
 				Slot vic = victim();
 				sizeBytes -= vic.sizeBytes;  
 				vic.displace();
+				evictions++;
 			}
 			// checkBuffer();
 			
@@ -499,8 +520,10 @@ public abstract class Buffer<O, I, E> {
 			
 			handleSizeOverflow();
 		}
-		else
+		else {
+			hits++;
 			slot.fix();
+		}
 		
 		// checkBuffer();
 		return slot;
@@ -728,4 +751,61 @@ public abstract class Buffer<O, I, E> {
 	public int fixedSlots() {
 		return fixedSlots;
 	}
+
+	/**
+	 * Returns the number of requests for a slot (by calling the fix, get or
+	 * update method) that could be answered by a slot already contained in
+	 * this buffer.
+	 *
+	 * @return the number of buffer hits.
+	 */
+	public long hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of requests for a slot (by calling the fix, get or
+	 * update method) that required a new object to be inserted into this
+	 * buffer.
+	 *
+	 * @return the number of buffer misses.
+	 */
+	public long misses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of slots that have been displaced from this buffer
+	 * by the displacement strategy. Slots that are removed explicitly by
+	 * calling the remove or removeAll method are not counted.
+	 *
+	 * @return the number of displaced slots.
+	 */
+	public long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the ratio of buffer hits to all requests for a slot. When no
+	 * request has been counted, <code>0.0</code> is returned.
+	 *
+	 * @return the hit ratio of this buffer.
+	 */
+	public double hitRatio() {
+		long requests = hits + misses;
+		
+		return requests == 0 ? 0.0 : (double)hits / requests;
+	}
+
+	/**
+	 * Resets the counters for hits, misses and evictions. In other words the
+	 * methods <code>hits</code>, <code>misses</code> and
+	 * <code>evictions</code> will return <code>0</code> after a call to this
+	 * method.
+	 */
+	public void resetCounters() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
 }
@@ -0,0 +1,97 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * A <tt>DataInput</tt> that is able to read whole arrays of primitive
+ * values with a single bulk copy. The values are read in the same format
+ * as a sequence of calls to the corresponding scalar methods of
+ * <tt>DataInput</tt>, so data written by a <tt>DataOutputStream</tt> can be
+ * read by the bulk methods and vice versa.
+ * <p>
+ * Converters should not call these methods directly but the helper methods
+ * of {@link xxl.core.io.converters.Converters}, which use the bulk methods
+ * if the data input supports them and fall back to element by element
+ * reads otherwise.
+ *
+ * @see BulkDataOutput
+ * @see ByteBufferInput
+ */
+public interface BulkDataInput extends DataInput {
+
+	/**
+	 * Reads <tt>len</tt> <tt>short</tt> values into the given array.
+	 *
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void readShorts(short[] array, int off, int len) throws IOException;
+
+	/**
+	 * Reads <tt>len</tt> <tt>int</tt> values into the given array.
+	 *
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void readInts(int[] array, int off, int len) throws IOException;
+
+	/**
+	 * Reads <tt>len</tt> <tt>long</tt> values into the given array.
+	 *
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void readLongs(long[] array, int off, int len) throws IOException;
+
+	/**
+	 * Reads <tt>len</tt> <tt>float</tt> values into the given array.
+	 *
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void readFloats(float[] array, int off, int len) throws IOException;
+
+	/**
+	 * Reads <tt>len</tt> <tt>double</tt> values into the given array.
+	 *
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void readDoubles(double[] array, int off, int len) throws IOException;
+}
@@ -0,0 +1,97 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A <tt>DataOutput</tt> that is able to write whole arrays of primitive
+ * values with a single bulk copy. The values are written in the same
+ * format as a sequence of calls to the corresponding scalar methods of
+ * <tt>DataOutput</tt>, so data written by the bulk methods can be read by a
+ * <tt>DataInputStream</tt>.
+ * <p>
+ * Converters should not call these methods directly but the helper methods
+ * of {@link xxl.core.io.converters.Converters}, which use the bulk methods
+ * if the data output supports them and fall back to element by element
+ * writes otherwise.
+ *
+ * @see BulkDataInput
+ * @see ByteBufferOutput
+ */
+public interface BulkDataOutput extends DataOutput {
+
+	/**
+	 * Writes <tt>len</tt> <tt>short</tt> values of the given array.
+	 *
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void writeShorts(short[] array, int off, int len) throws IOException;
+
+	/**
+	 * Writes <tt>len</tt> <tt>int</tt> values of the given array.
+	 *
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void writeInts(int[] array, int off, int len) throws IOException;
+
+	/**
+	 * Writes <tt>len</tt> <tt>long</tt> values of the given array.
+	 *
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void writeLongs(long[] array, int off, int len) throws IOException;
+
+	/**
+	 * Writes <tt>len</tt> <tt>float</tt> values of the given array.
+	 *
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void writeFloats(float[] array, int off, int len) throws IOException;
+
+	/**
+	 * Writes <tt>len</tt> <tt>double</tt> values of the given array.
+	 *
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void writeDoubles(double[] array, int off, int len) throws IOException;
+}
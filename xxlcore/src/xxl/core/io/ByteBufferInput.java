@@ -0,0 +1,282 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * This class provides a <tt>DataInput</tt> that reads directly from a heap
+ * or direct <tt>ByteBuffer</tt> without copying its content. Unlike a
+ * {@link ByteBufferDataInput}, which copies the bytes of an input stream
+ * into an internal array, the values are decoded in place from the buffer
+ * starting at its position, and the position of the buffer is advanced
+ * accordingly. The data is read in big-endian byte order like it is
+ * written by a <tt>DataOutputStream</tt>.
+ * <p>
+ * A data input can be reused for another buffer by calling
+ * <tt>wrap</tt>, so reading a page that has been read into a reused buffer
+ * does not allocate any objects.
+ * <p>
+ * Arrays of primitive values are read by the methods of
+ * {@link BulkDataInput} with a single bulk copy through a typed view of the
+ * buffer instead of element by element. Short arrays like the coordinates
+ * of a point are read element by element, because creating the view would
+ * cost more than the copy saves.
+ *
+ * @see ByteBufferOutput
+ * @see java.io.DataInput
+ */
+public class ByteBufferInput implements BulkDataInput {
+
+	/**
+	 * The number of values from which on an array is read through a typed
+	 * view of the buffer.
+	 */
+	public static final int BULK_THRESHOLD = 16;
+
+	/**
+	 * The buffer the data is read from.
+	 */
+	protected ByteBuffer buffer;
+
+	/**
+	 * Creates a new data input reading from the given buffer.
+	 *
+	 * @param buffer the buffer the data is read from.
+	 */
+	public ByteBufferInput(ByteBuffer buffer) {
+		wrap(buffer);
+	}
+
+	/**
+	 * Sets the buffer the data is read from. The byte order of the buffer is
+	 * set to big-endian.
+	 *
+	 * @param buffer the buffer the data is read from.
+	 * @return this data input.
+	 */
+	public ByteBufferInput wrap(ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+		return this;
+	}
+
+	/**
+	 * Returns the buffer the data is read from.
+	 *
+	 * @return the buffer the data is read from.
+	 */
+	public ByteBuffer buffer() {
+		return buffer;
+	}
+
+	/**
+	 * Checks whether the given number of bytes remains in the buffer.
+	 *
+	 * @param length the number of bytes to be read.
+	 * @throws EOFException if less bytes remain in the buffer.
+	 */
+	protected void require(int length) throws EOFException {
+		if (buffer.remaining() < length)
+			throw new EOFException();
+	}
+
+	/**
+	 * Checks whether the given number of values remains in the buffer and
+	 * advances the position of the buffer behind them. The values have to
+	 * be read from a view of the buffer that has been created before.
+	 *
+	 * @param array the length of the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @param size the number of bytes of a value.
+	 * @return the position of the buffer before the values.
+	 * @throws EOFException if less values remain in the buffer.
+	 */
+	protected int skipValues(int array, int off, int len, int size) throws EOFException {
+		if (off < 0 || len < 0 || off+len > array)
+			throw new IndexOutOfBoundsException();
+		if (buffer.remaining()/size < len)
+			throw new EOFException();
+		int position = buffer.position();
+		buffer.position(position+len*size);
+		return position;
+	}
+
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off+len > b.length)
+			throw new IndexOutOfBoundsException();
+		require(len);
+		buffer.get(b, off, len);
+	}
+
+	public int skipBytes(int n) {
+		n = Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position()+n);
+		return n;
+	}
+
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	public byte readByte() throws IOException {
+		require(1);
+		return buffer.get();
+	}
+
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	public short readShort() throws IOException {
+		require(2);
+		return buffer.getShort();
+	}
+
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	public char readChar() throws IOException {
+		require(2);
+		return buffer.getChar();
+	}
+
+	public int readInt() throws IOException {
+		require(4);
+		return buffer.getInt();
+	}
+
+	public long readLong() throws IOException {
+		require(8);
+		return buffer.getLong();
+	}
+
+	public float readFloat() throws IOException {
+		require(4);
+		return buffer.getFloat();
+	}
+
+	public double readDouble() throws IOException {
+		require(8);
+		return buffer.getDouble();
+	}
+
+	public String readLine() throws IOException {
+		if (!buffer.hasRemaining())
+			return null;
+		StringBuilder line = new StringBuilder();
+		while (buffer.hasRemaining()) {
+			char c = (char)(buffer.get() & 0xff);
+			if (c == '\n')
+				break;
+			if (c == '\r') {
+				if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n')
+					buffer.get();
+				break;
+			}
+			line.append(c);
+		}
+		return line.toString();
+	}
+
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+
+	public void readShorts(short[] array, int off, int len) throws IOException {
+		if (len < BULK_THRESHOLD) {
+			int position = skipValues(array.length, off, len, 2);
+			for (int i = 0; i < len; i++)
+				array[off+i] = buffer.getShort(position+2*i);
+			return;
+		}
+		ShortBuffer view = buffer.asShortBuffer();
+		skipValues(array.length, off, len, 2);
+		view.get(array, off, len);
+	}
+
+	public void readInts(int[] array, int off, int len) throws IOException {
+		if (len < BULK_THRESHOLD) {
+			int position = skipValues(array.length, off, len, 4);
+			for (int i = 0; i < len; i++)
+				array[off+i] = buffer.getInt(position+4*i);
+			return;
+		}
+		IntBuffer view = buffer.asIntBuffer();
+		skipValues(array.length, off, len, 4);
+		view.get(array, off, len);
+	}
+
+	public void readLongs(long[] array, int off, int len) throws IOException {
+		if (len < BULK_THRESHOLD) {
+			int position = skipValues(array.length, off, len, 8);
+			for (int i = 0; i < len; i++)
+				array[off+i] = buffer.getLong(position+8*i);
+			return;
+		}
+		LongBuffer view = buffer.asLongBuffer();
+		skipValues(array.length, off, len, 8);
+		view.get(array, off, len);
+	}
+
+	public void readFloats(float[] array, int off, int len) throws IOException {
+		if (len < BULK_THRESHOLD) {
+			int position = skipValues(array.length, off, len, 4);
+			for (int i = 0; i < len; i++)
+				array[off+i] = buffer.getFloat(position+4*i);
+			return;
+		}
+		FloatBuffer view = buffer.asFloatBuffer();
+		skipValues(array.length, off, len, 4);
+		view.get(array, off, len);
+	}
+
+	public void readDoubles(double[] array, int off, int len) throws IOException {
+		if (len < BULK_THRESHOLD) {
+			int position = skipValues(array.length, off, len, 8);
+			for (int i = 0; i < len; i++)
+				array[off+i] = buffer.getDouble(position+8*i);
+			return;
+		}
+		DoubleBuffer view = buffer.asDoubleBuffer();
+		skipValues(array.length, off, len, 8);
+		view.get(array, off, len);
+	}
+}
@@ -0,0 +1,245 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class provides a <tt>DataOutput</tt> that writes directly into a
+ * heap or direct <tt>ByteBuffer</tt>. The values are written starting at
+ * the position of the buffer in big-endian byte order like they are written
+ * by a <tt>DataOutputStream</tt>, and the position of the buffer is advanced
+ * accordingly. Writing behind the limit of the buffer throws a
+ * <tt>BufferOverflowException</tt>.
+ * <p>
+ * A data output can be reused for another buffer by calling
+ * <tt>wrap</tt>, so serializing a page into a reused buffer does not
+ * allocate any objects.
+ * <p>
+ * Arrays of primitive values are written by the methods of
+ * {@link BulkDataOutput} with a single bulk copy through a typed view of
+ * the buffer instead of element by element. Arrays shorter than
+ * {@link ByteBufferInput#BULK_THRESHOLD} are written element by element,
+ * because creating the view would cost more than the copy saves.
+ *
+ * @see ByteBufferInput
+ * @see java.io.DataOutput
+ */
+public class ByteBufferOutput implements BulkDataOutput {
+
+	/**
+	 * The buffer the data is written to.
+	 */
+	protected ByteBuffer buffer;
+
+	/**
+	 * Creates a new data output writing to the given buffer.
+	 *
+	 * @param buffer the buffer the data is written to.
+	 */
+	public ByteBufferOutput(ByteBuffer buffer) {
+		wrap(buffer);
+	}
+
+	/**
+	 * Sets the buffer the data is written to. The byte order of the buffer
+	 * is set to big-endian.
+	 *
+	 * @param buffer the buffer the data is written to.
+	 * @return this data output.
+	 */
+	public ByteBufferOutput wrap(ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+		return this;
+	}
+
+	/**
+	 * Returns the buffer the data is written to.
+	 *
+	 * @return the buffer the data is written to.
+	 */
+	public ByteBuffer buffer() {
+		return buffer;
+	}
+
+	public void write(int b) {
+		buffer.put((byte)b);
+	}
+
+	public void write(byte[] b) {
+		buffer.put(b);
+	}
+
+	public void write(byte[] b, int off, int len) {
+		buffer.put(b, off, len);
+	}
+
+	public void writeBoolean(boolean v) {
+		buffer.put(v ? (byte)1 : (byte)0);
+	}
+
+	public void writeByte(int v) {
+		buffer.put((byte)v);
+	}
+
+	public void writeShort(int v) {
+		buffer.putShort((short)v);
+	}
+
+	public void writeChar(int v) {
+		buffer.putChar((char)v);
+	}
+
+	public void writeInt(int v) {
+		buffer.putInt(v);
+	}
+
+	public void writeLong(long v) {
+		buffer.putLong(v);
+	}
+
+	public void writeFloat(float v) {
+		buffer.putFloat(v);
+	}
+
+	public void writeDouble(double v) {
+		buffer.putDouble(v);
+	}
+
+	public void writeBytes(String s) {
+		for (int i = 0; i < s.length(); i++)
+			buffer.put((byte)s.charAt(i));
+	}
+
+	public void writeChars(String s) {
+		for (int i = 0; i < s.length(); i++)
+			buffer.putChar(s.charAt(i));
+	}
+
+	public void writeUTF(String s) throws IOException {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			length += c >= '\u0001' && c <= '\u007f' ? 1 : c <= '\u07ff' ? 2 : 3;
+		}
+		if (length > 65535)
+			throw new UTFDataFormatException("encoded string too long: "+length+" bytes");
+		buffer.putShort((short)length);
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= '\u0001' && c <= '\u007f')
+				buffer.put((byte)c);
+			else if (c <= '\u07ff') {
+				buffer.put((byte)(0xc0 | (0x1f & (c >> 6))));
+				buffer.put((byte)(0x80 | (0x3f & c)));
+			}
+			else {
+				buffer.put((byte)(0xe0 | (0x0f & (c >> 12))));
+				buffer.put((byte)(0x80 | (0x3f & (c >> 6))));
+				buffer.put((byte)(0x80 | (0x3f & c)));
+			}
+		}
+	}
+
+	/**
+	 * Checks whether <tt>len</tt> values of the given size starting at
+	 * <tt>off</tt> can be written from an array of the given length, so a
+	 * failed write does not change the buffer.
+	 *
+	 * @param array the length of the array.
+	 * @param off the offset in the array.
+	 * @param len the number of values.
+	 * @param size the size of a value in bytes.
+	 * @throws IndexOutOfBoundsException if the values are not in the array.
+	 * @throws BufferOverflowException if the values do not fit into the
+	 *         buffer.
+	 */
+	protected void checkValues(int array, int off, int len, int size) {
+		if (off < 0 || len < 0 || off+len > array)
+			throw new IndexOutOfBoundsException();
+		if (buffer.remaining()/size < len)
+			throw new BufferOverflowException();
+	}
+
+	public void writeShorts(short[] array, int off, int len) {
+		if (len < ByteBufferInput.BULK_THRESHOLD) {
+			checkValues(array.length, off, len, 2);
+			for (int i = 0; i < len; i++)
+				buffer.putShort(array[off+i]);
+			return;
+		}
+		buffer.asShortBuffer().put(array, off, len);
+		buffer.position(buffer.position()+2*len);
+	}
+
+	public void writeInts(int[] array, int off, int len) {
+		if (len < ByteBufferInput.BULK_THRESHOLD) {
+			checkValues(array.length, off, len, 4);
+			for (int i = 0; i < len; i++)
+				buffer.putInt(array[off+i]);
+			return;
+		}
+		buffer.asIntBuffer().put(array, off, len);
+		buffer.position(buffer.position()+4*len);
+	}
+
+	public void writeLongs(long[] array, int off, int len) {
+		if (len < ByteBufferInput.BULK_THRESHOLD) {
+			checkValues(array.length, off, len, 8);
+			for (int i = 0; i < len; i++)
+				buffer.putLong(array[off+i]);
+			return;
+		}
+		buffer.asLongBuffer().put(array, off, len);
+		buffer.position(buffer.position()+8*len);
+	}
+
+	public void writeFloats(float[] array, int off, int len) {
+		if (len < ByteBufferInput.BULK_THRESHOLD) {
+			checkValues(array.length, off, len, 4);
+			for (int i = 0; i < len; i++)
+				buffer.putFloat(array[off+i]);
+			return;
+		}
+		buffer.asFloatBuffer().put(array, off, len);
+		buffer.position(buffer.position()+4*len);
+	}
+
+	public void writeDoubles(double[] array, int off, int len) {
+		if (len < ByteBufferInput.BULK_THRESHOLD) {
+			checkValues(array.length, off, len, 8);
+			for (int i = 0; i < len; i++)
+				buffer.putDouble(array[off+i]);
+			return;
+		}
+		buffer.asDoubleBuffer().put(array, off, len);
+		buffer.position(buffer.position()+8*len);
+	}
+}
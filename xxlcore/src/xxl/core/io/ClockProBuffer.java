@@ -0,0 +1,459 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import xxl.core.util.Pair;
+
+/**
+ * This class provides a buffer with the CLOCK-Pro displacement strategy
+ * proposed by Jiang, Chen and Zhang in "CLOCK-Pro: An Effective Improvement
+ * of the CLOCK Replacement" (USENIX 2005). CLOCK-Pro approximates the
+ * LIRS strategy with the low overhead of a clock: objects are classified as
+ * <i>hot</i> or <i>cold</i> by their reuse distance, and only cold objects are
+ * displaced. A single scan through a large number of objects therefore only
+ * replaces cold objects and leaves the hot objects of this buffer untouched.
+ * 
+ * <p>All objects of the buffer are arranged in a circular list together with
+ * <i>test</i> entries, i.e., the owners and ids of recently displaced cold
+ * objects. Every entry has a reference bit that is set when its object is
+ * accessed. Three hands move through the circular list:
+ * <ul>
+ *     <li>The <i>cold hand</i> searches the object to displace. A cold
+ *         object whose reference bit is set becomes hot, otherwise it is
+ *         displaced and its entry stays in the list as test entry.</li>
+ *     <li>The <i>hot hand</i> turns hot objects whose reference bit is not
+ *         set into cold ones, whenever there are more hot objects than
+ *         allowed.</li>
+ *     <li>The <i>test hand</i> removes test entries, whenever there are more
+ *         test entries than the buffer has slots.</li>
+ * </ul>
+ * When an object is requested while its test entry is still contained in the
+ * list, it is inserted as hot object and the number of slots reserved for
+ * cold objects is increased. When a test entry is removed by the test hand,
+ * this number is decreased. Fixed objects are never displaced, but they are
+ * subject to the classification as hot or cold.</p>
+ * 
+ * <p>Example usage (1).
+ * <pre>
+ *     // create a new CLOCK-Pro buffer with a capacity of 100 objects
+ *
+ *     ClockProBuffer buffer = new ClockProBuffer(100);
+ *
+ *     // use it for buffering the blocks of a container
+ *
+ *     Container container = new BufferedContainer(new BlockFileContainer("file", 4096), buffer);
+ * </pre>
+ * 
+ * @param <O> the type of the objects specifing the owner of a buffer's slot.
+ * @param <I> the type of the identifiers used for identifing the buffer's
+ *        slots.
+ * @param <E> the type of the elements stored by this buffer.
+ * @see LRUBuffer
+ */
+public class ClockProBuffer<O, I, E> extends Buffer<O, I, E> {
+
+	/**
+	 * This class provides an entry of the circular list that is traversed by
+	 * the hands of the clock. An entry either represents an object contained
+	 * by the buffer (then it refers to its slot) or a test entry of an object
+	 * that has been displaced lately.
+	 */
+	protected class Entry {
+
+		/**
+		 * The owner of the object represented by this entry.
+		 */
+		protected O owner;
+
+		/**
+		 * The id of the object represented by this entry.
+		 */
+		protected I id;
+
+		/**
+		 * The slot containing the object represented by this entry or
+		 * <code>null</code> if this entry is a test entry.
+		 */
+		protected Slot slot;
+
+		/**
+		 * A flag that determines whether the object represented by this entry
+		 * is hot or not.
+		 */
+		protected boolean hot = false;
+
+		/**
+		 * The reference bit of this entry.
+		 */
+		protected boolean referenced = false;
+
+		/**
+		 * The predecessor of this entry in the circular list.
+		 */
+		protected Entry prev = this;
+
+		/**
+		 * The successor of this entry in the circular list.
+		 */
+		protected Entry next = this;
+
+		/**
+		 * Constructs a new entry for the object contained by the specified
+		 * slot.
+		 *
+		 * @param slot the slot containing the object.
+		 */
+		protected Entry(Slot slot) {
+			this.owner = slot.owner;
+			this.id = slot.id;
+			this.slot = slot;
+		}
+	}
+
+	/**
+	 * This class provides a single slot in a CLOCK-Pro buffer. Every occupied
+	 * slot refers to its entry in the circular list.
+	 */
+	protected class Slot extends Buffer<O, I, E>.Slot {
+
+		/**
+		 * The entry of this slot in the circular list or <code>null</code> if
+		 * this slot is empty.
+		 */
+		protected Entry entry = null;
+
+		/**
+		 * A flag that determines whether the object of this slot has just been
+		 * inserted, i.e., whether the next call of the fix method is a part of
+		 * inserting the object and must not set the reference bit.
+		 */
+		protected boolean inserted = false;
+
+		/**
+		 * Constructs a new empty slot with the specified index.
+		 *
+		 * @param index the index of the new slot.
+		 */
+		public Slot(int index) {
+			super(index);
+		}
+
+		/**
+		 * Inserts the specified object with the specified id and owner in
+		 * this slot. When a test entry for the object exists, the object is
+		 * inserted as hot object and the number of slots reserved for cold
+		 * objects is increased. Otherwise it is inserted as cold object.
+		 *
+		 * @param owner the new owner of this slot.
+		 * @param id the new id of this slot.
+		 * @param object the new object of this slot.
+		 */
+		protected void insert(O owner, I id, E object) {
+			super.insert(owner, id, object);
+			Entry test = tests.remove(new Pair<O, I>(owner, id));
+			
+			if (test != null) {
+				unlink(test);
+				testCount--;
+				if (coldCapacity < capacity())
+					coldCapacity++;
+			}
+			entry = new Entry(this);
+			link(entry);
+			if (test != null) {
+				entry.hot = true;
+				hotCount++;
+			}
+			else
+				coldCount++;
+			inserted = true;
+		}
+
+		/**
+		 * Fixes this slot so that the object contained by it cannot be
+		 * removed out of the buffer. This implementation sets the reference
+		 * bit of the slot's entry unless the slot has just been inserted.
+		 */
+		public void fix() {
+			super.fix();
+			if (inserted)
+				inserted = false;
+			else
+				entry.referenced = true;
+		}
+
+		/**
+		 * Removes the object and any information belonging to it from this
+		 * slot so that it is empty thereafter. This implementation also
+		 * removes the slot's entry out of the circular list.
+		 */
+		public void remove() {
+			if (entry != null) {
+				unlink(entry);
+				if (entry.hot)
+					hotCount--;
+				else
+					coldCount--;
+				entry = null;
+			}
+			inserted = false;
+			super.remove();
+		}
+
+		/**
+		 * Displaces this slot. The entry of the slot stays in the circular
+		 * list as test entry.
+		 */
+		protected void displace() {
+			Entry test = entry;
+			
+			entry = null;
+			test.slot = null;
+			test.referenced = false;
+			coldCount--;
+			testCount++;
+			tests.put(new Pair<O, I>(test.owner, test.id), test);
+			super.displace();
+			while (testCount > capacity())
+				runTestHand();
+		}
+	}
+
+	/**
+	 * The test entries of the circular list identified by the owners and ids
+	 * of their objects.
+	 */
+	protected Map<Pair<O, I>, Entry> tests = new HashMap<Pair<O, I>, Entry>();
+
+	/**
+	 * The hand of the clock that searches cold objects to displace.
+	 */
+	protected Entry coldHand = null;
+
+	/**
+	 * The hand of the clock that turns hot objects into cold ones.
+	 */
+	protected Entry hotHand = null;
+
+	/**
+	 * The hand of the clock that removes test entries.
+	 */
+	protected Entry testHand = null;
+
+	/**
+	 * The number of hot objects in this buffer.
+	 */
+	protected int hotCount = 0;
+
+	/**
+	 * The number of cold objects in this buffer.
+	 */
+	protected int coldCount = 0;
+
+	/**
+	 * The number of test entries in the circular list.
+	 */
+	protected int testCount = 0;
+
+	/**
+	 * The number of slots reserved for cold objects. The remaining slots can
+	 * be used by hot objects. This number adapts to the access pattern.
+	 */
+	protected int coldCapacity;
+
+	/**
+	 * Constructs a new empty CLOCK-Pro buffer with a number of slots
+	 * specified by the given capacity.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 * @param capacityBytes the capacity of the buffer in bytes. If this is
+	 *        &gt;&nbsp;-1, then the buffered objects have to efficiently
+	 *        implement the interface SizeAware, so that the buffer can
+	 *        determine the correct number of bytes used. 
+	 */
+	public ClockProBuffer(int capacity, int capacityBytes) {
+		super(capacity, capacityBytes);
+		this.coldCapacity = capacity;
+	}
+
+	/**
+	 * Constructs a new empty CLOCK-Pro buffer with a number of slots
+	 * specified by the given capacity.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 */
+	public ClockProBuffer(int capacity) {
+		this(capacity, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new empty slot with the specified index. For further detail
+	 * see contract for {@link Buffer#newSlot(int) newSlot} in Buffer.
+	 *
+	 * @param index the index of the new slot.
+	 * @return a new empty slot with the specified index.
+	 */
+	protected Buffer.Slot newSlot(int index) {
+		return new Slot(index);
+	}
+
+	/**
+	 * Inserts the specified entry into the circular list directly in front
+	 * of the hot hand, i.e., at the position that is visited last by the
+	 * hands.
+	 *
+	 * @param entry the entry to insert.
+	 */
+	protected void link(Entry entry) {
+		if (hotHand == null)
+			coldHand = hotHand = testHand = entry;
+		else {
+			entry.next = hotHand;
+			entry.prev = hotHand.prev;
+			hotHand.prev.next = entry;
+			hotHand.prev = entry;
+			if (coldHand == hotHand)
+				coldHand = entry;
+		}
+	}
+
+	/**
+	 * Removes the specified entry out of the circular list. A hand pointing
+	 * to the entry is moved back to its predecessor.
+	 *
+	 * @param entry the entry to remove.
+	 */
+	protected void unlink(Entry entry) {
+		if (entry.next == entry)
+			coldHand = hotHand = testHand = null;
+		else {
+			if (coldHand == entry)
+				coldHand = entry.prev;
+			if (hotHand == entry)
+				hotHand = entry.prev;
+			if (testHand == entry)
+				testHand = entry.prev;
+			entry.prev.next = entry.next;
+			entry.next.prev = entry.prev;
+		}
+		entry.prev = entry.next = entry;
+	}
+
+	/**
+	 * Moves the cold hand one step forward. When the cold hand points to a
+	 * cold object whose reference bit is set, the object becomes hot. When
+	 * it points to an unfixed cold object whose reference bit is not set,
+	 * the slot of the object is returned for being displaced. Thereafter the
+	 * hot hand is run as long as there are more hot objects than allowed.
+	 *
+	 * @return the slot to displace or <code>null</code> if the cold hand did
+	 *         not find one.
+	 */
+	protected Slot runColdHand() {
+		Entry entry = coldHand;
+		Slot victim = null;
+		
+		if (entry.slot != null && !entry.hot) {
+			if (entry.referenced) {
+				entry.hot = true;
+				entry.referenced = false;
+				coldCount--;
+				hotCount++;
+			}
+			else if (!entry.slot.isFixed())
+				victim = entry.slot;
+		}
+		coldHand = coldHand.next;
+		while (hotCount > capacity() - coldCapacity)
+			runHotHand();
+		return victim;
+	}
+
+	/**
+	 * Moves the hot hand one step forward. When the hot hand points to a hot
+	 * object whose reference bit is set, the bit is reset. Otherwise the hot
+	 * object becomes cold.
+	 */
+	protected void runHotHand() {
+		if (hotHand == testHand)
+			runTestHand();
+		Entry entry = hotHand;
+		
+		if (entry.hot) {
+			if (entry.referenced)
+				entry.referenced = false;
+			else {
+				entry.hot = false;
+				hotCount--;
+				coldCount++;
+			}
+		}
+		hotHand = hotHand.next;
+	}
+
+	/**
+	 * Moves the test hand one step forward. When the test hand points to a
+	 * test entry, the entry is removed and the number of slots reserved for
+	 * cold objects is decreased.
+	 */
+	protected void runTestHand() {
+		Entry entry = testHand;
+		
+		if (entry.slot == null) {
+			tests.remove(new Pair<O, I>(entry.owner, entry.id));
+			unlink(entry);
+			testCount--;
+			if (coldCapacity > 1)
+				coldCapacity--;
+		}
+		if (testHand != null)
+			testHand = testHand.next;
+	}
+
+	/**
+	 * Returns the <i>next</i> slot to displace in this CLOCK-Pro buffer. This
+	 * implementation runs the cold hand until it finds an unfixed cold
+	 * object whose reference bit is not set. When the cold hand has passed
+	 * the whole circular list without success (because every cold object is
+	 * fixed), the hot hand is run additionally in order to provide further
+	 * cold objects.
+	 *
+	 * @return the next slot to displace in this buffer.
+	 */
+	protected Buffer.Slot victim() {
+		for (int steps = 0;; steps++) {
+			Slot victim = runColdHand();
+			
+			if (victim != null)
+				return victim;
+			if (steps >= hotCount + coldCount + testCount)
+				runHotHand();
+		}
+	}
+}
@@ -0,0 +1,292 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import xxl.core.util.Pair;
+
+/**
+ * This class provides a buffer with the LRU-K displacement strategy proposed
+ * by O'Neil, O'Neil and Weikum in "The LRU-K Page Replacement Algorithm For
+ * Database Disk Buffering" (SIGMOD 1993). The buffer displaces the object
+ * whose <i>backward K-distance</i>, i.e., the time elapsed since its K-th most
+ * recent access, is maximal. Objects that have been accessed less than K times
+ * have an infinite backward K-distance and are displaced first, so a single
+ * scan through a large number of objects does not displace the objects that
+ * are accessed frequently.
+ * 
+ * <p>Every slot stores the logical times of the last K accesses to its
+ * object. When an object is displaced, its history is retained for a while
+ * (up to <tt>historyCapacity</tt> histories are remembered), so that an
+ * object that is requested again soon after being displaced does not lose
+ * its history. The unfixed slots are kept in a sorted set ordered by their
+ * K-th most recent access time (ties are broken by their most recent access
+ * time), so the next slot to displace is determined in logarithmic time.
+ * Like in a {@link LRUBuffer}, a slot is removed out of this set when it is
+ * fixed and reinserted when it is unfixed.</p>
+ * 
+ * <p>Example usage (1).
+ * <pre>
+ *     // create a new LRU-2 buffer with a capacity of 100 objects
+ *
+ *     LRUKBuffer buffer = new LRUKBuffer(100, 2);
+ *
+ *     // use it for buffering the blocks of a container
+ *
+ *     Container container = new BufferedContainer(new BlockFileContainer("file", 4096), buffer);
+ * </pre>
+ * 
+ * @param <O> the type of the objects specifing the owner of a buffer's slot.
+ * @param <I> the type of the identifiers used for identifing the buffer's
+ *        slots.
+ * @param <E> the type of the elements stored by this buffer.
+ * @see LRUBuffer
+ */
+public class LRUKBuffer<O, I, E> extends Buffer<O, I, E> {
+
+	/**
+	 * This class provides a single slot in a LRU-K buffer. In addition to the
+	 * usual information, every occupied slot stores the history of the last K
+	 * accesses to its object.
+	 */
+	protected class Slot extends Buffer<O, I, E>.Slot {
+
+		/**
+		 * The logical times of the last K accesses to the object of this
+		 * slot. The most recent access is stored at index <code>0</code>. A
+		 * value of <code>0</code> marks a missing access.
+		 */
+		protected long[] history = null;
+
+		/**
+		 * Constructs a new empty slot with the specified index.
+		 *
+		 * @param index the index of the new slot.
+		 */
+		public Slot(int index) {
+			super(index);
+		}
+
+		/**
+		 * Returns the K-th most recent access time of the object of this slot
+		 * or <code>0</code> if it has been accessed less than K times.
+		 *
+		 * @return the K-th most recent access time of this slot.
+		 */
+		protected long kthAccess() {
+			return history[k-1];
+		}
+
+		/**
+		 * Returns the most recent access time of the object of this slot.
+		 *
+		 * @return the most recent access time of this slot.
+		 */
+		protected long lastAccess() {
+			return history[0];
+		}
+
+		/**
+		 * Inserts the specified object with the specified id and owner in
+		 * this slot. This implementation also restores the retained history
+		 * of the object, if there is one.
+		 *
+		 * @param owner the new owner of this slot.
+		 * @param id the new id of this slot.
+		 * @param object the new object of this slot.
+		 */
+		protected void insert(O owner, I id, E object) {
+			super.insert(owner, id, object);
+			history = retained.remove(new Pair<O, I>(owner, id));
+			if (history == null)
+				history = new long[k];
+		}
+
+		/**
+		 * Fixes this slot so that the object contained by it cannot be
+		 * removed out of the buffer. This implementation removes the slot out
+		 * of the set of unfixed slots and records an access to its object.
+		 */
+		public void fix() {
+			if (!isFixed())
+				unfixed.remove(this);
+			super.fix();
+			System.arraycopy(history, 0, history, 1, k-1);
+			history[0] = ++time;
+		}
+
+		/**
+		 * Unfixes this slot so that the object contained by it can be removed
+		 * out of the buffer. This implementation inserts the slot into the
+		 * set of unfixed slots.
+		 */
+		public void unfix() {
+			super.unfix();
+			unfixed.add(this);
+		}
+
+		/**
+		 * Removes the object and any information belonging to it from this
+		 * slot so that it is empty thereafter. This implementation also
+		 * removes the slot out of the set of unfixed slots.
+		 */
+		public void remove() {
+			if (history != null) {
+				unfixed.remove(this);
+				history = null;
+			}
+			super.remove();
+		}
+
+		/**
+		 * Displaces this slot. The history of its object is retained, so that
+		 * it can be restored when the object is requested again.
+		 */
+		protected void displace() {
+			if (historyCapacity > 0)
+				retained.put(new Pair<O, I>(owner, id), history);
+			super.displace();
+		}
+	}
+
+	/**
+	 * The number of accesses that are considered for every object.
+	 */
+	protected int k;
+
+	/**
+	 * The logical clock used for timestamping the accesses.
+	 */
+	protected long time = 0;
+
+	/**
+	 * The maximal number of access histories that are retained for displaced
+	 * objects.
+	 */
+	protected int historyCapacity;
+
+	/**
+	 * The access histories of displaced objects. The map is bounded by
+	 * <tt>historyCapacity</tt> entries and discards the least recently
+	 * retained history on overflow.
+	 */
+	protected Map<Pair<O, I>, long[]> retained;
+
+	/**
+	 * The unfixed slots of this buffer ordered by their K-th most recent
+	 * access time. Slots that have been accessed less than K times are placed
+	 * in front of the set. Ties are broken by the most recent access time.
+	 */
+	protected TreeSet<Slot> unfixed = new TreeSet<Slot>(
+		new Comparator<Slot>() {
+			public int compare(Slot slot1, Slot slot2) {
+				long kth1 = slot1.kthAccess(), kth2 = slot2.kthAccess();
+				
+				if (kth1 != kth2)
+					return kth1 < kth2 ? -1 : 1;
+				long last1 = slot1.lastAccess(), last2 = slot2.lastAccess();
+				
+				return last1 < last2 ? -1 : last1 == last2 ? 0 : 1;
+			}
+		}
+	);
+
+	/**
+	 * Constructs a new empty LRU-K buffer with a number of slots specified by
+	 * the given capacity.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 * @param capacityBytes the capacity of the buffer in bytes. If this is
+	 *        &gt;&nbsp;-1, then the buffered objects have to efficiently
+	 *        implement the interface SizeAware, so that the buffer can
+	 *        determine the correct number of bytes used. 
+	 * @param k the number of accesses that are considered for every object.
+	 * @param historyCapacity the maximal number of access histories that are
+	 *        retained for displaced objects.
+	 * @throws IllegalArgumentException if <code>k&nbsp;&lt;&nbsp;1</code>.
+	 */
+	public LRUKBuffer(int capacity, int capacityBytes, int k, final int historyCapacity) throws IllegalArgumentException {
+		super(capacity, capacityBytes);
+		if (k < 1)
+			throw new IllegalArgumentException("The parameter k must be at least 1.");
+		this.k = k;
+		this.historyCapacity = historyCapacity;
+		this.retained = new LinkedHashMap<Pair<O, I>, long[]>() {
+			protected boolean removeEldestEntry(Map.Entry<Pair<O, I>, long[]> eldest) {
+				return size() > historyCapacity;
+			}
+		};
+	}
+
+	/**
+	 * Constructs a new empty LRU-K buffer with a number of slots specified by
+	 * the given capacity. The histories of as many displaced objects as the
+	 * buffer has slots are retained.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 * @param k the number of accesses that are considered for every object.
+	 * @throws IllegalArgumentException if <code>k&nbsp;&lt;&nbsp;1</code>.
+	 */
+	public LRUKBuffer(int capacity, int k) throws IllegalArgumentException {
+		this(capacity, Integer.MAX_VALUE, k, capacity);
+	}
+
+	/**
+	 * Constructs a new empty LRU-2 buffer with a number of slots specified by
+	 * the given capacity.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 */
+	public LRUKBuffer(int capacity) {
+		this(capacity, 2);
+	}
+
+	/**
+	 * Creates a new empty slot with the specified index. For further detail
+	 * see contract for {@link Buffer#newSlot(int) newSlot} in Buffer.
+	 *
+	 * @param index the index of the new slot.
+	 * @return a new empty slot with the specified index.
+	 */
+	protected Buffer.Slot newSlot(int index) {
+		return new Slot(index);
+	}
+
+	/**
+	 * Returns the <i>next</i> slot to displace in this LRU-K buffer. This
+	 * implementation returns the unfixed slot with the maximal backward
+	 * K-distance, i.e., the first slot of the set of unfixed slots.
+	 *
+	 * @return the unfixed slot with the maximal backward K-distance.
+	 */
+	protected Buffer.Slot victim() {
+		return unfixed.first();
+	}
+}
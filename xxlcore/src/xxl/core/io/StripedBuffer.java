@@ -0,0 +1,592 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * This class provides a thread-safe buffer that partitions its slots into a
+ * number of independent <i>stripes</i>. Every stripe is an ordinary buffer
+ * (e.g., a {@link LRUBuffer}) that is guarded by its own lock. An object of
+ * the buffer is assigned to a stripe by hashing its owner and id, so
+ * concurrent requests for objects of different stripes do not block each
+ * other. A {@link xxl.core.collections.containers.io.BufferedContainer
+ * BufferedContainer} using a striped buffer can therefore be shared by a
+ * number of threads without serializing every access behind a single
+ * monitor. Note that the container decorated by the buffered container is
+ * still accessed concurrently when different stripes load or flush objects,
+ * so it must be thread-safe itself (e.g., by wrapping it into a
+ * {@link xxl.core.collections.containers.SynchronizedContainer
+ * SynchronizedContainer}).
+ * 
+ * <p>A slot of an ordinary buffer is either fixed or unfixed, i.e., a single
+ * call of the unfix method releases a slot that has been fixed by two
+ * different threads. Therefore a striped buffer maintains a <i>pin count</i>
+ * for every fixed object. Every request with <code>unfix&nbsp;==&nbsp;false</code>
+ * increments the pin count of the requested object, and every call of the
+ * unfix method decrements it. The slot in the underlying stripe is not
+ * unfixed before the pin count drops to <code>0</code>.</p>
+ * 
+ * <p>The objects of a stripe can only be displaced by objects of the same
+ * stripe. Because the capacity of the buffer is distributed among the
+ * stripes, a stripe may overflow when too many of its slots are fixed,
+ * although the buffer as a whole contains unfixed slots.</p>
+ * 
+ * <p>Example usage (1).
+ * <pre>
+ *     // create a new striped buffer with 16 LRU stripes and a capacity of 1024 objects
+ *
+ *     StripedBuffer buffer = new StripedBuffer(1024, 16);
+ *
+ *     // share a buffered container between several threads
+ *
+ *     Container container = new BufferedContainer(new SynchronizedContainer(new BlockFileContainer("file", 4096)), buffer);
+ * </pre>
+ * 
+ * @param <O> the type of the objects specifing the owner of a buffer's slot.
+ * @param <I> the type of the identifiers used for identifing the buffer's
+ *        slots.
+ * @param <E> the type of the elements stored by this buffer.
+ * @see LRUBuffer
+ */
+public class StripedBuffer<O, I, E> extends Buffer<O, I, E> {
+
+	/**
+	 * This class provides a single stripe of a striped buffer. A stripe
+	 * consists of an ordinary buffer and the pin counts of the objects that
+	 * are fixed in it. The stripe itself is used as the lock guarding it.
+	 */
+	protected class Stripe {
+
+		/**
+		 * The buffer storing the objects of this stripe.
+		 */
+		protected Buffer<O, I, E> buffer;
+
+		/**
+		 * A map that contains the pin counts of the fixed objects of this
+		 * stripe. The owners are mapped to maps that contain the pin counts
+		 * of the owner's fixed objects identified by their ids.
+		 */
+		protected Map<O, Map<I, int[]>> pins = new HashMap<O, Map<I, int[]>>();
+
+		/**
+		 * Constructs a new stripe using the specified buffer.
+		 *
+		 * @param buffer the buffer storing the objects of the new stripe.
+		 */
+		protected Stripe(Buffer<O, I, E> buffer) {
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Returns the pin count of the object with the given id owned by the
+		 * specified owner.
+		 *
+		 * @param owner the owner of the object.
+		 * @param id the id of the object.
+		 * @return the pin count of the object.
+		 */
+		protected int pinCount(O owner, I id) {
+			Map<I, int[]> members = pins.get(owner);
+			int[] count = members == null ? null : members.get(id);
+			
+			return count == null ? 0 : count[0];
+		}
+
+		/**
+		 * Increments the pin count of the object with the given id owned by
+		 * the specified owner.
+		 *
+		 * @param owner the owner of the object.
+		 * @param id the id of the object.
+		 */
+		protected void pin(O owner, I id) {
+			Map<I, int[]> members = pins.get(owner);
+			int[] count;
+			
+			if (members == null)
+				pins.put(owner, members = new HashMap<I, int[]>());
+			if ((count = members.get(id)) == null)
+				members.put(id, count = new int[1]);
+			count[0]++;
+		}
+
+		/**
+		 * Decrements the pin count of the object with the given id owned by
+		 * the specified owner. When the pin count drops to <code>0</code>,
+		 * the object is unfixed in the underlying buffer.
+		 *
+		 * @param owner the owner of the object.
+		 * @param id the id of the object.
+		 */
+		protected void unpin(O owner, I id) {
+			Map<I, int[]> members = pins.get(owner);
+			int[] count = members == null ? null : members.get(id);
+			
+			if (count != null && --count[0] > 0)
+				return;
+			if (count != null) {
+				members.remove(id);
+				if (members.isEmpty())
+					pins.remove(owner);
+			}
+			buffer.unfix(owner, id);
+		}
+
+		/**
+		 * Removes the pin count of the object with the given id owned by the
+		 * specified owner.
+		 *
+		 * @param owner the owner of the object.
+		 * @param id the id of the object.
+		 */
+		protected void clearPin(O owner, I id) {
+			Map<I, int[]> members = pins.get(owner);
+			
+			if (members != null && members.remove(id) != null && members.isEmpty())
+				pins.remove(owner);
+		}
+	}
+
+	/**
+	 * The stripes of this buffer.
+	 */
+	protected List<Stripe> stripes;
+
+	/**
+	 * Constructs a new empty striped buffer with the specified number of
+	 * stripes. The buffers of the stripes are created by invoking the given
+	 * function with the index of the stripe.
+	 *
+	 * @param stripes the number of stripes of the new buffer.
+	 * @param newBuffer a function that creates the buffer of a stripe when
+	 *        it is invoked with the index of the stripe.
+	 * @throws IllegalArgumentException if <code>stripes&nbsp;&lt;&nbsp;1</code>.
+	 */
+	public StripedBuffer(int stripes, Function<Integer, ? extends Buffer<O, I, E>> newBuffer) throws IllegalArgumentException {
+		super(0);
+		if (stripes < 1)
+			throw new IllegalArgumentException("A striped buffer needs at least one stripe.");
+		this.stripes = new ArrayList<Stripe>(stripes);
+		for (int i = 0; i < stripes; i++)
+			this.stripes.add(new Stripe(newBuffer.invoke(i)));
+	}
+
+	/**
+	 * Constructs a new empty striped buffer with the specified number of
+	 * stripes. Every stripe is a LRU buffer and the given capacity is
+	 * distributed evenly among the stripes.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 * @param stripes the number of stripes of the new buffer.
+	 * @throws IllegalArgumentException if <code>stripes&nbsp;&lt;&nbsp;1</code>
+	 *         or the capacity is less than the number of stripes.
+	 */
+	public StripedBuffer(final int capacity, final int stripes) throws IllegalArgumentException {
+		this(stripes,
+			new AbstractFunction<Integer, Buffer<O, I, E>>() {
+				public Buffer<O, I, E> invoke(Integer index) {
+					if (capacity < stripes)
+						throw new IllegalArgumentException("Every stripe needs at least one slot.");
+					return new LRUBuffer<O, I, E>(capacity/stripes + (index < capacity%stripes ? 1 : 0));
+				}
+			}
+		);
+	}
+
+	/**
+	 * Constructs a new empty striped buffer with the given capacity. Every
+	 * stripe is a LRU buffer and the number of stripes is four times the
+	 * number of available processors (but at most the capacity).
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 */
+	public StripedBuffer(int capacity) {
+		this(capacity, Math.max(1, Math.min(capacity, 4*Runtime.getRuntime().availableProcessors())));
+	}
+
+	/**
+	 * Returns the stripe the object with the given id owned by the specified
+	 * owner is assigned to.
+	 *
+	 * @param owner the owner of the object.
+	 * @param id the id of the object.
+	 * @return the stripe of the object.
+	 */
+	protected Stripe stripe(O owner, I id) {
+		int hash = 31*(owner == null ? 0 : owner.hashCode()) + (id == null ? 0 : id.hashCode());
+		
+		// spread the bits of the hash code like java.util.HashMap does
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return stripes.get((hash & 0x7fffffff) % stripes.size());
+	}
+
+	/**
+	 * Returns the number of stripes of this buffer.
+	 *
+	 * @return the number of stripes of this buffer.
+	 */
+	public int stripes() {
+		return stripes.size();
+	}
+
+	/**
+	 * A striped buffer does not displace slots itself, because every stripe
+	 * uses the displacement strategy of its own buffer.
+	 *
+	 * @return nothing.
+	 * @throws UnsupportedOperationException always.
+	 */
+	protected Buffer.Slot victim() throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("The stripes of a striped buffer displace their slots themselves.");
+	}
+
+	/**
+	 * Returns the number of slots in this buffer that contain an object.
+	 *
+	 * @return the number of occupied slots in this buffer.
+	 */
+	public int size() {
+		int size = 0;
+		
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				size += stripe.buffer.size();
+			}
+		return size;
+	}
+
+	/**
+	 * Returns the capacity of this buffer, i.e., the sum of the capacities of
+	 * its stripes.
+	 *
+	 * @return the maximal number of slots this buffer can contain.
+	 */
+	public int capacity() {
+		int capacity = 0;
+		
+		for (Stripe stripe : stripes)
+			capacity += stripe.buffer.capacity();
+		return capacity;
+	}
+
+	/**
+	 * Returns the number bytes used in this buffer.
+	 *
+	 * @return the number of occupied space in bytes in this buffer.
+	 */
+	public int bytesUsed() {
+		int bytes = 0;
+		
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				bytes += stripe.buffer.bytesUsed();
+			}
+		return bytes;
+	}
+
+	/**
+	 * Returns the object with the given id owned by the specified owner. For
+	 * further detail see contract for {@link Buffer#get(Object, Object,
+	 * Function, boolean) get} in Buffer. When
+	 * <code>unfix&nbsp;==&nbsp;false</code>, the pin count of the object is
+	 * incremented.
+	 *
+	 * @param owner the owner of the slot containing the object to get.
+	 * @param id the id of the slot containing the object to get.
+	 * @param obtain a function for creating a new object, when there is no
+	 *        slot the the given id owned by the specified owner.
+	 * @param unfix a flag that determines whether the desired slot should be
+	 *        unfixed after getting its object or not.
+	 * @return the object contained by the slot with the given id owned by the
+	 *         specified owner.
+	 * @throws IllegalStateException when the stripe of the object overflows.
+	 */
+	public E get(O owner, I id, Function<? super I, ? extends E> obtain, boolean unfix) throws IllegalStateException {
+		Stripe stripe = stripe(owner, id);
+		
+		synchronized (stripe) {
+			E object = stripe.buffer.get(owner, id, obtain, unfix && stripe.pinCount(owner, id) == 0);
+			
+			if (!unfix)
+				stripe.pin(owner, id);
+			return object;
+		}
+	}
+
+	/**
+	 * Updates the slot with the given id owned by the specified owner. For
+	 * further detail see contract for {@link Buffer#update(Object, Object,
+	 * Object, Function, boolean) update} in Buffer. When
+	 * <code>unfix&nbsp;==&nbsp;false</code>, the pin count of the object is
+	 * incremented.
+	 *
+	 * @param owner the owner of the slot to update.
+	 * @param id the id of the slot to update.
+	 * @param object the object that replaces the object contained by the
+	 *        desired slot.
+	 * @param flush the function that replaces the flush function of the
+	 *        desired slot.
+	 * @param unfix a flag that determines whether the desired slot should be
+	 *        unfixed after updating it or not.
+	 * @throws IllegalStateException when the stripe of the object overflows.
+	 */
+	public void update(O owner, I id, E object, Function<Object, ?> flush, boolean unfix) throws IllegalStateException {
+		Stripe stripe = stripe(owner, id);
+		
+		synchronized (stripe) {
+			stripe.buffer.update(owner, id, object, flush, unfix && stripe.pinCount(owner, id) == 0);
+			if (!unfix)
+				stripe.pin(owner, id);
+		}
+	}
+
+	/**
+	 * Decrements the pin count of the slot with the given id owned by the
+	 * specified owner. The slot is unfixed when its pin count drops to
+	 * <code>0</code>.
+	 *
+	 * @param owner the owner of the slot to unfix.
+	 * @param id the id of the slot to unfix.
+	 */
+	public void unfix(O owner, I id) {
+		Stripe stripe = stripe(owner, id);
+		
+		synchronized (stripe) {
+			stripe.unpin(owner, id);
+		}
+	}
+
+	/**
+	 * Returns whether this buffer contains a slot with the given id owned by
+	 * the specified owner.
+	 *
+	 * @param owner the owner of the desired slot.
+	 * @param id the id of the desired slot.
+	 * @return <code>true</code> if this buffer contains a slot with the given
+	 *         id owned by the specified owner, else returns
+	 *         <code>false</code>.
+	 */
+	public boolean contains(O owner, I id) {
+		Stripe stripe = stripe(owner, id);
+		
+		synchronized (stripe) {
+			return stripe.buffer.contains(owner, id);
+		}
+	}
+
+	/**
+	 * Returns whether the slot with the given id owned by the specified owner
+	 * is fixed or not.
+	 *
+	 * @param owner the owner of the desired slot.
+	 * @param id the id of the desired slot.
+	 * @return <code>true</code> if the slot with the given id owned by the
+	 *         specified owner is fixed, else returns <code>false</code>.
+	 */
+	public boolean isFixed(O owner, I id) {
+		Stripe stripe = stripe(owner, id);
+		
+		synchronized (stripe) {
+			return stripe.buffer.isFixed(owner, id);
+		}
+	}
+
+	/**
+	 * Returns the pin count of the slot with the given id owned by the
+	 * specified owner, i.e., the number of requests that fixed the slot and
+	 * have not been followed by a call of the unfix method yet.
+	 *
+	 * @param owner the owner of the desired slot.
+	 * @param id the id of the desired slot.
+	 * @return the pin count of the desired slot.
+	 */
+	public int pinCount(O owner, I id) {
+		Stripe stripe = stripe(owner, id);
+		
+		synchronized (stripe) {
+			return stripe.pinCount(owner, id);
+		}
+	}
+
+	/**
+	 * Flushes the slot with the given id owned by the specified owner.
+	 *
+	 * @param owner the owner of the slot to flush.
+	 * @param id the id of the slot to flush.
+	 */
+	public void flush(O owner, I id) {
+		Stripe stripe = stripe(owner, id);
+		
+		synchronized (stripe) {
+			stripe.buffer.flush(owner, id);
+		}
+	}
+
+	/**
+	 * Flushes all slots in this buffer that are owned by the specified owner.
+	 * The stripes are flushed one after another.
+	 *
+	 * @param owner the owner of the slots to flush.
+	 */
+	public void flushAll(O owner) {
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				stripe.buffer.flushAll(owner);
+			}
+	}
+
+	/**
+	 * Removes the object and any information belonging to it (including its
+	 * pin count) from the slot with the given id owned by the specified
+	 * owner.
+	 *
+	 * @param owner the owner of the slot to remove.
+	 * @param id the id of the slot to remove.
+	 */
+	public void remove(O owner, I id) {
+		Stripe stripe = stripe(owner, id);
+		
+		synchronized (stripe) {
+			stripe.clearPin(owner, id);
+			stripe.buffer.remove(owner, id);
+		}
+	}
+
+	/**
+	 * Removes the objects and any information belonging to them from all
+	 * slots in this buffer that are owned by the specified owner. The
+	 * stripes are processed one after another.
+	 *
+	 * @param owner the owner of the slots to remove.
+	 */
+	public void removeAll(O owner) {
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				stripe.pins.remove(owner);
+				stripe.buffer.removeAll(owner);
+			}
+	}
+
+	/**
+	 * Checks wheather aggregated values are still correct inside the
+	 * structures of the stripes.
+	 */
+	public void checkBuffer() {
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				stripe.buffer.checkBuffer();
+			}
+	}
+
+	/**
+	 * Returns the number of fixed slots in this buffer.
+	 */
+	public int fixedSlots() {
+		int fixedSlots = 0;
+		
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				fixedSlots += stripe.buffer.fixedSlots();
+			}
+		return fixedSlots;
+	}
+
+	/**
+	 * Returns the number of buffer hits summed up over all stripes.
+	 *
+	 * @return the number of buffer hits.
+	 */
+	public long hits() {
+		long hits = 0;
+		
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				hits += stripe.buffer.hits();
+			}
+		return hits;
+	}
+
+	/**
+	 * Returns the number of buffer misses summed up over all stripes.
+	 *
+	 * @return the number of buffer misses.
+	 */
+	public long misses() {
+		long misses = 0;
+		
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				misses += stripe.buffer.misses();
+			}
+		return misses;
+	}
+
+	/**
+	 * Returns the number of displaced slots summed up over all stripes.
+	 *
+	 * @return the number of displaced slots.
+	 */
+	public long evictions() {
+		long evictions = 0;
+		
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				evictions += stripe.buffer.evictions();
+			}
+		return evictions;
+	}
+
+	/**
+	 * Returns the ratio of buffer hits to all requests for a slot summed up
+	 * over all stripes.
+	 *
+	 * @return the hit ratio of this buffer.
+	 */
+	public double hitRatio() {
+		long hits = hits(), requests = hits + misses();
+		
+		return requests == 0 ? 0.0 : (double)hits / requests;
+	}
+
+	/**
+	 * Resets the counters for hits, misses and evictions of every stripe.
+	 */
+	public void resetCounters() {
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				stripe.buffer.resetCounters();
+			}
+	}
+}
@@ -0,0 +1,348 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import xxl.core.util.Pair;
+
+/**
+ * This class provides a buffer with the 2Q displacement strategy proposed by
+ * Johnson and Shasha in "2Q: A Low Overhead High Performance Buffer
+ * Management Replacement Algorithm" (VLDB 1994). In contrast to a
+ * {@link LRUBuffer}, a single scan through a large number of objects does not
+ * displace the frequently accessed objects of this buffer.
+ * 
+ * <p>The slots of the buffer are organized in two queues. Objects that are
+ * inserted into the buffer for the first time are appended to the FIFO queue
+ * <tt>A1in</tt>. Accessing an object of this queue again does not change its
+ * position, because such accesses are usually correlated. When an object is
+ * displaced from <tt>A1in</tt>, its id and owner are remembered in the
+ * bounded ghost queue <tt>A1out</tt>. When an object is requested again while
+ * its id is still contained in <tt>A1out</tt>, it is regarded as hot and is
+ * inserted into the LRU queue <tt>Am</tt>. Objects of <tt>Am</tt> are moved
+ * to the front of it whenever they are accessed.</p>
+ * 
+ * <p>When a slot must be displaced, the oldest unfixed slot of <tt>A1in</tt>
+ * is chosen as long as <tt>A1in</tt> contains more than <tt>kin</tt> slots.
+ * Otherwise the least recently used unfixed slot of <tt>Am</tt> is chosen.
+ * Fixed slots remain in their queues, but they are skipped when searching a
+ * slot to displace.</p>
+ * 
+ * <p>Example usage (1).
+ * <pre>
+ *     // create a new 2Q buffer with a capacity of 100 objects
+ *
+ *     TwoQueueBuffer buffer = new TwoQueueBuffer(100);
+ *
+ *     // use it for buffering the blocks of a container
+ *
+ *     Container container = new BufferedContainer(new BlockFileContainer("file", 4096), buffer);
+ * </pre>
+ * 
+ * @param <O> the type of the objects specifing the owner of a buffer's slot.
+ * @param <I> the type of the identifiers used for identifing the buffer's
+ *        slots.
+ * @param <E> the type of the elements stored by this buffer.
+ * @see LRUBuffer
+ */
+public class TwoQueueBuffer<O, I, E> extends Buffer<O, I, E> {
+
+	/**
+	 * This class provides a double linked list of slots that is used for
+	 * representing the queues <tt>A1in</tt> and <tt>Am</tt>. The first slot
+	 * of the list is the slot that has been inserted (or accessed) at last.
+	 */
+	protected class SlotList {
+
+		/**
+		 * The first slot of this list.
+		 */
+		protected Slot first = null;
+
+		/**
+		 * The last slot of this list.
+		 */
+		protected Slot last = null;
+
+		/**
+		 * The number of slots contained by this list.
+		 */
+		protected int size = 0;
+
+		/**
+		 * Inserts the specified slot in front of this list.
+		 *
+		 * @param slot the slot to insert.
+		 */
+		protected void addFirst(Slot slot) {
+			slot.list = this;
+			slot.prev = null;
+			slot.next = first;
+			if (first != null)
+				first.prev = slot;
+			else
+				last = slot;
+			first = slot;
+			size++;
+		}
+
+		/**
+		 * Removes the specified slot out of this list.
+		 *
+		 * @param slot the slot to remove.
+		 */
+		protected void unlink(Slot slot) {
+			if (slot.prev != null)
+				slot.prev.next = slot.next;
+			else
+				first = slot.next;
+			if (slot.next != null)
+				slot.next.prev = slot.prev;
+			else
+				last = slot.prev;
+			slot.prev = slot.next = null;
+			slot.list = null;
+			size--;
+		}
+
+		/**
+		 * Returns the unfixed slot that is nearest to the end of this list
+		 * or <code>null</code> if every slot of this list is fixed.
+		 *
+		 * @return the last unfixed slot of this list.
+		 */
+		protected Slot lastUnfixed() {
+			for (Slot slot = last; slot != null; slot = slot.prev)
+				if (!slot.isFixed())
+					return slot;
+			return null;
+		}
+	}
+
+	/**
+	 * This class provides a single slot in a 2Q buffer. In addition to the
+	 * usual information, every occupied slot knows the queue it is contained
+	 * by and its predecessor and successor in this queue.
+	 */
+	protected class Slot extends Buffer<O, I, E>.Slot {
+
+		/**
+		 * The queue that contains this slot or <code>null</code> if this
+		 * slot is empty.
+		 */
+		protected SlotList list = null;
+
+		/**
+		 * The predecessor of this slot in its queue.
+		 */
+		protected Slot prev = null;
+
+		/**
+		 * The successor of this slot in its queue.
+		 */
+		protected Slot next = null;
+
+		/**
+		 * Constructs a new empty slot with the specified index.
+		 *
+		 * @param index the index of the new slot.
+		 */
+		public Slot(int index) {
+			super(index);
+		}
+
+		/**
+		 * Inserts the specified object with the specified id and owner in
+		 * this slot. This implementation also appends the slot to the queue
+		 * <tt>Am</tt>, when its id is contained by the ghost queue
+		 * <tt>A1out</tt>, and to the queue <tt>A1in</tt> otherwise.
+		 *
+		 * @param owner the new owner of this slot.
+		 * @param id the new id of this slot.
+		 * @param object the new object of this slot.
+		 */
+		protected void insert(O owner, I id, E object) {
+			super.insert(owner, id, object);
+			if (a1out.remove(new Pair<O, I>(owner, id)) != null)
+				am.addFirst(this);
+			else
+				a1in.addFirst(this);
+		}
+
+		/**
+		 * Fixes this slot so that the object contained by it cannot be
+		 * removed out of the buffer. When the slot is contained by the queue
+		 * <tt>Am</tt>, it is moved to the front of it.
+		 */
+		public void fix() {
+			super.fix();
+			if (list == am && am.first != this) {
+				am.unlink(this);
+				am.addFirst(this);
+			}
+		}
+
+		/**
+		 * Removes the object and any information belonging to it from this
+		 * slot so that it is empty thereafter. This implementation also
+		 * removes the slot out of its queue.
+		 */
+		public void remove() {
+			if (list != null)
+				list.unlink(this);
+			super.remove();
+		}
+
+		/**
+		 * Displaces this slot. When this slot is contained by the queue
+		 * <tt>A1in</tt>, its id and owner are remembered in the ghost queue
+		 * <tt>A1out</tt>.
+		 */
+		protected void displace() {
+			if (list == a1in && kout > 0)
+				a1out.put(new Pair<O, I>(owner, id), Boolean.TRUE);
+			super.displace();
+		}
+	}
+
+	/**
+	 * The FIFO queue containing the slots whose objects have been accessed
+	 * only once (or in a short period of correlated accesses).
+	 */
+	protected SlotList a1in = new SlotList();
+
+	/**
+	 * The LRU queue containing the slots whose objects have been requested
+	 * again after being displaced from <tt>A1in</tt>.
+	 */
+	protected SlotList am = new SlotList();
+
+	/**
+	 * The ghost queue that remembers the owners and ids of the objects that
+	 * have been displaced from <tt>A1in</tt> lately. It is bounded by
+	 * <tt>kout</tt> entries and discards its oldest entry on overflow.
+	 */
+	protected Map<Pair<O, I>, Boolean> a1out;
+
+	/**
+	 * The number of slots the queue <tt>A1in</tt> may contain before its
+	 * slots are displaced in favor of the slots of <tt>Am</tt>.
+	 */
+	protected int kin;
+
+	/**
+	 * The maximal number of entries in the ghost queue <tt>A1out</tt>.
+	 */
+	protected int kout;
+
+	/**
+	 * Constructs a new empty 2Q buffer with a number of slots specified by
+	 * the given capacity.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 * @param capacityBytes the capacity of the buffer in bytes. If this is
+	 *        &gt;&nbsp;-1, then the buffered objects have to efficiently
+	 *        implement the interface SizeAware, so that the buffer can
+	 *        determine the correct number of bytes used. 
+	 * @param kin the number of slots the queue <tt>A1in</tt> may contain
+	 *        before its slots are displaced preferentially.
+	 * @param kout the maximal number of owner/id pairs remembered by the
+	 *        ghost queue <tt>A1out</tt>.
+	 */
+	public TwoQueueBuffer(int capacity, int capacityBytes, int kin, final int kout) {
+		super(capacity, capacityBytes);
+		if (kin < 0 || kout < 0)
+			throw new IllegalArgumentException("The sizes of the queues must not be negative.");
+		this.kin = kin;
+		this.kout = kout;
+		this.a1out = new LinkedHashMap<Pair<O, I>, Boolean>() {
+			protected boolean removeEldestEntry(Map.Entry<Pair<O, I>, Boolean> eldest) {
+				return size() > kout;
+			}
+		};
+	}
+
+	/**
+	 * Constructs a new empty 2Q buffer with a number of slots specified by
+	 * the given capacity. As suggested by the authors, the queue
+	 * <tt>A1in</tt> is tuned to 25% of the capacity and the ghost queue
+	 * <tt>A1out</tt> remembers as many owner/id pairs as fit into 50% of the
+	 * capacity.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 * @param capacityBytes the capacity of the buffer in bytes. If this is
+	 *        &gt;&nbsp;-1, then the buffered objects have to efficiently
+	 *        implement the interface SizeAware, so that the buffer can
+	 *        determine the correct number of bytes used. 
+	 */
+	public TwoQueueBuffer(int capacity, int capacityBytes) {
+		this(capacity, capacityBytes, Math.max(1, capacity/4), Math.max(1, capacity/2));
+	}
+
+	/**
+	 * Constructs a new empty 2Q buffer with a number of slots specified by
+	 * the given capacity and the default sizes of the queues.
+	 *
+	 * @param capacity the number of slots in the new buffer.
+	 */
+	public TwoQueueBuffer(int capacity) {
+		this(capacity, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new empty slot with the specified index. For further detail
+	 * see contract for {@link Buffer#newSlot(int) newSlot} in Buffer.
+	 *
+	 * @param index the index of the new slot.
+	 * @return a new empty slot with the specified index.
+	 */
+	protected Buffer.Slot newSlot(int index) {
+		return new Slot(index);
+	}
+
+	/**
+	 * Returns the <i>next</i> slot to displace in this 2Q buffer. This
+	 * implementation returns the oldest unfixed slot of <tt>A1in</tt> when
+	 * this queue exceeds its threshold <tt>kin</tt> (or when <tt>Am</tt> does
+	 * not contain an unfixed slot). Otherwise the least recently used unfixed
+	 * slot of <tt>Am</tt> is returned.
+	 *
+	 * @return the next slot to displace in this buffer.
+	 */
+	protected Buffer.Slot victim() {
+		Slot slot = null;
+		
+		if (a1in.size > kin)
+			slot = a1in.lastUnfixed();
+		if (slot == null)
+			slot = am.lastUnfixed();
+		if (slot == null)
+			slot = a1in.lastUnfixed();
+		return slot;
+	}
+}
@@ -30,6 +30,12 @@ import java.io.*;
 import java.lang.reflect.Field;
 
 /**
+ * This class provides a DataInput implementation using sun.misc.Unsafe
+ * that reads the values written by an {@link UnsafeDataOutput} in native
+ * byte order. {@link ByteBufferInput} is a portable alternative that reads
+ * the byte order of a <tt>DataOutputStream</tt> and reads arrays of
+ * primitive values with bulk copies.
+ *
  * @author seidemann
  */
 public class UnsafeDataInput implements DataInput {
@@ -40,6 +40,11 @@ import java.lang.reflect.Field;
  * Additional to the methods defined in DataOutput, this implementation
  * offers direct access to the written bytes and can be reset.
  *
+ * The values are written in native byte order. {@link ByteBufferOutput}
+ * is a portable alternative that writes in the byte order of a
+ * <tt>DataOutputStream</tt> and writes arrays of primitive values with
+ * bulk copies.
+ *
  * @see java.io.DataOutput
  * @see xxl.core.io.UnsafeDataInput
  */
@@ -0,0 +1,67 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io.codecs;
+
+import java.io.IOException;
+
+/**
+ * A codec compresses and decompresses byte arrays. The compressed data does
+ * not contain the length of the uncompressed data, so the caller has to
+ * store it and provide an array of sufficient size for the decompression.
+ * Implementations have to be thread-safe.
+ *
+ * @see DeflateCodec
+ * @see LZCodec
+ */
+public interface Codec {
+
+	/**
+	 * Compresses the specified part of the given array.
+	 *
+	 * @param array the array containing the data to be compressed.
+	 * @param offset the offset of the data in the array.
+	 * @param length the length of the data.
+	 * @return a new array holding exactly the compressed data.
+	 */
+	public abstract byte[] compress(byte[] array, int offset, int length);
+
+	/**
+	 * Decompresses the specified part of the given array into the
+	 * specified part of the target array.
+	 *
+	 * @param array the array containing the compressed data.
+	 * @param offset the offset of the compressed data in the array.
+	 * @param length the length of the compressed data.
+	 * @param target the array receiving the decompressed data.
+	 * @param targetOffset the offset of the decompressed data in the target
+	 *        array.
+	 * @param targetLength the maximum length of the decompressed data.
+	 * @return the length of the decompressed data.
+	 * @throws IOException if the compressed data is corrupted or does not
+	 *         fit into the target array.
+	 */
+	public abstract int decompress(byte[] array, int offset, int length, byte[] target, int targetOffset, int targetLength) throws IOException;
+}
@@ -0,0 +1,100 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io.codecs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class provides a codec based on the deflate algorithm of the JDK.
+ * The data is compressed without the zlib header and checksum. A deflater
+ * and an inflater are reused for all calls, so concurrent calls are
+ * serialized.
+ */
+public class DeflateCodec implements Codec {
+
+	/**
+	 * A deflate codec using the fastest compression level.
+	 */
+	public static final DeflateCodec DEFAULT_INSTANCE = new DeflateCodec(Deflater.BEST_SPEED);
+
+	/**
+	 * The deflater used for compressing data.
+	 */
+	protected Deflater deflater;
+
+	/**
+	 * The inflater used for decompressing data.
+	 */
+	protected Inflater inflater = new Inflater(true);
+
+	/**
+	 * Creates a new deflate codec using the given compression level.
+	 *
+	 * @param level the compression level (0-9).
+	 * @throws IllegalArgumentException if the level is invalid.
+	 */
+	public DeflateCodec(int level) throws IllegalArgumentException {
+		deflater = new Deflater(level, true);
+	}
+
+	public synchronized byte[] compress(byte[] array, int offset, int length) {
+		byte[] output = new byte[length+length/1000+64];
+		int size = 0;
+
+		deflater.reset();
+		deflater.setInput(array, offset, length);
+		deflater.finish();
+		while (!deflater.finished()) {
+			if (size==output.length)
+				output = Arrays.copyOf(output, 2*output.length);
+			size += deflater.deflate(output, size, output.length-size);
+		}
+		return Arrays.copyOf(output, size);
+	}
+
+	public synchronized int decompress(byte[] array, int offset, int length, byte[] target, int targetOffset, int targetLength) throws IOException {
+		inflater.reset();
+		// the raw inflater needs an extra dummy byte at the end of the input
+		if (offset+length<array.length)
+			inflater.setInput(array, offset, length+1);
+		else
+			inflater.setInput(Arrays.copyOfRange(array, offset, offset+length+1));
+		try {
+			int size = inflater.inflate(target, targetOffset, targetLength);
+			// the end of the stream may not be reached when the target is full
+			if (!inflater.finished() && (inflater.inflate(new byte[1])!=0 || !inflater.finished()))
+				throw new IOException("the decompressed data does not fit into the target array");
+			return size;
+		}
+		catch (DataFormatException dfe) {
+			throw new IOException(dfe);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io.codecs;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class provides a fast LZ77-style codec. The compressor finds
+ * matches of at least four bytes by means of a hash table of the last
+ * positions of four byte sequences and does not search for the longest
+ * match, so it trades compression ratio for speed. The compressed data is
+ * a sequence of the following records:
+ * <pre>
+ *     token (1 byte): the number of literals (4 high bits) and the length
+ *                     of the match minus 4 (4 low bits)
+ *     [additional bytes of the number of literals]
+ *     literals
+ *     distance of the match (2 bytes, little endian)
+ *     [additional bytes of the length of the match]
+ * </pre>
+ * A length of 15 in the token is continued by additional bytes that are
+ * added to it, where a byte of 255 is followed by another byte. The last
+ * record consists of the token and the literals only. This is the block
+ * format known from LZ4, and the compressor follows its rules for the end
+ * of a block: the last {@link #LAST_LITERALS} bytes are always literals and
+ * no match starts within the last {@link #MATCH_FIND_LIMIT} bytes, so the
+ * compressed data can also be decoded by LZ4 decoders.
+ */
+public class LZCodec implements Codec {
+
+	/**
+	 * This instance can be used for getting a default instance of the LZ
+	 * codec.
+	 */
+	public static final LZCodec DEFAULT_INSTANCE = new LZCodec();
+
+	/**
+	 * The minimum length of a match.
+	 */
+	public static final int MIN_MATCH = 4;
+
+	/**
+	 * The maximum distance of a match.
+	 */
+	public static final int MAX_DISTANCE = 65535;
+
+	/**
+	 * The number of bytes at the end of a block that are always written as
+	 * literals.
+	 */
+	public static final int LAST_LITERALS = 5;
+
+	/**
+	 * The number of bytes at the end of a block in which no match starts.
+	 */
+	public static final int MATCH_FIND_LIMIT = 12;
+
+	/**
+	 * The number of bits of the hash values of four byte sequences.
+	 */
+	protected static final int HASH_BITS = 12;
+
+	/**
+	 * Reads four bytes of the given array as an int value.
+	 *
+	 * @param array the array.
+	 * @param index the index of the first byte.
+	 * @return the int value.
+	 */
+	protected static int readInt(byte[] array, int index) {
+		return (array[index]&0xff) | (array[index+1]&0xff)<<8 | (array[index+2]&0xff)<<16 | array[index+3]<<24;
+	}
+
+	/**
+	 * Writes the additional bytes of a length.
+	 *
+	 * @param output the output array.
+	 * @param position the position of the first byte.
+	 * @param length the remaining length.
+	 * @return the position after the last byte.
+	 */
+	protected static int writeLength(byte[] output, int position, int length) {
+		for (; length>=255; length -= 255)
+			output[position++] = (byte)255;
+		output[position++] = (byte)length;
+		return position;
+	}
+
+	/**
+	 * Writes a record.
+	 *
+	 * @param output the output array.
+	 * @param position the position of the record.
+	 * @param array the array containing the literals.
+	 * @param literals the index of the first literal.
+	 * @param literalLength the number of literals.
+	 * @param distance the distance of the match or <tt>0</tt> for the last
+	 *        record.
+	 * @param matchLength the length of the match.
+	 * @return the position after the record.
+	 */
+	protected static int writeRecord(byte[] output, int position, byte[] array, int literals, int literalLength, int distance, int matchLength) {
+		int token = position++;
+		if (literalLength>=15) {
+			output[token] = (byte)0xf0;
+			position = writeLength(output, position, literalLength-15);
+		}
+		else
+			output[token] = (byte)(literalLength<<4);
+		System.arraycopy(array, literals, output, position, literalLength);
+		position += literalLength;
+		if (distance>0) {
+			output[position++] = (byte)distance;
+			output[position++] = (byte)(distance>>>8);
+			matchLength -= MIN_MATCH;
+			if (matchLength>=15) {
+				output[token] |= 0x0f;
+				position = writeLength(output, position, matchLength-15);
+			}
+			else
+				output[token] |= matchLength;
+		}
+		return position;
+	}
+
+	public byte[] compress(byte[] array, int offset, int length) {
+		byte[] output = new byte[length+length/255+16];
+		int[] table = new int[1<<HASH_BITS];
+		int end = offset+length, anchor = offset, position = 0;
+		int matchLimit = end-LAST_LITERALS;
+
+		for (int index = offset; index<=end-MATCH_FIND_LIMIT;) {
+			int value = readInt(array, index);
+			int hash = (value*-1640531535)>>>(32-HASH_BITS);
+			// the table stores positions incremented by one, so 0 marks an empty slot
+			int match = table[hash]-1;
+			table[hash] = index+1;
+			if (match<offset || index-match>MAX_DISTANCE || readInt(array, match)!=value) {
+				index++;
+				continue;
+			}
+			int matchEnd = index+MIN_MATCH;
+			for (int i = match+MIN_MATCH; matchEnd<matchLimit && array[matchEnd]==array[i]; i++)
+				matchEnd++;
+			position = writeRecord(output, position, array, anchor, index-anchor, index-match, matchEnd-index);
+			anchor = index = matchEnd;
+		}
+		position = writeRecord(output, position, array, anchor, end-anchor, 0, 0);
+		return Arrays.copyOf(output, position);
+	}
+
+	/**
+	 * Reads the additional bytes of a length.
+	 *
+	 * @param array the array containing the compressed data.
+	 * @param position the position of the first byte, stored at index 0.
+	 * @param end the end of the compressed data.
+	 * @return the sum of the additional bytes.
+	 * @throws IOException if the compressed data ends unexpectedly.
+	 */
+	protected static int readLength(byte[] array, int[] position, int end) throws IOException {
+		int length = 0, b;
+		do {
+			if (position[0]>=end)
+				throw new IOException("the compressed data is truncated");
+			length += b = array[position[0]++]&0xff;
+		}
+		while (b==255);
+		return length;
+	}
+
+	public int decompress(byte[] array, int offset, int length, byte[] target, int targetOffset, int targetLength) throws IOException {
+		int[] position = {offset};
+		int end = offset+length, index = targetOffset, targetEnd = targetOffset+targetLength, lastMatch = -1;
+
+		while (position[0]<end) {
+			int token = array[position[0]++]&0xff;
+			int literals = token>>>4;
+			if (literals==15)
+				literals += readLength(array, position, end);
+			if (literals>end-position[0] || literals>targetEnd-index)
+				throw new IOException("the compressed data is corrupted");
+			System.arraycopy(array, position[0], target, index, literals);
+			position[0] += literals;
+			index += literals;
+			if (position[0]==end) {
+				// the rules for the end of a block reveal most truncations
+				if (lastMatch>=0 && (literals<LAST_LITERALS || lastMatch>index-MATCH_FIND_LIMIT))
+					throw new IOException("the compressed data is truncated");
+				break;
+			}
+			if (end-position[0]<2)
+				throw new IOException("the compressed data is truncated");
+			int distance = (array[position[0]]&0xff) | (array[position[0]+1]&0xff)<<8;
+			position[0] += 2;
+			int matchLength = token&0x0f;
+			if (matchLength==15)
+				matchLength += readLength(array, position, end);
+			matchLength += MIN_MATCH;
+			if (distance==0 || distance>index-targetOffset || matchLength>targetEnd-index)
+				throw new IOException("the compressed data is corrupted");
+			lastMatch = index;
+			// the match may overlap the bytes it produces, so it is copied bytewise
+			for (int source = index-distance, matchEnd = index+matchLength; index<matchEnd;)
+				target[index++] = target[source++];
+		}
+		return index-targetOffset;
+	}
+}
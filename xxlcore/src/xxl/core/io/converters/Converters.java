@@ -504,6 +504,206 @@ public class Converters {
 	public static <T> MeasuredConverter<T> createMeasuredConverter(final FixedSizeConverter<T> objectConverter){
 		return new MeasuredFixedSizeConverter<>(objectConverter);
 	}
+	/**
+	 * Reads <tt>len</tt> <code>short</code> values from the specified data
+	 * input into the given array. If the data input is a
+	 * {@link BulkDataInput} the values are read with a single bulk copy,
+	 * otherwise they are read one by one.
+	 *
+	 * @param dataInput the stream to read the values from.
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if I/O errors occur.
+	 */
+	public static void readShorts(DataInput dataInput, short[] array, int off, int len) throws IOException {
+		if (dataInput instanceof BulkDataInput)
+			((BulkDataInput)dataInput).readShorts(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				array[i] = dataInput.readShort();
+	}
+
+	/**
+	 * Writes <tt>len</tt> <code>short</code> values of the given array to the
+	 * specified data output. If the data output is a
+	 * {@link BulkDataOutput} the values are written with a single bulk
+	 * copy, otherwise they are written one by one.
+	 *
+	 * @param dataOutput the stream to write the values to.
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException includes any I/O exceptions that may occur.
+	 */
+	public static void writeShorts(DataOutput dataOutput, short[] array, int off, int len) throws IOException {
+		if (dataOutput instanceof BulkDataOutput)
+			((BulkDataOutput)dataOutput).writeShorts(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				dataOutput.writeShort(array[i]);
+	}
+
+	/**
+	 * Reads <tt>len</tt> <code>int</code> values from the specified data
+	 * input into the given array. If the data input is a
+	 * {@link BulkDataInput} the values are read with a single bulk copy,
+	 * otherwise they are read one by one.
+	 *
+	 * @param dataInput the stream to read the values from.
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if I/O errors occur.
+	 */
+	public static void readInts(DataInput dataInput, int[] array, int off, int len) throws IOException {
+		if (dataInput instanceof BulkDataInput)
+			((BulkDataInput)dataInput).readInts(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				array[i] = dataInput.readInt();
+	}
+
+	/**
+	 * Writes <tt>len</tt> <code>int</code> values of the given array to the
+	 * specified data output. If the data output is a
+	 * {@link BulkDataOutput} the values are written with a single bulk
+	 * copy, otherwise they are written one by one.
+	 *
+	 * @param dataOutput the stream to write the values to.
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException includes any I/O exceptions that may occur.
+	 */
+	public static void writeInts(DataOutput dataOutput, int[] array, int off, int len) throws IOException {
+		if (dataOutput instanceof BulkDataOutput)
+			((BulkDataOutput)dataOutput).writeInts(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				dataOutput.writeInt(array[i]);
+	}
+
+	/**
+	 * Reads <tt>len</tt> <code>long</code> values from the specified data
+	 * input into the given array. If the data input is a
+	 * {@link BulkDataInput} the values are read with a single bulk copy,
+	 * otherwise they are read one by one.
+	 *
+	 * @param dataInput the stream to read the values from.
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if I/O errors occur.
+	 */
+	public static void readLongs(DataInput dataInput, long[] array, int off, int len) throws IOException {
+		if (dataInput instanceof BulkDataInput)
+			((BulkDataInput)dataInput).readLongs(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				array[i] = dataInput.readLong();
+	}
+
+	/**
+	 * Writes <tt>len</tt> <code>long</code> values of the given array to the
+	 * specified data output. If the data output is a
+	 * {@link BulkDataOutput} the values are written with a single bulk
+	 * copy, otherwise they are written one by one.
+	 *
+	 * @param dataOutput the stream to write the values to.
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException includes any I/O exceptions that may occur.
+	 */
+	public static void writeLongs(DataOutput dataOutput, long[] array, int off, int len) throws IOException {
+		if (dataOutput instanceof BulkDataOutput)
+			((BulkDataOutput)dataOutput).writeLongs(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				dataOutput.writeLong(array[i]);
+	}
+
+	/**
+	 * Reads <tt>len</tt> <code>float</code> values from the specified data
+	 * input into the given array. If the data input is a
+	 * {@link BulkDataInput} the values are read with a single bulk copy,
+	 * otherwise they are read one by one.
+	 *
+	 * @param dataInput the stream to read the values from.
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if I/O errors occur.
+	 */
+	public static void readFloats(DataInput dataInput, float[] array, int off, int len) throws IOException {
+		if (dataInput instanceof BulkDataInput)
+			((BulkDataInput)dataInput).readFloats(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				array[i] = dataInput.readFloat();
+	}
+
+	/**
+	 * Writes <tt>len</tt> <code>float</code> values of the given array to the
+	 * specified data output. If the data output is a
+	 * {@link BulkDataOutput} the values are written with a single bulk
+	 * copy, otherwise they are written one by one.
+	 *
+	 * @param dataOutput the stream to write the values to.
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException includes any I/O exceptions that may occur.
+	 */
+	public static void writeFloats(DataOutput dataOutput, float[] array, int off, int len) throws IOException {
+		if (dataOutput instanceof BulkDataOutput)
+			((BulkDataOutput)dataOutput).writeFloats(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				dataOutput.writeFloat(array[i]);
+	}
+
+	/**
+	 * Reads <tt>len</tt> <code>double</code> values from the specified data
+	 * input into the given array. If the data input is a
+	 * {@link BulkDataInput} the values are read with a single bulk copy,
+	 * otherwise they are read one by one.
+	 *
+	 * @param dataInput the stream to read the values from.
+	 * @param array the array the values are stored in.
+	 * @param off the index of the array where the first value is stored.
+	 * @param len the number of values to be read.
+	 * @throws IOException if I/O errors occur.
+	 */
+	public static void readDoubles(DataInput dataInput, double[] array, int off, int len) throws IOException {
+		if (dataInput instanceof BulkDataInput)
+			((BulkDataInput)dataInput).readDoubles(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				array[i] = dataInput.readDouble();
+	}
+
+	/**
+	 * Writes <tt>len</tt> <code>double</code> values of the given array to the
+	 * specified data output. If the data output is a
+	 * {@link BulkDataOutput} the values are written with a single bulk
+	 * copy, otherwise they are written one by one.
+	 *
+	 * @param dataOutput the stream to write the values to.
+	 * @param array the array holding the values.
+	 * @param off the index of the first value to be written.
+	 * @param len the number of values to be written.
+	 * @throws IOException includes any I/O exceptions that may occur.
+	 */
+	public static void writeDoubles(DataOutput dataOutput, double[] array, int off, int len) throws IOException {
+		if (dataOutput instanceof BulkDataOutput)
+			((BulkDataOutput)dataOutput).writeDoubles(array, off, len);
+		else
+			for (int i = off; i < off+len; i++)
+				dataOutput.writeDouble(array[i]);
+	}
+
 	/**
 	 * The default constructor has private access in order to ensure
 	 * non-instantiability.
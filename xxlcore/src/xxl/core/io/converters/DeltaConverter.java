@@ -0,0 +1,195 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.io.converters;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A measured converter that is additionally able to serialize an object
+ * relative to its predecessor in a sequence. Sorted sequences of keys (for
+ * example the entries of a B+-tree leaf) share most of their information
+ * with their predecessors, so writing only the difference saves space. The
+ * methods {@link #read(DataInput, Object)} and {@link #write(DataOutput, Object)}
+ * serialize an object without a predecessor.<p>
+ *
+ * The class also provides static methods for writing and reading variable
+ * length integers: a <tt>long</tt> is written in groups of seven bits, least
+ * significant group first, where the highest bit of a byte signals that
+ * another byte follows. Small values therefore need few bytes.
+ *
+ * @param <T> the type to be converted.
+ * @see LongDeltaConverter
+ * @see PrefixStringConverter
+ */
+public abstract class DeltaConverter<T> extends MeasuredConverter<T> {
+
+	/**
+	 * The maximal number of bytes of a variable length <tt>long</tt>.
+	 */
+	public static final int MAX_VAR_LONG_SIZE = 10;
+
+	/**
+	 * Writes the given object relative to the given predecessor.
+	 *
+	 * @param dataOutput the stream to write the object to.
+	 * @param previous the predecessor of the object in the sequence or
+	 *        <tt>null</tt> if the object is the first one.
+	 * @param object the object to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void writeDelta(DataOutput dataOutput, T previous, T object) throws IOException;
+
+	/**
+	 * Reads an object that has been written relative to the given
+	 * predecessor.
+	 *
+	 * @param dataInput the stream to read the object from.
+	 * @param previous the predecessor of the object in the sequence or
+	 *        <tt>null</tt> if the object is the first one.
+	 * @return the read object.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract T readDelta(DataInput dataInput, T previous) throws IOException;
+
+	/**
+	 * Returns the number of bytes {@link #writeDelta(DataOutput, Object, Object)}
+	 * needs to write <tt>object</tt> relative to <tt>previous</tt>.
+	 *
+	 * @param previous the predecessor or <tt>null</tt>.
+	 * @param object the object.
+	 * @return the size of the serialized difference in bytes.
+	 */
+	public abstract int getDeltaSize(T previous, T object);
+
+	/**
+	 * Returns the maximal number of bytes of an object written relative to a
+	 * predecessor it is usually stored next to. This size is used to
+	 * estimate the capacity of compressed pages. Objects that differ more may
+	 * need up to {@link #getMaxObjectSize()} bytes, so the actual size of a
+	 * page has to be computed with {@link #getDeltaSize(Object, Object)}.
+	 *
+	 * @return the maximal size of a serialized difference.
+	 */
+	public abstract int getMaxDeltaSize();
+
+	/**
+	 * Reads an object without a predecessor.
+	 *
+	 * @param dataInput the stream to read the object from.
+	 * @param object is not used.
+	 * @return the read object.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public T read(DataInput dataInput, T object) throws IOException {
+		return readDelta(dataInput, null);
+	}
+
+	/**
+	 * Writes an object without a predecessor.
+	 *
+	 * @param dataOutput the stream to write the object to.
+	 * @param object the object to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public void write(DataOutput dataOutput, T object) throws IOException {
+		writeDelta(dataOutput, null, object);
+	}
+
+	/**
+	 * Writes the given value as an unsigned variable length integer.
+	 *
+	 * @param dataOutput the stream to write the value to.
+	 * @param value the value, interpreted as unsigned.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void writeVarLong(DataOutput dataOutput, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			dataOutput.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dataOutput.writeByte((int)value);
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 *
+	 * @param dataInput the stream to read the value from.
+	 * @return the read value.
+	 * @throws IOException if an I/O error occurs or the value is malformed.
+	 */
+	public static long readVarLong(DataInput dataInput) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = dataInput.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("malformed variable length integer");
+	}
+
+	/**
+	 * Returns the number of bytes of the given value written as an unsigned
+	 * variable length integer.
+	 *
+	 * @param value the value, interpreted as unsigned.
+	 * @return the number of bytes between 1 and {@link #MAX_VAR_LONG_SIZE}.
+	 */
+	public static int varLongSize(long value) {
+		int size = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Maps a signed value to an unsigned one such that values of small
+	 * magnitude get small codes (0, -1, 1, -2, ... become 0, 1, 2, 3, ...).
+	 *
+	 * @param value a signed value.
+	 * @return the zigzag code of the value.
+	 */
+	public static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Inverts {@link #zigZag(long)}.
+	 *
+	 * @param code a zigzag code.
+	 * @return the signed value of the code.
+	 */
+	public static long unZigZag(long code) {
+		return (code >>> 1) ^ -(code & 1);
+	}
+}
@@ -109,8 +109,7 @@ public class DoubleArrayConverter extends SizeConverter<double[]> {
 		if (object == null)
 			object = new double[length];
 		
-		for (int i = 0; i < object.length; i++)
-			object[i] = dataInput.readDouble();
+		Converters.readDoubles(dataInput, object, 0, object.length);
 		return object;
 	}
 
@@ -129,8 +128,7 @@ public class DoubleArrayConverter extends SizeConverter<double[]> {
 	@Override
 	public void write(DataOutput dataOutput, double[] object) throws IOException {
 		dataOutput.writeInt(object.length);
-		for (double d : object)
-			dataOutput.writeDouble(d);
+		Converters.writeDoubles(dataOutput, object, 0, object.length);
 	}
 
 	/**
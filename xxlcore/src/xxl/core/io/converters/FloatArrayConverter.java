@@ -109,8 +109,7 @@ public class FloatArrayConverter extends SizeConverter<float[]> {
 		if (object == null)
 			object = new float[length];
 		
-		for (int i = 0; i < object.length; i++)
-			object[i] = dataInput.readFloat();
+		Converters.readFloats(dataInput, object, 0, object.length);
 		return object;
 	}
 
@@ -129,8 +128,7 @@ public class FloatArrayConverter extends SizeConverter<float[]> {
 	@Override
 	public void write(DataOutput dataOutput, float[] object) throws IOException {
 		dataOutput.writeInt(object.length);
-		for (float f : object)
-			dataOutput.writeFloat(f);
+		Converters.writeFloats(dataOutput, object, 0, object.length);
 	}
 
 	/**
@@ -148,8 +148,7 @@ public class IntegerArrayConverter extends SizeConverter<int[]> {
 		if (object == null)
 			object = new int[length];
 
-		for (int i = 0; i < object.length; i++)
-			object[i] = dataInput.readInt();
+		Converters.readInts(dataInput, object, 0, object.length);
 		return object;
 	}
 
@@ -173,8 +172,7 @@ public class IntegerArrayConverter extends SizeConverter<int[]> {
 			dataOutput.writeInt(object.length);
 			len = object.length;
 		}
-		for (int i = 0; i < len; i++)
-			dataOutput.writeInt(object[i]);
+		Converters.writeInts(dataOutput, object, 0, len);
 	}
 
 	/**
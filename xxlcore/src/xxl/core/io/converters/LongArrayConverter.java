@@ -148,8 +148,7 @@ public class LongArrayConverter extends Converter<long[]> {
 		if (object == null)
 			object = new long[length];
 
-		for (int i = 0; i < object.length; i++)
-			object[i] = dataInput.readLong();
+		Converters.readLongs(dataInput, object, 0, object.length);
 		return object;
 	}
 
@@ -173,8 +172,7 @@ public class LongArrayConverter extends Converter<long[]> {
 			dataOutput.writeInt(object.length);
 			len = object.length;
 		}
-		for (int i = 0; i < len; i++)
-			dataOutput.writeLong(object[i]);
+		Converters.writeLongs(dataOutput, object, 0, len);
 	}
 
 	/**
@@ -0,0 +1,117 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.io.converters;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A delta converter for <tt>Long</tt> objects like monotonically increasing
+ * keys or timestamps. The first value of a sequence is written as a
+ * variable length integer of its zigzag code, every following value as a
+ * variable length integer of the zigzag code of its difference to the
+ * predecessor. A sorted sequence of keys with small gaps needs one or two
+ * bytes per key instead of eight.<p>
+ *
+ * If the absolute differences between values that are usually stored next
+ * to each other are known to be bounded, the bound can be passed to the
+ * constructor. It determines {@link #getMaxDeltaSize()} and hence the
+ * estimated capacity of compressed pages. A larger difference is not
+ * rejected but written like the first value of a sequence, which has no
+ * predecessor and may need the maximal size of ten bytes returned by
+ * {@link #getMaxObjectSize()}.
+ */
+public class LongDeltaConverter extends DeltaConverter<Long> {
+
+	/**
+	 * A converter without a bound of the differences.
+	 */
+	public static final LongDeltaConverter DEFAULT_INSTANCE = new LongDeltaConverter();
+
+	/**
+	 * The expected maximal absolute difference of two neighboring values or
+	 * <tt>Long.MAX_VALUE</tt>.
+	 */
+	protected long maxDifference;
+
+	/**
+	 * Creates a new converter for differences bounded by the given value.
+	 *
+	 * @param maxDifference the maximal absolute difference between two values
+	 *        that are usually written next to each other.
+	 * @throws IllegalArgumentException if <tt>maxDifference</tt> is negative.
+	 */
+	public LongDeltaConverter(long maxDifference) {
+		if (maxDifference < 0)
+			throw new IllegalArgumentException("maximal difference must not be negative");
+		this.maxDifference = maxDifference;
+	}
+
+	/**
+	 * Creates a new converter without a bound of the differences.
+	 */
+	public LongDeltaConverter() {
+		this(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Writes the given value relative to its predecessor. A difference
+	 * exceeding the bound of this converter needs up to
+	 * {@link #getMaxObjectSize()} bytes; the subtraction may overflow, but
+	 * {@link #readDelta(DataInput, Long)} restores the value anyway.
+	 *
+	 * @param dataOutput the stream to write the value to.
+	 * @param previous the predecessor or <tt>null</tt>.
+	 * @param object the value to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public void writeDelta(DataOutput dataOutput, Long previous, Long object) throws IOException {
+		writeVarLong(dataOutput, zigZag(object - (previous == null ? 0 : previous)));
+	}
+
+	@Override
+	public Long readDelta(DataInput dataInput, Long previous) throws IOException {
+		return unZigZag(readVarLong(dataInput)) + (previous == null ? 0 : previous);
+	}
+
+	@Override
+	public int getDeltaSize(Long previous, Long object) {
+		return varLongSize(zigZag(object - (previous == null ? 0 : previous)));
+	}
+
+	@Override
+	public int getMaxDeltaSize() {
+		return maxDifference == Long.MAX_VALUE ? MAX_VAR_LONG_SIZE : varLongSize(zigZag(maxDifference));
+	}
+
+	@Override
+	public int getMaxObjectSize() {
+		return MAX_VAR_LONG_SIZE;
+	}
+}
@@ -0,0 +1,113 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.io.converters;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A delta converter for strings that writes the length of the prefix shared
+ * with the predecessor followed by the remaining suffix (front coding).
+ * Both lengths are written as variable length integers and the suffix as
+ * UTF-16 characters. In a sorted sequence neighboring strings usually share
+ * long prefixes, so only a few characters per string have to be stored.
+ */
+public class PrefixStringConverter extends DeltaConverter<String> {
+
+	/**
+	 * The maximal length of the strings.
+	 */
+	protected int maxLength;
+
+	/**
+	 * Creates a new converter for strings of at most the given length.
+	 *
+	 * @param maxLength the maximal number of characters of a string.
+	 * @throws IllegalArgumentException if <tt>maxLength</tt> is negative.
+	 */
+	public PrefixStringConverter(int maxLength) {
+		if (maxLength < 0)
+			throw new IllegalArgumentException("maximal length must not be negative");
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Returns the length of the common prefix of the given strings.
+	 *
+	 * @param previous the predecessor or <tt>null</tt>.
+	 * @param object a string.
+	 * @return the length of the common prefix.
+	 */
+	protected static int prefixLength(String previous, String object) {
+		if (previous == null)
+			return 0;
+		int length = Math.min(previous.length(), object.length()), i = 0;
+		while (i < length && previous.charAt(i) == object.charAt(i))
+			i++;
+		return i;
+	}
+
+	@Override
+	public void writeDelta(DataOutput dataOutput, String previous, String object) throws IOException {
+		int prefix = prefixLength(previous, object);
+		writeVarLong(dataOutput, prefix);
+		writeVarLong(dataOutput, object.length() - prefix);
+		for (int i = prefix; i < object.length(); i++)
+			dataOutput.writeChar(object.charAt(i));
+	}
+
+	@Override
+	public String readDelta(DataInput dataInput, String previous) throws IOException {
+		int prefix = (int)readVarLong(dataInput);
+		int suffix = (int)readVarLong(dataInput);
+		if (prefix > (previous == null ? 0 : previous.length()))
+			throw new IOException("illegal prefix length "+prefix);
+		char[] chars = new char[prefix + suffix];
+		if (prefix > 0)
+			previous.getChars(0, prefix, chars, 0);
+		for (int i = prefix; i < chars.length; i++)
+			chars[i] = dataInput.readChar();
+		return new String(chars);
+	}
+
+	@Override
+	public int getDeltaSize(String previous, String object) {
+		int prefix = prefixLength(previous, object);
+		return varLongSize(prefix) + varLongSize(object.length() - prefix) + 2 * (object.length() - prefix);
+	}
+
+	@Override
+	public int getMaxDeltaSize() {
+		return 2 * varLongSize(maxLength) + 2 * maxLength;
+	}
+
+	@Override
+	public int getMaxObjectSize() {
+		return getMaxDeltaSize();
+	}
+}
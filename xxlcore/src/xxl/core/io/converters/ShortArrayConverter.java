@@ -109,8 +109,7 @@ public class ShortArrayConverter extends Converter<short[]> {
 		if (object == null)
 			object = new short[length];
 
-		for (int i = 0; i < object.length; i++)
-			object[i] = dataInput.readShort();
+		Converters.readShorts(dataInput, object, 0, object.length);
 		return object;
 	}
 
@@ -129,8 +128,7 @@ public class ShortArrayConverter extends Converter<short[]> {
 	@Override
 	public void write(DataOutput dataOutput, short[] object) throws IOException {
 		dataOutput.writeInt(object.length);
-		for (short s : object)
-			dataOutput.writeShort(s);
+		Converters.writeShorts(dataOutput, object, 0, object.length);
 	}
 
 	/**
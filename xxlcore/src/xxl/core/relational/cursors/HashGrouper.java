@@ -0,0 +1,102 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.relational.cursors;
+
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.functions.Function;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.util.metaData.CompositeMetaData;
+
+/**
+ * The hash grouper is an implementation of the group operator. It is based on
+ * {@link xxl.core.cursors.groupers.HashGrouper}. In contrast to the
+ * {@link SortBasedGrouper sort-based grouper} the input relation need not to
+ * be sorted. The tuples are grouped by the values of the given columns. When
+ * a function creating queues is specified, the memory usage of the grouper is
+ * bounded and partitions that do not fit into main memory are spilled to
+ * queues.
+ * 
+ * <p>A call to the <code>next</code> method returns a group (cursor)
+ * containing all elements of a group.</p>
+ * 
+ * <p>Usually, a
+ * {@link xxl.core.relational.cursors.GroupAggregator group-aggregator} is
+ * applied on the output of a grouper.</p>
+ */
+public class HashGrouper extends xxl.core.cursors.groupers.HashGrouper<Tuple> implements MetaDataCursor<Cursor<Tuple>, CompositeMetaData<Object, Object>> {
+
+	/**
+	 * The metadata provided by the hash grouper.
+	 */
+	protected CompositeMetaData<Object, Object> globalMetaData;
+
+	/**
+	 * Constructs an instance of the hash grouper keeping all tuples in main
+	 * memory.
+	 *
+	 * @param cursor the metadata cursor containing elements.
+	 * @param columns the indices of the columns the tuples are grouped by.
+	 */
+	public HashGrouper(MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> cursor, int[] columns) {
+		super(cursor, HashJoin.joinKey(columns));
+		
+		globalMetaData = new CompositeMetaData<Object, Object>();
+		globalMetaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, ResultSetMetaDatas.getResultSetMetaData(cursor));
+	}
+
+	/**
+	 * Constructs an instance of the hash grouper whose memory usage is
+	 * bounded.
+	 *
+	 * @param cursor the metadata cursor containing elements.
+	 * @param columns the indices of the columns the tuples are grouped by.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the tuples of a spilled partition.
+	 * @param objectSize the size of a tuple in main memory (in bytes).
+	 * @param memSize the amount of main memory assigned to the grouper (in
+	 *        bytes).
+	 */
+	public HashGrouper(MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> cursor, int[] columns, Function<?, ? extends Queue<Tuple>> newQueue, int objectSize, int memSize) {
+		super(cursor, HashJoin.joinKey(columns), newQueue, objectSize, memSize);
+		
+		globalMetaData = new CompositeMetaData<Object, Object>();
+		globalMetaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, ResultSetMetaDatas.getResultSetMetaData(cursor));
+	}
+
+	/**
+	 * Returns the metadata information for this metadata-cursor as a composite
+	 * metadata ({@link CompositeMetaData}).
+	 *
+	 * @return the metadata information for this metadata-cursor as a composite
+	 *         metadata ({@link CompositeMetaData}).
+	 */
+	public CompositeMetaData<Object, Object> getMetaData() {
+		return globalMetaData;
+	}
+}
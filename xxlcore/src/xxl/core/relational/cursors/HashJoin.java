@@ -0,0 +1,419 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.relational.cursors;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.HashPartitions;
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.predicates.MetaDataPredicate;
+import xxl.core.predicates.Predicates;
+import xxl.core.relational.JoinUtils;
+import xxl.core.relational.metaData.MergedResultSetMetaData;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.util.metaData.CompositeMetaData;
+import xxl.core.util.metaData.MetaDataException;
+
+/**
+ * A hybrid hash implementation of an equi-join operator. The algorithm of
+ * {@link xxl.core.cursors.joins.HashJoin} is used internally, i.e., the
+ * tuples of the first input relation are kept in main memory as long as they
+ * fit into the memory assigned to the operator and the remaining partitions
+ * are spilled to queues. In contrast to the {@link SortMergeJoin} the input
+ * relations need not to be sorted.
+ * 
+ * <p>The following types of joins are available:
+ * <ul>
+ *   <li><tt>THETA_JOIN</tt> (equi-join on the given join columns)</li>
+ *   <li><tt>LEFT_OUTER_JOIN</tt></li>
+ *   <li><tt>RIGHT_OUTER_JOIN</tt></li>
+ *   <li><tt>OUTER_JOIN</tt></li>
+ *   <li><tt>NATURAL_JOIN</tt></li>
+ * </ul>
+ * The join keys are compared by the <code>equals</code> method of the column
+ * values, so the join columns of both relations should be mapped to the same
+ * Java types. Updates and removes are not supported.</p>
+ */
+public class HashJoin extends xxl.core.cursors.joins.HashJoin<Tuple, Tuple> implements MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> {
+
+	/**
+	 * An enumeration of constants specifying the join types supported by this
+	 * class.
+	 */
+	public static enum Type {
+		
+		/**
+		 * A constant specifying an equi-join. Only the tuples with equal
+		 * values in the join columns will be returned.
+		 */
+		THETA_JOIN,
+		
+		/**
+		 * A constant specifying a left outer join. The qualifying tuples as
+		 * well as all elements of the <code>cursor1</code> not qualifying
+		 * will be returned. The function <code>newResult</code> is called
+		 * with arguments <code>cursor1.peek()</code> and <code>null</code>.
+		 */
+		LEFT_OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a right outer join. The qualifying tuples as
+		 * well as all elements of the <code>cursor2</code> not qualifying
+		 * will be returned. The function <code>newResult</code> is called
+		 * with arguments <code>null</code> and <code>cursor2.peek()</code>.
+		 */
+		RIGHT_OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a full outer join. The qualifying tuples as
+		 * well as all tuples of the LEFT and RIGHT OUTER_JOIN will be
+		 * returned.
+		 */
+		OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a natural join. The tuples are compared using
+		 * their common columns.
+		 */
+		NATURAL_JOIN
+	}
+
+	/**
+	 * An internal variable used for storing the metadata information of this
+	 * join operator.
+	 */
+	protected CompositeMetaData<Object, Object> globalMetaData;
+
+	/**
+	 * Returns a function that computes the join key of a tuple, i.e., a list
+	 * containing the values of the given columns. Lists are compared and
+	 * hashed element-wise, so two tuples have equal join keys if their values
+	 * in the join columns are equal.
+	 *
+	 * @param columns the indices of the join columns: the first column is 1,
+	 *        the second is 2, ...
+	 * @return a function that computes the join key of a tuple.
+	 */
+	public static Function<Tuple, List<Object>> joinKey(final int... columns) {
+		return new AbstractFunction<Tuple, List<Object>>() {
+			@Override
+			public List<Object> invoke(Tuple tuple) {
+				Object[] key = new Object[columns.length];
+				for (int i = 0; i < columns.length; i++)
+					key[i] = tuple.getObject(columns[i]);
+				return Arrays.asList(key);
+			}
+		};
+	}
+
+	/**
+	 * Returns the indices of the columns that are common to both input
+	 * relations of the given merged metadata, e.g., the metadata of a natural
+	 * join.
+	 *
+	 * @param metadata the metadata information of the resulting relation.
+	 * @return a two-dimensional array holding the indices of the common
+	 *         columns of the first relation in its first row and the indices
+	 *         of the common columns of the second relation in its second row.
+	 */
+	protected static int[][] commonColumns(MergedResultSetMetaData metadata) {
+		try {
+			List<int[]> columns = new ArrayList<int[]>();
+			for (int i = 1; i <= metadata.getColumnCount(); i++) {
+				int[] column = new int[2];
+				Iterator<int[]> originalColumnIndices = metadata.originalColumnIndices(i);
+				while (originalColumnIndices.hasNext()) {
+					int[] originalColumnIndex = originalColumnIndices.next();
+					column[originalColumnIndex[0]] = originalColumnIndex[1];
+				}
+				if (column[0] > 0 && column[1] > 0)
+					columns.add(column);
+			}
+			int[][] result = new int[2][columns.size()];
+			for (int i = 0; i < columns.size(); i++) {
+				result[0][i] = columns.get(i)[0];
+				result[1][i] = columns.get(i)[1];
+			}
+			return result;
+		}
+		catch (SQLException sqle) {
+			throw new MetaDataException("meta data cannot be accessed due to the following sql exception: " + sqle.getMessage());
+		}
+	}
+
+	/**
+	 * Returns a parameterless function returning new
+	 * {@link ListQueue list-queues} used for storing spilled partitions.
+	 *
+	 * @return a parameterless function returning new list-queues.
+	 */
+	protected static Function<Object, Queue<Tuple>> listQueueFactory() {
+		return new AbstractFunction<Object, Queue<Tuple>>() {
+			@Override
+			public Queue<Tuple> invoke() {
+				return new ListQueue<Tuple>();
+			}
+		};
+	}
+
+	/**
+	 * Advanced constructor creating a new hash join backed on two metadata
+	 * cursors. Two tuples qualify for the result when their values in the
+	 * given join columns are equal and the metadata predicate returns
+	 * <code>true</code> for them. The metadata of the join result is taken
+	 * from the metadata predicate.
+	 * 
+	 * <p>Handle with care! Do not use this constructor if you do not know
+	 * exactly what you are doing.</p>
+	 *
+	 * @param cursor1 the first input metadata cursor (build input).
+	 * @param cursor2 the second input metadata cursor (probe input).
+	 * @param columns1 the indices of the join columns of the first input.
+	 * @param columns2 the indices of the join columns of the second input.
+	 * @param predicate the predicate additionally evaluated for each tuple of
+	 *        elements with equal join columns providing the metadata of the
+	 *        join result.
+	 * @param createTuple a factory method (function) that takes two parameters
+	 *        as arguments and is invoked on each qualifying tuple before it
+	 *        is returned to the caller concerning a call to
+	 *        <code>next()</code>.
+	 * @param type the type of the join operation. Possible values are the
+	 *        elements of the enumeration defined above in this class.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the tuples of a spilled partition.
+	 * @param objectSize the size of a tuple of the first input in main memory
+	 *        (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 */
+	public HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, int[] columns1, int[] columns2, MetaDataPredicate<? super Tuple, CompositeMetaData<Object, Object>> predicate, Function<Object, ? extends Tuple> createTuple, Type type, Function<?, ? extends Queue<Tuple>> newQueue, int objectSize, int memSize) {
+		super(
+			cursor1,
+			cursor2,
+			joinKey(columns1),
+			joinKey(columns2),
+			predicate,
+			JoinUtils.genericJoinTupleFactory(
+				createTuple,
+				(MergedResultSetMetaData)ResultSetMetaDatas.getResultSetMetaData(predicate)
+			),
+			type == Type.LEFT_OUTER_JOIN ?
+				xxl.core.cursors.joins.HashJoin.Type.LEFT_OUTER_JOIN :
+				type == Type.RIGHT_OUTER_JOIN ?
+					xxl.core.cursors.joins.HashJoin.Type.RIGHT_OUTER_JOIN :
+					type == Type.OUTER_JOIN ?
+						xxl.core.cursors.joins.HashJoin.Type.OUTER_JOIN :
+						xxl.core.cursors.joins.HashJoin.Type.THETA_JOIN,
+			newQueue,
+			objectSize,
+			memSize,
+			HashPartitions.DEFAULT_NUMBER_OF_PARTITIONS
+		);
+		
+		globalMetaData = new CompositeMetaData<Object, Object>();
+		globalMetaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, ResultSetMetaDatas.getResultSetMetaData(predicate));
+	}
+
+	/**
+	 * Creates a new hash join backed on two metadata cursors. The join result
+	 * contains the columns of both input relations. Two tuples qualify for
+	 * the result when their values in the given join columns are equal.
+	 *
+	 * @param cursor1 the first input metadata cursor (build input).
+	 * @param cursor2 the second input metadata cursor (probe input).
+	 * @param columns1 the indices of the join columns of the first input.
+	 * @param columns2 the indices of the join columns of the second input.
+	 * @param createTuple a factory method (function) that takes two parameters
+	 *        as arguments and is invoked on each qualifying tuple before it
+	 *        is returned to the caller concerning a call to
+	 *        <code>next()</code>.
+	 * @param type the type of the join operation. Possible values are
+	 *        <tt>THETA_JOIN</tt> and the outer joins.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the tuples of a spilled partition.
+	 * @param objectSize the size of a tuple of the first input in main memory
+	 *        (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 * @throws IllegalArgumentException if the specified type is a natural
+	 *         join.
+	 */
+	public HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, int[] columns1, int[] columns2, Function<Object, ? extends Tuple> createTuple, Type type, Function<?, ? extends Queue<Tuple>> newQueue, int objectSize, int memSize) throws IllegalArgumentException {
+		this(
+			cursor1,
+			cursor2,
+			columns1,
+			columns2,
+			JoinUtils.thetaJoinMetaDataPredicate(
+				Predicates.TRUE,
+				ResultSetMetaDatas.getResultSetMetaData(cursor1),
+				ResultSetMetaDatas.getResultSetMetaData(cursor2)
+			),
+			createTuple,
+			checkType(type),
+			newQueue,
+			objectSize,
+			memSize
+		);
+	}
+
+	/**
+	 * Creates a new hash join performing a natural join of two metadata
+	 * cursors, i.e., the tuples are compared using their common columns.
+	 *
+	 * @param cursor1 the first input metadata cursor (build input).
+	 * @param cursor2 the second input metadata cursor (probe input).
+	 * @param createTuple a factory method (function) that takes two parameters
+	 *        as arguments and is invoked on each qualifying tuple before it
+	 *        is returned to the caller concerning a call to
+	 *        <code>next()</code>.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the tuples of a spilled partition.
+	 * @param objectSize the size of a tuple of the first input in main memory
+	 *        (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 */
+	public HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, Function<Object, ? extends Tuple> createTuple, Function<?, ? extends Queue<Tuple>> newQueue, int objectSize, int memSize) {
+		this(
+			cursor1,
+			cursor2,
+			JoinUtils.naturalJoinMetaDataPredicate(
+				ResultSetMetaDatas.getResultSetMetaData(cursor1),
+				ResultSetMetaDatas.getResultSetMetaData(cursor2)
+			),
+			createTuple,
+			newQueue,
+			objectSize,
+			memSize
+		);
+	}
+
+	/**
+	 * Creates a new hash join performing a natural join using the given
+	 * natural join metadata predicate. The common columns are determined by
+	 * the metadata of the predicate.
+	 *
+	 * @param cursor1 the first input metadata cursor (build input).
+	 * @param cursor2 the second input metadata cursor (probe input).
+	 * @param predicate the natural join metadata predicate.
+	 * @param createTuple a factory method (function) that takes two parameters
+	 *        as arguments and is invoked on each qualifying tuple.
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that is used for storing the tuples of a spilled partition.
+	 * @param objectSize the size of a tuple of the first input in main memory
+	 *        (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 */
+	private HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, MetaDataPredicate<Tuple, CompositeMetaData<Object, Object>> predicate, Function<Object, ? extends Tuple> createTuple, Function<?, ? extends Queue<Tuple>> newQueue, int objectSize, int memSize) {
+		this(
+			cursor1,
+			cursor2,
+			commonColumns((MergedResultSetMetaData)ResultSetMetaDatas.getResultSetMetaData(predicate))[0],
+			commonColumns((MergedResultSetMetaData)ResultSetMetaDatas.getResultSetMetaData(predicate))[1],
+			predicate,
+			createTuple,
+			Type.NATURAL_JOIN,
+			newQueue,
+			objectSize,
+			memSize
+		);
+	}
+
+	/**
+	 * Creates a new hash join backed on two result sets. The join result
+	 * contains the columns of both input relations. Two tuples qualify for
+	 * the result when their values in the given join columns are equal. The
+	 * spilled partitions are stored in {@link ListQueue list-queues}.
+	 *
+	 * @param resultSet1 the first input result set (build input).
+	 * @param resultSet2 the second input result set (probe input).
+	 * @param columns1 the indices of the join columns of the first input.
+	 * @param columns2 the indices of the join columns of the second input.
+	 * @param createTuple a factory method (function) that takes two parameters
+	 *        as arguments and is invoked on each qualifying tuple before it
+	 *        is returned to the caller concerning a call to
+	 *        <code>next()</code>.
+	 * @param type the type of the join operation. Possible values are
+	 *        <tt>THETA_JOIN</tt> and the outer joins.
+	 * @param objectSize the size of a tuple of the first input in main memory
+	 *        (in bytes).
+	 * @param memSize the amount of main memory assigned to the operator (in
+	 *        bytes).
+	 * @throws IllegalArgumentException if the specified type is a natural
+	 *         join.
+	 */
+	public HashJoin(ResultSet resultSet1, ResultSet resultSet2, int[] columns1, int[] columns2, Function<Object, ? extends Tuple> createTuple, Type type, int objectSize, int memSize) throws IllegalArgumentException {
+		this(
+			new ResultSetMetaDataCursor(resultSet1),
+			new ResultSetMetaDataCursor(resultSet2),
+			columns1,
+			columns2,
+			createTuple,
+			type,
+			listQueueFactory(),
+			objectSize,
+			memSize
+		);
+	}
+
+	/**
+	 * Checks that the given join type can be combined with explicitly
+	 * specified join columns.
+	 *
+	 * @param type the type of the join operation.
+	 * @return the given type.
+	 * @throws IllegalArgumentException if the specified type is a natural
+	 *         join.
+	 */
+	private static Type checkType(Type type) throws IllegalArgumentException {
+		if (type == Type.NATURAL_JOIN)
+			throw new IllegalArgumentException("a natural join cannot be performed on explicitly specified join columns");
+		return type;
+	}
+
+	/**
+	 * Returns the metadata information for this metadata-cursor as a composite
+	 * metadata ({@link CompositeMetaData}).
+	 *
+	 * @return the metadata information for this metadata-cursor as a composite
+	 *         metadata ({@link CompositeMetaData}).
+	 */
+	public CompositeMetaData<Object, Object> getMetaData() {
+		return globalMetaData;
+	}
+}
@@ -88,6 +88,15 @@ public class LpMetric implements Distance<Point> {
 		return Points.lpDistance(o1, o2, p);
 	}
 
+	/**
+	 * Returns the value p of this L_p metric. The maximum metric returns 0.
+	 *
+	 * @return the value p of this L_p metric.
+	 */
+	public int getP() {
+		return p;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,101 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.spatial.cursors;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+
+import xxl.core.functions.Function;
+import xxl.core.predicates.Predicate;
+
+/**
+ * A parallel version of the similarity-join algorithm {@link GESS}. Both
+ * inputs are replicated by a {@link Replicator} like in GESS, and the
+ * resulting KPEzCodes are joined by a {@link ParallelOrenstein} operator.
+ * The result is the same as the result of GESS, in particular the
+ * {@link GESS.ReferencePointMethod reference point method} can be used
+ * within the join predicate for the duplicate elimination.
+ *
+ * @see xxl.core.spatial.cursors.GESS
+ * @see xxl.core.spatial.cursors.ParallelOrenstein
+ */
+public class ParallelGESS extends ParallelOrenstein {
+
+	/** Creates a new parallel GESS-operator using the given executor.
+	 *
+	 *	@param input0 first (unsorted) input
+	 *	@param input1 second (unsorted) input
+	 *	@param inputMapping a Function used to map incoming objects of arbitrary type to a FixedPointRectangle (internally used by the replication engine)
+	 *	@param joinPredicate the join predicate to be used by this join	(e.g. DistanceWithin-predicate)
+	 *	@param splitAllowed the replication strategy to be applied by GESS (see inner class Replicator.Split)
+	 *	@param minBitIndex the minimal bit-index to be considered for the replication-process ( 0 <= bitIndex <= 62 )
+	 *	@param newSorter a factory-Function that returns a sorting-operator (e.g. {@link xxl.core.cursors.sorters.MergeSorter})
+	 *	@param newResult a factory-Function that is used to create the result-tuples that are returned by this operator (e.g. {@link xxl.core.functions.Tuplify})
+	 *	@param dimensions the dimensionality of the data
+	 *	@param initialCapacity the maximum number of elements that can be stored inside main-memory (i.e. by the SweepArea of a partition)
+	 *	@param executor the executor running the joins of the partitions
+	 *	@param partitions the maximal number of partitions
+	 */
+	public ParallelGESS(Iterator input0, Iterator input1, Function inputMapping, Predicate joinPredicate, Predicate splitAllowed, int minBitIndex, Function newSorter, Function newResult, int dimensions, int initialCapacity, ExecutorService executor, int partitions){
+		super(
+			new Replicator(inputMapping, input0, dimensions, splitAllowed, minBitIndex),
+			new Replicator(inputMapping, input1, dimensions, splitAllowed, minBitIndex),
+			joinPredicate,
+			newSorter,
+			newResult,
+			initialCapacity,
+			executor,
+			partitions
+		);
+	}
+
+	/** Creates a new parallel GESS-operator running on its own ForkJoinPool with the given parallelism.
+	 *
+	 *	@param input0 first (unsorted) input
+	 *	@param input1 second (unsorted) input
+	 *	@param inputMapping a Function used to map incoming objects of arbitrary type to a FixedPointRectangle (internally used by the replication engine)
+	 *	@param joinPredicate the join predicate to be used by this join	(e.g. DistanceWithin-predicate)
+	 *	@param splitAllowed the replication strategy to be applied by GESS (see inner class Replicator.Split)
+	 *	@param minBitIndex the minimal bit-index to be considered for the replication-process ( 0 <= bitIndex <= 62 )
+	 *	@param newSorter a factory-Function that returns a sorting-operator (e.g. {@link xxl.core.cursors.sorters.MergeSorter})
+	 *	@param newResult a factory-Function that is used to create the result-tuples that are returned by this operator (e.g. {@link xxl.core.functions.Tuplify})
+	 *	@param dimensions the dimensionality of the data
+	 *	@param initialCapacity the maximum number of elements that can be stored inside main-memory (i.e. by the SweepArea of a partition)
+	 *	@param parallelism the number of worker threads
+	 */
+	public ParallelGESS(Iterator input0, Iterator input1, Function inputMapping, Predicate joinPredicate, Predicate splitAllowed, int minBitIndex, Function newSorter, Function newResult, int dimensions, int initialCapacity, int parallelism){
+		super(
+			new Replicator(inputMapping, input0, dimensions, splitAllowed, minBitIndex),
+			new Replicator(inputMapping, input1, dimensions, splitAllowed, minBitIndex),
+			joinPredicate,
+			newSorter,
+			newResult,
+			initialCapacity,
+			parallelism
+		);
+	}
+}
@@ -0,0 +1,526 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.spatial.cursors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.wrappers.QueueCursor;
+import xxl.core.functions.Function;
+import xxl.core.predicates.AbstractPredicate;
+import xxl.core.predicates.And;
+import xxl.core.predicates.Predicate;
+import xxl.core.spatial.KPEzCode;
+import xxl.core.util.BitSet;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * A parallel version of Orensteins algorithm (see {@link Orenstein}). The
+ * z-code space is range-partitioned, every partition is sorted and joined by
+ * a sequential {@link Orenstein} operator on a worker thread, and the results
+ * of the partitions are streamed to the consumer.
+ * <br>
+ * <br>
+ * Both inputs are read once and buffered in queues created by the function
+ * <code>newQueue</code> (in main memory by default, an external queue like a
+ * {@link xxl.core.collections.queues.io.BlockBasedQueue} bounds the memory
+ * usage). While the inputs are read, a random sample of their z-codes is
+ * drawn. The boundaries of the partitions are z-codes taken from this sample,
+ * so that the partitions contain about the same number of elements.
+ * Afterwards the buffered elements are moved to the queues of their
+ * partitions, which are the inputs of the sequential joins. An element whose
+ * z-code is a prefix of a boundary covers a part of the z-code space lying in
+ * several partitions and is assigned to each of them. Its join partners are
+ * found in each of these partitions, therefore a result tuple is only
+ * reported by the partition containing the longer z-code of the tuple, i.e.
+ * the cell in which the sequential sweep reports it. Thus the operator
+ * returns exactly the same tuples as the sequential {@link Orenstein}
+ * operator, and a duplicate elimination inside the join predicate like the
+ * {@link GESS.ReferencePointMethod reference point method} of GESS keeps
+ * working.
+ * <br>
+ * <br>
+ * The workers hand their results over in batches of {@link #BATCH_SIZE}
+ * tuples through a bounded queue holding at most one batch per partition, so
+ * a worker waits for the consumer instead of materializing the whole result
+ * of its partition. The batches are returned in the order they are
+ * produced, so the order of the results differs from the one of
+ * {@link Orenstein}.
+ * <br>
+ * <br>
+ * The sorters created by <code>newSorter</code> run concurrently and must not
+ * share state. The static counters {@link Orenstein#comparisons} and
+ * {@link Orenstein#MAX_SWEEPAREA_SIZE} are updated by all workers without
+ * synchronization and are only approximations in parallel mode.
+ *
+ * @see xxl.core.spatial.cursors.Orenstein
+ * @see xxl.core.spatial.cursors.ParallelGESS
+ * @see xxl.core.spatial.cursors.ParallelRTreeJoin
+ */
+public class ParallelOrenstein extends AbstractCursor {
+
+	/**
+	 * The number of sampled z-codes per partition used for determining the
+	 * boundaries of the partitions.
+	 */
+	public static final int SAMPLES_PER_PARTITION = 64;
+
+	/**
+	 * The number of result tuples a worker hands over at once.
+	 */
+	public static final int BATCH_SIZE = 1024;
+
+	/**
+	 * Marks the end of the results of a partition.
+	 */
+	protected static final List<Object> END = new ArrayList<Object>(0);
+
+	/**
+	 * The inputs of the join.
+	 */
+	protected Iterator input0, input1;
+
+	/**
+	 * The join predicate.
+	 */
+	protected Predicate joinPredicate;
+
+	/**
+	 * The factory-Function returning sorted inputs.
+	 */
+	protected Function newSorter;
+
+	/**
+	 * The function creating the result tuples.
+	 */
+	protected Function newResult;
+
+	/**
+	 * The initial capacity of the SweepAreas.
+	 */
+	protected int initialCapacity;
+
+	/**
+	 * A parameterless function returning a new empty queue that buffers the
+	 * elements of an input or of a partition.
+	 */
+	protected Function newQueue;
+
+	/**
+	 * The executor running the partition joins.
+	 */
+	protected ExecutorService executor;
+
+	/**
+	 * Signals whether the executor has been created by this operator and has
+	 * to be shut down when the operator is closed.
+	 */
+	protected boolean shutdownExecutor;
+
+	/**
+	 * The maximal number of partitions.
+	 */
+	protected int partitions;
+
+	/**
+	 * The lower boundaries of the partitions 1, 2, ... in ascending order.
+	 * Partition <tt>i</tt> contains the z-codes <tt>c</tt> with
+	 * <code>boundaries[i-1] &lt;= c &lt; boundaries[i]</code>.
+	 */
+	protected BitSet[] boundaries;
+
+	/**
+	 * The random sample of the z-codes of both inputs.
+	 */
+	protected List<BitSet> sample;
+
+	/**
+	 * The number of elements read from both inputs.
+	 */
+	protected long count = 0;
+
+	/**
+	 * The batches of results of the partitions, each partition is finished
+	 * by {@link #END}.
+	 */
+	protected BlockingQueue<List<Object>> batches = null;
+
+	/**
+	 * The number of partitions whose {@link #END} has not been taken from
+	 * the batches so far.
+	 */
+	protected int running = 0;
+
+	/**
+	 * The results of the current batch.
+	 */
+	protected Iterator<Object> current = null;
+
+	/**
+	 * Signals the workers to stop when the operator has been closed.
+	 */
+	protected volatile boolean cancelled = false;
+
+	/**
+	 * The exception that terminated the join of a partition, if any.
+	 */
+	protected volatile Throwable failure = null;
+
+	/**
+	 * Constructs a new parallel Orenstein operator using the given executor.
+	 *
+	 * @param input0 the first input iterator delivering KPEzCodes
+	 * @param input1 the second input iterator delivering KPEzCodes
+	 * @param joinPredicate the join predicate
+	 * @param newSorter provides a function that returns sorted inputs
+	 * @param newResult is a function for creating the final result object
+	 * @param initialCapacity the initial capacity of the ArrayBag that is used
+	 *        for organizing the SweepAreas of a partition
+	 * @param newQueue a parameterless function returning a new empty queue
+	 *        that buffers the elements of an input or of a partition
+	 * @param executor the executor running the joins of the partitions
+	 * @param partitions the maximal number of partitions
+	 */
+	public ParallelOrenstein(Iterator input0, Iterator input1, Predicate joinPredicate, Function newSorter, Function newResult, int initialCapacity, Function newQueue, ExecutorService executor, int partitions) {
+		if (partitions < 1)
+			throw new IllegalArgumentException("the number of partitions has to be positive");
+		this.input0 = input0;
+		this.input1 = input1;
+		this.joinPredicate = joinPredicate;
+		this.newSorter = newSorter;
+		this.newResult = newResult;
+		this.initialCapacity = initialCapacity;
+		this.newQueue = newQueue;
+		this.executor = executor;
+		this.shutdownExecutor = false;
+		this.partitions = partitions;
+	}
+
+	/**
+	 * Constructs a new parallel Orenstein operator using the given executor.
+	 * The inputs and the partitions are buffered in main memory.
+	 *
+	 * @param input0 the first input iterator delivering KPEzCodes
+	 * @param input1 the second input iterator delivering KPEzCodes
+	 * @param joinPredicate the join predicate
+	 * @param newSorter provides a function that returns sorted inputs
+	 * @param newResult is a function for creating the final result object
+	 * @param initialCapacity the initial capacity of the ArrayBag that is used
+	 *        for organizing the SweepAreas of a partition
+	 * @param executor the executor running the joins of the partitions
+	 * @param partitions the maximal number of partitions
+	 */
+	public ParallelOrenstein(Iterator input0, Iterator input1, Predicate joinPredicate, Function newSorter, Function newResult, int initialCapacity, ExecutorService executor, int partitions) {
+		this(input0, input1, joinPredicate, newSorter, newResult, initialCapacity, ListQueue.FACTORY_METHOD, executor, partitions);
+	}
+
+	/**
+	 * Constructs a new parallel Orenstein operator running on its own
+	 * <tt>ForkJoinPool</tt> with the given parallelism. The pool is shut down
+	 * when the operator is closed. The z-code space is divided into four
+	 * partitions per thread, the inputs and the partitions are buffered in
+	 * main memory.
+	 *
+	 * @param input0 the first input iterator delivering KPEzCodes
+	 * @param input1 the second input iterator delivering KPEzCodes
+	 * @param joinPredicate the join predicate
+	 * @param newSorter provides a function that returns sorted inputs
+	 * @param newResult is a function for creating the final result object
+	 * @param initialCapacity the initial capacity of the ArrayBag that is used
+	 *        for organizing the SweepAreas of a partition
+	 * @param parallelism the number of worker threads
+	 */
+	public ParallelOrenstein(Iterator input0, Iterator input1, Predicate joinPredicate, Function newSorter, Function newResult, int initialCapacity, int parallelism) {
+		this(input0, input1, joinPredicate, newSorter, newResult, initialCapacity, new ForkJoinPool(parallelism), 4*parallelism);
+		this.shutdownExecutor = true;
+	}
+
+	/**
+	 * Returns the index of the partition containing the given z-code.
+	 *
+	 * @param zCode the z-code
+	 * @return the index of the partition containing the z-code
+	 */
+	protected int partition(BitSet zCode) {
+		int low = 0, high = boundaries.length;
+		while (low < high) {
+			int middle = (low+high) >>> 1;
+			if (boundaries[middle].compareTo(zCode) <= 0)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns whether the cell of the first z-code contains the cell of the
+	 * second one, i.e. whether the first z-code is a prefix of the second.
+	 *
+	 * @param prefix the first z-code
+	 * @param zCode the second z-code
+	 * @return <tt>true</tt> if the first z-code is a prefix of the second one
+	 */
+	protected static boolean isPrefix(BitSet prefix, BitSet zCode) {
+		return prefix.precision() <= zCode.precision() && prefix.compare(zCode, prefix.precision()) == 0;
+	}
+
+	/**
+	 * Reads the given input into a new queue and adds the z-codes of its
+	 * elements to the random sample (reservoir sampling).
+	 *
+	 * @param input the input iterator delivering KPEzCodes
+	 * @param random the random number generator of the sample
+	 * @return the queue containing the elements of the input
+	 */
+	protected Queue buffer(Iterator input, Random random) {
+		int samples = partitions*SAMPLES_PER_PARTITION;
+		Queue queue = (Queue)newQueue.invoke();
+		queue.open();
+		while (input.hasNext()) {
+			KPEzCode element = (KPEzCode)input.next();
+			queue.enqueue(element);
+			if (count < samples)
+				sample.add(element.getzCode());
+			else {
+				long index = (long)(random.nextDouble()*(count+1));
+				if (index < samples)
+					sample.set((int)index, element.getzCode());
+			}
+			count++;
+		}
+		return queue;
+	}
+
+	/**
+	 * Determines the boundaries of the partitions from the random sample of
+	 * the inputs.
+	 */
+	protected void computeBoundaries() {
+		BitSet[] sorted = sample.toArray(new BitSet[sample.size()]);
+		Arrays.sort(sorted);
+		List<BitSet> result = new ArrayList<BitSet>(partitions);
+		for (int i = 1; i < partitions && sorted.length > 0; i++) {
+			BitSet boundary = sorted[i*sorted.length/partitions];
+			if (result.isEmpty() || result.get(result.size()-1).compareTo(boundary) < 0)
+				result.add(boundary);
+		}
+		boundaries = result.toArray(new BitSet[result.size()]);
+	}
+
+	/**
+	 * Moves the elements of the given queue to the queues of the partitions
+	 * overlapping their cells and closes the queue.
+	 *
+	 * @param elements the queue containing the elements of an input
+	 * @param partitionQueues the queues of the partitions
+	 */
+	protected void distribute(Queue elements, List<Queue> partitionQueues) {
+		while (!elements.isEmpty()) {
+			KPEzCode element = (KPEzCode)elements.dequeue();
+			BitSet zCode = element.getzCode();
+			int partition = partition(zCode);
+			partitionQueues.get(partition).enqueue(element);
+			while (partition < boundaries.length && isPrefix(zCode, boundaries[partition]))
+				partitionQueues.get(++partition).enqueue(element);
+		}
+		elements.close();
+	}
+
+	/**
+	 * Returns the predicate which is <tt>true</tt> for tuples whose longer
+	 * z-code lies in the given partition.
+	 *
+	 * @param partition the index of the partition
+	 * @return the predicate selecting the tuples reported by the partition
+	 */
+	protected Predicate ownedBy(final int partition) {
+		return new AbstractPredicate() {
+			@Override
+			public boolean invoke(Object argument0, Object argument1) {
+				BitSet zCode0 = ((KPEzCode)argument0).getzCode();
+				BitSet zCode1 = ((KPEzCode)argument1).getzCode();
+				return partition(zCode0.precision() >= zCode1.precision() ? zCode0 : zCode1) == partition;
+			}
+		};
+	}
+
+	/**
+	 * Hands a batch of results over to the consumer. The calling worker
+	 * waits while the batches are full, unless the operator is closed.
+	 *
+	 * @param batch the batch of results or {@link #END}
+	 */
+	protected void handOver(List<Object> batch) {
+		try {
+			while (!cancelled)
+				if (batches.offer(batch, 10, TimeUnit.MILLISECONDS))
+					return;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the task joining the given queues of a partition. The task
+	 * hands its results over in batches and closes the queues.
+	 *
+	 * @param queue0 the elements of the first input in the partition
+	 * @param queue1 the elements of the second input in the partition
+	 * @param predicate the join predicate of the partition
+	 * @return the task joining the partition
+	 */
+	protected Runnable join(final Queue queue0, final Queue queue1, final Predicate predicate) {
+		return new Runnable() {
+			public void run() {
+				QueueCursor cursor0 = new QueueCursor(queue0);
+				QueueCursor cursor1 = new QueueCursor(queue1);
+				try {
+					if (cancelled)
+						return;
+					Orenstein join = new Orenstein(cursor0, cursor1, predicate, newSorter, newResult, initialCapacity);
+					List<Object> batch = new ArrayList<Object>(BATCH_SIZE);
+					while (!cancelled && join.hasNext()) {
+						batch.add(join.next());
+						if (batch.size() == BATCH_SIZE) {
+							handOver(batch);
+							batch = new ArrayList<Object>(BATCH_SIZE);
+						}
+					}
+					join.close();
+					if (!batch.isEmpty())
+						handOver(batch);
+				}
+				catch (Throwable t) {
+					failure = t;
+				}
+				finally {
+					cursor0.close();
+					cursor1.close();
+					handOver(END);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Reads the inputs, partitions them and submits the joins of the
+	 * partitions to the executor.
+	 */
+	protected void start() {
+		Random random = new Random(42);
+		sample = new ArrayList<BitSet>();
+		Queue elements0 = buffer(input0, random);
+		Queue elements1 = buffer(input1, random);
+		computeBoundaries();
+		sample = null;
+		List<Queue> partitions0 = new ArrayList<Queue>();
+		List<Queue> partitions1 = new ArrayList<Queue>();
+		for (int i = 0; i <= boundaries.length; i++) {
+			partitions0.add((Queue)newQueue.invoke());
+			partitions0.get(i).open();
+			partitions1.add((Queue)newQueue.invoke());
+			partitions1.get(i).open();
+		}
+		distribute(elements0, partitions0);
+		distribute(elements1, partitions1);
+		batches = new ArrayBlockingQueue<List<Object>>(boundaries.length+1);
+		for (int i = 0; i <= boundaries.length; i++) {
+			Queue partition0 = partitions0.get(i);
+			Queue partition1 = partitions1.get(i);
+			if (partition0.isEmpty() || partition1.isEmpty()) {
+				partition0.close();
+				partition1.close();
+				continue;
+			}
+			running++;
+			executor.execute(join(partition0, partition1, boundaries.length == 0 ? joinPredicate : new And(joinPredicate, ownedBy(i))));
+		}
+	}
+
+	/**
+	 * Returns the number of partitions the z-code space has been divided into.
+	 * The number is known after the first result has been requested.
+	 *
+	 * @return the number of partitions or <tt>0</tt> if the inputs have not
+	 *         been partitioned yet
+	 */
+	public int numberOfPartitions() {
+		return batches == null ? 0 : boundaries.length+1;
+	}
+
+	@Override
+	protected boolean hasNextObject() {
+		if (batches == null)
+			start();
+		while (current == null || !current.hasNext()) {
+			if (failure != null)
+				throw new WrappingRuntimeException(failure);
+			if (running == 0)
+				return false;
+			List<Object> batch;
+			try {
+				batch = batches.take();
+			}
+			catch (InterruptedException e) {
+				throw new WrappingRuntimeException(e);
+			}
+			if (batch == END)
+				running--;
+			else
+				current = batch.iterator();
+		}
+		return true;
+	}
+
+	@Override
+	protected Object nextObject() {
+		return current.next();
+	}
+
+	@Override
+	public void close() {
+		if (isClosed)
+			return;
+		cancelled = true;
+		if (shutdownExecutor)
+			executor.shutdown();
+		super.close();
+	}
+}
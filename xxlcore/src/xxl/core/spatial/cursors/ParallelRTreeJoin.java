@@ -0,0 +1,303 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.spatial.cursors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.indexStructures.RTree;
+import xxl.core.indexStructures.ORTree.IndexEntry;
+import xxl.core.indexStructures.ORTree.Node;
+import xxl.core.spatial.KPE;
+import xxl.core.spatial.rectangles.Rectangle;
+import xxl.core.util.WrappingRuntimeException;
+
+
+/** A parallel variant of the synchronized R-Tree traversal of {@link RTreeJoin}.
+ *  <br>
+ *  The pairs of overlapping index-entries computed by the plane-sweep of a node pair
+ *  are independent subproblems. Instead of pushing them on a stack, every pair is 
+ *  handed to a {@link ForkJoinPool} as a task of its own, so idle worker threads steal 
+ *  subtrees of the join from busy ones and the plane-sweeps of all node pairs run 
+ *  concurrently.
+ *  <br><br>
+ *  Before the subtasks of a node pair are forked, the child nodes of both trees 
+ *  referenced by the overlapping pairs are read at once in ascending order of their 
+ *  ids. Every child is read only once per node pair, even if it takes part in several 
+ *  pairs, and the reads of one node pair are issued in a single run while holding the 
+ *  lock of the tree's container. Containers therefore don't have to be thread-safe, 
+ *  and block oriented containers see the reads in sorted page order.
+ *  <br><br>
+ *  In case both trees are of different height only the higher tree is descended until 
+ *  both nodes of a pair reside on the same level.
+ *  <br><br>
+ *  The results of the leaf node pairs are reported in the order the tasks complete, so
+ *  the order of the results differs from the one of {@link RTreeJoin}. The cursor is 
+ *  lazy in the sense that the join is started when the first result is requested, but 
+ *  the workers do not wait for the results to be consumed.
+ */
+public class ParallelRTreeJoin extends RTreeJoin {
+
+	/** Marks the end of the stream of result batches. */
+	protected static final List<Object[]> END = new LinkedList<Object[]>();
+
+	/** Orders index-entries according to their ids, if these are comparable. */
+	protected static final Comparator<IndexEntry> ID_ORDER = new Comparator<IndexEntry>() {
+		public int compare(IndexEntry e0, IndexEntry e1) {
+			return ((Comparable) e0.id()).compareTo(e1.id());
+		}
+	};
+
+	/** The pool processing the node pairs. */
+	protected ForkJoinPool pool;
+
+	/** Signals whether the pool has been created by this operator and has to be 
+	 *  shut down when the operator is closed.
+	 */
+	protected boolean shutdownPool;
+
+	/** The results of the leaf node pairs, followed by {@link #END}. */
+	protected LinkedBlockingQueue<List<Object[]>> batches = new LinkedBlockingQueue<List<Object[]>>();
+
+	/** Signals whether the join has been started. */
+	protected boolean started = false;
+
+	/** Signals whether {@link #END} has been taken from the batches. */
+	protected boolean finished = false;
+
+	/** Signals the tasks to stop when the operator has been closed. */
+	protected volatile boolean cancelled = false;
+
+	/** The exception that terminated the join, if any. */
+	protected volatile Throwable failure = null;
+
+	/** Constructs a new parallel R-Tree-Join running on the given pool.
+	 * 
+	 * @param r the first R-Tree to be processed in the join
+	 * @param s the second one
+	 * @param pool the pool processing the node pairs
+	 */
+	public ParallelRTreeJoin(RTree r, RTree s, ForkJoinPool pool) {
+		super(r, s);
+		this.pool = pool;
+		this.shutdownPool = false;
+	}
+
+	/** Constructs a new parallel R-Tree-Join running on its own {@link ForkJoinPool}
+	 *  with the given parallelism. The pool is shut down when the operator is closed.
+	 * 
+	 * @param r the first R-Tree to be processed in the join
+	 * @param s the second one
+	 * @param parallelism the number of worker threads
+	 */
+	public ParallelRTreeJoin(RTree r, RTree s, int parallelism) {
+		this(r, s, new ForkJoinPool(parallelism));
+		this.shutdownPool = true;
+	}
+
+	/** Reads the nodes of the given index-entries in ascending order of their ids.
+	 *  The reads of a run of entries belonging to the same container are performed 
+	 *  while holding the lock of the container.
+	 * 
+	 * @param entries the index-entries whose nodes are to be read
+	 * @return a map from the given index-entries to their nodes
+	 */
+	protected Map<IndexEntry, Node> prefetch(List<IndexEntry> entries) {
+		boolean comparable = true;
+		for (IndexEntry entry : entries)
+			comparable &= entry.id() instanceof Comparable;
+		if (comparable)
+			Collections.sort(entries, ID_ORDER);
+		Map<IndexEntry, Node> nodes = new HashMap<IndexEntry, Node>();
+		int i = 0;
+		while (i < entries.size()) {
+			Container container = entries.get(i).container();
+			synchronized (container) {
+				for (; i < entries.size() && entries.get(i).container() == container; i++)
+					nodes.put(entries.get(i), (Node) entries.get(i).get(true));
+			}
+		}
+		pagesRead.addAndGet(entries.size());
+		return nodes;
+	}
+
+	/** Returns the distinct entries found at the given position of the pairs.
+	 * 
+	 * @param pairs the pairs of index-entries
+	 * @param index the position of the entries in the pairs
+	 * @return the distinct entries
+	 */
+	protected static List<IndexEntry> distinct(List<Object[]> pairs, int index) {
+		Map<IndexEntry, IndexEntry> entries = new HashMap<IndexEntry, IndexEntry>();
+		for (Object[] pair : pairs)
+			entries.put((IndexEntry) pair[index], (IndexEntry) pair[index]);
+		return new ArrayList<IndexEntry>(entries.keySet());
+	}
+
+	/** The task joining the subtrees of a pair of index-entries. The nodes of the 
+	 *  entries have already been read when the task is created. The node of the first 
+	 *  entry never resides on a lower level than the node of the second one.
+	 */
+	protected class PairTask extends RecursiveAction {
+
+		/** The index-entries whose subtrees are to be joined. */
+		protected IndexEntry e0, e1;
+
+		/** The nodes of the index-entries. */
+		protected Node n0, n1;
+
+		/** Creates a new task joining the subtrees of the given index-entries.
+		 * 
+		 * @param e0 the index-entry of the first tree
+		 * @param n0 the node of the first index-entry
+		 * @param e1 the index-entry of the second tree
+		 * @param n1 the node of the second index-entry
+		 */
+		protected PairTask(IndexEntry e0, Node n0, IndexEntry e1, Node n1) {
+			this.e0 = e0;
+			this.n0 = n0;
+			this.e1 = e1;
+			this.n1 = n1;
+		}
+
+		@Override
+		protected void compute() {
+			if (cancelled)
+				return;
+			Rectangle rect = (Rectangle) (e0.descriptor().clone());
+			rect.intersect((Rectangle) (e1.descriptor()));
+
+			if (n0.level() == 0) {
+				LinkedList<Object[]> output = internalPlaneSweep(rect, n0, n1, getLeafRectangle);
+				if (!output.isEmpty())
+					batches.add(output);
+				return;
+			}
+			List<Object[]> pairs;
+			Map<IndexEntry, Node> nodes1 = null;
+			if (n0.level() == n1.level()) {
+				pairs = internalPlaneSweep(rect, n0, n1, getEntryRectangle);
+				nodes1 = prefetch(distinct(pairs, 1));
+			}
+			else {
+				// descend only in the higher tree
+				pairs = new ArrayList<Object[]>();
+				int tested = 0;
+				for (Iterator it = n0.entries(); it.hasNext(); tested++) {
+					IndexEntry entry = (IndexEntry) it.next();
+					if (getEntryRectangle.invoke(entry).overlaps(rect))
+						pairs.add(new Object[]{entry, e1});
+				}
+				pairsTested.addAndGet(tested);
+			}
+			Map<IndexEntry, Node> nodes0 = prefetch(distinct(pairs, 0));
+			List<PairTask> tasks = new ArrayList<PairTask>(pairs.size());
+			for (Object[] pair : pairs)
+				tasks.add(new PairTask(
+					(IndexEntry) pair[0], nodes0.get(pair[0]), 
+					(IndexEntry) pair[1], nodes1 == null ? n1 : nodes1.get(pair[1])
+				));
+			invokeAll(tasks);
+		}
+	}
+
+	/** Starts the join by submitting the pair of root entries to the pool. */
+	protected void start() {
+		started = true;
+		final IndexEntry r = (IndexEntry) rTree.rootEntry();
+		final IndexEntry s = (IndexEntry) sTree.rootEntry();
+		if (r == null || s == null) {
+			batches.add(END);
+			return;
+		}
+		pool.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					Map<IndexEntry, Node> roots0 = prefetch(new ArrayList<IndexEntry>(Collections.singletonList(r)));
+					Map<IndexEntry, Node> roots1 = prefetch(new ArrayList<IndexEntry>(Collections.singletonList(s)));
+					new PairTask(r, roots0.get(r), s, roots1.get(s)).invoke();
+				}
+				catch (Throwable t) {
+					failure = t;
+				}
+				finally {
+					batches.add(END);
+				}
+			}
+		});
+	}
+
+	@Override
+	protected boolean hasNextObject() {
+		if (!started)
+			start();
+		while (!results.hasNext()) {
+			if (finished)
+				return false;
+			List<Object[]> batch;
+			try {
+				batch = batches.take();
+			}
+			catch (InterruptedException e) {
+				throw new WrappingRuntimeException(e);
+			}
+			if (batch == END) {
+				finished = true;
+				if (failure != null)
+					throw new WrappingRuntimeException(failure);
+				return false;
+			}
+			results = batch.iterator();
+		}
+		Object[] tmp = results.next();
+		nextObject = swapResults ? new KPE[]{(KPE) tmp[1], (KPE) tmp[0]}
+								 : new KPE[]{(KPE) tmp[0], (KPE) tmp[1]};
+		resultCount.incrementAndGet();
+		return true;
+	}
+
+	@Override
+	public void close() {
+		if (isClosed)
+			return;
+		cancelled = true;
+		if (shutdownPool)
+			pool.shutdownNow();
+		super.close();
+	}
+}
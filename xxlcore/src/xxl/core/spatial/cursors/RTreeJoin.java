@@ -30,6 +30,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicLong;
 
 import xxl.core.collections.Lists;
 import xxl.core.cursors.AbstractCursor;
@@ -92,6 +93,15 @@ public class RTreeJoin extends AbstractCursor<KPE[]>{
 	 */ 
 	protected boolean swapResults;								
 
+	/** The number of nodes read from both R-Trees. */
+	protected final AtomicLong pagesRead = new AtomicLong();
+
+	/** The number of entry-pairs whose descriptors have been tested for overlap. */
+	protected final AtomicLong pairsTested = new AtomicLong();
+
+	/** The number of results reported so far. */
+	protected final AtomicLong resultCount = new AtomicLong();
+
 	/** A function to return the descriptor of a given {@link IndexEntry}. 
 	 */
 	protected Function<IndexEntry, Rectangle> getEntryRectangle = new AbstractFunction<IndexEntry, Rectangle>(){
@@ -227,6 +237,7 @@ public class RTreeJoin extends AbstractCursor<KPE[]>{
 			
 			k++;
 		}					
+		pairsTested.addAndGet(k-unmarked);
 	}
 											
 	/** Trees of different heights are traversed in parallel until the leaf-level of one tree is reached.
@@ -253,6 +264,7 @@ public class RTreeJoin extends AbstractCursor<KPE[]>{
 			public void open(){
 				super.open();
 				queryNode = (Node) queryObject.get();					
+				pagesRead.incrementAndGet();
 				indexEntries = new LinkedList<IndexEntry>();
 				results = new LinkedList<Object[]>();							
 				indexEntries.add(subTreeRoot);													
@@ -263,6 +275,7 @@ public class RTreeJoin extends AbstractCursor<KPE[]>{
 				while(results.isEmpty() && !indexEntries.isEmpty()){
 					IndexEntry entry = indexEntries.poll();								
 					Node n0 = (Node) entry.get();								
+					pagesRead.incrementAndGet();
 					final Rectangle rect = (Rectangle) (entry.descriptor().clone()); 
 					rect.intersect((Rectangle)(queryObject.descriptor()));	
 			
@@ -314,6 +327,7 @@ public class RTreeJoin extends AbstractCursor<KPE[]>{
 			if(e0.level() == e1.level() || (e0.level()> e1.level() && e1.level()>0)){
 				final Rectangle rect = (Rectangle) (e0.descriptor().clone()); 
 				rect.intersect((Rectangle)(e1.descriptor()));	
+				pagesRead.addAndGet(2);
 		
 				if(e0.level() > 0)														
 					candidates.addAll( 	internalPlaneSweep(
@@ -336,6 +350,7 @@ public class RTreeJoin extends AbstractCursor<KPE[]>{
 			Object[] tmp = results.next(); 						
 			nextObject = swapResults ? new KPE[]{(KPE) tmp[1],(KPE) tmp[0]} 
 									 : new KPE[]{(KPE) tmp[0],(KPE) tmp[1]};
+			resultCount.incrementAndGet();
 			return true;
 		}catch(NoSuchElementException e){
 			return false;
@@ -347,6 +362,30 @@ public class RTreeJoin extends AbstractCursor<KPE[]>{
 		return nextObject;
 	}
 
+	/** Returns the number of nodes read from both R-Trees so far.
+	 * 
+	 * @return the number of nodes read
+	 */
+	public long pagesRead() {
+		return pagesRead.get();
+	}
+
+	/** Returns the number of entry-pairs tested for overlap in the plane-sweeps so far.
+	 * 
+	 * @return the number of tested entry-pairs
+	 */
+	public long pairsTested() {
+		return pairsTested.get();
+	}
+
+	/** Returns the number of results reported so far.
+	 * 
+	 * @return the number of results
+	 */
+	public long resultCount() {
+		return resultCount.get();
+	}
+
 	/** This method is not supported */
 	public void remove() {
 		throw new UnsupportedOperationException();
@@ -33,6 +33,7 @@ import java.util.Arrays;
 import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Function;
 import xxl.core.io.Convertable;
+import xxl.core.io.converters.Converters;
 
 /**
  * A Wrapper for double[]-points that provides useful methods on points
@@ -129,8 +130,7 @@ public class DoublePoint extends AbstractPoint implements Convertable, Cloneable
 	 */
 	@Override
 	public void read (DataInput dataInput) throws IOException{
-		for(int i=0; i< point.length; i++)
-			point[i] = dataInput.readDouble();
+		Converters.readDoubles(dataInput, point, 0, point.length);
 	}
 
 	/**
@@ -145,8 +145,7 @@ public class DoublePoint extends AbstractPoint implements Convertable, Cloneable
 	 */
 	@Override
 	public void write (DataOutput dataOutput) throws IOException{
-		for(int i=0; i< point.length; i++)
-			dataOutput.writeDouble(point[i]);
+		Converters.writeDoubles(dataOutput, point, 0, point.length);
 	}
 
 	/** Returns the coordinate of this DoublePoint in a given dimension <dim>.
@@ -33,6 +33,7 @@ import java.util.Arrays;
 import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Function;
 import xxl.core.io.Convertable;
+import xxl.core.io.converters.Converters;
 import xxl.core.util.BitSet;
 
 /**
@@ -169,8 +170,7 @@ public class FixedPoint extends AbstractPoint implements Convertable, Cloneable
 	 */
 	@Override
 	public void read (DataInput dataInput) throws IOException{
-		for(int i=0; i< point.length; i++)
-			point[i] = dataInput.readLong();
+		Converters.readLongs(dataInput, point, 0, point.length);
 	}
 
 	/**
@@ -185,8 +185,7 @@ public class FixedPoint extends AbstractPoint implements Convertable, Cloneable
 	 */
 	@Override
 	public void write (DataOutput dataOutput) throws IOException{
-		for(int i=0; i< point.length; i++)
-			dataOutput.writeLong(point[i]);
+		Converters.writeLongs(dataOutput, point, 0, point.length);
 	}
 
 	/** Returns the coordinate of this FixedPoint in a given dimension <dim>.
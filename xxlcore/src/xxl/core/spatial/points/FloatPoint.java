@@ -33,6 +33,7 @@ import java.util.Arrays;
 import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Function;
 import xxl.core.io.Convertable;
+import xxl.core.io.converters.Converters;
 
 /**
  * A Wrapper for float[]-points that provides useful methods on points.
@@ -142,8 +143,7 @@ public class FloatPoint extends AbstractPoint implements Convertable, Cloneable
 	 */
 	@Override
 	public void read (DataInput dataInput) throws IOException{
-		for(int i=0; i< point.length; i++)
-			point[i] = dataInput.readFloat();
+		Converters.readFloats(dataInput, point, 0, point.length);
 	}
 
 	/**
@@ -158,8 +158,7 @@ public class FloatPoint extends AbstractPoint implements Convertable, Cloneable
 	 */
 	@Override
 	public void write (DataOutput dataOutput) throws IOException{
-		for(int i=0; i< point.length; i++)
-			dataOutput.writeFloat(point[i]);
+		Converters.writeFloats(dataOutput, point, 0, point.length);
 	}
 
 	/** Returns the coordinate of this FloatPoint in a given dimension <dim>.
@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.util.Arrays;
 
 import xxl.core.indexStructures.Descriptor;
+import xxl.core.io.converters.Converters;
 import xxl.core.spatial.points.DoublePoint;
 import xxl.core.spatial.points.Point;
 
@@ -118,10 +119,8 @@ public class DoublePointRectangle implements Rectangle {
 	 * @throws IOException if I/O errors occur.
 	 */
 	public void read(DataInput dataInput) throws IOException {
-		for(int i=0; i< leftCorner.length; i++)
-			leftCorner[i] = dataInput.readDouble();
-		for(int i=0; i< rightCorner.length; i++)
-			rightCorner[i] = dataInput.readDouble();
+		Converters.readDoubles(dataInput, leftCorner, 0, leftCorner.length);
+		Converters.readDoubles(dataInput, rightCorner, 0, rightCorner.length);
 	}
 	
 	/**
@@ -135,10 +134,8 @@ public class DoublePointRectangle implements Rectangle {
 	 * @throws IOException includes any I/O exceptions that may occur.
 	 */
 	public void write(DataOutput dataOutput) throws IOException {
-		for(int i=0; i< leftCorner.length; i++)
-			dataOutput.writeDouble(leftCorner[i]);
-		for(int i=0; i< rightCorner.length; i++)
-			dataOutput.writeDouble(rightCorner[i]);
+		Converters.writeDoubles(dataOutput, leftCorner, 0, leftCorner.length);
+		Converters.writeDoubles(dataOutput, rightCorner, 0, rightCorner.length);
 	}
 
 	/** Returns the dimensionality of this rectangle.
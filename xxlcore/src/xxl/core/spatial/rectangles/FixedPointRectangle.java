@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.util.Arrays;
 
 import xxl.core.indexStructures.Descriptor;
+import xxl.core.io.converters.Converters;
 import xxl.core.spatial.cursors.Replicator;
 import xxl.core.spatial.points.FixedPoint;
 import xxl.core.spatial.points.Point;
@@ -118,10 +119,8 @@ public class FixedPointRectangle implements Rectangle {
 	 * @throws IOException if I/O errors occur.
 	 */
 	public void read(DataInput dataInput) throws IOException {
-		for(int i=0; i< leftCorner.length; i++)
-			leftCorner[i] = dataInput.readLong();
-		for(int i=0; i< rightCorner.length; i++)
-			rightCorner[i] = dataInput.readLong();
+		Converters.readLongs(dataInput, leftCorner, 0, leftCorner.length);
+		Converters.readLongs(dataInput, rightCorner, 0, rightCorner.length);
 	}
 	
 	/**
@@ -135,10 +134,8 @@ public class FixedPointRectangle implements Rectangle {
 	 * @throws IOException includes any I/O exceptions that may occur.
 	 */
 	public void write(DataOutput dataOutput) throws IOException {
-		for(int i=0; i< leftCorner.length; i++)
-			dataOutput.writeLong(leftCorner[i]);
-		for(int i=0; i< rightCorner.length; i++)
-			dataOutput.writeLong(rightCorner[i]);
+		Converters.writeLongs(dataOutput, leftCorner, 0, leftCorner.length);
+		Converters.writeLongs(dataOutput, rightCorner, 0, rightCorner.length);
 	}
 
 	/** Returns the dimensionality of this rectangle.
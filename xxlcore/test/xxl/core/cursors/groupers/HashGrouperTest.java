@@ -0,0 +1,181 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.groupers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.collections.queues.io.RandomAccessFileQueue;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.math.functions.AggregationFunction;
+import xxl.core.math.statistics.parametric.aggregates.Count;
+
+/**
+ * Tests the bounded {@link HashGrouper} and the
+ * {@link HashAggregateGrouper} against an in-memory grouping of the same
+ * input, using list-queues and temporary file queues for spilling.
+ */
+public class HashGrouperTest {
+
+	protected static final Function<Integer, Integer> GROUP = new AbstractFunction<Integer, Integer>() {
+		@Override
+		public Integer invoke(Integer element) {
+			return element / 7;
+		}
+	};
+
+	protected static final Function<Object, AggregationFunction<Object, Long>> COUNT = new AbstractFunction<Object, AggregationFunction<Object, Long>>() {
+		@Override
+		public AggregationFunction<Object, Long> invoke() {
+			return new Count();
+		}
+	};
+
+	protected static File directory;
+
+	@DataProvider(name = "queues")
+	public Object[][] queues() {
+		directory = new File(System.getProperty("java.io.tmpdir"), "hashGrouperTest");
+		directory.mkdirs();
+		return new Object[][] {
+			{
+				new AbstractFunction<Object, Queue<Integer>>() {
+					@Override
+					public Queue<Integer> invoke() {
+						return new ListQueue<Integer>();
+					}
+				}
+			},
+			{RandomAccessFileQueue.temporaryFileQueueFactory(directory, IntegerConverter.DEFAULT_INSTANCE, 256)}
+		};
+	}
+
+	protected static List<Integer> randomInput(int size, int range) {
+		Random random = new Random(size);
+		List<Integer> input = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(range));
+		return input;
+	}
+
+	protected static Map<Integer, List<Integer>> expectedGroups(List<Integer> input) {
+		Map<Integer, List<Integer>> groups = new HashMap<Integer, List<Integer>>();
+		for (Integer element : input) {
+			List<Integer> group = groups.get(GROUP.invoke(element));
+			if (group == null)
+				groups.put(GROUP.invoke(element), group = new ArrayList<Integer>());
+			group.add(element);
+		}
+		for (List<Integer> group : groups.values())
+			Collections.sort(group);
+		return groups;
+	}
+
+	protected static void assertNoFilesLeft() {
+		if (directory.exists())
+			Assert.assertEquals(directory.list().length, 0);
+	}
+
+	@Test(dataProvider = "queues")
+	public void boundedHashGrouper(Function<Object, Queue<Integer>> newQueue) {
+		List<Integer> input = randomInput(20000, 10000);
+		HashGrouper<Integer> grouper = new HashGrouper<Integer>(input.iterator(), GROUP, newQueue, 16, 500*16, 4);
+		Map<Integer, List<Integer>> groups = new HashMap<Integer, List<Integer>>();
+		grouper.open();
+		while (grouper.hasNext()) {
+			Cursor<Integer> group = grouper.next();
+			List<Integer> elements = new ArrayList<Integer>();
+			while (group.hasNext())
+				elements.add(group.next());
+			Collections.sort(elements);
+			Assert.assertNull(groups.put(GROUP.invoke(elements.get(0)), elements));
+		}
+		grouper.close();
+		Assert.assertEquals(groups, expectedGroups(input));
+		assertNoFilesLeft();
+	}
+
+	@Test(dataProvider = "queues")
+	public void hashAggregateGrouper(Function<Object, Queue<Integer>> newQueue) {
+		List<Integer> input = randomInput(20000, 10000);
+		// only 100 of the 1429 groups fit into main memory
+		HashAggregateGrouper<Integer, Long> grouper = new HashAggregateGrouper<Integer, Long>(input.iterator(), GROUP, COUNT, newQueue, 32, 100*32, 4);
+		Map<Integer, Long> counts = new HashMap<Integer, Long>();
+		grouper.open();
+		while (grouper.hasNext()) {
+			Object[] group = grouper.next();
+			Assert.assertTrue(grouper.getCurrentMemUsage() <= 100*32);
+			Assert.assertNull(counts.put((Integer)group[0], (Long)group[1]));
+		}
+		grouper.close();
+		Map<Integer, Long> expected = new HashMap<Integer, Long>();
+		for (Map.Entry<Integer, List<Integer>> group : expectedGroups(input).entrySet())
+			expected.put(group.getKey(), (long)group.getValue().size());
+		Assert.assertEquals(counts, expected);
+		assertNoFilesLeft();
+	}
+
+	@Test(dataProvider = "queues")
+	public void closeBeforeConsumption(Function<Object, Queue<Integer>> newQueue) {
+		HashAggregateGrouper<Integer, Long> aggregateGrouper = new HashAggregateGrouper<Integer, Long>(randomInput(5000, 5000).iterator(), GROUP, COUNT, newQueue, 32, 10*32);
+		aggregateGrouper.open();
+		aggregateGrouper.next();
+		aggregateGrouper.close();
+		HashGrouper<Integer> grouper = new HashGrouper<Integer>(randomInput(5000, 5000).iterator(), GROUP, newQueue, 16, 10*16);
+		grouper.open();
+		grouper.next();
+		grouper.close();
+		assertNoFilesLeft();
+	}
+
+	@Test
+	public void unboundedHashGrouper() {
+		List<Integer> input = randomInput(1000, 100);
+		HashGrouper<Integer> grouper = new HashGrouper<Integer>(input.iterator(), GROUP);
+		int elements = 0;
+		grouper.open();
+		while (grouper.hasNext())
+			for (Cursor<Integer> group = grouper.next(); group.hasNext(); group.next())
+				elements++;
+		grouper.close();
+		Assert.assertEquals(elements, input.size());
+		Assert.assertEquals(grouper.getCurrentMemUsage(), HashGrouper.SIZE_UNKNOWN);
+	}
+}
@@ -0,0 +1,160 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.joins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.predicates.AbstractPredicate;
+import xxl.core.predicates.Predicate;
+
+/**
+ * Tests the {@link HashJoin} against a nested-loops evaluation of the same
+ * join for all join types, with and without spilled partitions.
+ */
+public class HashJoinTest {
+
+	protected static final Function<Integer, Integer> KEY = new AbstractFunction<Integer, Integer>() {
+		@Override
+		public Integer invoke(Integer element) {
+			return element / 10;
+		}
+	};
+
+	protected static final Function<Integer, String> RESULT = new AbstractFunction<Integer, String>() {
+		@Override
+		public String invoke(Integer element0, Integer element1) {
+			return element0 + ":" + element1;
+		}
+	};
+
+	protected static final Function<Object, Queue<Integer>> NEW_QUEUE = new AbstractFunction<Object, Queue<Integer>>() {
+		@Override
+		public Queue<Integer> invoke() {
+			return new ListQueue<Integer>();
+		}
+	};
+
+	protected static List<Integer> randomInput(Random random, int size, int range) {
+		List<Integer> input = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(range));
+		return input;
+	}
+
+	protected static List<String> expected(List<Integer> input0, List<Integer> input1, Predicate<Integer> predicate, HashJoin.Type type) {
+		List<String> result = new ArrayList<String>();
+		boolean[] matched1 = new boolean[input1.size()];
+		for (Integer element0 : input0) {
+			boolean matched0 = false;
+			for (int i = 0; i < input1.size(); i++)
+				if (KEY.invoke(element0).equals(KEY.invoke(input1.get(i))) && predicate.invoke(element0, input1.get(i))) {
+					result.add(RESULT.invoke(element0, input1.get(i)));
+					matched0 = matched1[i] = true;
+				}
+			if (!matched0 && (type == HashJoin.Type.LEFT_OUTER_JOIN || type == HashJoin.Type.OUTER_JOIN))
+				result.add(RESULT.invoke(element0, null));
+		}
+		if (type == HashJoin.Type.RIGHT_OUTER_JOIN || type == HashJoin.Type.OUTER_JOIN)
+			for (int i = 0; i < input1.size(); i++)
+				if (!matched1[i])
+					result.add(RESULT.invoke(null, input1.get(i)));
+		Collections.sort(result);
+		return result;
+	}
+
+	@DataProvider(name = "joins")
+	public Object[][] joins() {
+		List<Object[]> joins = new ArrayList<Object[]>();
+		for (HashJoin.Type type : HashJoin.Type.values())
+			// memSize in elements: everything resident, some spilled partitions, all partitions spilled
+			for (int elements : new int[] {100000, 300, 10})
+				joins.add(new Object[] {type, elements});
+		return joins.toArray(new Object[joins.size()][]);
+	}
+
+	@Test(dataProvider = "joins")
+	public void join(HashJoin.Type type, int elements) {
+		Random random = new Random(42);
+		List<Integer> input0 = randomInput(random, 1000, 5000);
+		List<Integer> input1 = randomInput(random, 1500, 6000);
+		Predicate<Integer> predicate = new AbstractPredicate<Integer>() {
+			@Override
+			public boolean invoke(Integer element0, Integer element1) {
+				return (element0 + element1) % 3 != 0;
+			}
+		};
+
+		HashJoin<Integer, String> join = new HashJoin<Integer, String>(input0.iterator(), input1.iterator(), KEY, KEY, predicate, RESULT, type, NEW_QUEUE, 16, elements*16, 8);
+		List<String> result = new ArrayList<String>();
+		join.open();
+		while (join.hasNext())
+			result.add(join.next());
+		join.close();
+		Collections.sort(result);
+		Assert.assertEquals(result, expected(input0, input1, predicate, type));
+	}
+
+	@Test
+	public void skewedInput() {
+		// all elements share the same join key, so partitioning cannot reduce
+		// the partition size and the maximum recursion depth is reached
+		List<Integer> input0 = Collections.nCopies(200, 7);
+		List<Integer> input1 = Collections.nCopies(30, 3);
+		HashJoin<Integer, String> join = new HashJoin<Integer, String>(input0.iterator(), input1.iterator(), KEY, RESULT, 16, 10*16);
+		int count = 0;
+		join.open();
+		while (join.hasNext()) {
+			Assert.assertEquals(join.next(), "7:3");
+			count++;
+		}
+		join.close();
+		Assert.assertEquals(count, 200*30);
+	}
+
+	@Test
+	public void memoryUsage() {
+		List<Integer> input0 = randomInput(new Random(7), 1000, 100000);
+		HashJoin<Integer, String> join = new HashJoin<Integer, String>(input0.iterator(), new ArrayList<Integer>().iterator(), KEY, RESULT, 16, 100*16);
+		Assert.assertEquals(join.getAssignedMemSize(), 100*16);
+		join.assignMemSize(200*16);
+		join.open();
+		join.hasNext();
+		Assert.assertTrue(join.getCurrentMemUsage() <= 200*16);
+		Assert.assertFalse(join.hasNext());
+		join.close();
+	}
+}
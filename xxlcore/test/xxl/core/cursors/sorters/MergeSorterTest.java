@@ -0,0 +1,105 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.sorters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.comparators.ComparableComparator;
+import xxl.core.cursors.Cursors;
+
+/**
+ * Tests the parallel mode of the {@link MergeSorter} against a sequential
+ * sort of the same input.
+ */
+public class MergeSorterTest {
+
+	@DataProvider(name = "inputs")
+	public Object[][] inputs() {
+		return new Object[][] {
+			// size, memSize, parallelism
+			{0, 12*4096, 2},
+			{1, 12*4096, 2},
+			{10000, 12*4096, 1},
+			{10000, 12*4096, 4},
+			{50000, 5*4096, 3},
+			{50000, 64*4096, 8},
+		};
+	}
+
+	protected static List<Integer> randomInput(int size) {
+		Random random = new Random(size);
+		List<Integer> input = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(size/2+1));
+		return input;
+	}
+
+	@Test(dataProvider = "inputs")
+	public void parallelSort(int size, int memSize, int parallelism) {
+		List<Integer> input = randomInput(size);
+		List<Integer> expected = new ArrayList<Integer>(input);
+		Collections.sort(expected);
+
+		MergeSorter<Integer> sorter = new MergeSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, memSize, memSize).parallelize(parallelism);
+		Assert.assertEquals(Cursors.toList(sorter), expected);
+		sorter.close();
+	}
+
+	@Test
+	public void sharedExecutor() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (int run = 0; run < 3; run++) {
+				List<Integer> input = randomInput(20000+run);
+				MergeSorter<Integer> parallel = new MergeSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 6*4096, 6*4096).parallelize(executor, 4);
+				MergeSorter<Integer> sequential = new MergeSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 6*4096, 6*4096);
+				Assert.assertEquals(Cursors.toList(parallel), Cursors.toList(sequential));
+				parallel.close();
+				sequential.close();
+			}
+			Assert.assertFalse(executor.isShutdown());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void parallelizeAfterOpen() {
+		MergeSorter<Integer> sorter = new MergeSorter<Integer>(randomInput(10).iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 12*4096, 12*4096);
+		sorter.open();
+		sorter.parallelize(2);
+	}
+}
@@ -0,0 +1,145 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.CounterContainer;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.io.converters.Converter;
+import xxl.core.spatial.points.DoublePoint;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * Compares the batched queries of {@link Tree#query(Descriptor[], int)} with
+ * the results of single queries for an {@link RTree} and an {@link MTree}
+ * and checks that every node is read at most once per batch.
+ */
+public class BatchQueryTest {
+
+	public static final int DIMENSION = 2;
+	public static final int NUMBER_OF_POINTS = 10000;
+	public static final int NUMBER_OF_QUERIES = 200;
+
+	private Random random = new Random(42);
+
+	private DoublePoint randomPoint() {
+		double[] coordinates = new double[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++)
+			coordinates[i] = random.nextDouble();
+		return new DoublePoint(coordinates);
+	}
+
+	private void check(Tree tree, CounterContainer container, Descriptor[] queries) {
+		List<List<Object>> expected = new ArrayList<List<Object>>();
+		container.reset();
+		for (Descriptor query : queries) {
+			List<Object> results = new ArrayList<Object>();
+			for (Cursor cursor = tree.query(query); cursor.hasNext();)
+				results.add(cursor.next());
+			expected.add(results);
+		}
+		int singleGets = container.gets;
+
+		List<List<Object>> actual = new ArrayList<List<Object>>();
+		for (int i = 0; i < queries.length; i++)
+			actual.add(new ArrayList<Object>());
+		container.reset();
+		Tree.BatchQuery batch = (Tree.BatchQuery)tree.query(queries);
+		while (batch.hasNext()) {
+			Map.Entry<?, ?> result = (Map.Entry<?, ?>)batch.next();
+			actual.get((Integer)result.getKey()).add(result.getValue());
+		}
+		batch.close();
+
+		for (int i = 0; i < queries.length; i++) {
+			Assert.assertEquals(actual.get(i).size(), expected.get(i).size(), "query " + i);
+			Assert.assertTrue(actual.get(i).containsAll(expected.get(i)), "query " + i);
+		}
+		Assert.assertEquals(batch.nodeAccesses(), container.gets);
+		Assert.assertTrue(container.gets <= container.size(), "a node was read twice");
+		Assert.assertTrue(container.gets < singleGets);
+	}
+
+	@Test
+	public void rtree() {
+		RTree rtree = new RTree();
+		CounterContainer container = new CounterContainer(new MapContainer());
+		rtree.initialize(new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object point) {
+				return new DoublePointRectangle((DoublePoint)point, (DoublePoint)point);
+			}
+		}, container, 10, 25);
+		for (int i = 0; i < NUMBER_OF_POINTS; i++)
+			rtree.insert(randomPoint());
+
+		Descriptor[] queries = new Descriptor[NUMBER_OF_QUERIES];
+		for (int i = 0; i < queries.length; i++) {
+			DoublePoint corner = randomPoint();
+			queries[i] = new DoublePointRectangle(
+				new double[] {corner.getValue(0), corner.getValue(1)},
+				new double[] {corner.getValue(0) + 0.05, corner.getValue(1) + 0.05}
+			);
+		}
+		check(rtree, container, queries);
+	}
+
+	@Test
+	public void mtree() {
+		final Converter<DoublePoint> centerConverter = new ConvertableConverter<DoublePoint>(new AbstractFunction<Object, DoublePoint>() {
+			@Override
+			public DoublePoint invoke() {
+				return new DoublePoint(DIMENSION);
+			}
+		});
+		MTree mtree = new MTree();
+		CounterContainer container = new CounterContainer(new MapContainer());
+		mtree.initialize(new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object point) {
+				return new Sphere(point, 0.0, centerConverter);
+			}
+		}, container, 10, 25);
+		for (int i = 0; i < NUMBER_OF_POINTS; i++)
+			mtree.insert(randomPoint());
+
+		Descriptor[] queries = new Descriptor[NUMBER_OF_QUERIES];
+		for (int i = 0; i < queries.length; i++)
+			queries[i] = new Sphere(randomPoint(), 0.05, centerConverter);
+		check(mtree, container, queries);
+	}
+}
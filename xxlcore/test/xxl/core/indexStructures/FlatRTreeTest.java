@@ -0,0 +1,168 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.spatial.points.DoublePoint;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * Checks the range queries, insertions and removals of a {@link FlatRTree}
+ * against a scan over the data for both kinds of node containers.
+ */
+public class FlatRTreeTest {
+
+	public static final int DIMENSION = 2;
+	public static final int NUMBER_OF_POINTS = 10000;
+	public static final int NUMBER_OF_QUERIES = 100;
+	public static final int MAX_CAPACITY = 25;
+
+	private Random random = new Random(42);
+
+	private DoublePoint randomPoint() {
+		double[] coordinates = new double[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++)
+			coordinates[i] = random.nextDouble();
+		return new DoublePoint(coordinates);
+	}
+
+	private DoublePointRectangle randomQuery() {
+		double[] left = new double[DIMENSION];
+		double[] right = new double[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			left[i] = random.nextDouble();
+			right[i] = left[i] + 0.1 * random.nextDouble();
+		}
+		return new DoublePointRectangle(left, right);
+	}
+
+	private static List<DoublePoint> insert(FlatRTree tree, Container container, List<DoublePoint> points) {
+		tree.initialize(new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object point) {
+				return new DoublePointRectangle((DoublePoint)point, (DoublePoint)point);
+			}
+		}, container, 10, MAX_CAPACITY);
+		for (DoublePoint point : points)
+			tree.insert(point);
+		return points;
+	}
+
+	private void check(FlatRTree tree, List<DoublePoint> points) {
+		for (int q = 0; q < NUMBER_OF_QUERIES; q++) {
+			DoublePointRectangle query = randomQuery();
+			List<Object> expected = new ArrayList<Object>();
+			for (DoublePoint point : points)
+				if (query.overlaps(new DoublePointRectangle(point, point)))
+					expected.add(point);
+			List<Object> actual = new ArrayList<Object>();
+			for (Cursor cursor = tree.query(query); cursor.hasNext();)
+				actual.add(cursor.next());
+			Assert.assertEquals(actual.size(), expected.size(), "query " + q);
+			Assert.assertTrue(actual.containsAll(expected), "query " + q);
+		}
+	}
+
+	private void insertQueryRemove(FlatRTree tree, FlatRTree.NodeContainer container) {
+		List<DoublePoint> points = new ArrayList<DoublePoint>();
+		for (int i = 0; i < NUMBER_OF_POINTS; i++)
+			points.add(randomPoint());
+		insert(tree, container, points);
+		Assert.assertTrue(tree.height() > 2);
+		Assert.assertTrue(tree.checkDescriptors((ORTree.IndexEntry)tree.rootEntry()));
+		check(tree, points);
+
+		List<DoublePoint> remaining = new ArrayList<DoublePoint>();
+		for (int i = 0; i < points.size(); i++)
+			if (i % 2 == 0)
+				Assert.assertNotNull(tree.remove(points.get(i)));
+			else
+				remaining.add(points.get(i));
+		check(tree, remaining);
+		for (DoublePoint point : remaining)
+			Assert.assertNotNull(tree.remove(point));
+		Assert.assertEquals(container.size(), 0);
+	}
+
+	@Test
+	public void heapContainer() {
+		FlatRTree tree = new FlatRTree(DIMENSION);
+		FlatRTree.NodeContainer container = tree.heapContainer();
+		Assert.assertFalse(container.isDirect());
+		insertQueryRemove(tree, container);
+	}
+
+	@Test
+	public void directContainer() {
+		FlatRTree tree = new FlatRTree(DIMENSION);
+		FlatRTree.NodeContainer container = tree.directContainer(MAX_CAPACITY, new ConvertableConverter(new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke() {
+				return new DoublePoint(DIMENSION);
+			}
+		}), 8 * DIMENSION);
+		Assert.assertTrue(container.isDirect());
+		insertQueryRemove(tree, container);
+	}
+
+	@Test
+	public void queryOnPage() {
+		FlatRTree tree = new FlatRTree(DIMENSION);
+		FlatRTree.NodeContainer container = tree.heapContainer();
+		List<DoublePoint> points = new ArrayList<DoublePoint>();
+		for (int i = 0; i < NUMBER_OF_POINTS; i++)
+			points.add(randomPoint());
+		insert(tree, container, points);
+		Object rootId = tree.rootEntry().id();
+		for (int q = 0; q < NUMBER_OF_QUERIES; q++) {
+			DoublePointRectangle query = randomQuery();
+			FlatRTree.Node node = (FlatRTree.Node)container.get(rootId);
+			int count = 0;
+			for (Iterator it = node.query(query); it.hasNext(); count++)
+				Assert.assertTrue(((ORTree.IndexEntry)it.next()).descriptor().overlaps(query));
+			Assert.assertFalse(((FlatRTree.FlatEntries)node.entries).isMaterialized());
+
+			FlatRTree.Node materialized = (FlatRTree.Node)container.get(rootId);
+			int expected = 0;
+			for (Iterator it = materialized.entries(); it.hasNext();)
+				if (((ORTree.IndexEntry)it.next()).descriptor().overlaps(query))
+					expected++;
+			Assert.assertEquals(count, expected);
+		}
+	}
+}
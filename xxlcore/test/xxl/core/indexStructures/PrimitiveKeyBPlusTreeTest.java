@@ -0,0 +1,165 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.indexStructures.builder.Builders;
+import xxl.core.indexStructures.builder.BPlusTree.BPlusConfiguration;
+import xxl.core.indexStructures.builder.BPlusTree.BPlusTreeBuilder;
+import xxl.core.io.converters.MeasuredPrimitiveConverter;
+import xxl.core.io.converters.meta.PrimitivesKeyFunctionFactory;
+import xxl.core.relational.JavaType;
+
+/**
+ * This is a unit test for the B+Tree with primitive keys. It compares the
+ * results of a {@link PrimitiveKeyBPlusTree} with the results of a
+ * {@link BPlusTree} and a <tt>TreeSet</tt> and checks that both trees are
+ * able to read the nodes written by the other one.
+ */
+public class PrimitiveKeyBPlusTreeTest {
+
+	public static final int BLOCK_SIZE = 256;
+
+	@DataProvider(name = "keyTypes")
+	public Object[][] keyTypes() {
+		return new Object[][] {
+			{PrimitiveKeyBPlusTree.KeyType.INT, JavaType.INT},
+			{PrimitiveKeyBPlusTree.KeyType.LONG, JavaType.LONG},
+			{PrimitiveKeyBPlusTree.KeyType.DOUBLE, JavaType.DOUBLE},
+		};
+	}
+
+	private static Comparable key(JavaType type, long value) {
+		switch (type) {
+			case INT: return (int)value;
+			case LONG: return value;
+			default: return value/8.0;
+		}
+	}
+
+	private static BPlusTree initialize(BPlusTree tree, JavaType type, MapContainer blocks, BPlusTree.IndexEntry rootEntry, Descriptor rootDescriptor) {
+		PrimitivesKeyFunctionFactory factory = new PrimitivesKeyFunctionFactory(type);
+		Container container = new ConverterContainer(blocks, tree.nodeConverter());
+		if (rootEntry != null)
+			rootEntry = (BPlusTree.IndexEntry)((BPlusTree.IndexEntry)tree.createIndexEntry(rootEntry.parentLevel())).initialize(rootEntry.id(), (Separator)rootEntry.separator().clone());
+		return tree.initialize(rootEntry, rootDescriptor, factory.getKeyFunction(), container,
+			factory.getKeyConverter(), new MeasuredPrimitiveConverter(type),
+			factory.getKeyValueSeparatorFunction(), factory.getKeyRangeFunction(1));
+	}
+
+	private static List<Object> toList(Cursor cursor) {
+		List<Object> list = new ArrayList<Object>();
+		while (cursor.hasNext())
+			list.add(cursor.next());
+		cursor.close();
+		return list;
+	}
+
+	@Test(dataProvider = "keyTypes")
+	public void compareWithBPlusTree(PrimitiveKeyBPlusTree.KeyType keyType, JavaType type) {
+		Random random = new Random(17);
+		MapContainer plainBlocks = new MapContainer(), primitiveBlocks = new MapContainer();
+		BPlusTree plain = initialize(new BPlusTree(BLOCK_SIZE), type, plainBlocks, null, null);
+		BPlusTree primitive = initialize(new PrimitiveKeyBPlusTree(keyType, BLOCK_SIZE), type, primitiveBlocks, null, null);
+		TreeSet<Comparable> expected = new TreeSet<Comparable>();
+
+		for (int i = 0; i < 3000; i++) {
+			Comparable key = key(type, random.nextInt(20000) - 10000);
+			if (random.nextInt(4) == 0 && !expected.isEmpty()) {
+				Comparable removed = expected.ceiling(key);
+				if (removed == null)
+					removed = expected.first();
+				expected.remove(removed);
+				Assert.assertEquals(plain.remove(removed), removed);
+				Assert.assertEquals(primitive.remove(removed), removed);
+			}
+			else if (expected.add(key)) {
+				plain.insert(key);
+				primitive.insert(key);
+			}
+		}
+		for (int i = -10000; i < 10000; i += 37) {
+			Comparable key = key(type, i);
+			Assert.assertEquals(primitive.exactMatchQuery(key), expected.contains(key) ? key : null);
+		}
+		for (int i = 0; i < 100; i++) {
+			long min = random.nextInt(20000) - 10000;
+			Comparable minKey = key(type, min), maxKey = key(type, min + random.nextInt(500));
+			List<Object> result = toList(primitive.rangeQuery(minKey, maxKey));
+			Assert.assertEquals(result, new ArrayList<Object>(expected.subSet(minKey, true, maxKey, true)));
+			Assert.assertEquals(result, toList(plain.rangeQuery(minKey, maxKey)));
+		}
+
+		// the trees are able to read the nodes of each other
+		BPlusTree plainReader = initialize(new BPlusTree(BLOCK_SIZE), type, primitiveBlocks, (BPlusTree.IndexEntry)primitive.rootEntry(), primitive.rootDescriptor());
+		BPlusTree primitiveReader = initialize(new PrimitiveKeyBPlusTree(keyType, BLOCK_SIZE), type, plainBlocks, (BPlusTree.IndexEntry)plain.rootEntry(), plain.rootDescriptor());
+		Comparable minKey = expected.first(), maxKey = expected.last();
+		Assert.assertEquals(toList(plainReader.rangeQuery(minKey, maxKey)), new ArrayList<Object>(expected));
+		Assert.assertEquals(toList(primitiveReader.rangeQuery(minKey, maxKey)), new ArrayList<Object>(expected));
+	}
+
+	@Test
+	public void negativeDoubleKeys() {
+		PrimitiveKeyBPlusTree.KeyType keyType = PrimitiveKeyBPlusTree.KeyType.DOUBLE;
+		double[] values = {Double.NEGATIVE_INFINITY, -1e300, -2.5, -0.0, 0.0, Double.MIN_VALUE, 3.0, Double.POSITIVE_INFINITY, Double.NaN};
+		for (int i = 0; i < values.length; i++) {
+			Assert.assertEquals(keyType.decode(keyType.encode(values[i])), values[i]);
+			for (int j = 0; j < values.length; j++)
+				Assert.assertEquals(Long.signum(Long.valueOf(keyType.encode(values[i])).compareTo(keyType.encode(values[j]))),
+					Integer.signum(Double.compare(values[i], values[j])));
+		}
+	}
+
+	@Test
+	public void builder() {
+		BPlusConfiguration.Creator creator = Builders.createBPlusTree.Long("PrimitiveKeys").setPrimitiveKeys(true);
+		BPlusTreeBuilder builder = creator.getBuilder();
+		IndexedSet set = builder.create();
+		Assert.assertTrue(set.getIndexStructure() instanceof PrimitiveKeyBPlusTree);
+		for (long i = 0; i < 1000; i++)
+			set.add(i * 3);
+		Assert.assertTrue(set.contains(300L));
+		Assert.assertFalse(set.contains(301L));
+		Assert.assertEquals(set.size(), 1000);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void builderUnsupportedType() {
+		Builders.createBPlusTree.Float("PrimitiveKeys").setPrimitiveKeys(true);
+	}
+}
@@ -0,0 +1,257 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures.btrees;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.CounterContainer;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.descriptors.LongKeyRange;
+import xxl.core.indexStructures.descriptors.LongSeparator;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.MeasuredConverter;
+import xxl.core.io.converters.MeasuredFixedSizeConverter;
+
+/**
+ * Applies random insertions and removals to a {@link BPlusTree} through a
+ * {@link BPlusTree.BufferedUpdate} and compares the tree with a
+ * <tt>TreeSet</tt> that received the same operations one by one. The nodes
+ * are stored in a {@link CounterContainer}, so the node accesses of a
+ * buffered update can be compared with those of single insertions.
+ */
+public class BufferedUpdateTest {
+
+	public static final int BLOCK_SIZE = 512;
+	public static final int NUMBER_OF_KEYS = 20000;
+	public static final int NUMBER_OF_UPDATES = 40000;
+
+	public static final Function<Object, Object> IDENTITY = new AbstractFunction<Object, Object>() {
+		@Override
+		public Object invoke(Object argument) {
+			return argument;
+		}
+	};
+
+	private BPlusTree tree(TreeSet<Long> keys) {
+		BPlusTree tree = new BPlusTree(BLOCK_SIZE);
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(IDENTITY, new CounterContainer(new ConverterContainer(new MapContainer(), tree.nodeConverter())), converter, converter, LongSeparator.FACTORY_FUNCTION, LongKeyRange.FACTORY_FUNCTION);
+		List<Long> shuffled = new ArrayList<Long>();
+		for (long i = 0; i < NUMBER_OF_KEYS; i++)
+			shuffled.add(i * 3);
+		Collections.shuffle(shuffled, new Random(42));
+		for (Long key : shuffled) {
+			tree.insert(key);
+			keys.add(key);
+		}
+		return tree;
+	}
+
+	private static void assertContent(BPlusTree tree, TreeSet<Long> expected) {
+		Iterator<Long> keys = expected.iterator();
+		Cursor cursor = tree.rangeQuery(Long.MIN_VALUE, Long.MAX_VALUE);
+		while (cursor.hasNext()) {
+			Assert.assertTrue(keys.hasNext(), "unexpected key " + cursor.peek());
+			Assert.assertEquals(cursor.next(), keys.next());
+		}
+		cursor.close();
+		Assert.assertFalse(keys.hasNext(), "missing keys");
+		for (Long key : expected)
+			Assert.assertEquals(tree.exactMatchQuery(key), key);
+	}
+
+	private static int accesses(BPlusTree tree) {
+		CounterContainer counter = (CounterContainer) tree.container();
+		return counter.gets + counter.inserts + counter.updates + counter.removes;
+	}
+
+	@Test
+	public void randomUpdates() {
+		TreeSet<Long> expected = new TreeSet<Long>();
+		BPlusTree tree = tree(expected);
+		Assert.assertTrue(tree.height() > 2);
+		BPlusTree.BufferedUpdate update = tree.bufferedUpdate(256);
+		Assert.assertTrue(update.bufferNodes() > 1);
+
+		Random random = new Random(7);
+		long inserted = 0, removed = 0, rejected = 0;
+		for (int i = 0; i < NUMBER_OF_UPDATES; i++) {
+			// a small key domain produces repeated operations on the same keys
+			Long key = (long)random.nextInt(4 * NUMBER_OF_KEYS);
+			if (random.nextInt(3) == 0) {
+				update.remove(key);
+				if (expected.remove(key))
+					removed++;
+				else
+					rejected++;
+			}
+			else {
+				update.insert(key);
+				if (expected.add(key))
+					inserted++;
+				else
+					rejected++;
+			}
+		}
+		Assert.assertTrue(update.pending() > 0);
+		Assert.assertTrue(update.bufferEmptyings() > 0);
+		update.close();
+		Assert.assertEquals(update.pending(), 0);
+		Assert.assertEquals(update.inserted(), inserted);
+		Assert.assertEquals(update.removed(), removed);
+		Assert.assertEquals(update.rejected(), rejected);
+		assertContent(tree, expected);
+	}
+
+	@Test
+	public void sameKeyOrder() {
+		TreeSet<Long> expected = new TreeSet<Long>();
+		BPlusTree tree = tree(expected);
+		BPlusTree.BufferedUpdate update = tree.bufferedUpdate(16);
+		for (long key = 1; key < 3 * NUMBER_OF_KEYS; key += 3) {
+			update.insert(key);
+			update.remove(key);
+			update.insert(key + 1);
+			update.remove(key + 1);
+			update.insert(key + 1);
+			expected.add(key + 1);
+		}
+		update.flush();
+		assertContent(tree, expected);
+	}
+
+	@Test
+	public void emptyTree() {
+		TreeSet<Long> expected = new TreeSet<Long>();
+		BPlusTree tree = new BPlusTree(BLOCK_SIZE);
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(IDENTITY, new ConverterContainer(new MapContainer(), tree.nodeConverter()), converter, converter, LongSeparator.FACTORY_FUNCTION, LongKeyRange.FACTORY_FUNCTION);
+		BPlusTree.BufferedUpdate update = tree.bufferedUpdate(100);
+		Assert.assertEquals(update.bufferNodes(), 1);
+		Random random = new Random(3);
+		for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+			Long key = random.nextLong();
+			update.insert(key);
+			expected.add(key);
+		}
+		update.close();
+		assertContent(tree, expected);
+	}
+
+	@Test
+	public void fewerNodeAccesses() {
+		TreeSet<Long> expected = new TreeSet<Long>();
+		BPlusTree single = tree(expected);
+		BPlusTree buffered = tree(new TreeSet<Long>());
+		((CounterContainer) single.container()).reset();
+		((CounterContainer) buffered.container()).reset();
+		BPlusTree.BufferedUpdate update = buffered.bufferedUpdate(1024);
+		Random random = new Random(11);
+		for (int i = 0; i < NUMBER_OF_UPDATES; i++) {
+			Long key = (long)random.nextInt(3 * NUMBER_OF_KEYS);
+			if (expected.add(key))
+				single.insert(key);
+			update.insert(key);
+		}
+		update.close();
+		Assert.assertEquals(update.inserted() + update.rejected(), NUMBER_OF_UPDATES);
+		int singleAccesses = accesses(single);
+		int bufferedAccesses = accesses(buffered);
+		Assert.assertTrue(4 * bufferedAccesses < singleAccesses, bufferedAccesses + " node accesses, " + singleAccesses + " by single insertions");
+		assertContent(single, expected);
+		assertContent(buffered, expected);
+	}
+
+	@Test
+	public void massRemovals() {
+		TreeSet<Long> expected = new TreeSet<Long>();
+		BPlusTree tree = tree(expected);
+		BPlusTree.BufferedUpdate update = tree.bufferedUpdate(512);
+		// empties the leaves of the lower half and thins out the upper half
+		for (Long key : new ArrayList<Long>(expected))
+			if (key < 3 * NUMBER_OF_KEYS / 2 || key % 2 == 0) {
+				update.remove(key);
+				expected.remove(key);
+			}
+		update.remove(-1L);
+		update.flush();
+		Assert.assertEquals(update.rejected(), 1);
+		assertContent(tree, expected);
+		Cursor cursor = tree.rangeQuery(Long.MIN_VALUE, 3L * NUMBER_OF_KEYS / 2 - 1);
+		Assert.assertFalse(cursor.hasNext());
+		cursor.close();
+
+		for (Long key : expected)
+			update.remove(key);
+		update.flush();
+		Assert.assertNull(tree.rootEntry());
+		expected.clear();
+		for (long key = 0; key < NUMBER_OF_KEYS; key += 7) {
+			update.insert(key);
+			expected.add(key);
+		}
+		update.close();
+		assertContent(tree, expected);
+	}
+
+	@Test
+	public void bufferNodeLimit() {
+		BPlusTree tree = tree(new TreeSet<Long>());
+		Assert.assertEquals(tree.bufferedUpdate(1024, 1).bufferNodes(), 1);
+		// the number of buffers does not depend on the buffer size
+		Assert.assertTrue(tree.bufferedUpdate(4, BPlusTree.DEFAULT_MAX_BUFFER_NODES).bufferNodes() > 4);
+	}
+
+	@Test
+	public void updateConverter() throws IOException {
+		Converter<BPlusTree.Update> converter = BPlusTree.Update.converter(LongConverter.DEFAULT_INSTANCE);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		converter.write(new DataOutputStream(output), new BPlusTree.Update(false, 42L));
+		BPlusTree.Update read = converter.read(new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+		Assert.assertFalse(read.isInsert());
+		Assert.assertEquals(read.data(), 42L);
+	}
+}
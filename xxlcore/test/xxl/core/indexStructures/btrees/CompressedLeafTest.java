@@ -0,0 +1,448 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures.btrees;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.CompressedLeafFormat;
+import xxl.core.indexStructures.MVBT;
+import xxl.core.indexStructures.MVBTree.LeafEntry;
+import xxl.core.indexStructures.descriptors.LongKeyRange;
+import xxl.core.indexStructures.descriptors.LongMVRegion;
+import xxl.core.indexStructures.descriptors.LongMVSeparator;
+import xxl.core.indexStructures.descriptors.LongSeparator;
+import xxl.core.indexStructures.descriptors.LongVersion;
+import xxl.core.indexStructures.keyRanges.StringKeyRange;
+import xxl.core.indexStructures.separators.StringSeparator;
+import xxl.core.indexStructures.vLengthBPlusTree.VariableLengthBPlusTree;
+import xxl.core.indexStructures.vLengthBPlusTree.splitStrategy.ShortestKeyStrategy;
+import xxl.core.indexStructures.vLengthBPlusTree.underflowHandlers.StandardUnderflowHandler;
+import xxl.core.io.converters.Converters;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.LongDeltaConverter;
+import xxl.core.io.converters.MeasuredConverter;
+import xxl.core.io.converters.MeasuredFixedSizeConverter;
+import xxl.core.io.converters.PrefixStringConverter;
+import xxl.core.io.converters.StringConverter;
+
+/**
+ * Tests the compressed leaf pages of {@link BPlusTree}, {@link MVBT} and
+ * {@link VariableLengthBPlusTree}. The trees are filled with keys in random
+ * order, the query results are compared with a <tt>TreeSet</tt> and the
+ * capacity of the compressed leaves is compared with the capacity of plain
+ * leaves.
+ */
+public class CompressedLeafTest {
+
+	public static final int BLOCK_SIZE = 512;
+	public static final int NUMBER_OF_KEYS = 20000;
+	public static final int MAX_KEY_LENGTH = 24;
+
+	public static final Function<Object, Object> IDENTITY = new AbstractFunction<Object, Object>() {
+		@Override
+		public Object invoke(Object argument) {
+			return argument;
+		}
+	};
+
+	public static final Function<Object, Integer> STRING_SIZE = new AbstractFunction<Object, Integer>() {
+		@Override
+		public Integer invoke(Object argument) {
+			return Converters.sizeOf(StringConverter.DEFAULT_INSTANCE, (String)argument);
+		}
+	};
+
+	public static final MeasuredConverter<String> STRING_CONVERTER = new MeasuredConverter<String>() {
+		@Override
+		public int getMaxObjectSize() {
+			return 2 + 3 * MAX_KEY_LENGTH;
+		}
+
+		@Override
+		public String read(DataInput dataInput, String object) throws IOException {
+			return StringConverter.DEFAULT_INSTANCE.read(dataInput, object);
+		}
+
+		@Override
+		public void write(DataOutput dataOutput, String object) throws IOException {
+			StringConverter.DEFAULT_INSTANCE.write(dataOutput, object);
+		}
+	};
+
+	private static List<Long> shuffledKeys() {
+		List<Long> keys = new ArrayList<Long>(NUMBER_OF_KEYS);
+		for (long i = 0; i < NUMBER_OF_KEYS; i++)
+			keys.add(i * 3);
+		Collections.shuffle(keys, new Random(42));
+		return keys;
+	}
+
+	private static BPlusTree longTree(boolean compressed) {
+		BPlusTree tree = new BPlusTree(BLOCK_SIZE);
+		if (compressed)
+			tree.compressLeaves(new LongDeltaConverter(3L * NUMBER_OF_KEYS));
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(
+			IDENTITY,
+			new ConverterContainer(new MapContainer(), tree.nodeConverter()),
+			converter,
+			converter,
+			LongSeparator.FACTORY_FUNCTION,
+			LongKeyRange.FACTORY_FUNCTION
+		);
+		return tree;
+	}
+
+	private static MVBT multiVersionTree(boolean compressed) {
+		MVBT tree = new MVBT(BLOCK_SIZE, 0.25f, 0.5f, Long.MIN_VALUE);
+		if (compressed)
+			tree.compressLeaves(new LongDeltaConverter(3L * NUMBER_OF_KEYS));
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(null, null, null, null,
+			IDENTITY,
+			new ConverterContainer(new MapContainer(), tree.rootsTree().nodeConverter()),
+			new ConverterContainer(new MapContainer(), tree.nodeConverter()),
+			LongVersion.VERSION_MEASURED_CONVERTER,
+			converter,
+			converter,
+			LongMVSeparator.FACTORY_FUNCTION,
+			LongMVRegion.FACTORY_FUNCTION
+		);
+		return tree;
+	}
+
+	private static VariableLengthBPlusTree stringTree(boolean compressed) {
+		VariableLengthBPlusTree tree = new VariableLengthBPlusTree(BLOCK_SIZE, 0.33);
+		if (compressed)
+			tree.compressLeaves(new PrefixStringConverter(MAX_KEY_LENGTH));
+		tree.initialize(
+			null,
+			null,
+			IDENTITY,
+			new ConverterContainer(new MapContainer(), tree.nodeConverter()),
+			STRING_CONVERTER,
+			STRING_CONVERTER,
+			StringSeparator.FACTORY_FUNCTION,
+			StringKeyRange.FACTORY_FUNCTION,
+			STRING_SIZE,
+			STRING_SIZE,
+			new ShortestKeyStrategy(),
+			new StandardUnderflowHandler()
+		);
+		return tree;
+	}
+
+	private static List<Object> drain(Cursor cursor) {
+		List<Object> result = new ArrayList<Object>();
+		while (cursor.hasNext())
+			result.add(cursor.next());
+		cursor.close();
+		return result;
+	}
+
+	@Test
+	public void bPlusTreeQueries() {
+		BPlusTree tree = longTree(true);
+		TreeSet<Long> reference = new TreeSet<Long>();
+		for (Long key : shuffledKeys()) {
+			tree.insert(key);
+			reference.add(key);
+		}
+		Random random = new Random(7);
+		for (int i = 0; i < NUMBER_OF_KEYS / 4; i++) {
+			Long key = 3L * random.nextInt(NUMBER_OF_KEYS);
+			if (reference.remove(key))
+				Assert.assertEquals(tree.remove(key), key);
+		}
+		Assert.assertEquals(drain(tree.rangeQuery(Long.MIN_VALUE, Long.MAX_VALUE)), new ArrayList<Object>(reference));
+		for (int i = 0; i < 100; i++) {
+			long from = random.nextInt(3 * NUMBER_OF_KEYS);
+			long to = from + random.nextInt(900);
+			Assert.assertEquals(drain(tree.rangeQuery(from, to)), new ArrayList<Object>(reference.subSet(from, true, to, true)));
+		}
+	}
+
+	@Test
+	public void bPlusTreeCapacity() {
+		BPlusTree plain = longTree(false);
+		BPlusTree compressed = longTree(true);
+		Assert.assertTrue(compressed.getLeafNodeB() > plain.getLeafNodeB());
+		for (Long key : shuffledKeys()) {
+			plain.insert(key);
+			compressed.insert(key);
+		}
+		Assert.assertTrue(compressed.height() <= plain.height());
+		Assert.assertEquals(drain(compressed.rangeQuery(0L, 3L * NUMBER_OF_KEYS)), drain(plain.rangeQuery(0L, 3L * NUMBER_OF_KEYS)));
+	}
+
+	@Test
+	public void mvbtQueries() {
+		MVBT plain = multiVersionTree(false);
+		MVBT compressed = multiVersionTree(true);
+		List<Long> keys = shuffledKeys().subList(0, NUMBER_OF_KEYS / 4);
+		long version = 1;
+		for (Long key : keys) {
+			plain.insert(new LongVersion(version), key);
+			compressed.insert(new LongVersion(version++), key);
+		}
+		for (Long key : keys.subList(0, keys.size() / 2)) {
+			Assert.assertEquals(((LeafEntry)plain.remove(new LongVersion(version), key)).data(), key);
+			Assert.assertEquals(((LeafEntry)compressed.remove(new LongVersion(version++), key)).data(), key);
+		}
+		Random random = new Random(13);
+		for (int i = 0; i < 50; i++) {
+			int query = 1 + random.nextInt((int)version - 1);
+			TreeSet<Long> expected = new TreeSet<Long>(keys.subList(query <= keys.size() ? 0 : query - keys.size(), Math.min(query, keys.size())));
+			for (MVBT tree : new MVBT[] {plain, compressed}) {
+				TreeSet<Object> actual = new TreeSet<Object>();
+				for (Object entry : drain(tree.keyRangeQuery(Long.MIN_VALUE, Long.MAX_VALUE, new LongVersion(query))))
+					actual.add(((LeafEntry)entry).data());
+				Assert.assertEquals(actual, expected, "version " + query);
+			}
+		}
+	}
+
+	@Test
+	public void variableLengthTreeQueries() {
+		VariableLengthBPlusTree tree = stringTree(true);
+		TreeSet<String> reference = new TreeSet<String>();
+		for (Long key : shuffledKeys()) {
+			String value = String.format("customer/%08d", key);
+			tree.insert(value);
+			reference.add(value);
+		}
+		Assert.assertEquals(drain(tree.rangeQuery("", "~")), new ArrayList<Object>(reference));
+		Random random = new Random(11);
+		for (int i = 0; i < NUMBER_OF_KEYS / 4; i++) {
+			String value = String.format("customer/%08d", 3L * random.nextInt(NUMBER_OF_KEYS));
+			if (reference.remove(value))
+				Assert.assertEquals(tree.remove(value), value);
+		}
+		Assert.assertEquals(drain(tree.rangeQuery("", "~")), new ArrayList<Object>(reference));
+	}
+
+	@Test
+	public void variableLengthTreeHeight() {
+		VariableLengthBPlusTree plain = stringTree(false);
+		VariableLengthBPlusTree compressed = stringTree(true);
+		for (Long key : shuffledKeys()) {
+			String value = String.format("customer/%08d", key);
+			plain.insert(value);
+			compressed.insert(value);
+		}
+		Assert.assertTrue(compressed.height() <= plain.height());
+	}
+
+	@Test
+	public void fixedBlockSize() throws IOException {
+		// large keys need more bytes as first entry of a leaf than as delta,
+		// descending keys fill leaves having a right neighbor with
+		// differences of maximal size
+		long base = 1700000000000L;
+		File file = File.createTempFile("compressedLeaves", "");
+		file.delete();
+		file.deleteOnExit();
+		BlockFileContainer container = new BlockFileContainer(file.getPath(), BLOCK_SIZE);
+		BPlusTree tree = new BPlusTree(BLOCK_SIZE);
+		tree.compressLeaves(new LongDeltaConverter(100));
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(
+			IDENTITY,
+			new ConverterContainer(container, tree.nodeConverter()),
+			converter,
+			converter,
+			LongSeparator.FACTORY_FUNCTION,
+			LongKeyRange.FACTORY_FUNCTION
+		);
+		List<Object> keys = new ArrayList<Object>();
+		for (long i = 0; i < NUMBER_OF_KEYS; i++)
+			keys.add(base + 100 * i);
+		for (int i = NUMBER_OF_KEYS - 1; i >= 0; i--)
+			tree.insert(keys.get(i));
+		Assert.assertEquals(drain(tree.rangeQuery(Long.MIN_VALUE, Long.MAX_VALUE)), keys);
+		container.close();
+		container.delete();
+	}
+
+	@Test
+	public void deltaBound() throws IOException {
+		LongDeltaConverter converter = new LongDeltaConverter(100);
+		long[][] pairs = {{1000, 900}, {1000, 1101}, {1000, 899}, {Long.MIN_VALUE, Long.MAX_VALUE}, {Long.MAX_VALUE, Long.MIN_VALUE}};
+		for (long[] pair : pairs) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			converter.writeDelta(new DataOutputStream(bytes), pair[0], pair[1]);
+			Assert.assertEquals(bytes.size(), converter.getDeltaSize(pair[0], pair[1]));
+			Assert.assertTrue(bytes.size() <= converter.getMaxObjectSize());
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+			Assert.assertEquals(converter.readDelta(input, pair[0]).longValue(), pair[1]);
+		}
+		Assert.assertEquals(converter.getDeltaSize(1000L, 900L), converter.getMaxDeltaSize());
+		Assert.assertEquals(converter.getMaxObjectSize(), LongDeltaConverter.MAX_VAR_LONG_SIZE);
+	}
+
+	@Test
+	public void differencesBeyondBound() {
+		BPlusTree tree = new BPlusTree(BLOCK_SIZE);
+		tree.compressLeaves(new LongDeltaConverter(100));
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(
+			IDENTITY,
+			new ConverterContainer(new MapContainer(), tree.nodeConverter()),
+			converter,
+			converter,
+			LongSeparator.FACTORY_FUNCTION,
+			LongKeyRange.FACTORY_FUNCTION
+		);
+		TreeSet<Long> reference = new TreeSet<Long>();
+		for (long key = 0; key <= 400; key += 100) {
+			tree.insert(key);
+			reference.add(key);
+		}
+		Assert.assertEquals(tree.remove(100L), Long.valueOf(100));
+		reference.remove(100L);
+		tree.insert(1000L);
+		reference.add(1000L);
+		Assert.assertEquals(drain(tree.rangeQuery(Long.MIN_VALUE, Long.MAX_VALUE)), new ArrayList<Object>(reference));
+	}
+
+	@Test
+	public void differencesBeyondBoundInBlocks() throws IOException {
+		// most keys are close to their neighbors, some differ by far more
+		// than the bound; the block file rejects pages that do not fit
+		File file = File.createTempFile("compressedLeaves", "");
+		file.delete();
+		file.deleteOnExit();
+		BlockFileContainer container = new BlockFileContainer(file.getPath(), BLOCK_SIZE);
+		BPlusTree tree = new BPlusTree(BLOCK_SIZE);
+		tree.compressLeaves(new LongDeltaConverter(100));
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(
+			IDENTITY,
+			new ConverterContainer(container, tree.nodeConverter()),
+			converter,
+			converter,
+			LongSeparator.FACTORY_FUNCTION,
+			LongKeyRange.FACTORY_FUNCTION
+		);
+		Random random = new Random(17);
+		List<Long> keys = new ArrayList<Long>(NUMBER_OF_KEYS);
+		long key = 0;
+		for (int i = 0; i < NUMBER_OF_KEYS; i++)
+			keys.add(key += random.nextInt(10) == 0 ? random.nextLong() >>> 8 : 1 + random.nextInt(50));
+		Collections.shuffle(keys, random);
+		TreeSet<Long> reference = new TreeSet<Long>();
+		for (Long k : keys) {
+			tree.insert(k);
+			reference.add(k);
+		}
+		for (Long k : keys.subList(0, 3 * NUMBER_OF_KEYS / 4)) {
+			Assert.assertEquals(tree.remove(k), k);
+			reference.remove(k);
+		}
+		for (int i = 0; i < NUMBER_OF_KEYS / 4; i++) {
+			Long k = random.nextLong() >>> 1;
+			if (reference.add(k))
+				tree.insert(k);
+		}
+		Assert.assertEquals(drain(tree.rangeQuery(Long.MIN_VALUE, Long.MAX_VALUE)), new ArrayList<Object>(reference));
+		container.close();
+		container.delete();
+	}
+
+	@Test
+	public void unboundedCapacity() {
+		// without a bound the estimated capacity is below the one of plain
+		// leaves, but the leaves are filled according to their actual size
+		BPlusTree plain = new BPlusTree(4096);
+		BPlusTree compressed = new BPlusTree(4096);
+		compressed.compressLeaves(LongDeltaConverter.DEFAULT_INSTANCE);
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		for (BPlusTree tree : new BPlusTree[] {plain, compressed}) {
+			tree.initialize(
+				IDENTITY,
+				new ConverterContainer(new MapContainer(), tree.nodeConverter()),
+				converter,
+				converter,
+				LongSeparator.FACTORY_FUNCTION,
+				LongKeyRange.FACTORY_FUNCTION
+			);
+			for (long key = 0; key < 2 * NUMBER_OF_KEYS; key++)
+				tree.insert(key);
+		}
+		Assert.assertTrue(firstLeaf(compressed).number() > 2 * plain.getLeafNodeB());
+		Assert.assertEquals(drain(compressed.rangeQuery(0L, 3L * NUMBER_OF_KEYS)), drain(plain.rangeQuery(0L, 3L * NUMBER_OF_KEYS)));
+	}
+
+	private static BPlusTree.Node firstLeaf(BPlusTree tree) {
+		BPlusTree.Node node = (BPlusTree.Node)tree.rootEntry().get(true);
+		while (node.level() > 0)
+			node = (BPlusTree.Node)((BPlusTree.IndexEntry)node.getFirst()).get(true);
+		return node;
+	}
+
+	@Test
+	public void pageChecksum() throws IOException {
+		CompressedLeafFormat format = new CompressedLeafFormat(new LongDeltaConverter());
+		List<Long> entries = new ArrayList<Long>();
+		for (long i = 0; i < 50; i++)
+			entries.add(1000 + i * i);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		format.write(new DataOutputStream(bytes), entries);
+		byte[] page = bytes.toByteArray();
+		Assert.assertEquals(page.length, format.size(entries));
+		Assert.assertEquals(format.read(new DataInputStream(new ByteArrayInputStream(page)), entries.size()), entries);
+		page[page.length / 2] ^= 0x10;
+		try {
+			format.read(new DataInputStream(new ByteArrayInputStream(page)), entries.size());
+			Assert.fail("corrupted page was not detected");
+		}
+		catch (IOException expected) {
+		}
+	}
+}
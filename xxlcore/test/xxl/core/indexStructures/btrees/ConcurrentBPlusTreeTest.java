@@ -0,0 +1,347 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures.btrees;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.SynchronizedContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.ConcurrentBPlusTree;
+import xxl.core.indexStructures.keyRanges.IntegerKeyRange;
+import xxl.core.indexStructures.separators.IntegerSeparator;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.io.converters.MeasuredConverter;
+import xxl.core.io.converters.MeasuredFixedSizeConverter;
+
+/**
+ * Stress test for {@link ConcurrentBPlusTree}. Several writer threads insert
+ * and remove keys while reader threads run point and range queries. The
+ * readers check that every key which was stored during the whole query is
+ * found, and after the writers have finished the structure
+ * of the tree is checked.
+ */
+public class ConcurrentBPlusTreeTest {
+
+	public static final int BLOCK_SIZE = 256;
+	public static final int NUMBER_OF_KEYS = 40000;
+	public static final int WRITERS = 4;
+	public static final int READERS = 4;
+	public static final int RANGE = 300;
+
+	private ConcurrentBPlusTree tree;
+	private AtomicIntegerArray present;
+	private ConcurrentLinkedQueue<String> failures;
+	private AtomicBoolean writing;
+
+	@BeforeMethod
+	public void setUp() {
+		tree = new ConcurrentBPlusTree(BLOCK_SIZE);
+		Function<Object, Object> getKey = new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object argument) {
+				return argument;
+			}
+		};
+		MeasuredConverter<Integer> converter = new MeasuredFixedSizeConverter<Integer>(IntegerConverter.DEFAULT_INSTANCE);
+		tree.initialize(
+			getKey,
+			new SynchronizedContainer(new ConverterContainer(new MapContainer(), tree.nodeConverter())),
+			converter,
+			converter,
+			IntegerSeparator.FACTORY_FUNCTION,
+			IntegerKeyRange.FACTORY_FUNCTION
+		);
+		present = new AtomicIntegerArray(NUMBER_OF_KEYS);
+		failures = new ConcurrentLinkedQueue<String>();
+		writing = new AtomicBoolean(true);
+	}
+
+	private List<Integer> shuffledKeys(int step, int offset, long seed) {
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int i = offset; i < NUMBER_OF_KEYS; i += step)
+			keys.add(i);
+		Collections.shuffle(keys, new Random(seed));
+		return keys;
+	}
+
+	private Thread writer(final List<Integer> keys, final boolean insert) {
+		return new Thread() {
+			@Override
+			public void run() {
+				try {
+					for (Integer key : keys) {
+						if (insert) {
+							tree.insert(key);
+							present.set(key, 1);
+						}
+						else {
+							present.set(key, 2);
+							if (!key.equals(tree.remove(key)))
+								failures.add("remove failed: " + key);
+							present.set(key, 0);
+						}
+					}
+				}
+				catch (Throwable t) {
+					failures.add("writer: " + t);
+				}
+			}
+		};
+	}
+
+	private Thread reader(final long seed) {
+		return new Thread() {
+			@Override
+			public void run() {
+				Random random = new Random(seed);
+				try {
+					while (writing.get()) {
+						int key = random.nextInt(NUMBER_OF_KEYS);
+						boolean expected = present.get(key) == 1;
+						Object found = tree.exactMatchQuery(key);
+						if (expected && present.get(key) == 1 && !Integer.valueOf(key).equals(found))
+							failures.add("point query lost key " + key);
+						if (found != null && !Integer.valueOf(key).equals(found))
+							failures.add("point query returned " + found + " for " + key);
+
+						int min = random.nextInt(NUMBER_OF_KEYS);
+						int max = min + RANGE;
+						boolean[] required = new boolean[RANGE + 1];
+						for (int i = min; i <= max && i < NUMBER_OF_KEYS; i++)
+							required[i - min] = present.get(i) == 1;
+						Cursor cursor = tree.rangeQuery(min, max);
+						int last = min - 1;
+						while (cursor.hasNext()) {
+							int next = (Integer) cursor.next();
+							if (next <= last || next > max)
+								failures.add("range query [" + min + ", " + max + "] returned " + next + " after " + last);
+							for (int i = last + 1; i < next; i++)
+								if (required[i - min] && present.get(i) == 1)
+									failures.add("range query [" + min + ", " + max + "] lost key " + i);
+							last = next;
+						}
+						cursor.close();
+						for (int i = last + 1; i <= max && i < NUMBER_OF_KEYS; i++)
+							if (required[i - min] && present.get(i) == 1)
+								failures.add("range query [" + min + ", " + max + "] lost key " + i);
+					}
+				}
+				catch (Throwable t) {
+					failures.add("reader: " + t);
+				}
+			}
+		};
+	}
+
+	private void run(List<Thread> writers) throws InterruptedException {
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int i = 0; i < READERS; i++)
+			readers.add(reader(100 + i));
+		for (Thread thread : readers)
+			thread.start();
+		for (Thread thread : writers)
+			thread.start();
+		for (Thread thread : writers)
+			thread.join();
+		writing.set(false);
+		for (Thread thread : readers)
+			thread.join();
+		Assert.assertTrue(failures.isEmpty(), failures.size() + " failures, e.g. " + failures.peek());
+	}
+
+	private void insertConcurrently() throws InterruptedException {
+		List<Thread> writers = new ArrayList<Thread>();
+		for (int i = 0; i < WRITERS; i++)
+			writers.add(writer(shuffledKeys(WRITERS, i, i), true));
+		run(writers);
+	}
+
+	/**
+	 * Checks the order of the separators and keys, the separators of the
+	 * index entries against the keys of their subtrees and the chain of
+	 * <tt>nextNeighbor</tt> references on every level. Returns the number of
+	 * keys stored in the tree.
+	 */
+	private int checkInvariants() {
+		List<List<BPlusTree.Node>> levels = new ArrayList<List<BPlusTree.Node>>();
+		for (int i = 0; i < tree.height(); i++)
+			levels.add(new ArrayList<BPlusTree.Node>());
+		int keys = check((BPlusTree.IndexEntry) tree.rootEntry(), null, null, levels);
+		for (List<BPlusTree.Node> level : levels)
+			Assert.assertNull(level.get(level.size() - 1).nextNeighbor(), "last node of a level has a right neighbor");
+		return keys;
+	}
+
+	private int check(BPlusTree.IndexEntry entry, Comparable lower, Comparable upper, List<List<BPlusTree.Node>> levels) {
+		BPlusTree.Node node = (BPlusTree.Node) entry.get(true);
+		List<BPlusTree.Node> level = levels.get(node.level);
+		if (!level.isEmpty()) {
+			BPlusTree.IndexEntry next = level.get(level.size() - 1).nextNeighbor();
+			Assert.assertNotNull(next, "broken nextNeighbor chain");
+			Assert.assertEquals(next.id(), entry.id(), "nextNeighbor does not refer to the right sibling");
+		}
+		level.add(node);
+		int keys = 0;
+		Comparable previous = lower;
+		for (int i = 0; i < node.number(); i++) {
+			Comparable key = node.level == 0
+				? (Comparable) node.getEntry(i)
+				: ((BPlusTree.IndexEntry) node.getEntry(i)).separator().sepValue();
+			if (previous != null)
+				Assert.assertTrue(previous.compareTo(key) < 0, "keys out of order: " + previous + ", " + key);
+			if (upper != null)
+				Assert.assertTrue(key.compareTo(upper) <= 0, "key " + key + " exceeds separator " + upper);
+			if (node.level == 0)
+				keys++;
+			else
+				keys += check((BPlusTree.IndexEntry) node.getEntry(i), previous, key, levels);
+			previous = key;
+		}
+		return keys;
+	}
+
+	@Test
+	public void concurrentInsertions() throws InterruptedException {
+		insertConcurrently();
+		Assert.assertEquals(checkInvariants(), NUMBER_OF_KEYS);
+		Assert.assertTrue(tree.height() > 2);
+		Assert.assertTrue(tree.optimisticModifications() > 0);
+		for (int key = 0; key < NUMBER_OF_KEYS; key++)
+			Assert.assertEquals(tree.exactMatchQuery(key), key);
+		Cursor cursor = tree.rangeQuery(0, NUMBER_OF_KEYS);
+		int expected = 0;
+		while (cursor.hasNext())
+			Assert.assertEquals(cursor.next(), expected++);
+		cursor.close();
+		Assert.assertEquals(expected, NUMBER_OF_KEYS);
+	}
+
+	@Test
+	public void concurrentRemovals() throws InterruptedException {
+		insertConcurrently();
+		writing.set(true);
+		List<Thread> writers = new ArrayList<Thread>();
+		for (int i = 0; i < WRITERS; i++)
+			writers.add(writer(shuffledKeys(2 * WRITERS, 2 * i, i), false));
+		run(writers);
+		Assert.assertEquals(checkInvariants(), NUMBER_OF_KEYS / 2);
+		for (int key = 0; key < NUMBER_OF_KEYS; key++)
+			Assert.assertEquals(tree.exactMatchQuery(key), key % 2 == 0 ? null : key);
+	}
+
+	@Test
+	public void sharedNodes() {
+		// a container returning the same node on every get like a buffer
+		tree = new ConcurrentBPlusTree(BLOCK_SIZE);
+		MeasuredConverter<Integer> converter = new MeasuredFixedSizeConverter<Integer>(IntegerConverter.DEFAULT_INSTANCE);
+		tree.initialize(
+			new AbstractFunction<Object, Object>() {
+				@Override
+				public Object invoke(Object argument) {
+					return argument;
+				}
+			},
+			new MapContainer(),
+			converter,
+			converter,
+			IntegerSeparator.FACTORY_FUNCTION,
+			IntegerKeyRange.FACTORY_FUNCTION
+		);
+		for (int key : shuffledKeys(1, 0, 42))
+			tree.insert(key);
+		Assert.assertEquals(checkInvariants(), NUMBER_OF_KEYS);
+		for (int key : shuffledKeys(2, 0, 43))
+			Assert.assertEquals(tree.remove(key), key);
+		Assert.assertEquals(checkInvariants(), NUMBER_OF_KEYS / 2);
+		Assert.assertTrue(tree.optimisticModifications() > 0);
+		Assert.assertTrue(tree.exclusiveModifications() > 0);
+	}
+
+	@Test
+	public void bufferedUpdate() throws InterruptedException {
+		insertConcurrently();
+		writing.set(true);
+		List<Thread> writers = new ArrayList<Thread>();
+		writers.add(new Thread() {
+			@Override
+			public void run() {
+				try {
+					BPlusTree.BufferedUpdate update = tree.bufferedUpdate(256);
+					for (int key : shuffledKeys(2, 0, 44)) {
+						present.set(key, 2);
+						update.remove(key);
+					}
+					update.close();
+					for (int key = 0; key < NUMBER_OF_KEYS; key += 2)
+						present.set(key, 0);
+				}
+				catch (Throwable t) {
+					failures.add("writer: " + t);
+				}
+			}
+		});
+		run(writers);
+		Assert.assertEquals(checkInvariants(), NUMBER_OF_KEYS / 2);
+		for (int key = 0; key < NUMBER_OF_KEYS; key++)
+			Assert.assertEquals(tree.exactMatchQuery(key), key % 2 == 0 ? null : key);
+	}
+
+	@Test
+	public void mixedWorkload() throws InterruptedException {
+		List<Thread> writers = new ArrayList<Thread>();
+		for (int i = 0; i < WRITERS; i++)
+			writers.add(writer(shuffledKeys(WRITERS, i, i), true));
+		for (int i = 0; i < WRITERS; i++)
+			tree.insert(-1 - i);
+		writers.add(new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < WRITERS; i++)
+					if (tree.remove(-1 - i) == null)
+						failures.add("remove failed: " + (-1 - i));
+			}
+		});
+		run(writers);
+		Assert.assertEquals(checkInvariants(), NUMBER_OF_KEYS);
+		Assert.assertNull(tree.exactMatchQuery(-1));
+	}
+}
@@ -0,0 +1,190 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.btrees;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.CounterContainer;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.indexStructures.keyRanges.StringKeyRange;
+import xxl.core.indexStructures.separators.StringSeparator;
+import xxl.core.indexStructures.testData.Student;
+import xxl.core.indexStructures.vLengthBPlusTree.SplitStrategy;
+import xxl.core.indexStructures.vLengthBPlusTree.VariableLengthBPlusTree;
+import xxl.core.indexStructures.vLengthBPlusTree.VariableLengthBPlusTreeBulkLoading;
+import xxl.core.indexStructures.vLengthBPlusTree.splitStrategy.ShortestKeyStrategy;
+import xxl.core.indexStructures.vLengthBPlusTree.splitStrategy.SimplePrefixBPlusTreeSplit;
+import xxl.core.indexStructures.vLengthBPlusTree.underflowHandlers.StandardUnderflowHandler;
+
+/**
+ * Tests {@link VariableLengthBPlusTreeBulkLoading} with student data. The
+ * even students are bulk loaded, the odd students are inserted afterwards.
+ */
+public class VariableLengthBPlusTreeBulkLoadingTest {
+
+	public static final int TEST_DATA_NUMBER = 20000;
+
+	public static final Comparator<Student> NAME_COMPARATOR = new Comparator<Student>() {
+		public int compare(Student s1, Student s2) {
+			return s1.getName().compareTo(s2.getName());
+		}
+	};
+
+	private String path;
+	private List<Student> evenStudents;
+	private List<Student> oddStudents;
+	private CounterContainer counter;
+
+	@BeforeMethod
+	public void setUp() throws Exception {
+		File file = File.createTempFile("testVLBTreeBulk", "");
+		file.delete();
+		path = file.getPath();
+		evenStudents = new ArrayList<Student>(TEST_DATA_NUMBER / 2);
+		oddStudents = new ArrayList<Student>(TEST_DATA_NUMBER / 2);
+		for (int i = 0; i < TEST_DATA_NUMBER; i++) {
+			Student student = new Student("name_" + i, i, "info" + i);
+			if (i % 2 == 0)
+				evenStudents.add(student);
+			else
+				oddStudents.add(student);
+		}
+		Collections.sort(evenStudents, NAME_COMPARATOR);
+		Collections.shuffle(oddStudents, new Random(42));
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		counter.close();
+		for (String suffix : new String[] { ".ctr", ".flb", ".mtd", ".rbm", ".ubm" })
+			new File(path + suffix).delete();
+	}
+
+	private VariableLengthBPlusTree createTree(int blockSize, SplitStrategy strategy) {
+		VariableLengthBPlusTree tree = new VariableLengthBPlusTree(blockSize, 0.33, false);
+		counter = new CounterContainer(new ConverterContainer(
+				new BlockFileContainer(path, blockSize), tree.nodeConverter()));
+		tree.initialize(null, null, TestVariableLengthBPlusTree.getKeyFunction,
+				counter, TestVariableLengthBPlusTree.keyConverter,
+				TestVariableLengthBPlusTree.dataMeasuredConverter,
+				StringSeparator.FACTORY_FUNCTION, StringKeyRange.FACTORY_FUNCTION,
+				TestVariableLengthBPlusTree.getKeySize,
+				TestVariableLengthBPlusTree.getDataSize, strategy,
+				new StandardUnderflowHandler());
+		return tree;
+	}
+
+	private static void assertRange(VariableLengthBPlusTree tree, List<Student> sorted, int from, int to) {
+		Cursor cursor = tree.rangeQuery(sorted.get(from).getName(), sorted.get(to).getName());
+		for (int i = from; i <= to; i++) {
+			Assert.assertTrue(cursor.hasNext());
+			Assert.assertEquals(((Student) cursor.next()).getName(), sorted.get(i).getName());
+		}
+		Assert.assertFalse(cursor.hasNext());
+		cursor.close();
+	}
+
+	@DataProvider
+	public Object[][] parameters() {
+		return new Object[][] {
+				{ 1024, new ShortestKeyStrategy(), 1.0 },
+				{ 1024, new SimplePrefixBPlusTreeSplit(), 1.0 },
+				{ 4096, new SimplePrefixBPlusTreeSplit(), 0.7 },
+				{ 2048, new ShortestKeyStrategy(), 0.5 } };
+	}
+
+	@Test(dataProvider = "parameters")
+	public void bulkLoadQueryAndInsert(int blockSize, SplitStrategy strategy, double fillFactor) {
+		VariableLengthBPlusTree tree = createTree(blockSize, strategy);
+		new VariableLengthBPlusTreeBulkLoading(tree, evenStudents.iterator(), fillFactor);
+		// every node is reserved and written exactly once
+		Assert.assertTrue(counter.reserves > 1);
+		Assert.assertEquals(counter.updates, counter.reserves);
+		Assert.assertEquals(counter.inserts, 0);
+		Assert.assertEquals(counter.gets, 0);
+		for (Student student : evenStudents)
+			Assert.assertNotNull(tree.exactMatchQuery(student.getName()), student.getName());
+		Assert.assertNull(tree.exactMatchQuery(oddStudents.get(0).getName()));
+		assertRange(tree, evenStudents, 0, evenStudents.size() - 1);
+		assertRange(tree, evenStudents, 17, 4711);
+		// the bulk loaded tree supports ordinary insertions
+		for (Student student : oddStudents)
+			tree.insert(student);
+		List<Student> all = new ArrayList<Student>(evenStudents);
+		all.addAll(oddStudents);
+		Collections.sort(all, NAME_COMPARATOR);
+		for (Student student : all)
+			Assert.assertNotNull(tree.exactMatchQuery(student.getName()), student.getName());
+		assertRange(tree, all, 0, all.size() - 1);
+		for (Student student : evenStudents)
+			Assert.assertNotNull(tree.remove(student), student.getName());
+		assertRange(tree, sortedCopy(oddStudents), 0, oddStudents.size() - 1);
+	}
+
+	private static List<Student> sortedCopy(List<Student> students) {
+		List<Student> copy = new ArrayList<Student>(students);
+		Collections.sort(copy, NAME_COMPARATOR);
+		return copy;
+	}
+
+	@Test
+	public void fillFactorControlsNumberOfNodes() {
+		VariableLengthBPlusTree tree = createTree(2048, new SimplePrefixBPlusTreeSplit());
+		new VariableLengthBPlusTreeBulkLoading(tree, evenStudents.iterator(), 1.0);
+		int full = counter.reserves;
+		tearDown();
+		tree = createTree(2048, new SimplePrefixBPlusTreeSplit());
+		new VariableLengthBPlusTreeBulkLoading(tree, evenStudents.iterator(), 0.5);
+		Assert.assertTrue(counter.reserves > 1.8 * full, counter.reserves + " vs. " + full);
+	}
+
+	@Test
+	public void singleLeaf() {
+		VariableLengthBPlusTree tree = createTree(4096, new SimplePrefixBPlusTreeSplit());
+		new VariableLengthBPlusTreeBulkLoading(tree, evenStudents.subList(0, 3).iterator());
+		Assert.assertEquals(tree.height(), 1);
+		assertRange(tree, evenStudents, 0, 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void unsortedInput() {
+		VariableLengthBPlusTree tree = createTree(1024, new ShortestKeyStrategy());
+		new VariableLengthBPlusTreeBulkLoading(tree, oddStudents.iterator());
+	}
+}
@@ -0,0 +1,38 @@
+package xxl.core.indexStructures.indexBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.indexStructures.BPlusIndexedSet;
+import xxl.core.indexStructures.builder.Builders;
+
+public class BPlusIndexedSetBufferedUpdateTest {
+
+  final int MAX_ITEMS_TO_INSERT = 2000;
+  final String MY_TABLE_PRIMITIVE_NAME = "TableBufferedUpdate";
+
+  @Test
+  public void bufferedUpdateOfPrimitiveTable() {
+    BPlusIndexedSet<Long> set =
+        (BPlusIndexedSet<Long>) Builders.createBPlusTree.Long(MY_TABLE_PRIMITIVE_NAME)
+            .getBuilder().create();
+    for (long i = 0; i < MAX_ITEMS_TO_INSERT; ++i)
+      Assert.assertTrue(set.add(i));
+
+    List<Long> removals = new ArrayList<Long>();
+    List<Long> additions = new ArrayList<Long>();
+    for (long i = 0; i < 2 * MAX_ITEMS_TO_INSERT; i += 2) {
+      removals.add(i);
+      // every second addition already exists or has just been removed
+      additions.add(i + 1);
+    }
+    Assert.assertTrue(set.bufferedUpdate(removals, additions, 64));
+
+    Assert.assertEquals(set.size(), MAX_ITEMS_TO_INSERT);
+    for (long i = 0; i < 2 * MAX_ITEMS_TO_INSERT; ++i)
+      Assert.assertEquals(set.contains(i), i % 2 == 1, "item " + i);
+  }
+}
@@ -0,0 +1,147 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures.mtrees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.indexStructures.DistanceBrowser;
+import xxl.core.indexStructures.MTree;
+import xxl.core.indexStructures.SlimTree;
+import xxl.core.indexStructures.Sphere;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.io.converters.Converter;
+import xxl.core.spatial.LpMetric;
+import xxl.core.spatial.points.DoublePoint;
+
+/**
+ * Checks the nearest neighbor queries and the distance browsing of
+ * {@link MTree} and {@link SlimTree} against a scan over the data.
+ */
+public class MTreeDistanceBrowserTest {
+
+	public static final int DIMENSION = 4;
+	public static final int NUMBER_OF_POINTS = 3000;
+	public static final int NUMBER_OF_QUERIES = 20;
+	public static final int K = 10;
+
+	private List<DoublePoint> points;
+	private Random random;
+
+	private MTree fill(MTree mtree) {
+		random = new Random(42);
+		points = new ArrayList<DoublePoint>();
+		final Converter<DoublePoint> centerConverter = new ConvertableConverter<DoublePoint>(new AbstractFunction<Object, DoublePoint>() {
+			@Override
+			public DoublePoint invoke() {
+				return new DoublePoint(DIMENSION);
+			}
+		});
+		mtree.initialize(new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object point) {
+				return new Sphere(point, 0.0, centerConverter);
+			}
+		}, new MapContainer(), 10, 25);
+		for (int i = 0; i < NUMBER_OF_POINTS; i++) {
+			DoublePoint point = randomPoint();
+			points.add(point);
+			mtree.insert(point);
+		}
+		return mtree;
+	}
+
+	private DoublePoint randomPoint() {
+		double[] coordinates = new double[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++)
+			coordinates[i] = random.nextDouble();
+		return new DoublePoint(coordinates);
+	}
+
+	private void checkNearestNeighbors(MTree mtree) {
+		long distanceComputations = 0;
+		for (int q = 0; q < NUMBER_OF_QUERIES; q++) {
+			DoublePoint query = randomPoint();
+			double[] expected = new double[points.size()];
+			for (int i = 0; i < expected.length; i++)
+				expected[i] = LpMetric.EUCLIDEAN.distance(query, points.get(i));
+			Arrays.sort(expected);
+			DistanceBrowser browser = mtree.nearestNeighbors(query, LpMetric.EUCLIDEAN, K);
+			int count = 0;
+			while (browser.hasNext()) {
+				DoublePoint next = (DoublePoint)browser.next();
+				Assert.assertEquals(LpMetric.EUCLIDEAN.distance(query, next), expected[count], 1e-9);
+				Assert.assertEquals(browser.distance(), expected[count], 1e-9);
+				count++;
+			}
+			browser.close();
+			Assert.assertEquals(count, K);
+			distanceComputations += browser.distanceComputations();
+		}
+		Assert.assertTrue(distanceComputations < NUMBER_OF_QUERIES * NUMBER_OF_POINTS / 2, "too many distance computations: " + distanceComputations);
+	}
+
+	private void checkDistanceBrowsing(MTree mtree) {
+		DistanceBrowser browser = mtree.distanceBrowser(randomPoint(), LpMetric.EUCLIDEAN);
+		double last = 0;
+		int count = 0;
+		while (browser.hasNext()) {
+			browser.next();
+			Assert.assertTrue(browser.distance() >= last);
+			last = browser.distance();
+			count++;
+		}
+		browser.close();
+		Assert.assertEquals(count, NUMBER_OF_POINTS);
+	}
+
+	@Test
+	public void mtree() {
+		MTree mtree = fill(new MTree());
+		checkNearestNeighbors(mtree);
+		checkDistanceBrowsing(mtree);
+	}
+
+	@Test
+	public void slimTree() {
+		MTree slimTree = fill(new SlimTree());
+		checkNearestNeighbors(slimTree);
+		checkDistanceBrowsing(slimTree);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void foreignMetric() {
+		fill(new MTree()).nearestNeighbors(randomPoint(), LpMetric.MANHATTEN, K);
+	}
+}
@@ -0,0 +1,190 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures.mvbts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.MVBTree;
+import xxl.core.indexStructures.MVBTree.LeafEntry;
+import xxl.core.indexStructures.MVBTree.Lifespan;
+import xxl.core.indexStructures.descriptors.LongMVRegion;
+import xxl.core.indexStructures.descriptors.LongMVSeparator;
+import xxl.core.indexStructures.descriptors.LongVersion;
+import xxl.core.io.converters.Converters;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.MeasuredConverter;
+
+/**
+ * Tests the version range queries and the snapshots of {@link MVBTree}. A
+ * random workload of insertions and deletions is applied to the tree and
+ * the life intervals of all records are recorded. The query results are
+ * compared with the recorded history.
+ */
+public class MVBTreeVersionRangeTest {
+
+	public static final int BLOCK_SIZE = 512;
+	public static final int KEY_DOMAIN = 3000;
+	public static final int OPERATIONS = 12000;
+
+	/**
+	 * A record of the history: key, insertion version and deletion version
+	 * (<tt>-1</tt> while the record is alive).
+	 */
+	private List<long[]> history;
+	private MVBTree tree;
+	private long lastVersion;
+
+	@BeforeClass
+	public void setUp() {
+		tree = new MVBTree(BLOCK_SIZE, 0.25f, 0.5f, Long.MIN_VALUE);
+		Function<Object, Object> getKey = new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object argument) {
+				return argument;
+			}
+		};
+		MeasuredConverter<Long> converter = Converters.createMeasuredConverter(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(null, null, null, null,
+			getKey,
+			new ConverterContainer(new MapContainer(), tree.rootsTree().nodeConverter()),
+			new ConverterContainer(new MapContainer(), tree.nodeConverter()),
+			LongVersion.VERSION_MEASURED_CONVERTER,
+			converter,
+			converter,
+			LongMVSeparator.FACTORY_FUNCTION,
+			LongMVRegion.FACTORY_FUNCTION
+		);
+		history = new ArrayList<long[]>();
+		Map<Long, long[]> alive = new HashMap<Long, long[]>();
+		List<Long> aliveKeys = new ArrayList<Long>();
+		Random random = new Random(42);
+		long version = 1;
+		for (int i = 0; i < OPERATIONS; i++, version++) {
+			if (aliveKeys.size() < 200 || random.nextInt(100) < 55) {
+				Long key = (long)random.nextInt(KEY_DOMAIN);
+				if (alive.containsKey(key))
+					continue;
+				tree.insert(new LongVersion(version), key);
+				long[] record = new long[]{key, version, -1};
+				history.add(record);
+				alive.put(key, record);
+				aliveKeys.add(key);
+			}
+			else {
+				Long key = aliveKeys.remove(random.nextInt(aliveKeys.size()));
+				tree.remove(new LongVersion(version), key);
+				alive.remove(key)[2] = version;
+			}
+		}
+		lastVersion = version;
+	}
+
+	private static long version(Object version) {
+		return ((LongVersion)version).getTimeStamp();
+	}
+
+	@Test
+	public void versionRangeQuery() {
+		Assert.assertNotNull(tree.rootsTree().rootEntry(), "the workload does not create historical roots");
+		Random random = new Random(7);
+		for (int i = 0; i < 40; i++) {
+			long begin = 1 + random.nextInt((int)lastVersion);
+			long end = Math.min(lastVersion, begin + random.nextInt(i % 2 == 0 ? 50 : 3000));
+			long min = random.nextInt(KEY_DOMAIN);
+			long max = min + random.nextInt(KEY_DOMAIN / 3);
+			Map<String, long[]> expected = new HashMap<String, long[]>();
+			for (long[] record : history)
+				if (record[0] >= min && record[0] <= max && record[1] <= end && (record[2] == -1 || record[2] > begin))
+					expected.put(record[0] + "@" + record[1], record);
+			Set<String> reported = new HashSet<String>();
+			MVBTree.VersionRangeCursor cursor = tree.versionRangeQuery(min, max, new LongVersion(begin), new LongVersion(end));
+			while (cursor.hasNext()) {
+				LeafEntry entry = (LeafEntry)cursor.next();
+				Lifespan lifespan = entry.getLifespan();
+				String id = entry.data() + "@" + version(lifespan.beginVersion());
+				Assert.assertTrue(reported.add(id), "duplicate " + entry);
+				long[] record = expected.get(id);
+				Assert.assertNotNull(record, "unexpected " + entry);
+				if (record[2] != -1 && record[2] <= end)
+					Assert.assertEquals(version(lifespan.endVersion()), record[2], "end version of " + entry);
+			}
+			cursor.close();
+			Assert.assertEquals(reported, expected.keySet());
+		}
+	}
+
+	@Test
+	public void snapshot() {
+		Random random = new Random(11);
+		for (int i = 0; i < 30; i++) {
+			long version = 1 + random.nextInt((int)lastVersion);
+			TreeSet<Long> expected = new TreeSet<Long>();
+			for (long[] record : history)
+				if (record[1] <= version && (record[2] == -1 || record[2] > version))
+					expected.add(record[0]);
+			MVBTree.Snapshot snapshot = tree.snapshot(new LongVersion(version));
+			List<Object> all = new ArrayList<Object>();
+			Cursor cursor = snapshot.rangeQuery(Long.MIN_VALUE, Long.MAX_VALUE);
+			while (cursor.hasNext())
+				all.add(((LeafEntry)cursor.next()).data());
+			cursor.close();
+			Assert.assertEquals(all, new ArrayList<Object>(expected));
+			long min = random.nextInt(KEY_DOMAIN);
+			long max = min + random.nextInt(KEY_DOMAIN / 5);
+			List<Object> range = new ArrayList<Object>();
+			cursor = snapshot.rangeQuery(min, max);
+			while (cursor.hasNext())
+				range.add(((LeafEntry)cursor.next()).data());
+			cursor.close();
+			Assert.assertEquals(range, new ArrayList<Object>(expected.subSet(min, true, max, true)));
+			int accesses = snapshot.nodeAccesses();
+			for (long key = min; key <= max; key++) {
+				LeafEntry entry = snapshot.exactMatchQuery(key);
+				Assert.assertEquals(entry != null, expected.contains(key));
+				if (entry != null)
+					Assert.assertEquals(entry.data(), key);
+			}
+			Assert.assertEquals(snapshot.nodeAccesses() - accesses, max - min + 1, "upper levels are read again");
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures.rtrees;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.Functional.UnaryFunction;
+import xxl.core.functions.Identity;
+import xxl.core.indexStructures.RTree;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.io.converters.Converter;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+import xxl.core.spatial.rectangles.Rectangles;
+
+/**
+ * Compares the sequential and the parallel mode of {@link STRBulkLoader} and
+ * {@link TGSBulkLoader}. Both modes have to produce R-trees that answer
+ * window queries exactly like a scan over the data.
+ */
+public class ParallelBulkLoadingTest {
+
+	public static final int DIMENSION = 2;
+	public static final int BLOCK_SIZE = 1024;
+	public static final int DATA_SIZE = DIMENSION * 2 * 8;
+	public static final int NUMBER_OF_RECTANGLES = 20000;
+	public static final int PARALLELISM = 4;
+
+	private File directory;
+	private List<DoublePointRectangle> rectangles;
+	private Converter<DoublePointRectangle> converter;
+	private UnaryFunction<DoublePointRectangle, DoublePointRectangle> identity;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		directory = File.createTempFile("parallelBulkLoading", "");
+		directory.delete();
+		directory.mkdir();
+		converter = new ConvertableConverter<DoublePointRectangle>(Rectangles.factoryFunctionDoublePointRectangle(DIMENSION));
+		identity = new UnaryFunction<DoublePointRectangle, DoublePointRectangle>() {
+			@Override
+			public DoublePointRectangle invoke(DoublePointRectangle arg) {
+				return arg;
+			}
+		};
+		rectangles = randomRectangles(NUMBER_OF_RECTANGLES, 42);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+	private static List<DoublePointRectangle> randomRectangles(int number, long seed) {
+		Random random = new Random(seed);
+		List<DoublePointRectangle> list = new ArrayList<DoublePointRectangle>(number);
+		for (int i = 0; i < number; i++) {
+			double x = random.nextDouble() * 0.99;
+			double y = random.nextDouble() * 0.99;
+			list.add(new DoublePointRectangle(
+				new double[] {x, y},
+				new double[] {x + random.nextDouble() * 0.01, y + random.nextDouble() * 0.01}
+			));
+		}
+		return list;
+	}
+
+	private RTree createRTree(String name) {
+		RTree rtree = new RTree();
+		Container container = new ConverterContainer(
+			new BlockFileContainer(new File(directory, name).getPath(), BLOCK_SIZE),
+			rtree.nodeConverter(converter, DIMENSION)
+		);
+		rtree.initialize(null, new Identity<DoublePointRectangle>(), container, BLOCK_SIZE, DATA_SIZE, DATA_SIZE, 0.33);
+		return rtree;
+	}
+
+	private RTree loadSTR(String name, int parallelism) throws IOException {
+		RTree rtree = createRTree(name);
+		STRBulkLoader<DoublePointRectangle> loader = new STRBulkLoader<DoublePointRectangle>(
+			rtree, new File(directory, name + "str").getPath(), DIMENSION, BLOCK_SIZE, 0.33, 0.8, new int[] {0, 1});
+		loader.init(rectangles.size(), 1024 * 1024, DATA_SIZE, converter, identity);
+		if (parallelism > 1)
+			loader.parallelize(parallelism);
+		loader.buildRTree(rectangles.iterator());
+		return rtree;
+	}
+
+	private RTree loadTGS(String name, ExecutorService executor) throws IOException {
+		RTree rtree = createRTree(name);
+		TGSBulkLoader<DoublePointRectangle> loader = new TGSBulkLoader<DoublePointRectangle>(
+			rtree, new File(directory, name + "tgs").getPath(), DIMENSION, BLOCK_SIZE, 0.33, 0.8,
+			Rectangles.getUnitUniverseDoublePointRectangle(DIMENSION));
+		loader.init(rectangles.size(), 1024 * 1024, DATA_SIZE, converter, identity);
+		if (executor != null)
+			loader.parallelize(executor, PARALLELISM);
+		loader.buildRTree(new ArrayList<DoublePointRectangle>(rectangles).iterator());
+		return rtree;
+	}
+
+	private static int count(Cursor cursor) {
+		int count = 0;
+		while (cursor.hasNext()) {
+			cursor.next();
+			count++;
+		}
+		cursor.close();
+		return count;
+	}
+
+	private void checkQueries(RTree rtree) {
+		Assert.assertEquals(count(rtree.query(Rectangles.getUnitUniverseDoublePointRectangle(DIMENSION))), NUMBER_OF_RECTANGLES);
+		Random random = new Random(7);
+		for (int i = 0; i < 50; i++) {
+			double x = random.nextDouble() * 0.9;
+			double y = random.nextDouble() * 0.9;
+			DoublePointRectangle window = new DoublePointRectangle(new double[] {x, y}, new double[] {x + 0.1, y + 0.1});
+			int expected = 0;
+			for (DoublePointRectangle rectangle : rectangles)
+				if (rectangle.overlaps(window))
+					expected++;
+			Assert.assertEquals(count(rtree.query(window)), expected);
+		}
+	}
+
+	@Test
+	public void parallelSTR() throws IOException {
+		RTree sequential = loadSTR("sequential", 1);
+		RTree parallel = loadSTR("parallel", PARALLELISM);
+		checkQueries(sequential);
+		checkQueries(parallel);
+		Assert.assertEquals(parallel.height(), sequential.height());
+	}
+
+	@Test
+	public void parallelTGS() throws IOException {
+		RTree sequential = loadTGS("sequential", null);
+		ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM);
+		try {
+			RTree parallel = loadTGS("parallel", executor);
+			checkQueries(sequential);
+			checkQueries(parallel);
+			Assert.assertEquals(parallel.height(), sequential.height());
+			Assert.assertEquals(((Container) parallel.determineContainer.invoke()).size(), ((Container) sequential.determineContainer.invoke()).size());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.indexStructures.rtrees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.indexStructures.DistanceBrowser;
+import xxl.core.indexStructures.RTree;
+import xxl.core.spatial.LpMetric;
+import xxl.core.spatial.points.DoublePoint;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * Checks the nearest neighbor queries and the distance browsing of
+ * {@link RTree} against a scan over the data.
+ */
+public class RTreeDistanceBrowserTest {
+
+	public static final int DIMENSION = 2;
+	public static final int NUMBER_OF_POINTS = 5000;
+	public static final int NUMBER_OF_QUERIES = 20;
+	public static final int K = 10;
+
+	private List<DoublePoint> points;
+	private RTree rtree;
+	private MapContainer container;
+	private Random random;
+
+	@BeforeMethod
+	public void setUp() {
+		random = new Random(42);
+		points = new ArrayList<DoublePoint>();
+		container = new MapContainer();
+		rtree = new RTree();
+		rtree.initialize(new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object point) {
+				return new DoublePointRectangle((DoublePoint)point, (DoublePoint)point);
+			}
+		}, container, 10, 25);
+		for (int i = 0; i < NUMBER_OF_POINTS; i++) {
+			DoublePoint point = randomPoint();
+			points.add(point);
+			rtree.insert(point);
+		}
+	}
+
+	private DoublePoint randomPoint() {
+		double[] coordinates = new double[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++)
+			coordinates[i] = random.nextDouble();
+		return new DoublePoint(coordinates);
+	}
+
+	private double[] sortedDistances(DoublePoint query, LpMetric metric) {
+		double[] distances = new double[points.size()];
+		for (int i = 0; i < distances.length; i++)
+			distances[i] = metric.distance(query, points.get(i));
+		Arrays.sort(distances);
+		return distances;
+	}
+
+	@Test
+	public void nearestNeighbors() {
+		for (LpMetric metric : new LpMetric[] {LpMetric.MANHATTEN, LpMetric.EUCLIDEAN, LpMetric.MAXIMUM, new LpMetric(3)})
+			for (int q = 0; q < NUMBER_OF_QUERIES; q++) {
+				DoublePoint query = randomPoint();
+				double[] expected = sortedDistances(query, metric);
+				DistanceBrowser browser = rtree.nearestNeighbors(query, metric, K);
+				int count = 0;
+				while (browser.hasNext()) {
+					DoublePoint next = (DoublePoint)browser.next();
+					Assert.assertEquals(metric.distance(query, next), expected[count], 1e-9);
+					Assert.assertEquals(browser.distance(), expected[count], 1e-9);
+					count++;
+				}
+				browser.close();
+				Assert.assertEquals(count, K);
+				Assert.assertTrue(browser.nodeAccesses() < container.size() / 10, "too many node accesses: " + browser.nodeAccesses());
+			}
+	}
+
+	@Test
+	public void distanceBrowsing() {
+		DoublePoint query = randomPoint();
+		double[] expected = sortedDistances(query, LpMetric.EUCLIDEAN);
+		DistanceBrowser browser = rtree.distanceBrowser(query, LpMetric.EUCLIDEAN);
+		int count = 0;
+		while (browser.hasNext()) {
+			browser.next();
+			Assert.assertEquals(browser.distance(), expected[count++], 1e-9);
+			if (count == K)
+				Assert.assertTrue(browser.nodeAccesses() < container.size() / 10);
+		}
+		browser.close();
+		Assert.assertEquals(count, NUMBER_OF_POINTS);
+		Assert.assertEquals(browser.nodeAccesses(), container.size());
+	}
+
+	@Test
+	public void minMaxDistancePruning() {
+		DoublePoint query = randomPoint();
+		DistanceBrowser limited = rtree.nearestNeighbors(query, LpMetric.EUCLIDEAN, 1);
+		Assert.assertTrue(limited.hasNext());
+		limited.next();
+		Assert.assertFalse(limited.hasNext());
+		Assert.assertTrue(limited.prunedEntries() > 0);
+
+		DistanceBrowser unlimited = rtree.distanceBrowser(query, LpMetric.EUCLIDEAN);
+		unlimited.next();
+		Assert.assertEquals(unlimited.distance(), limited.distance());
+		Assert.assertTrue(limited.nodeAccesses() <= unlimited.nodeAccesses());
+		unlimited.close();
+		limited.close();
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalidK() {
+		rtree.nearestNeighbors(randomPoint(), LpMetric.EUCLIDEAN, 0);
+	}
+}
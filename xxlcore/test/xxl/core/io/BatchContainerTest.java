@@ -0,0 +1,208 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.collections.containers.io.ChannelBlockFileContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.collections.containers.io.MultiBlockContainer;
+import xxl.core.io.converters.IntegerConverter;
+
+/**
+ * This is a unit test for the batch operations <tt>getAll</tt>,
+ * <tt>updateAll</tt> and <tt>removeAll</tt> of the file based containers.
+ * The results of the batch operations are compared to the results of the
+ * corresponding single operations.
+ */
+public class BatchContainerTest {
+
+	public static final int BLOCK_SIZE = 32;
+
+	@DataProvider(name = "blockContainers")
+	public Object[][] blockContainers() throws IOException {
+		return new Object[][] {
+			{new BlockFileContainer(ContainerFixtures.prefix("batchBFC"), BLOCK_SIZE), BLOCK_SIZE},
+			{new ChannelBlockFileContainer(ContainerFixtures.prefix("batchCBFC"), BLOCK_SIZE), BLOCK_SIZE},
+			{new MultiBlockContainer(ContainerFixtures.prefix("batchMBC"), BLOCK_SIZE), 3*BLOCK_SIZE+5},
+		};
+	}
+
+	@Test(dataProvider = "blockContainers")
+	public void batchBlocks(Container container, int size) {
+		Random random = new Random(42);
+		List<Object> ids = new ArrayList<Object>();
+		List<Integer> values = new ArrayList<Integer>();
+
+		for (int i = 0; i < 200; i++) {
+			ids.add(container.insert(ContainerFixtures.block(i, size)));
+			values.add(i);
+		}
+		// remove some blocks to get gaps between the runs
+		for (int i = 0; i < 40; i++) {
+			int index = random.nextInt(ids.size());
+			container.remove(ids.remove(index));
+			values.remove(index);
+		}
+
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < ids.size(); i++)
+			order.add(i);
+		Collections.shuffle(order, random);
+		order.add(order.get(0)); // duplicate identifier
+
+		List<Object> requested = new ArrayList<Object>();
+		for (int i : order)
+			requested.add(ids.get(i));
+		Iterator<?> blocks = container.getAll(requested.iterator(), true);
+		for (int i : order)
+			ContainerFixtures.assertBlock(blocks.next(), values.get(i), size);
+		Assert.assertFalse(blocks.hasNext());
+
+		List<Object> updates = new ArrayList<Object>();
+		for (int i : order) {
+			values.set(i, values.get(i)+1000);
+			updates.add(ContainerFixtures.block(values.get(i), size));
+		}
+		container.updateAll(requested.iterator(), updates.iterator(), true);
+		for (int i = 0; i < ids.size(); i++)
+			ContainerFixtures.assertBlock(container.get(ids.get(i)), values.get(i), size);
+
+		container.removeAll(ids.subList(0, ids.size()/2).iterator());
+		for (int i = 0; i < ids.size(); i++)
+			Assert.assertEquals(container.contains(ids.get(i)), i >= ids.size()/2);
+		Assert.assertEquals(container.size(), ids.size()-ids.size()/2);
+
+		container.close();
+		if (container instanceof MultiBlockContainer)
+			((MultiBlockContainer)container).delete();
+		else
+			((BlockFileContainer)container).delete();
+	}
+
+	@DataProvider(name = "fileContainers")
+	public Object[][] fileContainers() throws IOException {
+		return new Object[][] {
+			{new BlockFileContainer(ContainerFixtures.prefix("failedBFC"), BLOCK_SIZE)},
+			{new ChannelBlockFileContainer(ContainerFixtures.prefix("failedCBFC"), BLOCK_SIZE)},
+		};
+	}
+
+	@Test(dataProvider = "fileContainers")
+	public void failedUpdateAll(BlockFileContainer container) {
+		// reserved blocks are contained only after they have been written
+		List<Object> ids = new ArrayList<Object>();
+		List<Object> updates = new ArrayList<Object>();
+		for (int i = 0; i < 4; i++) {
+			ids.add(container.reserve(null));
+			updates.add(ContainerFixtures.block(i, BLOCK_SIZE));
+		}
+		Object missing = container.insert(ContainerFixtures.block(-1, BLOCK_SIZE));
+		container.remove(missing);
+
+		List<Object> batch = new ArrayList<Object>(ids);
+		batch.add(missing);
+		List<Object> blocks = new ArrayList<Object>(updates);
+		blocks.add(ContainerFixtures.block(4, BLOCK_SIZE));
+		try {
+			container.updateAll(batch.iterator(), blocks.iterator(), true);
+			Assert.fail("missing block was not detected");
+		}
+		catch (NoSuchElementException expected) {
+		}
+		for (Object id : ids)
+			Assert.assertFalse(container.contains(id));
+
+		blocks = new ArrayList<Object>(updates);
+		blocks.set(3, new Block(new byte[BLOCK_SIZE+1]));
+		try {
+			container.updateAll(ids.iterator(), blocks.iterator(), true);
+			Assert.fail("oversized block was not rejected");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		for (Object id : ids)
+			Assert.assertFalse(container.contains(id));
+
+		container.updateAll(ids.iterator(), updates.iterator(), true);
+		for (int i = 0; i < ids.size(); i++)
+			ContainerFixtures.assertBlock(container.get(ids.get(i)), i, BLOCK_SIZE);
+
+		container.close();
+		container.delete();
+	}
+
+	@Test
+	public void batchBufferedConverter() throws IOException {
+		BlockFileContainer file = new BlockFileContainer(ContainerFixtures.prefix("batchBuffered"), BLOCK_SIZE);
+		Container container = new BufferedContainer(
+			new ConverterContainer(file, IntegerConverter.DEFAULT_INSTANCE),
+			new LRUBuffer(16)
+		);
+		List<Object> ids = new ArrayList<Object>();
+
+		for (int i = 0; i < 100; i++)
+			ids.add(container.insert(i));
+		container.flush();
+
+		List<Object> reversed = new ArrayList<Object>(ids);
+		Collections.reverse(reversed);
+		Iterator<?> objects = container.getAll(reversed.iterator(), true);
+		for (int i = 99; i >= 0; i--)
+			Assert.assertEquals(objects.next(), i);
+
+		List<Object> updates = new ArrayList<Object>();
+		for (int i = 0; i < 100; i++)
+			updates.add(-i);
+		container.updateAll(ids.iterator(), updates.iterator(), true);
+		container.flush();
+		Assert.assertEquals(container.get(ids.get(0)), 0);
+		Assert.assertEquals(container.get(ids.get(50)), -50);
+		Assert.assertEquals(container.get(ids.get(99)), -99);
+		for (int i = 0; i < 100; i++)
+			Assert.assertEquals(IntegerConverter.DEFAULT_INSTANCE.readInt(((Block)file.get(ids.get(i))).dataInputStream()), -i);
+
+		container.removeAll(ids.subList(0, 10).iterator());
+		Assert.assertEquals(container.size(), 90);
+		Assert.assertEquals(file.size(), 90);
+
+		container.close();
+		file.delete();
+	}
+}
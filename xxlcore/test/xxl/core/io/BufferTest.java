@@ -0,0 +1,152 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * This is a unit test for the displacement strategies of the buffers. It
+ * checks that every buffer returns the objects it is asked for, flushes
+ * every dirty object exactly once before displacing it, and that the
+ * scan-resistant strategies keep a frequently accessed working set when a
+ * long scan runs through the buffer.
+ */
+public class BufferTest {
+
+	public static final int CAPACITY = 64;
+
+	@DataProvider(name = "buffers")
+	public Object[][] buffers() {
+		return new Object[][] {
+			{new LRUBuffer<String, Integer, Integer>(CAPACITY)},
+			{new TwoQueueBuffer<String, Integer, Integer>(CAPACITY)},
+			{new LRUKBuffer<String, Integer, Integer>(CAPACITY)},
+			{new ClockProBuffer<String, Integer, Integer>(CAPACITY)}
+		};
+	}
+
+	@DataProvider(name = "scanResistantBuffers")
+	public Object[][] scanResistantBuffers() {
+		return new Object[][] {
+			{new TwoQueueBuffer<String, Integer, Integer>(CAPACITY)},
+			{new LRUKBuffer<String, Integer, Integer>(CAPACITY)},
+			{new ClockProBuffer<String, Integer, Integer>(CAPACITY)}
+		};
+	}
+
+	@Test(dataProvider = "buffers")
+	public void testRandomAccess(Buffer<String, Integer, Integer> buffer) {
+		final Map<Integer, Integer> store = new HashMap<Integer, Integer>();
+		final Map<Integer, Integer> dirty = new HashMap<Integer, Integer>();
+		Function<Object, Object> flush = new AbstractFunction<Object, Object>() {
+			public Object invoke(Object id, Object object) {
+				Assert.assertEquals(object, dirty.remove(id));
+				store.put((Integer)id, (Integer)object);
+				return null;
+			}
+		};
+		Function<Integer, Integer> obtain = new AbstractFunction<Integer, Integer>() {
+			public Integer invoke(Integer id) {
+				Integer object = store.get(id);
+				return object == null ? Integer.valueOf(-1) : object;
+			}
+		};
+		Random random = new Random(42);
+		
+		for (int i = 0; i < 20000; i++) {
+			Integer id = (int)Math.abs(random.nextGaussian()*CAPACITY);
+			if (random.nextInt(4) == 0) {
+				buffer.update("owner", id, i, flush, true);
+				dirty.put(id, i);
+			}
+			else {
+				Integer expected = dirty.containsKey(id) ? dirty.get(id) : store.containsKey(id) ? store.get(id) : Integer.valueOf(-1);
+				Assert.assertEquals(buffer.get("owner", id, obtain, true), expected);
+			}
+			if (random.nextInt(500) == 0) {
+				id = random.nextInt(CAPACITY);
+				buffer.remove("owner", id);
+				dirty.remove(id);
+			}
+			Assert.assertTrue(buffer.size() <= CAPACITY);
+			Assert.assertEquals(buffer.fixedSlots(), 0);
+		}
+		Assert.assertEquals(buffer.hits()+buffer.misses(), 20000);
+		Assert.assertTrue(buffer.evictions() > 0);
+	}
+
+	@Test(dataProvider = "buffers")
+	public void testFixedSlotsAreNotDisplaced(Buffer<String, Integer, Integer> buffer) {
+		Function<Integer, Integer> obtain = new AbstractFunction<Integer, Integer>() {
+			public Integer invoke(Integer id) {
+				return id;
+			}
+		};
+		for (int i = 0; i < CAPACITY/2; i++)
+			buffer.get("owner", i, obtain, false);
+		for (int i = CAPACITY; i < 10*CAPACITY; i++)
+			buffer.get("owner", i, obtain, true);
+		for (int i = 0; i < CAPACITY/2; i++) {
+			Assert.assertTrue(buffer.isFixed("owner", i));
+			buffer.unfix("owner", i);
+		}
+		Assert.assertEquals(buffer.fixedSlots(), 0);
+	}
+
+	@Test(dataProvider = "scanResistantBuffers")
+	public void testScanResistance(Buffer<String, Integer, Integer> buffer) {
+		Function<Integer, Integer> obtain = new AbstractFunction<Integer, Integer>() {
+			public Integer invoke(Integer id) {
+				return id;
+			}
+		};
+		int hot = CAPACITY/2, next = CAPACITY;
+		
+		// establish the working set while objects are accessed only once
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < hot; i++)
+				buffer.get("owner", i, obtain, true);
+			for (int i = 0; i < CAPACITY/4; i++)
+				buffer.get("owner", next++, obtain, true);
+		}
+		// scan through a large number of objects that are accessed only once
+		for (int i = 0; i < 100*CAPACITY; i++)
+			buffer.get("owner", next++, obtain, true);
+		buffer.resetCounters();
+		for (int i = 0; i < hot; i++)
+			buffer.get("owner", i, obtain, true);
+		Assert.assertTrue(buffer.hitRatio() >= 0.5, "hit ratio after scan: "+buffer.hitRatio());
+	}
+}
@@ -0,0 +1,307 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.io.ChannelBlockFileContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.indexStructures.ORTree;
+import xxl.core.indexStructures.RTree;
+import xxl.core.indexStructures.Tree;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.DoubleArrayConverter;
+import xxl.core.io.converters.FloatArrayConverter;
+import xxl.core.io.converters.IntegerArrayConverter;
+import xxl.core.io.converters.LongArrayConverter;
+import xxl.core.io.converters.ShortArrayConverter;
+import xxl.core.spatial.points.DoublePoint;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * This is a unit test for the bulk reads and writes of primitive arrays by
+ * {@link ByteBufferInput} and {@link ByteBufferOutput}. The bytes written
+ * with bulk copies have to be identical to the bytes written by a
+ * <tt>DataOutputStream</tt>, so the array converters produce the same
+ * format on both paths.
+ */
+public class BulkDataTest {
+
+	@SuppressWarnings("unchecked")
+	public static final Converter<DoublePointRectangle> RECTANGLE_CONVERTER = new ConvertableConverter<DoublePointRectangle>(new AbstractFunction<Object, DoublePointRectangle>() {
+		@Override
+		public DoublePointRectangle invoke() {
+			return new DoublePointRectangle(3);
+		}
+	});
+
+	@DataProvider(name = "arrays")
+	public Object[][] arrays() {
+		Random random = new Random(42);
+		short[] shorts = new short[257];
+		int[] ints = new int[257];
+		long[] longs = new long[257];
+		float[] floats = new float[257];
+		double[] doubles = new double[257];
+		for (int i = 0; i < 257; i++) {
+			shorts[i] = (short)random.nextInt();
+			ints[i] = random.nextInt();
+			longs[i] = random.nextLong();
+			floats[i] = random.nextFloat();
+			doubles[i] = random.nextGaussian();
+		}
+		return new Object[][] {
+			{ShortArrayConverter.DEFAULT_INSTANCE, shorts},
+			{IntegerArrayConverter.DEFAULT_INSTANCE, ints},
+			{LongArrayConverter.DEFAULT_INSTANCE, longs},
+			{FloatArrayConverter.DEFAULT_INSTANCE, floats},
+			{DoubleArrayConverter.DEFAULT_INSTANCE, doubles},
+			{ShortArrayConverter.DEFAULT_INSTANCE, Arrays.copyOf(shorts, 5)},
+			{IntegerArrayConverter.DEFAULT_INSTANCE, Arrays.copyOf(ints, 5)},
+			{LongArrayConverter.DEFAULT_INSTANCE, Arrays.copyOf(longs, 5)},
+			{FloatArrayConverter.DEFAULT_INSTANCE, Arrays.copyOf(floats, 5)},
+			{DoubleArrayConverter.DEFAULT_INSTANCE, Arrays.copyOf(doubles, 5)},
+			{RECTANGLE_CONVERTER, new DoublePointRectangle(new double[] {1, 2, 3}, new double[] {4, 5, 6})},
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test(dataProvider = "arrays")
+	public void format(Converter converter, Object array) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream stream = new DataOutputStream(bytes);
+		stream.writeByte(7); // unaligned start
+		converter.write(stream, array);
+		stream.flush();
+		byte[] expected = bytes.toByteArray();
+
+		for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(expected.length), ByteBuffer.allocateDirect(expected.length)}) {
+			ByteBufferOutput output = new ByteBufferOutput(buffer);
+			output.writeByte(7);
+			converter.write(output, array);
+			Assert.assertFalse(buffer.hasRemaining());
+			byte[] written = new byte[expected.length];
+			buffer.flip();
+			buffer.get(written);
+			Assert.assertEquals(written, expected);
+
+			buffer.rewind();
+			ByteBufferInput input = new ByteBufferInput(buffer);
+			Assert.assertEquals(input.readByte(), 7);
+			Object read = converter.read(input, null);
+			Assert.assertFalse(buffer.hasRemaining());
+			assertArray(read, array);
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(expected));
+		in.readByte();
+		assertArray(converter.read(in, null), array);
+	}
+
+	private static void assertArray(Object actual, Object expected) {
+		if (expected instanceof short[])
+			Assert.assertTrue(Arrays.equals((short[])actual, (short[])expected));
+		else if (expected instanceof int[])
+			Assert.assertTrue(Arrays.equals((int[])actual, (int[])expected));
+		else if (expected instanceof long[])
+			Assert.assertTrue(Arrays.equals((long[])actual, (long[])expected));
+		else if (expected instanceof float[])
+			Assert.assertTrue(Arrays.equals((float[])actual, (float[])expected));
+		else if (expected instanceof double[])
+			Assert.assertTrue(Arrays.equals((double[])actual, (double[])expected));
+		else
+			Assert.assertEquals(actual, expected);
+	}
+
+	@Test
+	public void bounds() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(20);
+		ByteBufferOutput output = new ByteBufferOutput(buffer);
+		output.writeInt(1);
+		try {
+			output.writeLongs(new long[3], 0, 3);
+			Assert.fail();
+		}
+		catch (BufferOverflowException boe) {
+			Assert.assertEquals(buffer.position(), 4);
+		}
+		try {
+			output.writeLongs(new long[ByteBufferInput.BULK_THRESHOLD], 0, ByteBufferInput.BULK_THRESHOLD);
+			Assert.fail();
+		}
+		catch (BufferOverflowException boe) {
+			Assert.assertEquals(buffer.position(), 4);
+		}
+		output.writeLongs(new long[] {-1, 2, 3}, 1, 2);
+		Assert.assertEquals(buffer.position(), 20);
+
+		buffer.flip();
+		ByteBufferInput input = new ByteBufferInput(buffer);
+		long[] longs = new long[4];
+		try {
+			input.readLongs(longs, 0, 3);
+			Assert.fail();
+		}
+		catch (EOFException ee) {
+			Assert.assertEquals(buffer.position(), 0);
+		}
+		try {
+			input.readLongs(longs, 3, 2);
+			Assert.fail();
+		}
+		catch (IndexOutOfBoundsException ioobe) {
+			Assert.assertEquals(buffer.position(), 0);
+		}
+		Assert.assertEquals(input.readInt(), 1);
+		input.readLongs(longs, 1, 2);
+		Assert.assertTrue(Arrays.equals(longs, new long[] {0, 2, 3, 0}));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void rTree() throws IOException {
+		File file = File.createTempFile("bulkRTree", "");
+		file.delete();
+		file.deleteOnExit();
+		ChannelBlockFileContainer container = new ChannelBlockFileContainer(file.getPath(), 4096);
+		RTree tree = new RTree();
+		Converter pointConverter = new ConvertableConverter(new AbstractFunction() {
+			@Override
+			public Object invoke() {
+				return new DoublePoint(2);
+			}
+		});
+		tree.initialize(new AbstractFunction() {
+			@Override
+			public Object invoke(Object point) {
+				return new DoublePointRectangle((DoublePoint)point, (DoublePoint)point);
+			}
+		}, new ConverterContainer(container, tree.nodeConverter(pointConverter, 2)), 10, 25);
+
+		Random random = new Random(42);
+		List<DoublePoint> points = new ArrayList<DoublePoint>();
+		for (int i = 0; i < 3000; i++) {
+			DoublePoint point = new DoublePoint(new double[] {random.nextDouble(), random.nextDouble()});
+			points.add(point);
+			tree.insert(point);
+		}
+
+		DoublePointRectangle query = new DoublePointRectangle(new double[] {0.2, 0.3}, new double[] {0.5, 0.4});
+		int expected = 0;
+		for (DoublePoint point : points)
+			if (query.contains(point))
+				expected++;
+		int found = 0;
+		for (Cursor cursor = tree.query(query); cursor.hasNext(); found++)
+			Assert.assertTrue(query.contains((DoublePoint)cursor.next()));
+		Assert.assertEquals(found, expected);
+		container.close();
+		container.delete();
+	}
+
+	private static long allocatedBytes(Converter converter, byte[] page, ByteBufferInput input, int rounds) throws IOException {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			throw new SkipException("allocation counting is not supported");
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+		if (!threads.isThreadAllocatedMemorySupported())
+			throw new SkipException("allocation counting is not supported");
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long id = Thread.currentThread().getId();
+		int entries = 0;
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int round = 0; round < rounds; round++) {
+			if (input != null)
+				input.buffer().clear();
+			Object node = converter.read(input != null ? input : new DataInputStream(new ByteArrayInputStream(page)), null);
+			entries += ((Tree.Node)node).number();
+		}
+		long after = threads.getThreadAllocatedBytes(id);
+		Assert.assertTrue(entries > 0);
+		return after-before;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void rTreeNodeAllocation() throws IOException {
+		// the rectangles of an index node are read by two short bulk reads
+		// per entry, which must not allocate more than reading the node
+		// element by element from a stream
+		RTree tree = new RTree();
+		Converter pointConverter = new ConvertableConverter(new AbstractFunction() {
+			@Override
+			public Object invoke() {
+				return new DoublePoint(2);
+			}
+		});
+		Converter converter = tree.nodeConverter(pointConverter, 2);
+		tree.initialize(new AbstractFunction() {
+			@Override
+			public Object invoke(Object point) {
+				return new DoublePointRectangle((DoublePoint)point, (DoublePoint)point);
+			}
+		}, new ConverterContainer(new xxl.core.collections.containers.MapContainer(), converter), 10, 25);
+		Random random = new Random(42);
+		for (int i = 0; i < 3000; i++)
+			tree.insert(new DoublePoint(new double[] {random.nextDouble(), random.nextDouble()}));
+		ORTree.Node node = (ORTree.Node)tree.rootEntry().get(true);
+		while (node.level() > 1)
+			node = (ORTree.Node)((ORTree.IndexEntry)node.entries().next()).get(true);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		converter.write(new DataOutputStream(bytes), node);
+		byte[] page = bytes.toByteArray();
+		ByteBufferInput input = new ByteBufferInput(ByteBuffer.allocateDirect(page.length));
+		input.buffer().put(page);
+
+		allocatedBytes(converter, page, input, 2000);
+		allocatedBytes(converter, page, null, 2000);
+		long direct = allocatedBytes(converter, page, input, 5000);
+		long streamed = allocatedBytes(converter, page, null, 5000);
+		Assert.assertTrue(direct <= streamed, direct+" bytes allocated from the buffer, "+streamed+" bytes from a stream");
+	}
+}
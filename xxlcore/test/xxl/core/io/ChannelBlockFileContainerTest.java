@@ -0,0 +1,119 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.ChannelBlockFileContainer;
+
+/**
+ * This is a unit test for the channel based block file container. It
+ * performs the same random operations on a channel based and an ordinary
+ * block file container and checks that both produce identical files that
+ * can be opened by either class.
+ */
+public class ChannelBlockFileContainerTest {
+
+	public static final int BLOCK_SIZE = 64;
+
+	private static void randomOperations(Container container, Map<Object, Integer> contents, long seed) {
+		Random random = new Random(seed);
+		List<Object> ids = new ArrayList<Object>(contents.keySet());
+		
+		for (int i = 0; i < 3000; i++) {
+			int operation = random.nextInt(10);
+			if (operation < 5 || ids.isEmpty()) {
+				Object id = container.insert(ContainerFixtures.block(i, BLOCK_SIZE));
+				contents.put(id, i);
+				ids.add(id);
+			}
+			else if (operation < 7) {
+				Object id = ids.get(random.nextInt(ids.size()));
+				container.update(id, ContainerFixtures.block(i, BLOCK_SIZE));
+				contents.put(id, i);
+			}
+			else {
+				Object id = ids.remove(random.nextInt(ids.size()));
+				container.remove(id);
+				contents.remove(id);
+			}
+		}
+	}
+
+	private static void check(Container container, Map<Object, Integer> contents) {
+		Assert.assertEquals(container.size(), contents.size());
+		int count = 0;
+		for (Iterator ids = container.ids(); ids.hasNext(); count++) {
+			Object id = ids.next();
+			Assert.assertTrue(contents.containsKey(id));
+			Assert.assertEquals(((Block)container.get(id)).array, ContainerFixtures.block(contents.get(id), BLOCK_SIZE).array);
+		}
+		Assert.assertEquals(count, contents.size());
+	}
+
+	@Test
+	public void testSameFilesAsBlockFileContainer() throws IOException {
+		String channelPrefix = ContainerFixtures.prefix("channel"), filePrefix = ContainerFixtures.prefix("file");
+		Container channelContainer = new ChannelBlockFileContainer(channelPrefix, BLOCK_SIZE);
+		Container fileContainer = new BlockFileContainer(filePrefix, BLOCK_SIZE);
+		Map<Object, Integer> channelContents = new HashMap<Object, Integer>();
+		Map<Object, Integer> fileContents = new HashMap<Object, Integer>();
+		
+		randomOperations(channelContainer, channelContents, 42);
+		randomOperations(fileContainer, fileContents, 42);
+		Assert.assertEquals(channelContents, fileContents);
+		channelContainer.close();
+		fileContainer.close();
+		for (String extension : BlockFileContainer.EXTENSIONS)
+			Assert.assertEquals(new File(channelPrefix+extension).length(), new File(filePrefix+extension).length(), extension);
+		
+		// open the files with the other class
+		channelContainer = new ChannelBlockFileContainer(filePrefix);
+		fileContainer = new BlockFileContainer(channelPrefix);
+		check(channelContainer, fileContents);
+		check(fileContainer, channelContents);
+		
+		// continue working on the reopened containers
+		randomOperations(channelContainer, fileContents, 43);
+		randomOperations(fileContainer, channelContents, 43);
+		check(channelContainer, fileContents);
+		check(fileContainer, channelContents);
+		((BlockFileContainer)channelContainer).delete();
+		((BlockFileContainer)fileContainer).delete();
+	}
+}
@@ -0,0 +1,247 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.collections.containers.io.CompressedContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.collections.containers.io.MultiBlockContainer;
+import xxl.core.io.codecs.Codec;
+import xxl.core.io.codecs.DeflateCodec;
+import xxl.core.io.codecs.LZCodec;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * This is a unit test for the codecs and the <tt>CompressedContainer</tt>.
+ */
+public class CompressedContainerTest {
+
+	public static final int PAGE_SIZE = 4096;
+
+	/**
+	 * Returns a page of sorted keys and repeated payloads that compresses
+	 * like a node of an index.
+	 */
+	private static byte[] page(int seed, int size) {
+		Random random = new Random(seed);
+		byte[] page = new byte[size];
+		for (int i = 0, key = seed; i+8 <= size; i += 8) {
+			key += random.nextInt(8);
+			page[i] = (byte)(key>>>24);
+			page[i+1] = (byte)(key>>>16);
+			page[i+2] = (byte)(key>>>8);
+			page[i+3] = (byte)key;
+			page[i+4] = (byte)(random.nextInt(4));
+		}
+		return page;
+	}
+
+	private static byte[] noise(int seed, int size) {
+		byte[] noise = new byte[size];
+		new Random(seed).nextBytes(noise);
+		return noise;
+	}
+
+	@DataProvider(name = "codecs")
+	public Object[][] codecs() {
+		return new Object[][] {
+			{LZCodec.DEFAULT_INSTANCE},
+			{DeflateCodec.DEFAULT_INSTANCE},
+		};
+	}
+
+	@Test(dataProvider = "codecs")
+	public void roundTrip(Codec codec) throws IOException {
+		List<byte[]> inputs = new ArrayList<byte[]>();
+		inputs.add(new byte[0]);
+		inputs.add(new byte[] {7});
+		inputs.add(new byte[100000]);
+		inputs.add(page(1, PAGE_SIZE));
+		inputs.add(noise(2, PAGE_SIZE));
+		inputs.add("abcabcabcabcabcabcabcxyzabcabcabcabc".getBytes());
+
+		for (byte[] input : inputs) {
+			byte[] padded = new byte[input.length+10];
+			System.arraycopy(input, 0, padded, 3, input.length);
+			byte[] compressed = codec.compress(padded, 3, input.length);
+			byte[] output = new byte[input.length+5];
+			Assert.assertEquals(codec.decompress(compressed, 0, compressed.length, output, 2, input.length), input.length);
+			Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(output, 2, 2+input.length), input));
+		}
+		Assert.assertTrue(codec.compress(new byte[100000], 0, 100000).length < 1000);
+		Assert.assertTrue(codec.compress(page(3, PAGE_SIZE), 0, PAGE_SIZE).length < 2*PAGE_SIZE/3);
+	}
+
+	@Test
+	public void endOfBlock() {
+		// the last five bytes are literals and no match starts within the
+		// last twelve bytes, as required by the LZ4 block format
+		List<byte[]> inputs = new ArrayList<byte[]>();
+		inputs.add(new byte[12]);
+		inputs.add(new byte[13]);
+		inputs.add(new byte[100]);
+		inputs.add(page(5, PAGE_SIZE));
+		inputs.add("abcabcabcabcabcabcabcxyzabcabcabcabc".getBytes());
+		for (byte[] input : inputs) {
+			byte[] compressed = LZCodec.DEFAULT_INSTANCE.compress(input, 0, input.length);
+			int position = 0, index = 0, matches = 0;
+			while (true) {
+				int token = compressed[position++]&0xff, literals = token>>>4;
+				if (literals == 15)
+					for (int b = 255; b == 255; literals += b)
+						b = compressed[position++]&0xff;
+				position += literals;
+				index += literals;
+				if (position == compressed.length) {
+					Assert.assertTrue(literals >= Math.min(input.length, LZCodec.LAST_LITERALS));
+					break;
+				}
+				Assert.assertTrue(index <= input.length-LZCodec.MATCH_FIND_LIMIT, "match at "+index+" of "+input.length);
+				position += 2;
+				int matchLength = token&0x0f;
+				if (matchLength == 15)
+					for (int b = 255; b == 255; matchLength += b)
+						b = compressed[position++]&0xff;
+				index += matchLength+LZCodec.MIN_MATCH;
+				matches++;
+			}
+			Assert.assertEquals(index, input.length);
+			Assert.assertTrue(input.length <= LZCodec.MATCH_FIND_LIMIT || matches > 0);
+		}
+	}
+
+	@Test(dataProvider = "codecs")
+	public void corruptedData(Codec codec) {
+		byte[] input = page(4, PAGE_SIZE);
+		byte[] compressed = codec.compress(input, 0, input.length);
+		try {
+			// the target array is too small
+			codec.decompress(compressed, 0, compressed.length, new byte[PAGE_SIZE/2], 0, PAGE_SIZE/2);
+			Assert.fail();
+		}
+		catch (IOException ie) {
+			// expected
+		}
+		// truncated data is rejected or does not yield the whole page, which
+		// is detected by the caller knowing the size of the page
+		for (int length = 0; length < compressed.length; length += 7)
+			try {
+				Assert.assertTrue(codec.decompress(compressed, 0, length, new byte[PAGE_SIZE], 0, PAGE_SIZE) < PAGE_SIZE);
+			}
+			catch (IOException ie) {
+				// expected
+			}
+	}
+
+	@Test
+	public void compressedPages() throws IOException {
+		String prefix = ContainerFixtures.prefix("compressedPages");
+		MultiBlockContainer file = new MultiBlockContainer(prefix, 256);
+		CompressedContainer container = new CompressedContainer(file, LZCodec.DEFAULT_INSTANCE, new LRUBuffer(16));
+		List<Object> ids = new ArrayList<Object>();
+
+		for (int i = 0; i < 100; i++)
+			ids.add(container.insert(new Block(i%10 == 9 ? noise(i, PAGE_SIZE) : page(i, PAGE_SIZE))));
+		Assert.assertEquals(container.rawPages(), 10);
+		Assert.assertTrue(container.ratio() < 0.6);
+
+		// the codec is stored per page
+		container.setCodec(1);
+		for (int i = 0; i < 100; i += 2)
+			container.update(ids.get(i), new Block(page(1000+i, PAGE_SIZE)));
+		for (int i = 0; i < 100; i++) {
+			Block block = (Block)container.get(ids.get(i));
+			Assert.assertEquals(block.size, PAGE_SIZE);
+			byte[] expected = i%2 == 0 ? page(1000+i, PAGE_SIZE) : i%10 == 9 ? noise(i, PAGE_SIZE) : page(i, PAGE_SIZE);
+			Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(block.array, block.offset, block.offset+block.size), expected));
+		}
+		container.remove(ids.get(1));
+		Assert.assertEquals(container.size(), 99);
+		container.close();
+
+		// pages written with both codecs are read after reopening the container
+		file = new MultiBlockContainer(prefix);
+		container = new CompressedContainer(file, DeflateCodec.DEFAULT_INSTANCE);
+		for (int i = 2; i < 100; i++) {
+			byte[] expected = i%2 == 0 ? page(1000+i, PAGE_SIZE) : i%10 == 9 ? noise(i, PAGE_SIZE) : page(i, PAGE_SIZE);
+			Assert.assertTrue(Arrays.equals(((Block)container.get(ids.get(i))).array, expected));
+		}
+		container.close();
+		file.delete();
+	}
+
+	@Test
+	public void corruptedPage() throws IOException {
+		String prefix = ContainerFixtures.prefix("compressedCorrupted");
+		MultiBlockContainer file = new MultiBlockContainer(prefix, 256);
+		CompressedContainer container = new CompressedContainer(file, LZCodec.DEFAULT_INSTANCE);
+
+		Object id = container.insert(new Block(page(5, PAGE_SIZE)));
+		Block page = (Block)file.get(id);
+		page.array[0] = (byte)100;
+		file.update(id, page);
+		try {
+			container.get(id);
+			Assert.fail();
+		}
+		catch (WrappingRuntimeException wre) {
+			// expected
+		}
+		container.close();
+		file.delete();
+	}
+
+	@Test
+	public void bufferedConverter() throws IOException {
+		String prefix = ContainerFixtures.prefix("compressedBuffered");
+		MultiBlockContainer file = new MultiBlockContainer(prefix, 64);
+		Container container = new BufferedContainer(
+			new ConverterContainer(new CompressedContainer(file, DeflateCodec.DEFAULT_INSTANCE, new LRUBuffer(8)), IntegerConverter.DEFAULT_INSTANCE),
+			new LRUBuffer(4)
+		);
+		List<Object> ids = new ArrayList<Object>();
+
+		for (int i = 0; i < 100; i++)
+			ids.add(container.insert(i));
+		container.flush();
+		for (int i = 0; i < 100; i++)
+			Assert.assertEquals(container.get(ids.get(i)), i);
+		container.close();
+		file.delete();
+	}
+}
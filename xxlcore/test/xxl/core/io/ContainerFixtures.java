@@ -0,0 +1,115 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.Assert;
+
+import xxl.core.collections.containers.io.BlockFileContainer;
+
+/**
+ * Fixtures shared by the tests of the file based containers. The prefixes
+ * returned by {@link #prefix(String, String...)} denote temporary files that
+ * are removed when the virtual machine terminates, even if a test fails or
+ * a container is not closed, and the blocks written by the tests are filled
+ * with a pattern that is derived from a single value.
+ */
+public class ContainerFixtures {
+
+	/** This class is not instanciable */
+	private ContainerFixtures () {
+	}
+
+	/**
+	 * Returns the prefix of a new temporary container. The files of a
+	 * {@link BlockFileContainer} with this prefix and the files with the
+	 * given additional extensions (e.g., the <tt>.log</tt> of a
+	 * <tt>LoggingContainer</tt>) are deleted on exit.
+	 *
+	 * @param name the name of the temporary file the prefix starts with.
+	 * @param extensions further extensions of files using the prefix.
+	 * @return the prefix of the container files.
+	 * @throws IOException if no temporary file can be created.
+	 */
+	public static String prefix (String name, String... extensions) throws IOException {
+		File file = File.createTempFile(name, "");
+		file.delete();
+		file.deleteOnExit();
+		for (String extension : BlockFileContainer.EXTENSIONS)
+			new File(file.getPath()+extension).deleteOnExit();
+		for (String extension : extensions)
+			new File(file.getPath()+extension).deleteOnExit();
+		return file.getPath();
+	}
+
+	/**
+	 * Deletes the files of a {@link BlockFileContainer} with the given
+	 * prefix and the files with the given additional extensions. Unlike
+	 * <tt>BlockFileContainer.delete</tt>, this does not require the
+	 * container to be closed properly.
+	 *
+	 * @param prefix the prefix of the container files.
+	 * @param extensions further extensions of files using the prefix.
+	 */
+	public static void delete (String prefix, String... extensions) {
+		for (String extension : BlockFileContainer.EXTENSIONS)
+			new File(prefix+extension).delete();
+		for (String extension : extensions)
+			new File(prefix+extension).delete();
+	}
+
+	/**
+	 * Returns a block of the given size holding the bytes
+	 * <tt>value, value+1, ...</tt>.
+	 *
+	 * @param value the value of the first byte.
+	 * @param size the size of the block.
+	 * @return the new block.
+	 */
+	public static Block block (int value, int size) {
+		Block block = new Block(new byte[size]);
+		for (int i = 0; i < size; i++)
+			block.set(i, (byte)(value+i));
+		return block;
+	}
+
+	/**
+	 * Asserts that the given object is a block that starts with the bytes
+	 * of <tt>block(value, size)</tt>.
+	 *
+	 * @param object the block read from a container.
+	 * @param value the value of the first byte.
+	 * @param size the number of bytes to compare.
+	 */
+	public static void assertBlock (Object object, int value, int size) {
+		Block block = (Block)object;
+		Assert.assertTrue(block.size >= size);
+		for (int i = 0; i < size; i++)
+			Assert.assertEquals(block.get(i), (byte)(value+i));
+	}
+}
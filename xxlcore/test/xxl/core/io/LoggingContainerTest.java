@@ -0,0 +1,266 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.collections.containers.io.LoggingContainer;
+import xxl.core.io.converters.IntegerConverter;
+
+/**
+ * This is a unit test for the write-ahead logging of the
+ * <tt>LoggingContainer</tt>. A crash is simulated by closing the decorated
+ * block file container directly and dropping the logging container without
+ * closing it. After reopening, the container has to reflect exactly the
+ * state of the last commit.
+ */
+public class LoggingContainerTest {
+
+	public static final int BLOCK_SIZE = 32;
+
+	private static void assertState(Container container, Map<Object, Integer> state, List<Object> removed) {
+		for (Map.Entry<Object, Integer> entry : state.entrySet())
+			ContainerFixtures.assertBlock(container.get(entry.getKey()), entry.getValue(), BLOCK_SIZE);
+		for (Object id : removed)
+			Assert.assertFalse(container.isUsed(id));
+	}
+
+	@Test
+	public void crashRecovery() throws IOException {
+		String prefix = ContainerFixtures.prefix("loggingCrash", ".log");
+		Random random = new Random(42);
+		BlockFileContainer file = new BlockFileContainer(prefix, BLOCK_SIZE);
+		LoggingContainer container = new LoggingContainer(file, prefix+".log");
+		Map<Object, Integer> state = new HashMap<Object, Integer>();
+		List<Object> ids = new ArrayList<Object>();
+		List<Object> removed = new ArrayList<Object>();
+
+		for (int i = 0; i < 100; i++) {
+			Object id = container.insert(ContainerFixtures.block(i, BLOCK_SIZE));
+			ids.add(id);
+			state.put(id, i);
+		}
+		for (int i = 0; i < 20; i++) {
+			Object id = ids.get(random.nextInt(ids.size()));
+			container.update(id, ContainerFixtures.block(1000+i, BLOCK_SIZE));
+			state.put(id, 1000+i);
+		}
+		for (int i = 0; i < 10; i++) {
+			Object id = ids.remove(random.nextInt(ids.size()));
+			container.remove(id);
+			state.remove(id);
+			removed.add(id);
+		}
+		Assert.assertEquals(container.size(), 90);
+		Assert.assertEquals(file.size(), 100);
+		Assert.assertFalse(file.contains(ids.get(0)));
+		assertState(container, state, removed);
+		container.commit(new byte[] {1, 2, 3});
+
+		// uncommitted changes written to the log file are lost by the crash
+		List<Object> lost = new ArrayList<Object>();
+		for (int i = 0; i < 50; i++)
+			lost.add(container.insert(ContainerFixtures.block(2000+i, BLOCK_SIZE)));
+		for (Object id : ids)
+			container.update(id, ContainerFixtures.block(3000, BLOCK_SIZE));
+		container.remove(ids.get(0));
+		container.flush();
+		Assert.assertTrue(container.logSize() > 0);
+		// the crash: neither the logging container nor the block file
+		// container are closed, so the meta file is not written by close
+
+		file = new BlockFileContainer(prefix);
+		container = new LoggingContainer(file, prefix+".log");
+		Assert.assertTrue(Arrays.equals(container.metadata(), new byte[] {1, 2, 3}));
+		Assert.assertEquals(container.epoch(), 1);
+		Assert.assertEquals(container.size(), 90);
+		assertState(container, state, removed);
+		for (Object id : lost)
+			Assert.assertFalse(container.contains(id));
+
+		// the recovered state has been forced to the block file container
+		// by the checkpoint of the recovery, another crash loses nothing
+		file = new BlockFileContainer(prefix);
+		Assert.assertEquals(file.size(), 90);
+		assertState(file, state, removed);
+		file.close();
+		ContainerFixtures.delete(prefix, ".log");
+	}
+
+	@Test
+	public void tornCommit() throws IOException {
+		String prefix = ContainerFixtures.prefix("loggingTorn", ".log");
+		BlockFileContainer file = new BlockFileContainer(prefix, BLOCK_SIZE);
+		LoggingContainer container = new LoggingContainer(file, prefix+".log");
+
+		Object id = container.insert(ContainerFixtures.block(1, BLOCK_SIZE));
+		container.commit(new byte[] {1});
+		container.update(id, ContainerFixtures.block(2, BLOCK_SIZE));
+		container.commit(new byte[] {2});
+
+		// cut off the checksum of the last commit record
+		RandomAccessFile log = new RandomAccessFile(prefix+".log", "rw");
+		log.setLength(log.length()-2);
+		log.close();
+
+		file = new BlockFileContainer(prefix);
+		container = new LoggingContainer(file, prefix+".log");
+		Assert.assertTrue(Arrays.equals(container.metadata(), new byte[] {1}));
+		ContainerFixtures.assertBlock(container.get(id), 1, BLOCK_SIZE);
+
+		// the log has been truncated and is extended by further commits
+		container.update(id, ContainerFixtures.block(3, BLOCK_SIZE));
+		container.commit(new byte[] {3});
+		file.close();
+		file = new BlockFileContainer(prefix);
+		container = new LoggingContainer(file, prefix+".log");
+		Assert.assertTrue(Arrays.equals(container.metadata(), new byte[] {3}));
+		Assert.assertEquals(container.epoch(), 2);
+		ContainerFixtures.assertBlock(container.get(id), 3, BLOCK_SIZE);
+		container.close();
+		ContainerFixtures.delete(prefix, ".log");
+	}
+
+	@Test
+	public void checkpointThreshold() throws IOException {
+		String prefix = ContainerFixtures.prefix("loggingCheckpoint", ".log");
+		BlockFileContainer file = new BlockFileContainer(prefix, BLOCK_SIZE);
+		LoggingContainer container = new LoggingContainer(file, prefix+".log", 4096);
+		Map<Object, Integer> state = new HashMap<Object, Integer>();
+
+		for (int i = 0; i < 1000; i++) {
+			Object id = container.insert(ContainerFixtures.block(i, BLOCK_SIZE));
+			state.put(id, i);
+			if (i%10 == 9)
+				container.commit();
+			Assert.assertTrue(container.logSize() < 4096+20*(BLOCK_SIZE+32));
+		}
+		Assert.assertEquals(container.commits(), 100);
+		Assert.assertTrue(container.checkpoints() > 1);
+		assertState(container, state, Collections.emptyList());
+		file.close();
+
+		file = new BlockFileContainer(prefix);
+		container = new LoggingContainer(file, prefix+".log");
+		Assert.assertEquals(container.size(), 1000);
+		assertState(container, state, Collections.emptyList());
+		container.close();
+		ContainerFixtures.delete(prefix, ".log");
+	}
+
+	@Test
+	public void groupCommit() throws Exception {
+		String prefix = ContainerFixtures.prefix("loggingGroup", ".log");
+		BlockFileContainer file = new BlockFileContainer(prefix, BLOCK_SIZE);
+		final LoggingContainer container = new LoggingContainer(file, prefix+".log");
+		final int threads = 4, commits = 50;
+		final Object[] ids = new Object[threads];
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		for (int i = 0; i < threads; i++)
+			ids[i] = container.insert(ContainerFixtures.block(i, BLOCK_SIZE));
+		container.commit();
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int thread = i;
+			workers[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 1; j <= commits; j++) {
+							container.update(ids[thread], ContainerFixtures.block(100*j+thread, BLOCK_SIZE));
+							container.commit();
+						}
+					}
+					catch (Throwable t) {
+						failure.set(t);
+					}
+				}
+			};
+			workers[i].start();
+		}
+		for (Thread worker : workers)
+			worker.join();
+		Assert.assertNull(failure.get());
+		Assert.assertEquals(container.commits(), threads*commits+1);
+		Assert.assertTrue(container.forces() <= container.commits());
+		file.close();
+
+		file = new BlockFileContainer(prefix);
+		LoggingContainer reopened = new LoggingContainer(file, prefix+".log");
+		for (int i = 0; i < threads; i++)
+			ContainerFixtures.assertBlock(reopened.get(ids[i]), 100*commits+i, BLOCK_SIZE);
+		reopened.close();
+		ContainerFixtures.delete(prefix, ".log");
+	}
+
+	@Test
+	public void bufferedConverter() throws IOException {
+		String prefix = ContainerFixtures.prefix("loggingBuffered", ".log");
+		BlockFileContainer file = new BlockFileContainer(prefix, BLOCK_SIZE);
+		LoggingContainer log = new LoggingContainer(file, prefix+".log");
+		Container container = new BufferedContainer(
+			new ConverterContainer(log, IntegerConverter.DEFAULT_INSTANCE),
+			new LRUBuffer(16)
+		);
+		List<Object> ids = new ArrayList<Object>();
+
+		for (int i = 0; i < 100; i++)
+			ids.add(container.insert(i));
+		// flushing the buffer only moves the dirty pages into the log
+		container.flush();
+		log.commit(new byte[] {42});
+		Assert.assertFalse(file.contains(ids.get(0)));
+
+		for (int i = 0; i < 100; i++)
+			container.update(ids.get(i), -i);
+		file.close();
+
+		file = new BlockFileContainer(prefix);
+		log = new LoggingContainer(file, prefix+".log");
+		container = new ConverterContainer(log, IntegerConverter.DEFAULT_INSTANCE);
+		Assert.assertTrue(Arrays.equals(log.metadata(), new byte[] {42}));
+		for (int i = 0; i < 100; i++)
+			Assert.assertEquals(container.get(ids.get(i)), i);
+		container.close();
+		ContainerFixtures.delete(prefix, ".log");
+	}
+}
@@ -0,0 +1,176 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.collections.containers.io.PrefetchingContainer;
+import xxl.core.io.converters.IntegerConverter;
+
+/**
+ * This is a unit test for the <tt>PrefetchingContainer</tt>. It checks that
+ * prefetched objects are delivered correctly for sequential scans and
+ * explicit hints and that the prefetch metrics are maintained.
+ */
+public class PrefetchingContainerTest {
+
+	public static final int BLOCK_SIZE = 32;
+
+	private static BlockFileContainer container(String name, List<Object> ids, int blocks) throws IOException {
+		BlockFileContainer container = new BlockFileContainer(ContainerFixtures.prefix(name), BLOCK_SIZE);
+		for (int i = 0; i < blocks; i++)
+			ids.add(container.insert(ContainerFixtures.block(i, BLOCK_SIZE)));
+		return container;
+	}
+
+	@Test
+	public void sequentialScan() throws IOException {
+		List<Object> ids = new ArrayList<Object>();
+		BlockFileContainer file = container("prefetchScan", ids, 200);
+		PrefetchingContainer container = new PrefetchingContainer(file, 2, 8);
+
+		for (int i = 0; i < 200; i++)
+			ContainerFixtures.assertBlock(container.get(ids.get(i)), i, BLOCK_SIZE);
+		Assert.assertEquals(container.hits()+container.misses(), 200);
+		Assert.assertTrue(container.hits() >= 190);
+		Assert.assertTrue(container.pending() <= 8);
+		Assert.assertTrue(container.issued() <= container.hits()+container.wasted()+container.pending());
+		container.close();
+		file.delete();
+	}
+
+	@Test
+	public void hints() throws IOException {
+		List<Object> ids = new ArrayList<Object>();
+		BlockFileContainer file = container("prefetchHints", ids, 100);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		PrefetchingContainer container = new PrefetchingContainer(file, executor, 16);
+		Random random = new Random(42);
+		int requests = 0;
+
+		for (int round = 0; round < 10; round++) {
+			List<Integer> children = new ArrayList<Integer>();
+			for (int i = 0; i < 10; i++)
+				children.add(random.nextInt(ids.size()));
+			children = new ArrayList<Integer>(new LinkedHashSet<Integer>(children));
+			List<Object> hint = new ArrayList<Object>();
+			for (int child : children)
+				hint.add(ids.get(child));
+			container.prefetch(hint.iterator());
+			Collections.shuffle(children, random);
+			for (int child : children)
+				ContainerFixtures.assertBlock(container.get(ids.get(child)), child, BLOCK_SIZE);
+			requests += children.size();
+		}
+		Assert.assertEquals(container.misses(), 0);
+		Assert.assertEquals(container.hits(), requests);
+		container.close();
+		// an executor provided by the caller is not shut down
+		Assert.assertFalse(executor.isShutdown());
+		executor.shutdown();
+		file.delete();
+	}
+
+	@Test
+	public void window() throws IOException {
+		List<Object> ids = new ArrayList<Object>();
+		BlockFileContainer file = container("prefetchWindow", ids, 100);
+		PrefetchingContainer container = new PrefetchingContainer(file, 1, 4);
+
+		container.prefetch(ids.iterator());
+		Assert.assertTrue(container.pending() <= 4);
+		Assert.assertTrue(container.issued() >= 4);
+		Assert.assertEquals(container.issued(), container.pending()+container.wasted());
+		container.close();
+		file.delete();
+	}
+
+	@Test
+	public void invalidation() throws IOException {
+		List<Object> ids = new ArrayList<Object>();
+		BlockFileContainer file = container("prefetchUpdate", ids, 10);
+		PrefetchingContainer container = new PrefetchingContainer(file, 1, 4);
+
+		container.prefetch(ids.get(3));
+		container.update(ids.get(3), ContainerFixtures.block(42, BLOCK_SIZE));
+		ContainerFixtures.assertBlock(container.get(ids.get(3)), 42, BLOCK_SIZE);
+		Assert.assertEquals(container.wasted(), 1);
+		Assert.assertEquals(container.hits(), 0);
+
+		container.prefetch(ids.get(4));
+		container.remove(ids.get(4));
+		Assert.assertFalse(container.isUsed(ids.get(4)));
+		Assert.assertEquals(container.pending(), 0);
+
+		// a hint for an unused identifier is wasted and read synchronously
+		container.prefetch(ids.get(4));
+		try {
+			container.get(ids.get(4));
+			Assert.fail();
+		}
+		catch (NoSuchElementException nsee) {
+			// expected
+		}
+		Assert.assertEquals(container.wasted(), 3);
+		container.close();
+		file.delete();
+	}
+
+	@Test
+	public void bufferedConverter() throws IOException {
+		List<Object> ids = new ArrayList<Object>();
+		BlockFileContainer file = container("prefetchBuffered", ids, 0);
+		PrefetchingContainer prefetcher = new PrefetchingContainer(file, 2, 8);
+		Container container = new BufferedContainer(
+			new ConverterContainer(prefetcher, IntegerConverter.DEFAULT_INSTANCE),
+			new LRUBuffer(4)
+		);
+
+		for (int i = 0; i < 100; i++)
+			ids.add(container.insert(i));
+		container.flush();
+		for (int i = 0; i < 100; i++)
+			Assert.assertEquals(container.get(ids.get(i)), i);
+		Assert.assertTrue(prefetcher.hits() > 0);
+		container.close();
+		file.delete();
+	}
+}
@@ -0,0 +1,117 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.SynchronizedContainer;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * This is a unit test for the striped buffer. It checks the pin count
+ * protocol and shares a buffered container between several threads.
+ */
+public class StripedBufferTest {
+
+	public static final int THREADS = 8;
+
+	@Test
+	public void testPinCounts() {
+		StripedBuffer<String, Integer, Integer> buffer = new StripedBuffer<String, Integer, Integer>(16, 4);
+		Function<Integer, Integer> obtain = new AbstractFunction<Integer, Integer>() {
+			public Integer invoke(Integer id) {
+				return id;
+			}
+		};
+		
+		buffer.get("owner", 1, obtain, false);
+		buffer.get("owner", 1, obtain, false);
+		buffer.get("owner", 1, obtain, true);
+		Assert.assertEquals(buffer.pinCount("owner", 1), 2);
+		Assert.assertTrue(buffer.isFixed("owner", 1));
+		buffer.unfix("owner", 1);
+		Assert.assertTrue(buffer.isFixed("owner", 1));
+		buffer.unfix("owner", 1);
+		Assert.assertFalse(buffer.isFixed("owner", 1));
+		Assert.assertEquals(buffer.fixedSlots(), 0);
+		Assert.assertEquals(buffer.hits(), 2);
+		Assert.assertEquals(buffer.misses(), 1);
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final int size = 5000;
+		final StripedBuffer<Object, Object, Object> buffer = new StripedBuffer<Object, Object, Object>(512, 32);
+		final Container container = new BufferedContainer(new SynchronizedContainer(new MapContainer()), buffer);
+		final List<Object> ids = new ArrayList<Object>(size);
+		
+		for (int i = 0; i < size; i++)
+			ids.add(container.insert(i));
+		container.flush();
+		buffer.resetCounters();
+		
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						Random random = new Random(seed);
+						for (int i = 0; i < 50000; i++) {
+							int index = random.nextInt(size);
+							boolean unfix = random.nextInt(10) != 0;
+							Assert.assertEquals(container.get(ids.get(index), unfix), index);
+							if (!unfix)
+								container.unfix(ids.get(index));
+						}
+					}
+					catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		if (!errors.isEmpty())
+			throw new RuntimeException(errors.get(0));
+		Assert.assertEquals(buffer.fixedSlots(), 0);
+		Assert.assertEquals(buffer.hits()+buffer.misses(), THREADS*50000L);
+		container.close();
+	}
+}
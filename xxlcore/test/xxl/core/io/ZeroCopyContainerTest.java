@@ -0,0 +1,329 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.collections.containers.io.ChannelBlockFileContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.descriptors.LongKeyRange;
+import xxl.core.indexStructures.descriptors.LongSeparator;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.MeasuredConverter;
+import xxl.core.io.converters.MeasuredFixedSizeConverter;
+
+/**
+ * This is a unit test for the transfer of blocks between a
+ * <tt>ChannelBlockFileContainer</tt> and a <tt>ConverterContainer</tt>
+ * through reused direct byte buffers. The blocks written in place have to
+ * be readable by the block based path and vice versa. The transfer of a
+ * block must not allocate any objects: a lookup through a converter that
+ * decodes into a reused object allocates nothing, and the lookup of a
+ * B+-tree node allocates the decoded node but no copy of the block.
+ */
+public class ZeroCopyContainerTest {
+
+	public static final int BLOCK_SIZE = 256;
+
+	/**
+	 * A record holding values of all primitive types.
+	 */
+	private static class Record {
+		int i;
+		long l;
+		double d;
+		boolean b;
+		short s;
+		String text;
+		byte[] bytes;
+
+		Record(int seed) {
+			Random random = new Random(seed);
+			i = random.nextInt();
+			l = random.nextLong();
+			d = random.nextDouble();
+			b = random.nextBoolean();
+			s = (short)random.nextInt();
+			text = "record ä中 "+seed;
+			bytes = new byte[random.nextInt(32)];
+			random.nextBytes(bytes);
+		}
+
+		Record() {
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			Record record = (Record)object;
+			return i == record.i && l == record.l && d == record.d && b == record.b && s == record.s && text.equals(record.text) && Arrays.equals(bytes, record.bytes);
+		}
+
+		@Override
+		public int hashCode() {
+			return i;
+		}
+	}
+
+	private static final Converter<Record> RECORD_CONVERTER = new Converter<Record>() {
+		@Override
+		public Record read(DataInput dataInput, Record record) throws IOException {
+			record = new Record();
+			record.i = dataInput.readInt();
+			record.l = dataInput.readLong();
+			record.d = dataInput.readDouble();
+			record.b = dataInput.readBoolean();
+			record.s = dataInput.readShort();
+			record.text = dataInput.readUTF();
+			dataInput.readFully(record.bytes = new byte[dataInput.readUnsignedByte()]);
+			return record;
+		}
+
+		@Override
+		public void write(DataOutput dataOutput, Record record) throws IOException {
+			dataOutput.writeInt(record.i);
+			dataOutput.writeLong(record.l);
+			dataOutput.writeDouble(record.d);
+			dataOutput.writeBoolean(record.b);
+			dataOutput.writeShort(record.s);
+			dataOutput.writeUTF(record.text);
+			dataOutput.writeByte(record.bytes.length);
+			dataOutput.write(record.bytes);
+		}
+	};
+
+	@Test
+	public void compatibleFormat() throws IOException {
+		String prefix = ContainerFixtures.prefix("zeroCopyFormat");
+		ChannelBlockFileContainer file = new ChannelBlockFileContainer(prefix, BLOCK_SIZE);
+		Container container = new ConverterContainer(file, RECORD_CONVERTER);
+		List<Object> ids = new ArrayList<Object>();
+
+		for (int i = 0; i < 50; i++)
+			ids.add(container.insert(new Record(i)));
+		for (int i = 0; i < 50; i += 2)
+			container.update(ids.get(i), new Record(100+i));
+		for (int i = 0; i < 50; i++)
+			Assert.assertEquals(container.get(ids.get(i)), new Record(i%2 == 0 ? 100+i : i));
+		container.close();
+
+		// the blocks written in place are read by the block based path
+		BlockFileContainer blocks = new BlockFileContainer(prefix);
+		container = new ConverterContainer(blocks, RECORD_CONVERTER);
+		for (int i = 0; i < 50; i++)
+			Assert.assertEquals(container.get(ids.get(i)), new Record(i%2 == 0 ? 100+i : i));
+		container.close();
+		blocks.delete();
+	}
+
+	@Test
+	public void buffers() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+		Record record = new Record(7);
+		RECORD_CONVERTER.write(new ByteBufferOutput(buffer), record);
+		buffer.flip();
+		Assert.assertEquals(RECORD_CONVERTER.read(new ByteBufferInput(buffer)), record);
+		Assert.assertFalse(buffer.hasRemaining());
+		try {
+			new ByteBufferInput(buffer).readInt();
+			Assert.fail();
+		}
+		catch (java.io.EOFException ee) {
+			// expected
+		}
+
+		Block block = new Block(new byte[BLOCK_SIZE+10], 10, BLOCK_SIZE);
+		RECORD_CONVERTER.write(block.dataOutputStream(), record);
+		Assert.assertEquals(RECORD_CONVERTER.read(new ByteBufferInput(block.asByteBuffer())), record);
+	}
+
+	@Test
+	public void blockTooLarge() throws IOException {
+		String prefix = ContainerFixtures.prefix("zeroCopyLarge");
+		ChannelBlockFileContainer file = new ChannelBlockFileContainer(prefix, 32);
+		Container container = new ConverterContainer(file, RECORD_CONVERTER);
+		Object id = container.reserve(null);
+		try {
+			container.update(id, new Record(1));
+			Assert.fail();
+		}
+		catch (IllegalArgumentException iae) {
+			// expected
+		}
+		container.close();
+		file.delete();
+	}
+
+	public static final Function<Object, Object> IDENTITY = new AbstractFunction<Object, Object>() {
+		@Override
+		public Object invoke(Object argument) {
+			return argument;
+		}
+	};
+
+	@Test
+	public void bPlusTree() throws IOException {
+		String prefix = ContainerFixtures.prefix("zeroCopyTree");
+		ChannelBlockFileContainer file = new ChannelBlockFileContainer(prefix, 512);
+		BPlusTree tree = new BPlusTree(512);
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(IDENTITY, new ConverterContainer(file, tree.nodeConverter()), converter, converter, LongSeparator.FACTORY_FUNCTION, LongKeyRange.FACTORY_FUNCTION);
+		List<Long> keys = new ArrayList<Long>();
+		for (long i = 0; i < 5000; i++)
+			keys.add(i*2);
+		Collections.shuffle(keys, new Random(42));
+		for (Long key : keys)
+			tree.insert(key);
+		Collections.sort(keys);
+
+		Cursor cursor = tree.rangeQuery(Long.MIN_VALUE, Long.MAX_VALUE);
+		for (Long key : keys)
+			Assert.assertEquals(cursor.next(), key);
+		Assert.assertFalse(cursor.hasNext());
+		cursor.close();
+		Assert.assertEquals(tree.exactMatchQuery(1000L), 1000L);
+		Assert.assertNull(tree.exactMatchQuery(1001L));
+		file.close();
+		file.delete();
+	}
+
+	/**
+	 * A converter that decodes a block into a reused object, so the
+	 * conversion itself does not allocate.
+	 */
+	private static class SumConverter extends Converter<long[]> {
+		long[] sum = new long[1];
+
+		@Override
+		public long[] read(DataInput dataInput, long[] object) throws IOException {
+			long value = 0;
+			for (int i = 0; i < BLOCK_SIZE/8; i++)
+				value += dataInput.readLong();
+			sum[0] = value;
+			return sum;
+		}
+
+		@Override
+		public void write(DataOutput dataOutput, long[] object) throws IOException {
+			for (int i = 0; i < BLOCK_SIZE/8; i++)
+				dataOutput.writeLong(object[0]+i);
+		}
+	}
+
+	private static long allocatedBytes(Container container, Object[] ids, int rounds) {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			throw new SkipException("allocation counting is not supported");
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+		if (!threads.isThreadAllocatedMemorySupported())
+			throw new SkipException("allocation counting is not supported");
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long id = Thread.currentThread().getId();
+		long checksum = 0;
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int round = 0; round < rounds; round++)
+			for (int i = 0; i < ids.length; i++) {
+				Object object = container.get(ids[i]);
+				checksum += object instanceof long[] ? ((long[])object)[0] : ((BPlusTree.Node)object).number();
+			}
+		long after = threads.getThreadAllocatedBytes(id);
+		Assert.assertTrue(checksum != 0);
+		return after-before;
+	}
+
+	@Test
+	public void allocationFreeLookup() throws IOException {
+		String prefix = ContainerFixtures.prefix("zeroCopyAllocation");
+		ChannelBlockFileContainer file = new ChannelBlockFileContainer(prefix, BLOCK_SIZE);
+		Container container = new ConverterContainer(file, new SumConverter());
+		Object[] ids = new Object[64];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = container.insert(new long[] {i});
+
+		// warm up the JIT and the buffers of the thread
+		allocatedBytes(container, ids, 200);
+		long lookups = 500L*ids.length;
+		long allocated = allocatedBytes(container, ids, 500);
+		Assert.assertTrue(allocated < lookups/10, allocated+" bytes allocated by "+lookups+" lookups");
+
+		// the block based path allocates at least a block per lookup
+		container.close();
+		Container blocks = new ConverterContainer(new BlockFileContainer(prefix), new SumConverter());
+		allocatedBytes(blocks, ids, 10);
+		Assert.assertTrue(allocatedBytes(blocks, ids, 100) > 100L*ids.length*BLOCK_SIZE);
+		blocks.close();
+		file.delete();
+	}
+
+	@Test
+	public void treeNodeLookup() throws IOException {
+		String prefix = ContainerFixtures.prefix("zeroCopyNodes");
+		ChannelBlockFileContainer file = new ChannelBlockFileContainer(prefix, 512);
+		BPlusTree tree = new BPlusTree(512);
+		MeasuredConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(IDENTITY, new ConverterContainer(file, tree.nodeConverter()), converter, converter, LongSeparator.FACTORY_FUNCTION, LongKeyRange.FACTORY_FUNCTION);
+		for (long i = 0; i < 5000; i++)
+			tree.insert(i*2);
+		List<Object> idList = new ArrayList<Object>();
+		for (java.util.Iterator<?> iterator = file.ids(); iterator.hasNext();)
+			idList.add(iterator.next());
+		Object[] ids = idList.toArray();
+
+		// both paths decode the same nodes, but the block based path copies
+		// every block into a new array first
+		Container nodes = new ConverterContainer(file, tree.nodeConverter());
+		allocatedBytes(nodes, ids, 20);
+		long lookups = 50L*ids.length;
+		long inPlace = allocatedBytes(nodes, ids, 50);
+		file.close();
+		BlockFileContainer blockFile = new BlockFileContainer(prefix);
+		Container blocks = new ConverterContainer(blockFile, tree.nodeConverter());
+		allocatedBytes(blocks, ids, 20);
+		long copied = allocatedBytes(blocks, ids, 50);
+		Assert.assertTrue(copied-inPlace > lookups*512, inPlace+" bytes allocated in place, "+copied+" bytes by the block based path");
+		blockFile.close();
+		blockFile.delete();
+	}
+}
@@ -0,0 +1,120 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.relational.cursors;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.cursors.AbstractMetaDataCursor;
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.relational.metaData.ColumnMetaData;
+import xxl.core.relational.metaData.ColumnMetaDataResultSetMetaData;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.metaData.StoredColumnMetaData;
+import xxl.core.relational.tuples.ArrayTuple;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.util.metaData.CompositeMetaData;
+
+/**
+ * Tests the relational {@link HashJoin} on small in-memory relations.
+ */
+public class HashJoinTest {
+
+	protected static MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> relation(String table, String[] columns, Object[]... tuples) {
+		ColumnMetaData[] columnMetaData = new ColumnMetaData[columns.length];
+		for (int i = 0; i < columns.length; i++)
+			columnMetaData[i] = new StoredColumnMetaData(false, false, true, false, ResultSetMetaData.columnNullable, true, 9, columns[i], columns[i], "", 9, 0, table, "", Types.INTEGER, true, false, false);
+		final CompositeMetaData<Object, Object> metaData = new CompositeMetaData<Object, Object>();
+		metaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, new ColumnMetaDataResultSetMetaData(columnMetaData));
+		List<Tuple> list = new ArrayList<Tuple>();
+		for (Object[] tuple : tuples)
+			list.add(new ArrayTuple(tuple));
+		return new AbstractMetaDataCursor<Tuple, CompositeMetaData<Object, Object>>(list.iterator()) {
+			@Override
+			public CompositeMetaData<Object, Object> getMetaData() {
+				return metaData;
+			}
+		};
+	}
+
+	protected static List<String> toStrings(MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> cursor) {
+		List<String> result = new ArrayList<String>();
+		cursor.open();
+		while (cursor.hasNext()) {
+			Tuple tuple = cursor.next();
+			StringBuilder string = new StringBuilder();
+			for (int i = 1; i <= tuple.getColumnCount(); i++)
+				string.append(i > 1 ? "," : "").append(tuple.getObject(i));
+			result.add(string.toString());
+		}
+		cursor.close();
+		Collections.sort(result);
+		return result;
+	}
+
+	@Test
+	public void equiJoin() throws SQLException {
+		HashJoin join = new HashJoin(
+			relation("R", new String[] {"A", "B"}, new Object[] {1, 10}, new Object[] {2, 20}, new Object[] {2, 21}, new Object[] {3, 30}),
+			relation("S", new String[] {"C", "D"}, new Object[] {2, 200}, new Object[] {3, 300}, new Object[] {4, 400}),
+			new int[] {1},
+			new int[] {1},
+			ArrayTuple.FACTORY_METHOD,
+			HashJoin.Type.LEFT_OUTER_JOIN,
+			HashJoin.listQueueFactory(),
+			16,
+			16
+		);
+		Assert.assertEquals(ResultSetMetaDatas.getResultSetMetaData(join).getColumnCount(), 4);
+		List<String> expected = new ArrayList<String>();
+		Collections.addAll(expected, "1,10,null,null", "2,20,2,200", "2,21,2,200", "3,30,3,300");
+		Assert.assertEquals(toStrings(join), expected);
+	}
+
+	@Test
+	public void naturalJoin() throws SQLException {
+		HashJoin join = new HashJoin(
+			relation("R", new String[] {"A", "B"}, new Object[] {1, 10}, new Object[] {2, 20}, new Object[] {2, 21}),
+			relation("S", new String[] {"B", "C"}, new Object[] {20, 5}, new Object[] {21, 6}, new Object[] {21, 7}, new Object[] {22, 8}),
+			ArrayTuple.FACTORY_METHOD,
+			HashJoin.listQueueFactory(),
+			16,
+			1024
+		);
+		ResultSetMetaData metaData = ResultSetMetaDatas.getResultSetMetaData(join);
+		Assert.assertEquals(metaData.getColumnCount(), 3);
+		List<String> expected = new ArrayList<String>();
+		Collections.addAll(expected, "2,20,5", "2,21,6", "2,21,7");
+		Assert.assertEquals(toStrings(join), expected);
+	}
+}
@@ -0,0 +1,262 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.spatial.cursors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.wrappers.IteratorCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.predicates.And;
+import xxl.core.predicates.FeaturePredicate;
+import xxl.core.predicates.Predicate;
+import xxl.core.spatial.KPEzCode;
+import xxl.core.spatial.points.FloatPoint;
+import xxl.core.spatial.points.Point;
+import xxl.core.spatial.predicates.DistanceWithinMaximum;
+
+/**
+ * Compares the results of {@link ParallelGESS} with the results of the
+ * sequential {@link GESS} operator and with a nested-loops join. The
+ * reference point method has to remove all duplicates in both cases.
+ */
+public class ParallelGESSTest {
+
+	public static final int DIMENSIONS = 3;
+	public static final int POINTS = 3000;
+	public static final double EPSILON = 0.04;
+	public static final int MIN_BIT_INDEX = 50;
+	public static final int CAPACITY = 4 * POINTS;
+
+	private List<FloatPoint> points0;
+	private List<FloatPoint> points1;
+	private Set<String> expected;
+
+	private static List<FloatPoint> randomPoints(Random random) {
+		List<FloatPoint> points = new ArrayList<FloatPoint>(POINTS);
+		for (int i = 0; i < POINTS; i++) {
+			float[] point = new float[DIMENSIONS];
+			for (int d = 0; d < DIMENSIONS; d++)
+				// clustered coordinates to produce skewed partitions
+				point[d] = random.nextInt(4) == 0 ? random.nextFloat() : 0.2f + 0.1f * random.nextFloat();
+			points.add(new FloatPoint(point));
+		}
+		return points;
+	}
+
+	@BeforeClass
+	public void setUp() {
+		Random random = new Random(42);
+		points0 = randomPoints(random);
+		points1 = randomPoints(random);
+		expected = new HashSet<String>();
+		for (int i = 0; i < POINTS; i++)
+			for (int j = 0; j < POINTS; j++) {
+				float[] p = (float[])points0.get(i).getPoint();
+				float[] q = (float[])points1.get(j).getPoint();
+				boolean within = true;
+				for (int d = 0; d < DIMENSIONS && within; d++)
+					within = Math.abs(p[d] - q[d]) <= EPSILON;
+				if (within)
+					expected.add(i + ":" + j);
+			}
+	}
+
+	private Predicate joinPredicate() {
+		return new And(
+			new FeaturePredicate(
+				new DistanceWithinMaximum(EPSILON),
+				new AbstractFunction() {
+					@Override
+					public Object invoke(Object object) {
+						return ((KPEzCode)object).getData();
+					}
+				}
+			),
+			new GESS.ReferencePointMethod(EPSILON / 2)
+		);
+	}
+
+	private static Function newSorter() {
+		return new AbstractFunction() {
+			@Override
+			public Object invoke(Object input) {
+				List<Object> list = new ArrayList<Object>();
+				for (Iterator it = (Iterator)input; it.hasNext();)
+					list.add(it.next());
+				Collections.sort((List)list);
+				return new IteratorCursor(list.iterator());
+			}
+		};
+	}
+
+	private Function newResult() {
+		final Map<Object, Integer> index0 = new IdentityHashMap<Object, Integer>();
+		final Map<Object, Integer> index1 = new IdentityHashMap<Object, Integer>();
+		for (int i = 0; i < POINTS; i++) {
+			index0.put(points0.get(i), i);
+			index1.put(points1.get(i), i);
+		}
+		return new AbstractFunction() {
+			@Override
+			public Object invoke(Object argument0, Object argument1) {
+				return index0.get(((KPEzCode)argument0).getData()) + ":" + index1.get(((KPEzCode)argument1).getData());
+			}
+		};
+	}
+
+	private static Function inputMapping() {
+		return Mappers.pointToFixedPointRectangleMappingFunction(EPSILON / 2);
+	}
+
+	private static Set<String> collect(Cursor cursor) {
+		Set<String> result = new HashSet<String>();
+		while (cursor.hasNext())
+			Assert.assertTrue(result.add((String)cursor.next()), "duplicate result");
+		cursor.close();
+		return result;
+	}
+
+	private void assertSameResult(Set<String> result, String message) {
+		Set<String> missing = new HashSet<String>(expected);
+		missing.removeAll(result);
+		Set<String> unexpected = new HashSet<String>(result);
+		unexpected.removeAll(expected);
+		Assert.assertTrue(missing.isEmpty() && unexpected.isEmpty(), message + ": missing " + missing + ", unexpected " + unexpected);
+	}
+
+	@Test
+	public void sequential() {
+		Set<String> result = collect(new GESS(points0.iterator(), points1.iterator(), inputMapping(), joinPredicate(),
+			Replicator.SPLIT_TWICE, MIN_BIT_INDEX, newSorter(), newResult(), DIMENSIONS, CAPACITY));
+		assertSameResult(result, "sequential");
+	}
+
+	@Test
+	public void parallel() {
+		ParallelGESS join = new ParallelGESS(points0.iterator(), points1.iterator(), inputMapping(), joinPredicate(),
+			Replicator.SPLIT_TWICE, MIN_BIT_INDEX, newSorter(), newResult(), DIMENSIONS, CAPACITY, 4);
+		assertSameResult(collect(join), "parallel");
+		Assert.assertTrue(join.numberOfPartitions() > 1);
+	}
+
+	@Test
+	public void sharedExecutor() {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (int partitions : new int[]{1, 2, 7, 64}) {
+				Cursor join = new ParallelGESS(points0.iterator(), points1.iterator(), inputMapping(), joinPredicate(),
+					Replicator.SPLIT_TWICE_PER_LEVEL, MIN_BIT_INDEX, newSorter(), newResult(), DIMENSIONS, CAPACITY, executor, partitions);
+				assertSameResult(collect(join), "partitions: " + partitions);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void queuedPartitions() {
+		final AtomicInteger opened = new AtomicInteger(), closed = new AtomicInteger();
+		Function newQueue = new AbstractFunction() {
+			@Override
+			public Object invoke() {
+				return new ListQueue<Object>() {
+					@Override
+					public void open() {
+						if (!isOpened)
+							opened.incrementAndGet();
+						super.open();
+					}
+
+					@Override
+					public void close() {
+						if (!isClosed)
+							closed.incrementAndGet();
+						super.close();
+					}
+				};
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			ParallelOrenstein join = new ParallelOrenstein(
+				Mappers.mapPointToKPEzCode((Iterator<? extends Point>)points0.iterator(), (float)(EPSILON / 2), 20),
+				Mappers.mapPointToKPEzCode((Iterator<? extends Point>)points1.iterator(), (float)(EPSILON / 2), 20),
+				joinPredicate(), newSorter(), newResult(), CAPACITY, newQueue, executor, 16);
+			Set<String> result = collect(join);
+			Assert.assertTrue(expected.containsAll(result));
+			Assert.assertFalse(result.isEmpty());
+			// two input queues and two queues per partition
+			Assert.assertEquals(opened.get(), 2 + 2 * join.numberOfPartitions());
+			Assert.assertEquals(closed.get(), opened.get());
+
+			// closing the join early stops the workers waiting for the consumer
+			join = new ParallelOrenstein(
+				Mappers.mapPointToKPEzCode((Iterator<? extends Point>)points0.iterator(), (float)(EPSILON / 2), 20),
+				Mappers.mapPointToKPEzCode((Iterator<? extends Point>)points1.iterator(), (float)(EPSILON / 2), 20),
+				joinPredicate(), newSorter(), newResult(), CAPACITY, executor, 2);
+			Assert.assertTrue(join.hasNext());
+			join.next();
+			join.close();
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void orenstein() {
+		Set<String> sequential = collect(new Orenstein(
+			Mappers.mapPointToKPEzCode((Iterator<? extends Point>)points0.iterator(), (float)(EPSILON / 2), 20),
+			Mappers.mapPointToKPEzCode((Iterator<? extends Point>)points1.iterator(), (float)(EPSILON / 2), 20),
+			joinPredicate(), newSorter(), newResult(), CAPACITY));
+		Set<String> parallel = collect(new ParallelOrenstein(
+			Mappers.mapPointToKPEzCode((Iterator<? extends Point>)points0.iterator(), (float)(EPSILON / 2), 20),
+			Mappers.mapPointToKPEzCode((Iterator<? extends Point>)points1.iterator(), (float)(EPSILON / 2), 20),
+			joinPredicate(), newSorter(), newResult(), CAPACITY, 4));
+		Assert.assertTrue(parallel.equals(sequential));
+		Assert.assertTrue(expected.containsAll(parallel));
+	}
+}
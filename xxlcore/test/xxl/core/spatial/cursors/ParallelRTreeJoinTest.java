@@ -0,0 +1,174 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+
+package xxl.core.spatial.cursors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.BufferedContainer;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.indexStructures.RTree;
+import xxl.core.io.LRUBuffer;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.spatial.KPE;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * Compares the results of {@link ParallelRTreeJoin} with the results of the
+ * sequential {@link RTreeJoin} and with a nested-loops join, for trees of
+ * equal and of different heights.
+ */
+public class ParallelRTreeJoinTest {
+
+	public static final int DIMENSION = 2;
+	public static final int SIZE_R = 4000;
+	public static final int SIZE_S = 3000;
+	public static final int SIZE_SMALL = 150;
+	public static final double EXTENT = 0.01;
+
+	private List<KPE> r;
+	private List<KPE> s;
+	private List<KPE> small;
+
+	private static List<KPE> randomRectangles(Random random, int size) {
+		List<KPE> rectangles = new ArrayList<KPE>(size);
+		for (int i = 0; i < size; i++) {
+			double[] left = new double[DIMENSION];
+			double[] right = new double[DIMENSION];
+			for (int d = 0; d < DIMENSION; d++) {
+				left[d] = random.nextDouble();
+				right[d] = left[d] + EXTENT * random.nextDouble();
+			}
+			rectangles.add(new KPE(new DoublePointRectangle(left, right), i, IntegerConverter.DEFAULT_INSTANCE));
+		}
+		return rectangles;
+	}
+
+	private static RTree buildTree(List<KPE> data, boolean buffered) {
+		RTree tree = new RTree();
+		tree.initialize(new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object kpe) {
+				return ((KPE)kpe).getData();
+			}
+		}, buffered ? new BufferedContainer(new MapContainer(), new LRUBuffer(20)) : new MapContainer(), 10, 25);
+		for (KPE kpe : data)
+			tree.insert(kpe);
+		return tree;
+	}
+
+	private static Set<String> nestedLoops(List<KPE> r, List<KPE> s) {
+		Set<String> result = new HashSet<String>();
+		for (KPE k0 : r)
+			for (KPE k1 : s)
+				if (((DoublePointRectangle)k0.getData()).overlaps((DoublePointRectangle)k1.getData()))
+					result.add(k0.getID() + ":" + k1.getID());
+		return result;
+	}
+
+	private static Set<String> collect(RTreeJoin join) {
+		Set<String> result = new HashSet<String>();
+		while (join.hasNext()) {
+			KPE[] pair = join.next();
+			Assert.assertTrue(result.add(pair[0].getID() + ":" + pair[1].getID()), "duplicate result");
+		}
+		Assert.assertEquals(join.resultCount(), result.size());
+		join.close();
+		return result;
+	}
+
+	private static void assertSameResult(Set<String> result, Set<String> expected, String message) {
+		Set<String> missing = new HashSet<String>(expected);
+		missing.removeAll(result);
+		Set<String> unexpected = new HashSet<String>(result);
+		unexpected.removeAll(expected);
+		Assert.assertTrue(missing.isEmpty() && unexpected.isEmpty(), message + ": missing " + missing + ", unexpected " + unexpected);
+	}
+
+	@BeforeClass
+	public void setUp() {
+		Random random = new Random(42);
+		r = randomRectangles(random, SIZE_R);
+		s = randomRectangles(random, SIZE_S);
+		small = randomRectangles(random, SIZE_SMALL);
+	}
+
+	@Test
+	public void equalHeights() {
+		RTree rTree = buildTree(r, false);
+		RTree sTree = buildTree(s, false);
+		Assert.assertEquals(rTree.height(), sTree.height());
+		Set<String> expected = nestedLoops(r, s);
+		Assert.assertFalse(expected.isEmpty());
+		assertSameResult(collect(new RTreeJoin(rTree, sTree)), expected, "sequential");
+
+		ParallelRTreeJoin join = new ParallelRTreeJoin(rTree, sTree, 4);
+		assertSameResult(collect(join), expected, "parallel");
+		Assert.assertTrue(join.pagesRead() > 0);
+		Assert.assertTrue(join.pairsTested() >= expected.size());
+	}
+
+	@Test
+	public void differentHeights() {
+		RTree rTree = buildTree(r, false);
+		RTree smallTree = buildTree(small, false);
+		Assert.assertTrue(rTree.height() > smallTree.height());
+		assertSameResult(collect(new RTreeJoin(rTree, smallTree)), nestedLoops(r, small), "sequential");
+		assertSameResult(collect(new ParallelRTreeJoin(rTree, smallTree, 3)), nestedLoops(r, small), "higher first");
+		assertSameResult(collect(new ParallelRTreeJoin(smallTree, rTree, 3)), nestedLoops(small, r), "lower first");
+	}
+
+	@Test
+	public void sharedPool() {
+		RTree rTree = buildTree(r, true);
+		RTree sTree = buildTree(s, true);
+		Set<String> expected = nestedLoops(r, s);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			for (int i = 0; i < 3; i++)
+				assertSameResult(collect(new ParallelRTreeJoin(rTree, sTree, pool)), expected, "run " + i);
+			// closing before all results have been consumed stops the join
+			ParallelRTreeJoin join = new ParallelRTreeJoin(rTree, sTree, pool);
+			Assert.assertTrue(join.hasNext());
+			join.next();
+			join.close();
+			Assert.assertFalse(pool.isShutdown());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}